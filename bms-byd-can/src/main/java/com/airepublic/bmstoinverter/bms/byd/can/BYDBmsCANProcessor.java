@@ -35,6 +35,7 @@ public class BYDBmsCANProcessor extends BMS {
         try {
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.get(bytes);
@@ -57,6 +58,8 @@ public class BYDBmsCANProcessor extends BMS {
                     readManufacturer(pack, data);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
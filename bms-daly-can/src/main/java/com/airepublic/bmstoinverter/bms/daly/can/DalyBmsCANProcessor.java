@@ -24,6 +24,7 @@ import com.airepublic.bmstoinverter.bms.daly.common.DalyCommand;
 import com.airepublic.bmstoinverter.bms.daly.common.DalyMessage;
 import com.airepublic.bmstoinverter.core.NoDataAvailableException;
 import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
 
@@ -78,6 +79,7 @@ public class DalyBmsCANProcessor extends AbstractDalyBmsProcessor {
                     final byte command = (byte) (receiveFrame.getInt(0) >> 16 & 0x000000FF);
 
                     if (receiver == (byte) 0x40) {
+                        beginFrameDecode();
                         final DalyMessage dalyMsg = convertReceiveFrameToDalyMessage(receiveFrame);
 
                         if (dalyMsg != null) {
@@ -85,7 +87,9 @@ public class DalyBmsCANProcessor extends AbstractDalyBmsProcessor {
                             framesToBeReceived--;
 
                             getMessageHandler().handleMessage(this, dalyMsg);
+                            endFrameDecode(port, receiveFrame);
                         } else {
+                            port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                             LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveFrame));
                             port.clearBuffers();
                             return readBuffers;
@@ -15,7 +15,6 @@ import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -23,11 +22,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.CommandTier;
 import com.airepublic.bmstoinverter.core.NoDataAvailableException;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
+import com.airepublic.bmstoinverter.core.util.Workers;
 
 import javax.inject.Inject;
 
@@ -41,8 +42,28 @@ public abstract class AbstractDalyBmsProcessor extends BMS {
     private DalyMessageHandler messageHandler;
     private final byte[] requestData = new byte[] { 0, 0, 0, 0, 0, 0, 0, 0 };
     private final int calibrationCounter = 1;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private boolean initialRound = true;
+    private final ExecutorService executor = Workers.newExecutor("daly-calibration");
+
+    /**
+     * Constructor.
+     */
+    public AbstractDalyBmsProcessor() {
+        registerCommand("rated capacity/cell voltage", CommandTier.ONCE, port -> sendMessage(port, DalyCommand.READ_RATED_CAPACITY_CELL_VOLTAGE, requestData)); // 0x50
+        registerCommand("battery type info", CommandTier.ONCE, port -> sendMessage(port, DalyCommand.READ_BATTERY_TYPE_INFO, requestData)); // 0x53
+        registerCommand("min/max pack voltage", CommandTier.ONCE, port -> sendMessage(port, DalyCommand.READ_MIN_MAX_PACK_VOLTAGE, requestData)); // 0x5A
+        registerCommand("max pack discharge/charge current", CommandTier.ONCE, port -> sendMessage(port, DalyCommand.READ_MAX_PACK_DISCHARGE_CHARGE_CURRENT, requestData)); // 0x5B
+
+        registerCommand("voltage/current/SOC", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_VOUT_IOUT_SOC, requestData)); // 0x90
+        registerCommand("min/max cell voltage", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_MIN_MAX_CELL_VOLTAGE, requestData)); // 0x91
+        registerCommand("min/max temperature", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_MIN_MAX_TEMPERATURE, requestData)); // 0x92
+        registerCommand("discharge/charge MOS status", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_DISCHARGE_CHARGE_MOS_STATUS, requestData)); // 0x93
+        registerCommand("status info", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_STATUS_INFO, requestData)); // 0x94
+        registerCommand("cell voltages", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_CELL_VOLTAGES, requestData)); // 0x95
+        registerCommand("cell temperatures", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_CELL_TEMPERATURE, requestData)); // 0x96
+        registerCommand("cell balance state", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_CELL_BALANCE_STATE, requestData)); // 0x97
+        registerCommand("failure codes", CommandTier.FAST, port -> sendMessage(port, DalyCommand.READ_FAILURE_CODES, requestData)); // 0x98
+    }
+
 
     /**
      * Gets the {@link DalyMessageHandler} to process the {@link DalyMessage} converted by the
@@ -55,34 +76,6 @@ public abstract class AbstractDalyBmsProcessor extends BMS {
     }
 
 
-    @Override
-    protected void collectData(final Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
-
-        if (initialRound) {
-            try {
-                sendMessage(port, DalyCommand.READ_RATED_CAPACITY_CELL_VOLTAGE, requestData); // 0x50
-                sendMessage(port, DalyCommand.READ_BATTERY_TYPE_INFO, requestData); // 0x53
-                sendMessage(port, DalyCommand.READ_MIN_MAX_PACK_VOLTAGE, requestData); // 0x5A
-                sendMessage(port, DalyCommand.READ_MAX_PACK_DISCHARGE_CHARGE_CURRENT, requestData); // 0x5B
-
-                initialRound = false;
-            } catch (final Throwable t) {
-                LOG.error("Failed to initialize BMS!", t);
-            }
-        }
-
-        sendMessage(port, DalyCommand.READ_VOUT_IOUT_SOC, requestData); // 0x90
-        sendMessage(port, DalyCommand.READ_MIN_MAX_CELL_VOLTAGE, requestData); // 0x91
-        sendMessage(port, DalyCommand.READ_MIN_MAX_TEMPERATURE, requestData); // 0x92
-        sendMessage(port, DalyCommand.READ_DISCHARGE_CHARGE_MOS_STATUS, requestData); // 0x93
-        sendMessage(port, DalyCommand.READ_STATUS_INFO, requestData); // 0x94
-        sendMessage(port, DalyCommand.READ_CELL_VOLTAGES, requestData); // 0x95
-        sendMessage(port, DalyCommand.READ_CELL_TEMPERATURE, requestData); // 0x96
-        sendMessage(port, DalyCommand.READ_CELL_BALANCE_STATE, requestData); // 0x97
-        sendMessage(port, DalyCommand.READ_FAILURE_CODES, requestData); // 0x98
-    }
-
-
     /**
      * Calibrate the SOC of all {@link BatteryPack} according to their maximum and minimum voltage
      * compared to the actual voltage.
@@ -25,6 +25,9 @@ import com.airepublic.bmstoinverter.bms.daly.common.DalyMessage;
 import com.airepublic.bmstoinverter.core.NoDataAvailableException;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.checksum.ByteSumChecksum;
+import com.airepublic.bmstoinverter.core.checksum.FrameChecksum;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
 
 /**
@@ -33,20 +36,15 @@ import com.airepublic.bmstoinverter.core.util.HexUtil;
 public class DalyBmsRS485Processor extends AbstractDalyBmsProcessor {
     private final static Logger LOG = LoggerFactory.getLogger(AbstractDalyBmsProcessor.class);
     private final ByteBuffer sendFrame = ByteBuffer.allocate(13);
+    private final FrameChecksum checksum = ByteSumChecksum.sum8();
     private final Predicate<ByteBuffer> validator = buffer -> {
         // check if null
         if (buffer == null) {
             return false;
         }
 
-        // calculate checksum
-        int checksum = 0;
-        for (int i = 0; i < buffer.capacity() - 1; i++) {
-            checksum += (byte) Byte.toUnsignedInt(buffer.get(i));
-        }
-
         // compare the checksum
-        return buffer.get(12) == (byte) checksum;
+        return buffer.get(12) == (byte) checksum.compute(buffer, 0, buffer.capacity() - 1);
     };
 
     @Override
@@ -90,11 +88,14 @@ public class DalyBmsRS485Processor extends AbstractDalyBmsProcessor {
                             readBuffers.add(receiveBuffer);
                         }
 
+                        beginFrameDecode();
                         final DalyMessage dalyMsg = convertReceiveFrameToDalyMessage(receiveBuffer);
 
                         if (dalyMsg != null) {
                             getMessageHandler().handleMessage(this, dalyMsg);
+                            endFrameDecode(port, receiveBuffer);
                         } else {
+                            port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                             LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveBuffer));
                             valid = false;
                         }
@@ -126,7 +127,8 @@ public class DalyBmsRS485Processor extends AbstractDalyBmsProcessor {
                 if (!valid) { // we received an invalid frame
                     // keep track of how often invalid frames were received
                     failureCount++;
-                    LOG.debug("Invalid frame received! {}", Port.printBuffer(receiveBuffer));
+                    port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
+                    LOG.debug("Invalid frame received on port {}!", port.getPortname());
 
                     if (failureCount >= 10) {
                         // try and wait for the bus to get quiet
@@ -157,22 +159,12 @@ public class DalyBmsRS485Processor extends AbstractDalyBmsProcessor {
     protected ByteBuffer prepareSendFrame(final int address, final DalyCommand cmd, final byte[] data) {
         sendFrame.rewind();
 
-        int checksum = 0;
         sendFrame.put((byte) 0xA5);
-        checksum += 0xA5;
         sendFrame.put((byte) address);
-        checksum += address;
         sendFrame.put((byte) cmd.id);
-        checksum += cmd.id;
         sendFrame.put((byte) 0x08);
-        checksum += 0x08;
-
-        for (final byte element : data) {
-            sendFrame.put(element);
-            checksum += element;
-        }
-
-        sendFrame.put((byte) checksum);
+        sendFrame.put(data);
+        sendFrame.put((byte) checksum.compute(sendFrame, 0, sendFrame.position()));
 
         sendFrame.rewind();
 
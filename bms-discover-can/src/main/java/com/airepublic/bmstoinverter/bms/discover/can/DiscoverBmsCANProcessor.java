@@ -36,6 +36,7 @@ public class DiscoverBmsCANProcessor extends BMS {
         try {
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.position(8);
@@ -65,6 +66,8 @@ public class DiscoverBmsCANProcessor extends BMS {
                     readAlarms(pack, data);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
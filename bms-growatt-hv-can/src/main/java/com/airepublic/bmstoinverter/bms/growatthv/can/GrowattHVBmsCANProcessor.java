@@ -25,11 +25,12 @@ import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.AlarmLevel;
 import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.CommandTier;
 import com.airepublic.bmstoinverter.core.NoDataAvailableException;
 import com.airepublic.bmstoinverter.core.Port;
-import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
@@ -96,14 +97,31 @@ public class GrowattHVBmsCANProcessor extends BMS {
         }
     }
 
-    @Override
-    protected void collectData(final Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
-        // read all values
+    /**
+     * Constructor.
+     */
+    public GrowattHVBmsCANProcessor() {
+        // read all values, the battery code and manufacturer do not change
         for (final Command cmd : Command.values()) {
-            if (cmd == Command.TIMING_COMMAND || cmd == Command.CONTROL_COMMAND || cmd == Command.HEARTBEAT_COMMAND) {
-                continue;
+            switch (cmd) {
+                case TIMING_COMMAND:
+                case CONTROL_COMMAND:
+                case HEARTBEAT_COMMAND: {
+                    // not requested
+                }
+                break;
+                case READ_BATTERY_CODE_AND_QUANTITY: {
+                    registerCommand(cmd.name(), CommandTier.ONCE, port -> sendMessage(port, cmd, requestData));
+                }
+                break;
+                case READ_MANUFACTURER_AND_MAX_CELL_VOLTAGE: {
+                    registerCommand(cmd.name(), CommandTier.SLOW, port -> sendMessage(port, cmd, requestData));
+                }
+                break;
+                default: {
+                    registerCommand(cmd.name(), CommandTier.FAST, port -> sendMessage(port, cmd, requestData));
+                }
             }
-            sendMessage(port, cmd, requestData);
         }
     }
 
@@ -141,6 +159,7 @@ public class GrowattHVBmsCANProcessor extends BMS {
                 } catch (final InterruptedException e) {
                 }
             } else {
+                beginFrameDecode();
 
                 // read the BMS id
                 final int canId = receiveFrame.getInt();
@@ -228,17 +247,21 @@ public class GrowattHVBmsCANProcessor extends BMS {
                             }
                             break;
                             default: {
+                                port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                                 LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveFrame));
                                 port.clearBuffers();
                                 return readBuffers;
                             }
                         }
                     } else {
+                        port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                         LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveFrame));
                         port.clearBuffers();
                         return readBuffers;
                     }
                 }
+
+                endFrameDecode(port, receiveFrame);
             }
         } while (!frameReceived);
 
@@ -40,7 +40,7 @@ public class HngceBmsModbusProcessor extends BMS {
         final ByteBuffer responseFrame = port.receiveFrame();
 
         if (responseFrame != null && responseFrame.remaining() >= 12) {
-            parseResponse(responseFrame);
+            decodeFrame(port, responseFrame, this::parseResponse);
         } else {
             throw new NoDataAvailableException();
         }
@@ -14,6 +14,7 @@ import com.airepublic.bmstoinverter.core.BMS;
 import com.airepublic.bmstoinverter.core.BMSConfig;
 import com.airepublic.bmstoinverter.core.BMSDescriptor;
 import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.checksum.ByteSumChecksum;
 import com.airepublic.bmstoinverter.core.protocol.rs485.FrameDefinition;
 import com.airepublic.bmstoinverter.protocol.rs485.JSerialCommPort;
 import com.fazecast.jSerialComm.SerialPort;
@@ -42,7 +43,7 @@ public class JBDBmsRS485Descriptor implements BMSDescriptor {
 
     @Override
     public Port createPort(final BMSConfig config) {
-        final Port port = new JSerialCommPort(config.getPortLocator(), config.getBaudRate(), 8, 1, SerialPort.NO_PARITY, new byte[] { (byte) 0xDD }, FrameDefinition.create("SCOLDVVO"));
+        final Port port = new JSerialCommPort(config.getPortLocator(), config.getBaudRate(), 8, 1, SerialPort.NO_PARITY, new byte[] { (byte) 0xDD }, FrameDefinition.create("SCOLDVVO").withChecksum(ByteSumChecksum.negatedSum16(), 2));
         return port;
     }
 
@@ -27,6 +27,9 @@ import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.checksum.ByteSumChecksum;
+import com.airepublic.bmstoinverter.core.checksum.FrameChecksum;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
 
@@ -35,18 +38,21 @@ import com.airepublic.bmstoinverter.core.util.HexUtil;
  */
 public class JBDBmsRS485Processor extends BMS {
     private final static Logger LOG = LoggerFactory.getLogger(JBDBmsRS485Processor.class);
+    private final FrameChecksum checksum = ByteSumChecksum.negatedSum16();
     private final Predicate<ByteBuffer> validator = buffer -> {
         // check if null
         if (buffer == null) {
             return false;
         }
 
-        buffer.rewind();
-        final byte[] data = buffer.array();
-        final short checksum = compute(data);
+        final int length = buffer.capacity();
+
+        if (length < 5) {
+            return false;
+        }
 
         // compare the checksum
-        return data[data.length - 3] == (byte) (checksum >> 8 & 0x00FF) && data[data.length - 2] == (byte) (checksum & 0x00FF);
+        return ((buffer.get(length - 3) & 0xFF) << 8 | buffer.get(length - 2) & 0xFF) == checksum.compute(buffer, 2, length - 3);
     };
 
     public static class DataEntry {
@@ -126,6 +132,7 @@ public class JBDBmsRS485Processor extends BMS {
                 valid = validator.test(receiveBuffer);
 
                 if (valid) {
+                    beginFrameDecode();
                     receiveBuffer.rewind();
                     final int length = receiveBuffer.get(3);
                     receiveBuffer.position(4);
@@ -150,10 +157,13 @@ public class JBDBmsRS485Processor extends BMS {
                         }
                         break;
                         default: {
+                            port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                             LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveBuffer));
                             valid = false;
                         }
                     }
+
+                    endFrameDecode(port, receiveBuffer);
                 } else if (receiveBuffer == null) { // received nothing
                     // keep track of how often no bytes could be read
                     noDataReceived++;
@@ -182,7 +192,8 @@ public class JBDBmsRS485Processor extends BMS {
             if (!valid) { // we received an invalid frame
                 // keep track of how often invalid frames were received
                 failureCount++;
-                LOG.debug("Invalid frame received! {}", Port.printBuffer(receiveBuffer));
+                port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
+                LOG.debug("Invalid frame received on port {}!", port.getPortname());
 
                 if (failureCount >= 10) {
                     // try and wait for the bus to get quiet
@@ -341,15 +352,8 @@ public class JBDBmsRS485Processor extends BMS {
         sendFrame.put((byte) length); // Frame Length Byte
         sendFrame.put(data);
 
-        // checksum
-        int sum = 0x0000;
-        sum -= (byte) command;
-
-        for (final byte element : data) {
-            sum -= element;
-        }
-        sendFrame.put((byte) (sum >> 8 & 0xFF)); // Checksum Byte 1
-        sendFrame.put((byte) (sum & 0xFF)); // Checksum Byte 2
+        // checksum of the command, length and data
+        sendFrame.putShort((short) checksum.compute(sendFrame, 2, sendFrame.position())); // Checksum Bytes 1 and 2
 
         sendFrame.put((byte) 0x77); // End flag
 
@@ -362,15 +366,7 @@ public class JBDBmsRS485Processor extends BMS {
             throw new IllegalArgumentException("Invalid frame or index range");
         }
 
-        short sum = 0;
-        for (int i = 2; i < frame.length - 3; i++) {
-            sum += frame[i] & 0xFF;
-        }
-
-        sum &= 0xFFFF;
-        final int checksum = ~sum + 1 & 0xFFFF;
-
-        return (short) checksum;
+        return (short) ByteSumChecksum.negatedSum16().compute(ByteBuffer.wrap(frame), 2, frame.length - 3);
     }
 
 
@@ -13,6 +13,8 @@ package com.airepublic.bmstoinverter.bms.jk.can;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,18 +24,35 @@ import com.airepublic.bmstoinverter.core.BMS;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
 /**
  * The class to handle CAN messages from a JK {@link BMS}.
  */
-public class JKBmsCANProcessor extends BMS {
+public class JKBmsCANProcessor extends BMS implements CANFilterProvider {
     private final static Logger LOG = LoggerFactory.getLogger(JKBmsCANProcessor.class);
 
+    @Override
+    public List<CANFilter> getCANFilters() {
+        final List<CANFilter> filters = new ArrayList<>();
+
+        // the low nibble of the frame id is the BMS id
+        for (final int cmd : new int[] { 0x2F0, 0x4F0, 0x5F0, 0x7F0, 0x18F128F0, 0x18F228F0, 0x18F328F0, 0x18F428F0, 0x18F528F0, 0x18E028F0, 0x18E128F0, 0x18E228F0, 0x18E328F0, 0x18E428F0, 0x18E528F0, 0x18E628F0, 0x1806E5F0 }) {
+            filters.add(new CANFilter(cmd, 0x1FFFFFF0));
+        }
+
+        return filters;
+    }
+
+
     @Override
     protected void collectData(final Port port) {
         try {
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             frame.getInt(); // skip
             final byte[] bytes = new byte[8];
@@ -48,56 +67,75 @@ public class JKBmsCANProcessor extends BMS {
             switch (cmd) {
                 case 0x2F0:
                     readBatteryStatus(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x4F0:
                     readCellVoltage(pack, data);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x5F0:
                     readCellTemperature(pack, data);
+                    pack.markUpdated(DataGroup.TEMPERATURES);
                 break;
                 case 0x7F0:
                     readAlarms(pack, data);
+                    pack.markUpdated(DataGroup.ALARMS);
                 break;
                 case 0x18F128F0:
                     readBatteryStatus2(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x18F228F0:
                     readCelTemperatures2(pack, data);
+                    pack.markUpdated(DataGroup.TEMPERATURES);
                 break;
                 case 0x18F328F0:
                     readAlarms2(pack, data);
+                    pack.markUpdated(DataGroup.ALARMS);
                 break;
                 case 0x18F428F0:
                     readBMSInfo2(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
                 case 0x18F528F0:
                     readBmsStatus2(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x18E028F0:
                     readCellVoltages(pack, data, 0);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x18E128F0:
                     readCellVoltages(pack, data, 4);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x18E228F0:
                     readCellVoltages(pack, data, 8);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x18E328F0:
                     readCellVoltages(pack, data, 12);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x18E428F0:
                     readCellVoltages(pack, data, 16);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x18E528F0:
                     readCellVoltages(pack, data, 20);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x18E628F0:
                     readCellVoltages(pack, data, 24);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x1806E5F0:
                     readChargingInfo(pack, data);
+                    pack.markUpdated(DataGroup.LIMITS);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
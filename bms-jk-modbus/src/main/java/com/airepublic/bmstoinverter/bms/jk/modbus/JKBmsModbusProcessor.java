@@ -47,7 +47,7 @@ public class JKBmsModbusProcessor extends BMS {
 
     protected void sendMessage(final Port port, final RegisterCode functionCode, final int startAddress, final int numRegisters, final int unitId, final Consumer<ByteBuffer> handler) throws IOException {
         port.sendFrame(ModbusUtil.createRequestBuffer(functionCode, startAddress, numRegisters, unitId));
-        handler.accept(port.receiveFrame());
+        decodeFrame(port, port.receiveFrame(), handler);
     }
 
 
@@ -28,6 +28,7 @@ import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
@@ -131,6 +132,7 @@ public class LiaBmsCANProcessor extends BMS {
                 } catch (final InterruptedException e) {
                 }
             } else {
+                beginFrameDecode();
                 // read the BMS id
                 final int canId = receiveFrame.getInt();
                 final byte bmsId = (byte) (canId & 0x00000001); // last 4 bits represents bms id
@@ -184,12 +186,15 @@ public class LiaBmsCANProcessor extends BMS {
                         }
                         break;
                         default: {
+                            port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                             LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveFrame));
                             port.clearBuffers();
                             return readBuffers;
                         }
                     }
                 }
+
+                endFrameDecode(port, receiveFrame);
             }
         } while (!frameReceived);
 
@@ -36,6 +36,7 @@ public class LuxpowerBmsCANProcessor extends BMS {
         try {
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.get(bytes);
@@ -61,6 +62,8 @@ public class LuxpowerBmsCANProcessor extends BMS {
                     readChargeDischargeConfigChange(pack, data);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
@@ -41,6 +41,7 @@ public class MegarevoBmsCANProcessor extends BMS {
 
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = canPort.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.position(8);
@@ -64,6 +65,8 @@ public class MegarevoBmsCANProcessor extends BMS {
                     readCapacity(pack, data);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
@@ -51,7 +51,7 @@ public class NaradaBmsModbusProcessor extends BMS {
 
     protected void sendMessage(final Port port, final RegisterCode functionCode, final int startAddress, final int numRegisters, final int unitId, final Consumer<ByteBuffer> handler) throws IOException {
         port.sendFrame(ModbusUtil.createRequestBuffer(functionCode, startAddress, numRegisters, unitId));
-        handler.accept(port.receiveFrame());
+        decodeFrame(port, port.receiveFrame(), handler);
     }
 
 
@@ -28,6 +28,7 @@ import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
@@ -142,6 +143,7 @@ public class PaceBmsCANProcessor extends BMS {
                 } catch (final InterruptedException e) {
                 }
             } else {
+                beginFrameDecode();
                 // read the BMS id
                 final byte bmsId = (byte) (receiveFrame.get(0) - 0x10);
 
@@ -188,12 +190,15 @@ public class PaceBmsCANProcessor extends BMS {
                         }
                         break;
                         default: {
+                            port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                             LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveFrame));
                             port.clearBuffers();
                             return readBuffers;
                         }
                     }
                 }
+
+                endFrameDecode(port, receiveFrame);
             }
         } while (!frameReceived);
 
@@ -13,6 +13,8 @@ package com.airepublic.bmstoinverter.bms.pylon.can;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,20 +24,31 @@ import com.airepublic.bmstoinverter.core.BMS;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
 /**
  * The class to handle CAN messages from a Pylon {@link BMS}.
  */
-public class PylonBmsCANProcessor extends BMS {
+public class PylonBmsCANProcessor extends BMS implements CANFilterProvider {
     private final static Logger LOG = LoggerFactory.getLogger(PylonBmsCANProcessor.class);
     private final static int BATTERY_ID = 0;
 
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // 0x351-0x35F and 0x370-0x371
+        return Arrays.asList(new CANFilter(0x350, 0x1FFFFFF0), new CANFilter(0x370, 0x1FFFFFFE));
+    }
+
+
     @Override
     public void collectData(final Port port) {
         try {
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.position(8);
@@ -45,32 +58,43 @@ public class PylonBmsCANProcessor extends BMS {
             switch (frameId) {
                 case 0x351:
                     readChargeDischargeInfo(pack, data);
+                    pack.markUpdated(DataGroup.LIMITS);
                 break;
                 case 0x354:
                     readCapacity(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
                 case 0x355:
                     readSOC(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x356:
                     readBatteryVoltage(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x35C:
                     requestChargeDischargeConfigChange(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x370:
                     readMinMaxTemperatureVoltage(pack, data);
+                    pack.markUpdated(DataGroup.TEMPERATURES);
                 break;
                 case 0x371:
                     readTemperatureIds(pack, data);
+                    pack.markUpdated(DataGroup.TEMPERATURES);
                 break;
                 case 0x35E:
                     readManufacturer(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
                 case 0x359:
                     readAlarms(pack, data);
+                    pack.markUpdated(DataGroup.ALARMS);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
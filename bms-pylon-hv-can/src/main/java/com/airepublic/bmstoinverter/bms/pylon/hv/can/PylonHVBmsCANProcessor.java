@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -24,6 +25,10 @@ import com.airepublic.bmstoinverter.core.BMS;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
@@ -31,10 +36,17 @@ import com.airepublic.bmstoinverter.core.util.HexUtil;
 /**
  * The class to handle CAN messages from a JK {@link BMS}.
  */
-public class PylonHVBmsCANProcessor extends BMS {
+public class PylonHVBmsCANProcessor extends BMS implements CANFilterProvider {
     private final static Logger LOG = LoggerFactory.getLogger(PylonHVBmsCANProcessor.class);
     private final ByteBuffer sendFrame = ByteBuffer.allocateDirect(16).order(ByteOrder.LITTLE_ENDIAN);
 
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // ensemble (0x42x0) and system equipment information (0x73x0) of all battery ids
+        return Arrays.asList(new CANFilter(0x4200, 0x1FFFFF00), new CANFilter(0x7300, 0x1FFFFF00));
+    }
+
+
     @Override
     protected void collectData(final Port port) {
         try {
@@ -74,9 +86,10 @@ public class PylonHVBmsCANProcessor extends BMS {
 
                 if (receiveFrame != null) {
                     LOG.debug("BMS RECEIVED: {}", Port.printBuffer(receiveFrame));
-                    handleMessage(receiveFrame);
+                    decodeFrame(port, receiveFrame, this::handleMessage);
                     framesToBeReceived--;
                 } else {
+                    port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                     LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveFrame));
                     return readBuffers;
                 }
@@ -101,27 +114,35 @@ public class PylonHVBmsCANProcessor extends BMS {
             switch (frameId & 0xFFFFFFF0) {
                 case 0x4210:
                     readBatteryStatus(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x4220:
                     readChargeDischargeValues(pack, data);
+                    pack.markUpdated(DataGroup.LIMITS);
                 break;
                 case 0x4230:
                     readCellVoltage(pack, data);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x4240:
                     readCellTemperature(pack, data);
+                    pack.markUpdated(DataGroup.TEMPERATURES);
                 break;
                 case 0x4250:
                     readAlarms(pack, data);
+                    pack.markUpdated(DataGroup.ALARMS);
                 break;
                 case 0x4260:
                     readModuleVoltage(pack, data);
+                    pack.markUpdated(DataGroup.CELLS);
                 break;
                 case 0x4270:
                     readModuleTemperature(pack, data);
+                    pack.markUpdated(DataGroup.TEMPERATURES);
                 break;
                 case 0x4280:
                     readChargeForbiddenMarks(pack, data);
+                    pack.markUpdated(DataGroup.STATUS);
                 break;
                 case 0x42B0: // ???
                 case 0x42C0:
@@ -130,15 +151,19 @@ public class PylonHVBmsCANProcessor extends BMS {
                 break;
                 case 0x7310:
                     readHardwareSoftwareVersion(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
                 case 0x7320:
                     readBatterModuleInfo(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
                 case 0x7330:
                     readManufacturerPart1(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
                 case 0x7340:
                     readManufacturerPart2(pack, data);
+                    pack.markUpdated(DataGroup.INFO);
                 break;
 
             }
@@ -22,11 +22,15 @@ import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.AlarmLevel;
 import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.CommandTier;
 import com.airepublic.bmstoinverter.core.NoDataAvailableException;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.checksum.FrameChecksum;
+import com.airepublic.bmstoinverter.core.checksum.PylonChecksum;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.HexUtil;
 
@@ -36,47 +40,39 @@ import com.airepublic.bmstoinverter.core.util.HexUtil;
 public class PylonBmsRS485Processor extends BMS {
     private final static Logger LOG = LoggerFactory.getLogger(PylonBmsRS485Processor.class);
     private static final int BATTERY_PACK_ID = 0;
+    private final FrameChecksum checksum = PylonChecksum.chksum();
     private final Predicate<ByteBuffer> validator = buffer -> {
         // check if null
         if (buffer == null) {
             return false;
         }
 
-        final byte[] checksumBytes = new byte[4];
-        buffer.position(buffer.capacity() - 5);
-        buffer.get(checksumBytes);
-        System.out.println(Port.printBytes(checksumBytes));
-        byte high = convertAsciiBytesToByte(checksumBytes[0], checksumBytes[1]);
-        byte low = convertAsciiBytesToByte(checksumBytes[2], checksumBytes[3]);
-        int checksum = high;
-        checksum = checksum << 8 & low;
-
-        final byte[] checkBytes = createChecksum(buffer);
-        System.out.println(Port.printBytes(checkBytes));
-        high = convertAsciiBytesToByte(checkBytes[0], checkBytes[1]);
-        low = convertAsciiBytesToByte(checkBytes[2], checkBytes[3]);
-        int check = high;
-        check = check << 8 & low;
-
-        return check == checksum;
+        return PylonChecksum.isValidFrame(buffer, checksum);
     };
 
-    @Override
-    protected void collectData(final Port port) throws TooManyInvalidFramesException, NoDataAvailableException, IOException {
-        final int address = 0x12 + getBmsId();
-        for (int packId = 0; packId < getBatteryPacks().size(); packId++) {
-            sendMessage(port, address, (byte) 0x46, (byte) 0x44, convertByteToAsciiBytes((byte) (packId + 1))); // warnings
-        }
+    /**
+     * Constructor.
+     */
+    public PylonBmsRS485Processor() {
+        registerCommand("warnings", CommandTier.FAST, port -> {
+            for (int packId = 0; packId < getBatteryPacks().size(); packId++) {
+                sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x44, convertByteToAsciiBytes((byte) (packId + 1)));
+            }
+        });
+        registerCommand("protocol version", CommandTier.ONCE, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x4F));
+        registerCommand("manufacturer code", CommandTier.ONCE, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x51));
+        registerCommand("charge/discharge management", CommandTier.FAST, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x92));
+        registerCommand("cell information", CommandTier.FAST, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x42, convertByteToAsciiBytes((byte) 0xFF)));
+        registerCommand("max/min voltage/current limits", CommandTier.SLOW, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x47));
+        registerCommand("system information", CommandTier.ONCE, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x60));
+        registerCommand("battery information", CommandTier.FAST, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x61));
+        registerCommand("alarm information", CommandTier.FAST, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x62));
+        registerCommand("charge/discharge information", CommandTier.FAST, port -> sendMessage(port, getAddress(), (byte) 0x46, (byte) 0x63));
+    }
 
-        sendMessage(port, address, (byte) 0x46, (byte) 0x4F); // protocol version
-        sendMessage(port, address, (byte) 0x46, (byte) 0x51); // manufacturer code
-        sendMessage(port, address, (byte) 0x46, (byte) 0x92); // charge/discharge management
-        sendMessage(port, address, (byte) 0x46, (byte) 0x42, convertByteToAsciiBytes((byte) 0xFF)); // cell information
-        sendMessage(port, address, (byte) 0x46, (byte) 0x47); // max/min voltage/current limits
-        sendMessage(port, address, (byte) 0x46, (byte) 0x60); // system information
-        sendMessage(port, address, (byte) 0x46, (byte) 0x61); // battery information
-        sendMessage(port, address, (byte) 0x46, (byte) 0x62); // alarm information
-        sendMessage(port, address, (byte) 0x46, (byte) 0x63); // charge/discharge information
+
+    private int getAddress() {
+        return 0x12 + getBmsId();
     }
 
 
@@ -116,6 +112,7 @@ public class PylonBmsRS485Processor extends BMS {
                 valid = validator.test(receiveBuffer);
 
                 if (valid) {
+                    beginFrameDecode();
                     receiveBuffer.rewind();
 
                     // extract address
@@ -192,10 +189,13 @@ public class PylonBmsRS485Processor extends BMS {
                         }
                         break;
                         default: {
+                            port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
                             LOG.warn("Message could not be interpreted " + Port.printBuffer(receiveBuffer));
                             valid = false;
                         }
                     }
+
+                    endFrameDecode(port, receiveBuffer);
                 } else if (receiveBuffer == null) { // received nothing
                     // keep track of how often no bytes could be read
                     noDataReceived++;
@@ -224,7 +224,8 @@ public class PylonBmsRS485Processor extends BMS {
             if (!valid) { // we received an invalid frame
                 // keep track of how often invalid frames were received
                 failureCount++;
-                LOG.debug("Invalid frame received! {}", Port.printBuffer(receiveBuffer));
+                port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
+                LOG.debug("Invalid frame received on port {}!", port.getPortname());
 
                 if (failureCount >= 10) {
                     // try and wait for the bus to get quiet
@@ -571,83 +572,17 @@ public class PylonBmsRS485Processor extends BMS {
         sendFrame.put(convertByteToAsciiBytes(cid1)); // command CID1
         sendFrame.put(convertByteToAsciiBytes(cid2)); // command CID2
         // Frame Length Byte
-        sendFrame.put(createLengthCheckSum(data.length * 2));
+        PylonChecksum.writeAsciiHex(sendFrame, PylonChecksum.lengthField(data.length * 2), 4);
         // data
         sendFrame.put(data);
-        // checksum
-        sendFrame.put(createChecksum(sendFrame));
+        // checksum of all values except SOI, checksum and EOI
+        PylonChecksum.writeAsciiHex(sendFrame, checksum.compute(sendFrame, 1, sendFrame.position()), 4);
         sendFrame.put((byte) 0x0D); // End flag
 
         return sendFrame;
     }
 
 
-    private byte[] createChecksum(final ByteBuffer sendFrame) {
-        long checksum = 0;
-
-        // add all values except SOI, checksum and EOI
-        for (int i = 1; i < sendFrame.capacity() - 5; i++) {
-            checksum += sendFrame.get(i);
-        }
-
-        // modulo remainder of 65535
-        checksum %= 65535;
-
-        // invert
-        checksum = ~checksum;
-        // add 1
-        checksum++;
-
-        // extract the high and low bytes
-        final byte high = (byte) (checksum >> 8);
-        final byte low = (byte) (checksum & 0x000000FF);
-        // convert them to ascii
-        final byte[] highBytes = convertByteToAsciiBytes(high);
-        final byte[] lowBytes = convertByteToAsciiBytes(low);
-        final byte[] data = new byte[4];
-        data[0] = highBytes[0];
-        data[1] = highBytes[1];
-        data[2] = lowBytes[0];
-        data[3] = lowBytes[1];
-
-        return data;
-
-    }
-
-
-    private byte[] createLengthCheckSum(final int length) {
-
-        // spit the first 12 bits into groups of 4 bits and accumulate
-        int chksum = (byte) BitUtil.bits(length, 0, 4) + (byte) BitUtil.bits(length, 4, 4) + (byte) BitUtil.bits(length, 8, 4);
-        // modulo 16 remainder
-        chksum %= 16;
-        // invert
-        chksum = ~chksum & 0xff;
-        chksum &= 0x0000000f;
-        // and finally +1
-        chksum++;
-
-        // combine the checksum and length
-        int dataValue = chksum;
-        dataValue = dataValue << 12;
-        dataValue += length;
-
-        // extract the high and low bytes
-        final byte high = (byte) (dataValue >> 8);
-        final byte low = (byte) (dataValue & 0x000000FF);
-        // convert them to ascii
-        final byte[] highBytes = convertByteToAsciiBytes(high);
-        final byte[] lowBytes = convertByteToAsciiBytes(low);
-        final byte[] data = new byte[4];
-        data[0] = highBytes[0];
-        data[1] = highBytes[1];
-        data[2] = lowBytes[0];
-        data[3] = lowBytes[1];
-
-        return data;
-    }
-
-
     private byte convertAsciiBytesToByte(final byte high, final byte low) {
         final String ascii = new String(new char[] { (char) high, (char) low });
         return HexUtil.fromHexDigits(ascii);
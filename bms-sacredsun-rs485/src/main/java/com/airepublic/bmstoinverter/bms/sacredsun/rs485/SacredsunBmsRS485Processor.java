@@ -24,6 +24,7 @@ import com.airepublic.bmstoinverter.core.NoDataAvailableException;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.util.ByteAsciiConverter;
 
 /**
@@ -74,6 +75,7 @@ public class SacredsunBmsRS485Processor extends BMS {
                     valid = receiveBuffer.get(0) == 0x7E && receiveBuffer.get(receiveBuffer.capacity() - 1) == 0x0D;
 
                     if (valid) {
+                        beginFrameDecode();
                         LOG.debug("RECEIVED: {}", Port.printBuffer(receiveBuffer));
                         receiveBuffer.rewind();
 
@@ -95,6 +97,8 @@ public class SacredsunBmsRS485Processor extends BMS {
 
                         readBatteryInformation(pack, data);
                         done = true;
+
+                        endFrameDecode(port, receiveBuffer);
                     } else {
                         LOG.warn("Frame is not value: " + Port.printBuffer(receiveBuffer));
                     }
@@ -126,7 +130,8 @@ public class SacredsunBmsRS485Processor extends BMS {
             if (!valid) { // we received an invalid frame
                 // keep track of how often invalid frames were received
                 failureCount++;
-                LOG.debug("Invalid frame received! {}", Port.printBuffer(receiveBuffer));
+                port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
+                LOG.debug("Invalid frame received on port {}!", port.getPortname());
 
                 if (failureCount >= 10) {
                     // try and wait for the bus to get quiet
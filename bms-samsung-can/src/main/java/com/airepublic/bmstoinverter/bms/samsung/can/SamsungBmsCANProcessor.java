@@ -36,6 +36,7 @@ public class SamsungBmsCANProcessor extends BMS {
         try {
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.position(8);
@@ -77,6 +78,8 @@ public class SamsungBmsCANProcessor extends BMS {
                     readCellVoltages(pack, data, 12);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
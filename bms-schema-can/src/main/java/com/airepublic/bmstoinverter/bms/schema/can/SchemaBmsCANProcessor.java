@@ -0,0 +1,82 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.bms.schema.can;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.BMSConfig;
+import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.decoder.FrameDecoder;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
+
+/**
+ * The class to handle CAN messages from a {@link BMS} whose frames are described by the frame
+ * schema configured with <code>bms.x.schema</code>, so new BMS variants need no new code.
+ */
+public class SchemaBmsCANProcessor extends BMS implements CANFilterProvider {
+    private final static Logger LOG = LoggerFactory.getLogger(SchemaBmsCANProcessor.class);
+    private final static String DEFAULT_SCHEMA = "schemas/pylon-can.json";
+    private final static int BATTERY_ID = 0;
+    private FrameDecoder decoder;
+
+    @Override
+    public void initialize(final BMSConfig config) {
+        final String schema = config.getSchema() != null ? config.getSchema() : DEFAULT_SCHEMA;
+
+        try {
+            decoder = FrameDecoder.load(schema);
+            LOG.info("Loaded frame schema '{}' from {}", decoder.getName(), schema);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Could not load frame schema " + schema + "!", e);
+        }
+
+        // the decoder is needed to provide the CAN filters
+        super.initialize(config);
+    }
+
+
+    @Override
+    public List<CANFilter> getCANFilters() {
+        final List<CANFilter> filters = new ArrayList<>();
+
+        for (final int frameId : decoder.getFrameIds()) {
+            filters.add(CANFilter.exact(frameId));
+        }
+
+        return filters;
+    }
+
+
+    @Override
+    public void collectData(final Port port) {
+        try {
+            final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
+            final boolean decoded = decoder.decode(frame, getBatteryPack(BATTERY_ID));
+            endFrameDecode(port, frame);
+
+            if (!decoded) {
+                LOG.debug("Frame id {} is not described by frame schema '{}'", Integer.toHexString(decoder.readFrameId(frame)), decoder.getName());
+            }
+        } catch (final IOException e) {
+            LOG.error("Error receiving frame!", e);
+        }
+    }
+
+}
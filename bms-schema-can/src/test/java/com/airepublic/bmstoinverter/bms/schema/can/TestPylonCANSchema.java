@@ -0,0 +1,80 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.bms.schema.can;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.decoder.FrameDecoder;
+
+/**
+ * Tests the bundled Pylon CAN frame schema with the same frames as the Pylon CAN processor.
+ */
+public class TestPylonCANSchema {
+    private static FrameDecoder decoder;
+
+    @BeforeAll
+    public static void init() throws IOException {
+        decoder = FrameDecoder.load("schemas/pylon-can.json");
+    }
+
+
+    private static ByteBuffer frame(final int id, final byte[] data) {
+        final ByteBuffer frame = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(id);
+        frame.put((byte) data.length);
+        frame.position(8);
+        frame.put(data).rewind();
+        return frame;
+    }
+
+
+    @Test
+    public void testReadChargeDischargeInfo() {
+        final BatteryPack pack = new BatteryPack();
+
+        decoder.decode(frame(0x351, new byte[] { (byte) 0x34, (byte) 0x02, (byte) 0xD0, (byte) 0x07, (byte) 0xA0, (byte) 0x0F, (byte) 0xB0, (byte) 0x01 }), pack);
+
+        Assertions.assertEquals(564, pack.maxPackVoltageLimit);
+        Assertions.assertEquals(2000, pack.maxPackChargeCurrent);
+        Assertions.assertEquals(4000, pack.maxPackDischargeCurrent);
+        Assertions.assertEquals(432, pack.minPackVoltageLimit);
+    }
+
+
+    @Test
+    public void testReadSOC() {
+        final BatteryPack pack = new BatteryPack();
+
+        decoder.decode(frame(0x355, new byte[] { (byte) 0x2A, (byte) 0x00, (byte) 0x64, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00 }), pack);
+
+        Assertions.assertEquals(420, pack.packSOC);
+        Assertions.assertEquals(1000, pack.packSOH);
+    }
+
+
+    @Test
+    public void testReadBatteryVoltage() {
+        final BatteryPack pack = new BatteryPack();
+
+        decoder.decode(frame(0x356, new byte[] { (byte) 0x63, (byte) 0x14, (byte) 0x0F, (byte) 0xFF, (byte) 0xEB, (byte) 0x00, (byte) 0x00, (byte) 0x00 }), pack);
+
+        Assertions.assertEquals(521, pack.packVoltage);
+        Assertions.assertEquals(-241, pack.packCurrent);
+        Assertions.assertEquals(235, pack.tempAverage);
+    }
+}
@@ -35,6 +35,7 @@ public class SeplosBmsCANProcessor extends BMS {
         try {
             final BatteryPack pack = getBatteryPack(BATTERY_ID);
             final ByteBuffer frame = port.receiveFrame();
+            beginFrameDecode();
             final int frameId = frame.getInt();
             final byte[] bytes = new byte[8];
             frame.get(bytes);
@@ -66,6 +67,8 @@ public class SeplosBmsCANProcessor extends BMS {
                     readAlarms(pack, data);
                 break;
             }
+
+            endFrameDecode(port, frame);
         } catch (final IOException e) {
             LOG.error("Error receiving frame!", e);
         }
@@ -27,6 +27,7 @@ import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.TooManyInvalidFramesException;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 import com.airepublic.bmstoinverter.core.util.ByteAsciiConverter;
 
@@ -81,6 +82,7 @@ public class SeplosBmsRS485Processor extends BMS {
                     valid = receiveBuffer.get(0) == 0x7E && receiveBuffer.get(receiveBuffer.capacity() - 1) == 0x0D;
 
                     if (valid) {
+                        beginFrameDecode();
                         LOG.debug("RECEIVED: {}", Port.printBuffer(receiveBuffer));
                         receiveBuffer.rewind();
 
@@ -102,6 +104,8 @@ public class SeplosBmsRS485Processor extends BMS {
 
                         handler.accept(pack, data);
                         done = true;
+
+                        endFrameDecode(port, receiveBuffer);
                     } else {
                         LOG.warn("Frame is not valid: " + Port.printBuffer(receiveBuffer));
                     }
@@ -133,7 +137,8 @@ public class SeplosBmsRS485Processor extends BMS {
             if (!valid) { // we received an invalid frame
                 // keep track of how often invalid frames were received
                 failureCount++;
-                LOG.debug("Invalid frame received! {}", Port.printBuffer(receiveBuffer));
+                port.getFlightRecorder().markLastReceived(FlightRecorder.OUTCOME_INVALID);
+                LOG.debug("Invalid frame received on port {}!", port.getPortname());
 
                 if (failureCount >= 10) {
                     // try and wait for the bus to get quiet
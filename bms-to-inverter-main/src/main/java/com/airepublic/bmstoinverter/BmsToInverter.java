@@ -12,11 +12,17 @@ package com.airepublic.bmstoinverter;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -29,18 +35,34 @@ import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.AlarmLevel;
 import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.BMSDiscovery;
+import com.airepublic.bmstoinverter.core.BMSListProducer;
+import com.airepublic.bmstoinverter.core.BeanFactory;
+import com.airepublic.bmstoinverter.core.CDIBeanFactory;
 import com.airepublic.bmstoinverter.core.Inverter;
-import com.airepublic.bmstoinverter.core.InverterQualifier;
+import com.airepublic.bmstoinverter.core.InverterConfig;
+import com.airepublic.bmstoinverter.core.InverterProducer;
+import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.PortAllocator;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorageQualifier;
+import com.airepublic.bmstoinverter.core.bms.data.TelemetryEncoder;
+import com.airepublic.bmstoinverter.core.bms.data.WarmStartSnapshot;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.notification.NotificationDispatcher;
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.service.IEmailService;
 import com.airepublic.bmstoinverter.core.service.IMQTTBrokerService;
 import com.airepublic.bmstoinverter.core.service.IMQTTProducerService;
+import com.airepublic.bmstoinverter.core.service.INotificationChannel;
 import com.airepublic.bmstoinverter.core.service.IWebServerService;
+import com.airepublic.bmstoinverter.core.util.ConfigWatcher;
+import com.airepublic.bmstoinverter.core.util.Metrics;
 import com.airepublic.bmstoinverter.core.util.SystemProperties;
+import com.airepublic.bmstoinverter.core.util.Workers;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * The main class to initiate communication between the configured BMS and the inverter. The
@@ -51,27 +73,37 @@ import com.airepublic.bmstoinverter.core.util.SystemProperties;
 @ApplicationScoped
 public class BmsToInverter implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(BmsToInverter.class);
+    private final static Pattern BMS_PROPERTY = Pattern.compile("bms\\.(\\d+)\\..*");
+    private final static Pattern INVERTER_PROPERTY = Pattern.compile("inverter\\.(\\d+)\\..*");
     @Inject
     @EnergyStorageQualifier
     private EnergyStorage energyStorage;
     @Inject
     private List<BMS> bmsList;
     @Inject
-    @InverterQualifier
-    private Inverter inverter;
+    private List<Inverter> inverters;
+    private Function<Class<? extends BMS>, BMS> bmsFactory = CDIBeanFactory::create;
+    private Function<Class<? extends Inverter>, Inverter> inverterFactory = CDIBeanFactory::create;
+    private volatile int pollInterval = 1;
     private Thread bmsRunner;
-    private Thread inverterRunner;
+    private final List<Thread> inverterRunners = new ArrayList<>();
     private Thread stopChecker;
     private boolean running = true;
     private IMQTTBrokerService mqttBroker;
     private IMQTTProducerService mqttProducer;
     private IMQTTProducerService mqttExternalProducer;
     private IEmailService emailService;
+    private NotificationDispatcher notificationDispatcher;
     private IWebServerService webServerService;
+    private ConfigWatcher configWatcher;
+    private WarmStartSnapshot warmStart;
     private List<String> lastAlarms = new ArrayList<>();
 
     /**
-     * The main method to start the application.
+     * The main method to start the application. The system property <code>bootstrap.mode</code>
+     * selects how the application is wired: <code>cdi</code> (default) boots the CDI container,
+     * <code>direct</code> resolves the configured {@link BMS}es and {@link Inverter} via their
+     * descriptors from the {@link ServiceLoader} and wires them without scanning the classpath.
      *
      * @param args none
      * @throws IOException
@@ -80,10 +112,54 @@ public class BmsToInverter implements AutoCloseable {
         // update all non-specified system parameters from "config.properties"
         SystemProperties.updateSystemProperties(Paths.get(System.getProperty("configFile", "config.properties")));
 
-        final SeContainerInitializer initializer = SeContainerInitializer.newInstance();
-        final SeContainer container = initializer.initialize();
-        // final BmsToInverter app = container.select(BmsToInverter.class).get();
-        // app.start();
+        // probe the ports for BMSes before they are opened by the configured BMSes
+        if ("true".equals(System.getProperty("discovery.enabled"))) {
+            final long discoveryStart = System.nanoTime();
+            final List<BMSDiscovery.Match> matches = BMSDiscovery.fromSystemProperties().discover();
+            LOG.info("BMS discovery finished after {}ms\n{}", (System.nanoTime() - discoveryStart) / 1000000, BMSDiscovery.createReport(matches));
+        }
+
+        final long bootStart = System.nanoTime();
+        final BmsToInverter app;
+
+        if ("direct".equalsIgnoreCase(System.getProperty("bootstrap.mode", "cdi"))) {
+            app = createDirect();
+        } else {
+            final SeContainerInitializer initializer = SeContainerInitializer.newInstance();
+            final SeContainer container = initializer.initialize();
+            app = container.select(BmsToInverter.class).get();
+        }
+
+        Metrics.setGauge("startup.bootstrapMs", (System.nanoTime() - bootStart) / 1000000);
+        LOG.info("Bootstrap ({}) finished after {}ms", System.getProperty("bootstrap.mode", "cdi"), Metrics.getGauge("startup.bootstrapMs"));
+
+        app.start();
+        app.awaitTermination();
+    }
+
+
+    /**
+     * Creates the application by wiring the {@link EnergyStorage}, {@link BMS}es, {@link Inverter}
+     * and services directly without a CDI container.
+     *
+     * @return the {@link BmsToInverter} application
+     */
+    static BmsToInverter createDirect() {
+        final BeanFactory beanFactory = new BeanFactory();
+        final BMSListProducer bmsListProducer = new BMSListProducer();
+        beanFactory.register(EnergyStorage.class, bmsListProducer.getEnergyStorage());
+
+        final List<BMS> bmsList = bmsListProducer.createBMSList(beanFactory::create);
+        beanFactory.register(TypeToken.getParameterized(List.class, BMS.class).getType(), bmsList);
+
+        final List<Inverter> inverters = new InverterProducer().createInverters(beanFactory::create);
+        beanFactory.register(TypeToken.getParameterized(List.class, Inverter.class).getType(), inverters);
+
+        final BmsToInverter app = beanFactory.create(BmsToInverter.class);
+        app.bmsFactory = beanFactory::create;
+        app.inverterFactory = beanFactory::create;
+
+        return app;
     }
 
 
@@ -120,6 +196,8 @@ public class BmsToInverter implements AutoCloseable {
         if (System.getProperty("webserver.service.enabled") != null && System.getProperty("webserver.service.enabled").equals("true")) {
             initializeWebserverService();
         }
+
+        initializeNotificationDispatcher();
     }
 
 
@@ -232,6 +310,32 @@ public class BmsToInverter implements AutoCloseable {
     }
 
 
+    /**
+     * Initialize the notification dispatcher with the email service and any other registered
+     * {@link INotificationChannel}s.
+     */
+    protected void initializeNotificationDispatcher() {
+        final NotificationDispatcher dispatcher = NotificationDispatcher.fromSystemProperties();
+
+        if (emailService != null) {
+            dispatcher.addChannel(emailService);
+        }
+
+        try {
+            ServiceLoader.load(INotificationChannel.class).forEach(dispatcher::addChannel);
+        } catch (final Exception e) {
+            LOG.error("Error loading notification channels!", e);
+        }
+
+        if (dispatcher.getChannels().isEmpty()) {
+            return;
+        }
+
+        dispatcher.start();
+        notificationDispatcher = dispatcher;
+    }
+
+
     /**
      * Initialize webserver service.
      */
@@ -261,12 +365,24 @@ public class BmsToInverter implements AutoCloseable {
     public void start() {
         try {
 
+            if (Boolean.parseBoolean(System.getProperty("config.watch", "true"))) {
+                startConfigWatcher();
+            }
+
             LOG.info("Starting BMS receiver...");
-            final int pollInterval = Integer.parseInt(System.getProperty("bms.pollInterval", "1"));
+            pollInterval = Integer.parseInt(System.getProperty("bms.pollInterval", "1"));
 
             Files.deleteIfExists(Paths.get("./stop"));
 
-            stopChecker = new Thread(() -> {
+            // serve the inverters from the last known values until the BMSes deliver current data
+            warmStart = WarmStartSnapshot.fromSystemProperties();
+            final boolean restored = warmStart.restore(energyStorage);
+
+            if (restored) {
+                energyStorage.updateAggregatedSnapshot();
+            }
+
+            stopChecker = Workers.newThread("stop-checker", () -> {
                 do {
                     if (Files.exists(Paths.get("./stop"))) {
                         running = false;
@@ -283,49 +399,376 @@ public class BmsToInverter implements AutoCloseable {
             });
             stopChecker.start();
 
-            bmsRunner = new Thread(() -> {
+            bmsRunner = Workers.newThread("bms-runner", () -> {
                 do {
-                    for (final BMS bms : bmsList) {
+                    final long defaultInterval = pollInterval * 1000L;
+                    long nextPoll = System.currentTimeMillis() + defaultInterval;
+                    boolean polled = false;
+
+                    for (int index = 0; index < bmsList.size(); index++) {
+                        // the list is locked while processing so bindings are not exchanged
+                        // concurrently by a configuration reload
+                        synchronized (bmsList) {
+                            if (index >= bmsList.size()) {
+                                break;
+                            }
+
+                            final BMS bms = bmsList.get(index);
+                            final long cycleStart = System.currentTimeMillis();
+
+                            // each BMS is polled in its own adaptive interval
+                            if (bms.isPollDue(cycleStart)) {
+                                try {
+                                    LOG.info("Reading BMS #" + bms.getBmsId() + " " + bms.getName() + " on " + bms.getPortLocator() + "...");
+                                    bms.process(() -> receivedData());
+                                } catch (final Throwable e) {
+                                }
+
+                                bms.schedulePoll(cycleStart, defaultInterval);
+                                polled = true;
+                            }
+
+                            nextPoll = Math.min(nextPoll, bms.getNextPoll());
+                        }
+                    }
+
+                    // restored values which were not updated in time must no longer be used
+                    if (warmStart.expire(energyStorage)) {
+                        polled = true;
+                    }
+
+                    // aggregate the packs once per cycle into the snapshot shared by all inverters
+                    if (polled) {
                         try {
-                            LOG.info("Reading BMS #" + bms.getBmsId() + " " + bms.getName() + " on " + bms.getPortLocator() + "...");
-                            bms.process(() -> receivedData());
+                            energyStorage.updateAggregatedSnapshot();
+                            warmStart.saveIfDue(energyStorage);
                         } catch (final Throwable e) {
+                            LOG.error("Error aggregating the battery packs!", e);
                         }
                     }
 
                     try {
-                        Thread.sleep(pollInterval * 1000);
+                        Thread.sleep(Math.max(1, nextPoll - System.currentTimeMillis()));
                     } catch (final InterruptedException e) {
                     }
                 } while (running);
             });
             bmsRunner.start();
 
-            // wait for the first data to be received
-            synchronized (this) {
-                this.wait();
+            // wait for the first data to be received unless the values have been restored
+            if (!restored) {
+                synchronized (this) {
+                    this.wait();
+                }
+            }
+
+            // send data to the inverters
+            synchronized (inverterRunners) {
+                for (int index = 1; index <= inverters.size(); index++) {
+                    startInverterRunner(index);
+                }
             }
+        } catch (
 
-            // send data to inverter
-            if (inverter != null) {
+        final Throwable e) {
+            LOG.error("Error occured during processing!", e);
+        }
+    }
 
-                LOG.info("Starting inverter sender...");
-                inverterRunner = new Thread(() -> {
-                    do {
-                        try {
+
+    /**
+     * Waits until the BMS runner has stopped. This keeps the application alive when the workers
+     * run on daemon threads, e.g. with the virtual thread worker mode.
+     */
+    public void awaitTermination() {
+        final Thread runner = bmsRunner;
+
+        if (runner == null) {
+            return;
+        }
+
+        try {
+            runner.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Starts the sender thread of the inverter binding with the specified index which sends the
+     * aggregated snapshot in the binding's own send interval until the binding is removed. For
+     * request driven inverter protocols the thread listens for the requests and answers each
+     * request as soon as it arrives.
+     *
+     * @param index the index of the inverter binding starting with 1
+     */
+    private void startInverterRunner(final int index) {
+        LOG.info("Starting inverter #" + index + " sender...");
+        final Thread runner = Workers.newThread("inverter-" + index, () -> {
+            do {
+                final Inverter inverter = index <= inverters.size() ? inverters.get(index - 1) : null;
+
+                if (inverter == null) {
+                    LOG.info("Stopping inverter #" + index + " sender - binding has been removed");
+                    break;
+                }
+
+                try {
+                    if (inverter.isRequestDriven()) {
+                        final boolean answered;
+
+                        // the binding is locked while processing so it is not exchanged
+                        // concurrently by a configuration reload
+                        synchronized (inverter) {
+                            answered = inverter.processRequest(() -> sentData());
+                        }
+
+                        // avoid spinning while no data is available or the port fails
+                        if (!answered) {
+                            Thread.sleep(10);
+                        }
+                    } else {
+                        synchronized (inverter) {
                             LOG.info("Sending to inverter " + inverter.getName() + " on " + inverter.getPortLocator() + "...");
                             inverter.process(() -> sentData());
-                            Thread.sleep(inverter.getSendInterval() * 1000);
-                        } catch (final Throwable e) {
                         }
-                    } while (running);
-                });
-                inverterRunner.start();
+
+                        Thread.sleep(inverter.getSendInterval() * 1000);
+                    }
+                } catch (final Throwable e) {
+                }
+            } while (running);
+        });
+        inverterRunners.add(runner);
+        runner.start();
+    }
+
+
+    /**
+     * Starts watching the <code>config.properties</code> to apply changes without restart.
+     */
+    protected void startConfigWatcher() {
+        final Path configFile = Paths.get(System.getProperty("configFile", "config.properties"));
+
+        if (!Files.exists(configFile)) {
+            return;
+        }
+
+        try {
+            configWatcher = new ConfigWatcher(configFile, this::applyConfigChanges);
+            configWatcher.start();
+        } catch (final Exception e) {
+            LOG.error("Could not watch {} for changes!", configFile, e);
+        }
+    }
+
+
+    /**
+     * Applies the changed configuration properties in place. Only the affected {@link BMS} and
+     * {@link Inverter} bindings and services are re-created while all other bindings keep running.
+     *
+     * @param changed the names of the changed properties
+     */
+    protected void applyConfigChanges(final Set<String> changed) {
+        final Set<Integer> bmsIndexes = new TreeSet<>((a, b) -> b - a);
+        final Set<Integer> inverterIndexes = new TreeSet<>((a, b) -> b - a);
+        boolean bmsPluginsChanged = false;
+        boolean inverterPluginsChanged = false;
+        boolean mqttBrokerChanged = false;
+        boolean mqttProducerChanged = false;
+        boolean webserverChanged = false;
+        boolean notificationChanged = false;
+
+        for (final String key : changed) {
+            final Matcher matcher = BMS_PROPERTY.matcher(key);
+            final Matcher inverterMatcher = INVERTER_PROPERTY.matcher(key);
+
+            if (matcher.matches()) {
+                bmsIndexes.add(Integer.parseInt(matcher.group(1)));
+            } else if (key.equals("bms.pollInterval")) {
+                pollInterval = Integer.parseInt(System.getProperty("bms.pollInterval", "1"));
+            } else if (inverterMatcher.matches()) {
+                inverterIndexes.add(Integer.parseInt(inverterMatcher.group(1)));
+            } else if (key.startsWith("inverter.")) {
+                // a single inverter binding configured without index
+                inverterIndexes.add(1);
+            } else if (key.startsWith("plugin.bms.")) {
+                bmsPluginsChanged = true;
+            } else if (key.startsWith("plugin.inverter.")) {
+                inverterPluginsChanged = true;
+            } else if (key.startsWith("mqtt.broker.")) {
+                mqttBrokerChanged = true;
+            } else if (key.startsWith("mqtt.producer.")) {
+                mqttProducerChanged = true;
+            } else if (key.startsWith("webserver.")) {
+                webserverChanged = true;
+            } else if (key.startsWith("notification.")) {
+                notificationChanged = true;
+            }
+        }
+
+        try {
+            if (!bmsIndexes.isEmpty() || bmsPluginsChanged) {
+                final BMSListProducer bmsListProducer = new BMSListProducer();
+
+                synchronized (bmsList) {
+                    // re-create the bindings from the highest index so removals do not shift them
+                    for (final int index : bmsIndexes) {
+                        final BMS oldBms = index <= bmsList.size() ? bmsList.get(index - 1) : null;
+
+                        if (oldBms != null) {
+                            final Port port = PortAllocator.getPort(oldBms.getPortLocator());
+
+                            if (port instanceof CANPort) {
+                                ((CANPort) port).unregisterFilters(oldBms.getBindingKey());
+                            }
+
+                            releasePort(oldBms, oldBms.getConfig().getPortLocator(), oldBms.getConfig().getBaudRate(), "bms." + index + ".");
+                        }
+
+                        bmsListProducer.recreateBMS(index, bmsFactory);
+                    }
+
+                    if (bmsPluginsChanged) {
+                        bmsListProducer.reloadPlugins();
+                    }
+                }
             }
-        } catch (
 
-        final Throwable e) {
-            LOG.error("Error occured during processing!", e);
+            if (!inverterIndexes.isEmpty() || inverterPluginsChanged) {
+                final InverterProducer inverterProducer = new InverterProducer();
+
+                // re-create the bindings from the highest index so removals do not shift them
+                for (final int index : inverterIndexes) {
+                    final Inverter oldInverter = index <= inverters.size() ? inverters.get(index - 1) : null;
+
+                    if (oldInverter != null) {
+                        synchronized (oldInverter) {
+                            final InverterConfig config = oldInverter.getConfig();
+                            final Port port = PortAllocator.getPort(config.getPortLocator());
+
+                            if (port instanceof CANPort) {
+                                ((CANPort) port).unregisterFilters(oldInverter.getBindingKey());
+                            }
+
+                            releasePort(oldInverter, config.getPortLocator(), config.getBaudRate(), InverterProducer.getPropertyPrefix(index));
+                            inverterProducer.recreateInverter(index, inverterFactory);
+                        }
+                    } else if (inverterProducer.recreateInverter(index, inverterFactory) != null) {
+                        synchronized (inverterRunners) {
+                            if (!inverterRunners.isEmpty()) {
+                                startInverterRunner(index);
+                            }
+                        }
+                    }
+                }
+
+                if (inverterPluginsChanged) {
+                    inverterProducer.reloadPlugins();
+                }
+            }
+        } catch (final Throwable e) {
+            LOG.error("Error applying changed BMS/inverter configuration!", e);
+        }
+
+        if (mqttBrokerChanged) {
+            closeQuietly(mqttProducer);
+            closeQuietly(mqttBroker);
+            mqttProducer = null;
+            mqttBroker = null;
+
+            if ("true".equals(System.getProperty("mqtt.broker.enabled"))) {
+                initializeMQTTBroker();
+                initializeInternalMQTTProducer();
+            }
+        }
+
+        if (mqttProducerChanged) {
+            closeQuietly(mqttExternalProducer);
+            mqttExternalProducer = null;
+
+            if ("true".equals(System.getProperty("mqtt.producer.enabled"))) {
+                initializeExternalMQTTProducer();
+            }
+        }
+
+        if (webserverChanged) {
+            if (webServerService != null) {
+                webServerService.stop();
+                webServerService = null;
+            }
+
+            if ("true".equals(System.getProperty("webserver.service.enabled"))) {
+                initializeWebserverService();
+            }
+        }
+
+        if (notificationChanged) {
+            if (notificationDispatcher != null) {
+                notificationDispatcher.close();
+                notificationDispatcher = null;
+            }
+
+            initializeNotificationDispatcher();
+        }
+    }
+
+
+    /**
+     * Removes the {@link Port} of a binding whose configuration changed if the baud rate changed or
+     * the port is no longer used by any other binding.
+     *
+     * @param binding the {@link BMS} or {@link Inverter} binding
+     * @param portLocator the current port locator of the binding
+     * @param baudRate the current baud rate of the binding
+     * @param prefix the prefix of the binding's configuration properties
+     */
+    private void releasePort(final Object binding, final String portLocator, final int baudRate, final String prefix) {
+        final String newPortLocator = System.getProperty(prefix + "portLocator");
+        final String newBaudRate = System.getProperty(prefix + "baudRate");
+
+        if (portLocator.equals(newPortLocator)) {
+            if (!String.valueOf(baudRate).equals(newBaudRate)) {
+                PortAllocator.removePort(portLocator);
+            }
+
+            return;
+        }
+
+        final boolean inUse = bmsList.stream().anyMatch(bms -> bms != binding && portLocator.equals(bms.getPortLocator()))
+                || inverters.stream().anyMatch(inverter -> inverter != binding && portLocator.equals(inverter.getPortLocator()));
+
+        if (!inUse) {
+            PortAllocator.removePort(portLocator);
+        }
+    }
+
+
+    private void closeQuietly(final AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final Exception e) {
+                LOG.warn("Error closing {}", closeable.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+
+    /**
+     * Sends the {@link EnergyStorage} data to the MQTT producer in the format configured for it,
+     * i.e. as JSON (default) or binary encoded with the {@link TelemetryEncoder}.
+     *
+     * @param producer the {@link IMQTTProducerService}
+     * @param formatProperty the name of the system property of the format
+     * @throws IOException if the message could not be sent
+     */
+    private void sendMQTTMessage(final IMQTTProducerService producer, final String formatProperty) throws IOException {
+        if ("binary".equalsIgnoreCase(System.getProperty(formatProperty))) {
+            producer.sendMessage(TelemetryEncoder.encode(energyStorage));
+        } else {
+            producer.sendMessage(energyStorage.toJson());
         }
     }
 
@@ -339,12 +782,13 @@ public class BmsToInverter implements AutoCloseable {
                 notify();
             }
 
+            Metrics.setGaugeIfAbsent("startup.timeToFirstBmsDataMs", Metrics.getUptimeMillis());
             LOG.info(createBatteryOverview());
 
             if (mqttProducer != null) {
                 // send energystorage data to internal MQTT broker
                 try {
-                    mqttProducer.sendMessage(energyStorage.toJson());
+                    sendMQTTMessage(mqttProducer, "mqtt.broker.format");
                 } catch (final Throwable e) {
                     LOG.error("Failed to send MQTT message!", e);
 
@@ -352,7 +796,7 @@ public class BmsToInverter implements AutoCloseable {
                     try {
                         mqttProducer.close();
                         initializeInternalMQTTProducer();
-                        mqttProducer.sendMessage(energyStorage.toJson());
+                        sendMQTTMessage(mqttProducer, "mqtt.broker.format");
                     } catch (final Exception e1) {
                     }
                 }
@@ -361,7 +805,7 @@ public class BmsToInverter implements AutoCloseable {
             if (mqttExternalProducer != null) {
                 // send energystorage data to external MQTT broker
                 try {
-                    mqttExternalProducer.sendMessage(energyStorage.toJson());
+                    sendMQTTMessage(mqttExternalProducer, "mqtt.producer.format");
                 } catch (final Throwable e) {
                     LOG.error("Failed to send MQTT message!", e);
 
@@ -369,7 +813,7 @@ public class BmsToInverter implements AutoCloseable {
                     try {
                         mqttExternalProducer.close();
                         initializeExternalMQTTProducer();
-                        mqttExternalProducer.sendMessage(energyStorage.toJson());
+                        sendMQTTMessage(mqttExternalProducer, "mqtt.producer.format");
                     } catch (final Exception e1) {
                     }
 
@@ -391,13 +835,13 @@ public class BmsToInverter implements AutoCloseable {
 
 
     /**
-     * Analyzes and aggregates the warnings and alarms and sends them to the configured mail account(s).
+     * Analyzes the warnings and alarms and reports their changes to the
+     * {@link NotificationDispatcher} which sends them to the configured channels, e.g. mail
+     * account(s).
      */
     private void analyseBMSFaults() {
         final List<String> currentAlarms = new ArrayList<>();
         final StringBuffer alarmContent = new StringBuffer();
-        String subject = null;
-        String emailContent = null;
 
         for (int index = 0; index < energyStorage.getBatteryPacks().size(); index++) {
             for (final Map.Entry<Alarm, AlarmLevel> entry : energyStorage.getBatteryPack(index).getAlarms(AlarmLevel.WARNING, AlarmLevel.ALARM).entrySet()) {
@@ -412,39 +856,57 @@ public class BmsToInverter implements AutoCloseable {
             LOG.info("BMS alarms: \n\tNONE");
         }
 
-        // check if alarms have changed
-        if (emailService != null) {
-            if (!currentAlarms.isEmpty() && !currentAlarms.equals(lastAlarms)) {
-                final StringBuffer content = new StringBuffer("This is a generated email - do not reply!\n\n Your BMS has reported the following alarms:\n");
-                content.append(alarmContent);
-
-                subject = "BMS Alarms occured";
-                emailContent = content.toString();
-                // otherwise check if alarms have resolved
-            } else if (currentAlarms.isEmpty() && !lastAlarms.isEmpty()) {
-                subject = "BMS Alarms resolved";
-                emailContent = "This is a generated email - do not reply!\n\n Your BMS is back to working normally.";
+        // report alarm transitions to the notification dispatcher which digests and sends them
+        // asynchronously
+        if (notificationDispatcher != null) {
+            for (final String alarm : currentAlarms) {
+                if (!lastAlarms.contains(alarm)) {
+                    notificationDispatcher.alarmRaised(alarm, alarm);
+                }
             }
 
-            if (subject != null && emailContent != null) {
-                try {
-                    emailService.sendEmail(subject, emailContent);
-                    lastAlarms = currentAlarms;
-                } catch (final Exception e) {
-                    LOG.error("Email could not be sent!", e);
+            for (final String alarm : lastAlarms) {
+                if (!currentAlarms.contains(alarm)) {
+                    notificationDispatcher.alarmResolved(alarm, alarm);
                 }
             }
         }
+
+        // keep the frames which led to a new alarm for diagnosis
+        if (currentAlarms.stream().anyMatch(alarm -> !lastAlarms.contains(alarm))) {
+            dumpFlightRecorders();
+        }
+
+        lastAlarms = currentAlarms;
+    }
+
+
+    /**
+     * Logs the last frames sent and received on all managed {@link Port}s.
+     */
+    private void dumpFlightRecorders() {
+        for (final Map.Entry<String, Port> entry : PortAllocator.getPorts().entrySet()) {
+            final FlightRecorder recorder = entry.getValue().getFlightRecorder();
+
+            if (recorder.isEnabled()) {
+                LOG.warn("Last frames on port {}:\n{}", entry.getKey(), recorder.dump());
+            }
+        }
     }
 
 
     @Override
     public void close() {
         LOG.warn("Starting shutdown.");
+
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+
         try {
             running = false;
             bmsRunner.interrupt();
-            inverterRunner.interrupt();
+            inverterRunners.forEach(Thread::interrupt);
             LOG.info("Shutting down BMS and inverter threads...OK");
         } catch (final Throwable e) {
             LOG.info("Shutting down BMS and inverter threads...FAILED");
@@ -468,6 +930,11 @@ public class BmsToInverter implements AutoCloseable {
             }
         }
 
+        if (notificationDispatcher != null) {
+            notificationDispatcher.close();
+            LOG.info("Shutting down notification dispatcher...OK");
+        }
+
         if (webServerService != null) {
             try {
                 webServerService.stop();
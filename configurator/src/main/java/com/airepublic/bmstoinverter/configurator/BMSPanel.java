@@ -27,6 +27,7 @@ import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
@@ -170,6 +171,25 @@ public class BMSPanel extends JPanel {
         gbc_pollIntervalField.gridy = 2;
         add(pollIntervalField, gbc_pollIntervalField);
         pollIntervalField.setColumns(10);
+
+        final JButton tuneButton = new JButton("Tune...");
+        tuneButton.setToolTipText("Benchmarks the configured BMSes and recommends the poll interval and delays");
+        final GridBagConstraints gbc_tuneButton = new GridBagConstraints();
+        gbc_tuneButton.insets = new Insets(0, 0, 0, 5);
+        gbc_tuneButton.gridx = 2;
+        gbc_tuneButton.gridy = 2;
+        add(tuneButton, gbc_tuneButton);
+        tuneButton.addActionListener(e -> {
+            final StringBuffer errors = new StringBuffer();
+
+            if (!verify(errors)) {
+                JOptionPane.showMessageDialog(configurator, "Please check your configuration:\n" + errors, "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            new TuningDialog(configurator).setVisible(true);
+            bmsList.repaint();
+        });
         duplicateBMSButton.addActionListener(e -> {
             final MenuItem<BMSConfig> item = bmsList.getSelectedValue();
 
@@ -185,6 +205,11 @@ public class BMSPanel extends JPanel {
     }
 
 
+    void setPollInterval(final int pollInterval) {
+        pollIntervalField.setText("" + pollInterval);
+    }
+
+
     private boolean isBMSTypePresent(final BMSConfig config) {
         // go through the the existing BMS configs and see if the same BMS type is already
         // present
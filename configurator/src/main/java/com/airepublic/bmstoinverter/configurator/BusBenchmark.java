@@ -0,0 +1,338 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.configurator;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.BMSConfig;
+import com.airepublic.bmstoinverter.core.BeanFactory;
+import com.airepublic.bmstoinverter.core.PortAllocator;
+import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
+
+/**
+ * Benchmarks the configured BMSes by opening their ports and running a number of polling cycles of
+ * each BMS protocol's request set. The cycle times, request round trips and outcomes are measured
+ * via the {@link Tracer} and used to recommend the poll interval, the delay after no bytes of each
+ * BMS and the inverter send interval:
+ * <ul>
+ * <li>the delay after no bytes is twice the 99th percentile of the request round trips (between 20
+ * and 1000ms), so a normal response is never mistaken for a missing one. For BMSes without
+ * measurable requests the configured delay is kept, or doubled if no data was received.</li>
+ * <li>the poll interval is the sum of the 95th percentile cycle times of all BMSes, as they are
+ * polled one after another, plus 25% headroom rounded up to seconds.</li>
+ * <li>the inverter send interval is the poll interval but at most 5 seconds, since new values only
+ * arrive once per poll cycle but inverters expect to be updated regularly.</li>
+ * </ul>
+ */
+public class BusBenchmark implements Tracer {
+    private final List<BMSConfig> configs;
+    private final int cycles;
+    private volatile Result current;
+
+    /**
+     * The measurements of one BMS.
+     */
+    public static class Result {
+        private final BMSConfig config;
+        private final List<Long> cycleNanos = new ArrayList<>();
+        private final List<Long> requestNanos = new ArrayList<>();
+        private int ok;
+        private int noData;
+        private int invalidFrames;
+        private int errors;
+        private int failedRequests;
+        private String failure;
+
+        Result(final BMSConfig config) {
+            this.config = config;
+        }
+
+
+        /**
+         * Gets the {@link BMSConfig} of the benchmarked BMS.
+         *
+         * @return the {@link BMSConfig}
+         */
+        public BMSConfig getConfig() {
+            return config;
+        }
+
+
+        /**
+         * Gets the reason why the BMS could not be benchmarked.
+         *
+         * @return the reason or null if the benchmark succeeded
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+
+        /**
+         * Gets the ratio of the cycles which did not deliver data.
+         *
+         * @return the error rate between 0 and 1
+         */
+        public double getErrorRate() {
+            final int total = ok + noData + invalidFrames + errors;
+            return total == 0 ? 1.0 : (double) (total - ok) / total;
+        }
+
+
+        /**
+         * Gets the specified percentile of the cycle times in milliseconds.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the cycle time
+         */
+        public long getCycleMillis(final double percentile) {
+            return percentile(cycleNanos, percentile) / 1000000L;
+        }
+
+
+        /**
+         * Gets the specified percentile of the request round trips in milliseconds.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the round trip time or -1 if no requests were measured
+         */
+        public long getRequestMillis(final double percentile) {
+            return requestNanos.isEmpty() ? -1 : percentile(requestNanos, percentile) / 1000000L;
+        }
+
+
+        /**
+         * Gets the recommended delay after no bytes in milliseconds.
+         *
+         * @return the recommended delay after no bytes
+         */
+        public long getRecommendedDelayAfterNoBytes() {
+            if (requestNanos.isEmpty()) {
+                return noData > 0 ? Math.min(1000, config.getDelayAfterNoBytes() * 2) : config.getDelayAfterNoBytes();
+            }
+
+            final long delay = (getRequestMillis(99) * 2 + 9) / 10 * 10;
+            return Math.max(20, Math.min(1000, delay));
+        }
+
+
+        void recordCycle(final long nanos) {
+            cycleNanos.add(nanos);
+        }
+
+
+        void recordOutcome(final String outcome) {
+            switch (outcome) {
+                case "OK":
+                    ok++;
+                break;
+                case "NO_DATA":
+                    noData++;
+                break;
+                case "INVALID_FRAMES":
+                    invalidFrames++;
+                break;
+                default:
+                    errors++;
+                break;
+            }
+        }
+
+
+        void recordRequest(final long nanos, final boolean success) {
+            if (success) {
+                requestNanos.add(nanos);
+            } else {
+                failedRequests++;
+            }
+        }
+
+
+        private static long percentile(final List<Long> values, final double percentile) {
+            if (values.isEmpty()) {
+                return 0;
+            }
+
+            final List<Long> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param configs the {@link BMSConfig}s of the BMSes to benchmark
+     * @param cycles the number of polling cycles per BMS
+     */
+    public BusBenchmark(final List<BMSConfig> configs, final int cycles) {
+        this.configs = configs;
+        this.cycles = cycles;
+    }
+
+
+    /**
+     * Runs the benchmark of all BMSes one after another and closes their ports afterwards.
+     *
+     * @param log the consumer of the progress messages
+     * @return the {@link Result}s per BMS
+     */
+    public List<Result> run(final Consumer<String> log) {
+        final List<Result> results = new ArrayList<>();
+        final Set<String> portLocators = new LinkedHashSet<>();
+        final Tracer previous = Tracing.setTracer(this);
+
+        try {
+            for (final BMSConfig config : configs) {
+                final Result result = new Result(config);
+                results.add(result);
+                portLocators.add(config.getPortLocator());
+                log.accept("Benchmarking " + config.getDescriptor().getName() + " (ID: " + config.getBmsId() + ") on " + config.getPortLocator() + "...");
+
+                try {
+                    // inject the dependencies of the BMS implementation, e.g. its message handler
+                    final BeanFactory beanFactory = new BeanFactory();
+                    beanFactory.register(EnergyStorage.class, new EnergyStorage());
+                    final BMS bms = beanFactory.create(config.getDescriptor().getBMSClass());
+                    bms.initialize(config);
+                    current = result;
+
+                    for (int cycle = 0; cycle < cycles; cycle++) {
+                        final long start = System.nanoTime();
+                        bms.process(() -> {
+                        });
+                        result.recordCycle(System.nanoTime() - start);
+                    }
+                } catch (final Throwable e) {
+                    result.failure = e.getClass().getSimpleName() + ": " + e.getMessage();
+                } finally {
+                    current = null;
+                }
+
+                log.accept(result.failure != null ? "failed: " + result.failure : "done - error rate " + Math.round(result.getErrorRate() * 100) + "%, cycle p95 " + result.getCycleMillis(95) + "ms");
+            }
+        } finally {
+            Tracing.setTracer(previous);
+            portLocators.forEach(PortAllocator::removePort);
+        }
+
+        return results;
+    }
+
+
+    @Override
+    public void bmsCycle(final Object span, final String bms, final String port, final int commands, final long durationNanos, final String outcome) {
+        final Result result = current;
+
+        if (result == null) {
+            return;
+        }
+
+        result.recordOutcome(outcome);
+    }
+
+
+    @Override
+    public void requestRoundTrip(final Object span, final String port, final String request, final long durationNanos, final boolean success) {
+        final Result result = current;
+
+        if (result == null) {
+            return;
+        }
+
+        result.recordRequest(durationNanos, success);
+    }
+
+
+    /**
+     * Gets the recommended poll interval in seconds.
+     *
+     * @param results the {@link Result}s of the benchmark
+     * @return the recommended poll interval
+     */
+    public static int getRecommendedPollInterval(final List<Result> results) {
+        long total = 0;
+
+        for (final Result result : results) {
+            total += result.getCycleMillis(95);
+        }
+
+        return (int) Math.max(1, (total * 5 / 4 + 999) / 1000);
+    }
+
+
+    /**
+     * Gets the recommended inverter send interval in seconds.
+     *
+     * @param pollInterval the recommended poll interval in seconds
+     * @return the recommended send interval
+     */
+    public static int getRecommendedSendInterval(final int pollInterval) {
+        return Math.min(5, pollInterval);
+    }
+
+
+    /**
+     * Creates the benchmark report for support.
+     *
+     * @param results the {@link Result}s of the benchmark
+     * @return the report
+     */
+    public String createReport(final List<Result> results) {
+        final StringBuilder report = new StringBuilder();
+        report.append("BMS-to-Inverter bus benchmark of ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())).append("\n");
+        report.append("Cycles per BMS: ").append(cycles).append("\n\n");
+
+        for (final Result result : results) {
+            final BMSConfig config = result.getConfig();
+            report.append(config.getDescriptor().getName()).append(" (ID: ").append(config.getBmsId()).append(") on ").append(config.getPortLocator())
+                    .append(" at ").append(config.getBaudRate()).append(" baud\n");
+
+            if (result.failure != null) {
+                report.append("  failed: ").append(result.failure).append("\n\n");
+                continue;
+            }
+
+            report.append("  cycles: ok=").append(result.ok).append(", no data=").append(result.noData).append(", invalid frames=").append(result.invalidFrames)
+                    .append(", errors=").append(result.errors).append(", error rate=").append(Math.round(result.getErrorRate() * 100)).append("%\n");
+            report.append("  cycle time (ms): p50=").append(result.getCycleMillis(50)).append(", p95=").append(result.getCycleMillis(95)).append(", max=")
+                    .append(result.getCycleMillis(100)).append("\n");
+
+            if (result.requestNanos.isEmpty()) {
+                report.append("  request round trips: not measurable for this protocol\n");
+            } else {
+                report.append("  request round trips (ms): p50=").append(result.getRequestMillis(50)).append(", p95=").append(result.getRequestMillis(95))
+                        .append(", p99=").append(result.getRequestMillis(99)).append(", max=").append(result.getRequestMillis(100)).append(", failed=")
+                        .append(result.failedRequests).append("\n");
+            }
+
+            report.append("  delayAfterNoBytes: configured=").append(config.getDelayAfterNoBytes()).append("ms, recommended=")
+                    .append(result.getRecommendedDelayAfterNoBytes()).append("ms\n\n");
+        }
+
+        final int pollInterval = getRecommendedPollInterval(results);
+        report.append("Recommended bms.pollInterval=").append(pollInterval).append("\n");
+        report.append("Recommended inverter.sendInterval=").append(getRecommendedSendInterval(pollInterval)).append("\n");
+
+        return report.toString();
+    }
+}
@@ -51,6 +51,7 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.SwingConstants;
 
+import com.airepublic.bmstoinverter.core.BMSConfig;
 import com.airepublic.bmstoinverter.core.util.InputStreamUtil;
 
 public class Configurator extends JFrame {
@@ -705,6 +706,66 @@ public class Configurator extends JFrame {
     }
 
 
+    /**
+     * Applies the recommendations of the {@link BusBenchmark} to the BMS and inverter settings and
+     * writes them to the <code>config.properties</code> if the application is already installed.
+     *
+     * @param results the {@link BusBenchmark.Result}s
+     * @return true if the <code>config.properties</code> has been written
+     * @throws Exception if the configuration could not be written
+     */
+    boolean applyTuning(final List<BusBenchmark.Result> results) throws Exception {
+        final int pollInterval = BusBenchmark.getRecommendedPollInterval(results);
+        bmsPanel.setPollInterval(pollInterval);
+        inverterPanel.setSendInterval(BusBenchmark.getRecommendedSendInterval(pollInterval));
+
+        for (final BusBenchmark.Result result : results) {
+            if (result.getFailure() == null) {
+                final BMSConfig config = result.getConfig();
+                config.update(config.getBmsId(), config.getPortLocator(), config.getBaudRate(), result.getRecommendedDelayAfterNoBytes(), config.getDescriptor());
+            }
+        }
+
+        if (Files.isDirectory(Paths.get(generalPanel.getInstallationPath()).resolve("config"))) {
+            updateConfiguration();
+            return true;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Saves the report of the {@link BusBenchmark} to the configuration directory of the
+     * installation or the current directory if the application is not installed yet.
+     *
+     * @param report the report
+     * @return the path of the saved report
+     * @throws IOException if the report could not be written
+     */
+    Path saveBenchmarkReport(final String report) throws IOException {
+        Path directory = Paths.get(generalPanel.getInstallationPath()).resolve("config");
+
+        if (!Files.isDirectory(directory)) {
+            directory = Paths.get("");
+        }
+
+        final Path file = directory.resolve("benchmark-report.txt").toAbsolutePath();
+        Files.write(file, report.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+
+    /**
+     * Gets the configured {@link BMSConfig}s.
+     *
+     * @return the {@link BMSConfig}s
+     */
+    List<BMSConfig> getBMSConfigList() {
+        return bmsPanel.getBMSConfigList();
+    }
+
+
     /**
      * Disables the Update Configuration button.
      */
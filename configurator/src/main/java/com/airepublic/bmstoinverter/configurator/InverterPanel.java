@@ -150,6 +150,11 @@ public class InverterPanel extends JPanel {
     }
 
 
+    void setSendInterval(final int sendInterval) {
+        inverterSendIntervalField.setText("" + sendInterval);
+    }
+
+
     public boolean verify(final StringBuffer errors) {
         boolean fail = false;
 
@@ -0,0 +1,182 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.configurator;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.border.EmptyBorder;
+import javax.swing.text.DefaultCaret;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.util.Workers;
+
+/**
+ * A dialog to run the {@link BusBenchmark} on the configured BMSes, show and save its report and
+ * apply the recommended poll interval, delays and send interval to the configuration.
+ */
+public class TuningDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private final static Logger LOG = LoggerFactory.getLogger(TuningDialog.class);
+    private final Configurator configurator;
+    private final JTextArea textArea = new JTextArea();
+    private final JTextField cyclesField = new JTextField("20");
+    private final JButton startButton = new JButton("Start");
+    private final JButton applyButton = new JButton("Apply");
+    private final NumberInputVerifier numberInputVerifier = new NumberInputVerifier();
+    private List<BusBenchmark.Result> results;
+
+    /**
+     * Constructor.
+     *
+     * @param configurator the {@link Configurator}
+     */
+    public TuningDialog(final Configurator configurator) {
+        super(configurator, "Tune bus timings", true);
+        this.configurator = configurator;
+        setPreferredSize(new Dimension(640, 480));
+        getContentPane().setLayout(new BorderLayout(0, 0));
+
+        final JPanel panel = new JPanel();
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        getContentPane().add(panel);
+        final GridBagLayout gbl_panel = new GridBagLayout();
+        gbl_panel.columnWidths = new int[] { 0, 80, 0, 0, 0 };
+        gbl_panel.rowHeights = new int[] { 30, 360, 30 };
+        gbl_panel.columnWeights = new double[] { 0.0, 0.0, 1.0, 0.0, 0.0 };
+        gbl_panel.rowWeights = new double[] { 0.0, 1.0, 0.0 };
+        panel.setLayout(gbl_panel);
+
+        final JLabel cyclesLabel = new JLabel("Cycles per BMS");
+        final GridBagConstraints gbc_cyclesLabel = new GridBagConstraints();
+        gbc_cyclesLabel.anchor = GridBagConstraints.EAST;
+        gbc_cyclesLabel.insets = new Insets(0, 0, 5, 5);
+        gbc_cyclesLabel.gridx = 0;
+        gbc_cyclesLabel.gridy = 0;
+        panel.add(cyclesLabel, gbc_cyclesLabel);
+
+        cyclesField.setColumns(5);
+        cyclesField.setInputVerifier(numberInputVerifier);
+        final GridBagConstraints gbc_cyclesField = new GridBagConstraints();
+        gbc_cyclesField.fill = GridBagConstraints.HORIZONTAL;
+        gbc_cyclesField.insets = new Insets(0, 0, 5, 5);
+        gbc_cyclesField.gridx = 1;
+        gbc_cyclesField.gridy = 0;
+        panel.add(cyclesField, gbc_cyclesField);
+
+        final JScrollPane scrollPane = new JScrollPane();
+        final GridBagConstraints gbc_scrollPane = new GridBagConstraints();
+        gbc_scrollPane.fill = GridBagConstraints.BOTH;
+        gbc_scrollPane.gridwidth = 5;
+        gbc_scrollPane.insets = new Insets(0, 0, 5, 0);
+        gbc_scrollPane.gridx = 0;
+        gbc_scrollPane.gridy = 1;
+        panel.add(scrollPane, gbc_scrollPane);
+
+        final DefaultCaret caret = (DefaultCaret) textArea.getCaret();
+        caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+        textArea.setEditable(false);
+        textArea.setText("The configured BMS ports are opened and each BMS is polled for the number of cycles.\n"
+                + "Please stop a running bms-to-inverter application first as the ports cannot be shared.\n");
+        scrollPane.setViewportView(textArea);
+
+        final GridBagConstraints gbc_startButton = new GridBagConstraints();
+        gbc_startButton.insets = new Insets(0, 0, 0, 5);
+        gbc_startButton.gridx = 2;
+        gbc_startButton.gridy = 2;
+        gbc_startButton.anchor = GridBagConstraints.EAST;
+        panel.add(startButton, gbc_startButton);
+        startButton.addActionListener(e -> startBenchmark());
+
+        applyButton.setEnabled(false);
+        applyButton.setToolTipText("Applies the recommended values and updates the config.properties of an existing installation");
+        final GridBagConstraints gbc_applyButton = new GridBagConstraints();
+        gbc_applyButton.insets = new Insets(0, 0, 0, 5);
+        gbc_applyButton.gridx = 3;
+        gbc_applyButton.gridy = 2;
+        panel.add(applyButton, gbc_applyButton);
+        applyButton.addActionListener(e -> applyRecommendations());
+
+        final JButton closeButton = new JButton("Close");
+        final GridBagConstraints gbc_closeButton = new GridBagConstraints();
+        gbc_closeButton.gridx = 4;
+        gbc_closeButton.gridy = 2;
+        panel.add(closeButton, gbc_closeButton);
+        closeButton.addActionListener(e -> dispose());
+
+        pack();
+        setLocationRelativeTo(configurator);
+    }
+
+
+    private void startBenchmark() {
+        if (!numberInputVerifier.verify(cyclesField.getText()) || Integer.parseInt(cyclesField.getText()) < 1) {
+            JOptionPane.showMessageDialog(this, "Please enter the number of cycles!", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        final BusBenchmark benchmark = new BusBenchmark(configurator.getBMSConfigList(), Integer.parseInt(cyclesField.getText()));
+        startButton.setEnabled(false);
+        applyButton.setEnabled(false);
+        textArea.setText("");
+
+        Workers.start("bus-benchmark", () -> {
+            final List<BusBenchmark.Result> benchmarkResults = benchmark.run(line -> SwingUtilities.invokeLater(() -> textArea.append(line + "\n")));
+            final String report = benchmark.createReport(benchmarkResults);
+            String saved;
+
+            try {
+                final Path file = configurator.saveBenchmarkReport(report);
+                saved = "Report saved to " + file + "\n";
+            } catch (final Exception e) {
+                saved = "Failed to save the report: " + e.getMessage() + "\n";
+            }
+
+            final String message = saved;
+            SwingUtilities.invokeLater(() -> {
+                results = benchmarkResults;
+                textArea.append("\n" + report + "\n" + message);
+                startButton.setEnabled(true);
+                applyButton.setEnabled(true);
+            });
+        });
+    }
+
+
+    private void applyRecommendations() {
+        try {
+            if (configurator.applyTuning(results)) {
+                JOptionPane.showMessageDialog(this, "Applied the recommended values and updated the config.properties!", "Information", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Applied the recommended values - they will be written with the installation!", "Information", JOptionPane.INFORMATION_MESSAGE);
+            }
+        } catch (final Exception e) {
+            LOG.error("Failed to apply the recommended values!", e);
+            JOptionPane.showMessageDialog(this, "Failed to apply the recommended values!\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.configurator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.BMSConfig;
+
+public class BusBenchmarkTest {
+    private final static long MS = 1000000L;
+
+    private static BusBenchmark.Result result(final int delayAfterNoBytes) {
+        return new BusBenchmark.Result(new BMSConfig(1, "benchmarkPort", 9600, delayAfterNoBytes, null));
+    }
+
+
+    @Test
+    public void testPercentiles() {
+        // GIVEN request round trips and cycle times of 1 to 100ms in random order
+        final BusBenchmark.Result result = result(100);
+
+        for (int i = 100; i > 0; i--) {
+            result.recordRequest((i * 37 % 100 + 1) * MS, true);
+            result.recordCycle((i * 37 % 100 + 1) * MS);
+        }
+
+        // WHEN the percentiles are calculated
+        // THEN they should be the nearest rank of the sorted values
+        assertEquals(50, result.getRequestMillis(50));
+        assertEquals(95, result.getRequestMillis(95));
+        assertEquals(99, result.getRequestMillis(99));
+        assertEquals(100, result.getRequestMillis(100));
+        assertEquals(1, result.getCycleMillis(0));
+        assertEquals(-1, result(100).getRequestMillis(99));
+    }
+
+
+    @Test
+    public void testRecommendedDelayAfterNoBytes() {
+        // GIVEN BMSes with fast, medium and slow request round trips
+        final BusBenchmark.Result fast = result(100);
+        final BusBenchmark.Result medium = result(100);
+        final BusBenchmark.Result slow = result(100);
+        fast.recordRequest(2 * MS, true);
+        medium.recordRequest(61 * MS, true);
+        medium.recordRequest(5 * MS, false);
+        slow.recordRequest(800 * MS, true);
+
+        // WHEN the delays are recommended
+        // THEN
+        // - the delay should be twice the 99th percentile rounded up to 10ms
+        // - the delay should be clamped between 20 and 1000ms
+        assertEquals(20, fast.getRecommendedDelayAfterNoBytes());
+        assertEquals(130, medium.getRecommendedDelayAfterNoBytes());
+        assertEquals(1000, slow.getRecommendedDelayAfterNoBytes());
+    }
+
+
+    @Test
+    public void testRecommendedDelayWithoutMeasurableRequests() {
+        // GIVEN BMSes without measured request round trips with and without received data
+        final BusBenchmark.Result answering = result(300);
+        final BusBenchmark.Result silent = result(300);
+        final BusBenchmark.Result silentSlow = result(600);
+        silent.recordOutcome("NO_DATA");
+        silentSlow.recordOutcome("NO_DATA");
+
+        // WHEN the delays are recommended
+        // THEN
+        // - the configured delay should be kept if data was received
+        // - the configured delay should be doubled up to 1000ms if no data was received
+        assertEquals(300, answering.getRecommendedDelayAfterNoBytes());
+        assertEquals(600, silent.getRecommendedDelayAfterNoBytes());
+        assertEquals(1000, silentSlow.getRecommendedDelayAfterNoBytes());
+    }
+
+
+    @Test
+    public void testRecommendedIntervals() {
+        // GIVEN two BMSes with a 95th percentile cycle time of 1500ms and 700ms
+        final BusBenchmark.Result first = result(100);
+        final BusBenchmark.Result second = result(100);
+
+        for (int i = 0; i < 20; i++) {
+            first.recordCycle((i < 19 ? 1500 : 3000) * MS);
+            second.recordCycle(700 * MS);
+        }
+
+        // WHEN the intervals are recommended
+        final int pollInterval = BusBenchmark.getRecommendedPollInterval(Arrays.asList(first, second));
+
+        // THEN
+        // - the poll interval should be the sum plus 25% rounded up to seconds
+        // - the send interval should be the poll interval but at most 5 seconds
+        // - the poll interval should be at least 1 second
+        assertEquals(3, pollInterval);
+        assertEquals(3, BusBenchmark.getRecommendedSendInterval(pollInterval));
+        assertEquals(5, BusBenchmark.getRecommendedSendInterval(8));
+        assertEquals(1, BusBenchmark.getRecommendedPollInterval(Collections.singletonList(result(100))));
+    }
+}
@@ -10,17 +10,25 @@
  */
 package com.airepublic.bmstoinverter.core;
 
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * The abstract super class for the {@link BmsPlugin} and {@link InverterPlugin} allowing for
- * properties definition used in the Configurator application.
+ * properties definition used in the Configurator application. Implementations should parse their
+ * properties once in {@link #onPropertiesChanged()} instead of on each call of a hook.
  *
  * @param <DEVICE> the device class, e.g. {@link BMS} or {@link Inverter}
  */
 public abstract class AbstractPlugin<DEVICE> {
+    private final static Logger LOG = LoggerFactory.getLogger(AbstractPlugin.class);
     private Set<PluginProperty> properties = new LinkedHashSet<>();
+    private final Map<String, PluginProperty> propertiesByName = new HashMap<>();
 
     /**
      * Gets the name of the plugin.
@@ -47,6 +55,9 @@ public abstract class AbstractPlugin<DEVICE> {
      */
     public void setProperties(final Set<PluginProperty> properties) {
         this.properties = properties;
+        propertiesByName.clear();
+        properties.forEach(p -> propertiesByName.put(p.getName(), p));
+        onPropertiesChanged();
     }
 
 
@@ -61,6 +72,8 @@ public abstract class AbstractPlugin<DEVICE> {
         }
 
         properties.add(property);
+        propertiesByName.put(property.getName(), property);
+        onPropertiesChanged();
     }
 
 
@@ -71,6 +84,8 @@ public abstract class AbstractPlugin<DEVICE> {
      */
     public void removeProperty(final PluginProperty property) {
         properties.remove(property);
+        propertiesByName.remove(property.getName());
+        onPropertiesChanged();
     }
 
 
@@ -78,10 +93,10 @@ public abstract class AbstractPlugin<DEVICE> {
      * Gets the {@link PluginProperty} for the specified name.
      *
      * @param name the name
-     * @return the {@link PluginProperty}
+     * @return the {@link PluginProperty} or null if it doesn't exist
      */
     public PluginProperty getProperty(final String name) {
-        return properties.stream().filter(p -> p.getName().equals(name)).findFirst().orElseGet(null);
+        return propertiesByName.get(name);
     }
 
 
@@ -103,6 +118,37 @@ public abstract class AbstractPlugin<DEVICE> {
     }
 
 
+    /**
+     * Gets the {@link PluginProperty}'s value for the specified name as integer.
+     *
+     * @param name the name
+     * @param defaultValue the default value if the property doesn't exist, is empty or not a number
+     * @return the value
+     */
+    public Integer getIntPropertyValue(final String name, final Integer defaultValue) {
+        final String value = getPropertyValue(name, null);
+
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (final NumberFormatException e) {
+            LOG.warn("Plugin '{}' property '{}' is not a number: \"{}\" - using {}", getName(), name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * Called when the properties have been added, removed or replaced to parse their values into
+     * typed fields, so the hooks do not need to look up and parse the properties on each call.
+     */
+    protected void onPropertiesChanged() {
+    }
+
+
     /**
      * Called before the initialization of the {@link BMS} from the specified configuration.
      * 
@@ -11,10 +11,15 @@
 package com.airepublic.bmstoinverter.core;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.inject.Inject;
 
@@ -22,8 +27,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorageQualifier;
+import com.airepublic.bmstoinverter.core.bms.data.Freshness;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
 
 /**
  * The abstract class to identify a BMS.
@@ -33,10 +46,42 @@ public abstract class BMS {
     private final Map<Integer, BatteryPack> batteryPacks = new LinkedHashMap<>();
     private BMSConfig config;
     private Set<BmsPlugin> plugins;
+    private PluginChain<BMS> beforeCollectDataChain = PluginChain.empty();
+    private PluginChain<BMS> afterCollectDataChain = PluginChain.empty();
+    private boolean tracksUpdates = false;
+    private final List<ScheduledCommand> commands = new ArrayList<>();
+    private long cycle = 0;
+    private int commandsSent = 0;
+    private final Map<BatteryPack, int[]> lastActivity = new HashMap<>();
+    private volatile long pollInterval = 0;
+    private volatile long nextPoll = 0;
+    private boolean pendingPacksReleased = false;
+    private Tracer frameDecodeTracer;
+    private Object frameDecodeSpan;
+    private long frameDecodeStart;
     @Inject
     @EnergyStorageQualifier
     private transient EnergyStorage energyStorage;
 
+    /**
+     * A registered {@link BmsCommand} and its schedule.
+     */
+    private static class ScheduledCommand {
+        private final String name;
+        private final CommandTier tier;
+        private final int interval;
+        private final BmsCommand command;
+        private long nextCycle = 0;
+        private boolean done = false;
+
+        private ScheduledCommand(final String name, final CommandTier tier, final int interval, final BmsCommand command) {
+            this.name = name;
+            this.tier = tier;
+            this.interval = interval;
+            this.command = command;
+        }
+    }
+
     /**
      * Initializes the BMS with the specified {@link BMSConfig}, initializing the port parameters from
      * the system properties.
@@ -46,6 +91,9 @@ public abstract class BMS {
     public void initialize(final BMSConfig config) {
         this.config = config;
 
+        // the packs of a BMS are aggregated as one rack
+        batteryPacks.values().forEach(pack -> pack.setRack(getBindingKey()));
+
         if (getPlugins() != null) {
             getPlugins().stream().forEach(p -> {
                 LOG.debug("Calling BMS plugin (onInitialize): {}", p.getName());
@@ -57,6 +105,41 @@ public abstract class BMS {
             final Port port = config.getDescriptor().createPort(config);
             PortAllocator.addPort(config.getPortLocator(), port);
         }
+
+        // declare the frames consumed by this BMS on a CAN port
+        final Port port = PortAllocator.getPort(config.getPortLocator());
+
+        if (port instanceof CANPort) {
+            List<CANFilter> filters = config.getCANFilters();
+
+            if (filters == null && this instanceof CANFilterProvider) {
+                filters = ((CANFilterProvider) this).getCANFilters();
+            }
+
+            ((CANPort) port).registerFilters(getBindingKey(), filters);
+        }
+    }
+
+
+    /**
+     * Gets the {@link BMSConfig} this {@link BMS} was initialized with.
+     *
+     * @return the {@link BMSConfig}
+     */
+    public BMSConfig getConfig() {
+        return config;
+    }
+
+
+    /**
+     * Gets the key identifying this {@link BMS} binding by its id and port locator, e.g.
+     * <code>bms#1@can0</code>. The key is unique across all ports as BMSes on different ports
+     * usually have the same id. It is also used as the rack name of its {@link BatteryPack}s.
+     *
+     * @return the binding key
+     */
+    public String getBindingKey() {
+        return "bms#" + config.getBmsId() + "@" + config.getPortLocator();
     }
 
 
@@ -112,14 +195,26 @@ public abstract class BMS {
         BatteryPack pack = batteryPacks.get(batteryId);
 
         if (pack == null) {
-            pack = new BatteryPack();
-            batteryPacks.put(batteryId, pack);
-
             if (energyStorage == null) {
                 energyStorage = new EnergyStorage();
             }
 
-            energyStorage.getBatteryPacks().add(pack);
+            // continue with the pack restored from the warm-start snapshot or replaced when this
+            // binding was re-created which is already part of the energy storage
+            pack = config != null ? energyStorage.adoptPack(getBindingKey(), batteryId) : null;
+
+            if (pack == null) {
+                pack = new BatteryPack();
+                pack.setBatteryId(batteryId);
+
+                if (config != null) {
+                    pack.setRack(getBindingKey());
+                }
+
+                energyStorage.addBatteryPack(pack);
+            }
+
+            batteryPacks.put(batteryId, pack);
         }
 
         return pack;
@@ -153,6 +248,8 @@ public abstract class BMS {
      */
     public void setPlugins(final Set<BmsPlugin> plugins) {
         this.plugins = plugins;
+        beforeCollectDataChain = PluginChain.compile(plugins, BmsPlugin.class, "beforeCollectData", BMS.class, BmsPlugin::beforeCollectData);
+        afterCollectDataChain = PluginChain.compile(plugins, BmsPlugin.class, "afterCollectData", BMS.class, BmsPlugin::afterCollectData);
     }
 
 
@@ -163,43 +260,62 @@ public abstract class BMS {
      *        {@link BatteryPack}s
      */
     public void process(final Runnable callback) {
+        final long cycleStart = System.currentTimeMillis();
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.BMS_CYCLE);
+        final long startNanos = System.nanoTime();
+        boolean collected = false;
+        String outcome = "ERROR";
+        commandsSent = 0;
+
         try {
-            final Port port = PortAllocator.allocate(getPortLocator());
+            final Port sharedPort = PortAllocator.allocate(getPortLocator());
+            // on a shared CAN port only the frames of this binding are received
+            final Port port = sharedPort instanceof CANPort ? ((CANPort) sharedPort).getBindingPort(getBindingKey()) : sharedPort;
 
             try {
                 port.ensureOpen();
                 port.clearBuffers();
 
-                if (getPlugins() != null) {
-                    getPlugins().stream().forEach(p -> {
-                        LOG.debug("Calling BMS plugin (afterCollectData): {}", p.getName());
-                        p.beforeCollectData(this);
-                    });
-                }
-
+                beforeCollectDataChain.run(this);
                 collectData(port);
+                collected = true;
 
-                if (getPlugins() != null) {
-                    getPlugins().stream().forEach(p -> {
-                        LOG.debug("Calling BMS plugin (afterCollectData): {}", p.getName());
-                        p.afterCollectData(this);
-                    });
+                if (!pendingPacksReleased && energyStorage != null && config != null) {
+                    // release the packs of a previous binding which this BMS does not manage
+                    energyStorage.removeUnadoptedPacks(getBindingKey());
+                    pendingPacksReleased = true;
                 }
+
+                outcome = "OK";
+                afterCollectDataChain.run(this);
             } catch (final NoDataAvailableException e) {
+                outcome = "NO_DATA";
                 LOG.error("Received no bytes too many times - trying to close and re-open port!");
+                // the BMS might have been replaced, so re-read its static data
+                resetCommandSchedule();
                 // try to close and re-open the port
                 port.close();
                 port.open();
             }
             // autoCalibrateSOC();
         } catch (final TooManyInvalidFramesException e) {
-            LOG.error("Received too many invalid frames - start new reading round!");
+            outcome = "INVALID_FRAMES";
+            final Port port = PortAllocator.getPort(getPortLocator());
+
+            if (port != null && port.getFlightRecorder().isEnabled()) {
+                LOG.error("Received too many invalid frames - start new reading round! Last frames on port {}:\n{}", getPortLocator(), port.getFlightRecorder().dump());
+            } else {
+                LOG.error("Received too many invalid frames - start new reading round!");
+            }
             return;
         } catch (final Throwable e) {
             LOG.error("Error requesting data!", e);
             return;
         } finally {
             PortAllocator.free(getPortLocator());
+            updateFreshness(cycleStart, collected);
+            tracer.bmsCycle(span, getBindingKey(), getPortLocator(), commandsSent, System.nanoTime() - startNanos, outcome);
         }
 
         try {
@@ -211,14 +327,298 @@ public abstract class BMS {
 
 
     /**
-     * Processes the collection of data from the specified {@link BatteryPack}.
+     * Collects the data once without the plugins and without the recovery of
+     * {@link #process(Runnable)}, i.e. the port is not closed and re-opened and failures are not
+     * logged but thrown. Used to probe whether the {@link BMS} answers on its port.
+     *
+     * @throws Exception if the data could not be collected
+     */
+    void probe() throws Exception {
+        try {
+            final Port sharedPort = PortAllocator.allocate(getPortLocator());
+            final Port port = sharedPort instanceof CANPort ? ((CANPort) sharedPort).getBindingPort(getBindingKey()) : sharedPort;
+
+            port.ensureOpen();
+            port.clearBuffers();
+            collectData(port);
+        } finally {
+            PortAllocator.free(getPortLocator());
+        }
+    }
+
+
+    /**
+     * Returns whether this {@link BMS} is due to be polled according to its adaptive polling
+     * interval.
+     *
+     * @param now the current time in milliseconds
+     * @return true if the {@link BMS} should be polled
+     */
+    public boolean isPollDue(final long now) {
+        return now >= nextPoll;
+    }
+
+
+    /**
+     * Gets the time the next poll of this {@link BMS} is due.
+     *
+     * @return the time in milliseconds
+     */
+    public long getNextPoll() {
+        return nextPoll;
+    }
+
+
+    /**
+     * Adapts the polling interval to the activity of the {@link BatteryPack}s according to the
+     * {@link PollingPolicy} of this binding and schedules the next poll. A pack is active if its
+     * current or the change of its current is high, its cell voltage difference grows or it has
+     * warnings or alarms.
+     *
+     * @param cycleStart the time the last poll started
+     * @param defaultInterval the global polling interval (in ms)
+     * @return the next polling interval (in ms)
+     */
+    public long schedulePoll(final long cycleStart, final long defaultInterval) {
+        final PollingPolicy policy = config.getPollingPolicy();
+        boolean active = false;
+
+        for (final BatteryPack pack : batteryPacks.values()) {
+            final int cellDelta = pack.maxCellmV - pack.minCellmV;
+            final boolean alarms = pack.alarms.values().stream().anyMatch(level -> level != AlarmLevel.NONE);
+            final int[] previous = lastActivity.getOrDefault(pack, new int[] { pack.packCurrent, cellDelta });
+
+            active |= policy.isActive(pack.packCurrent, previous[0], cellDelta, previous[1], alarms);
+            lastActivity.put(pack, new int[] { pack.packCurrent, cellDelta });
+        }
+
+        pollInterval = policy.nextInterval(active, pollInterval, defaultInterval);
+        nextPoll = cycleStart + pollInterval;
+        Metrics.setGauge(getBindingKey() + ".pollIntervalMs", pollInterval);
+
+        return pollInterval;
+    }
+
+
+    /**
+     * Updates the {@link Freshness} of all {@link BatteryPack}s after a polling cycle according to
+     * the {@link FreshnessPolicy} of this binding and exports it as gauges. Implementations should
+     * mark the updated {@link DataGroup}s of each {@link BatteryPack} when data is received. If an
+     * implementation does not, all {@link BatteryPack}s are considered updated after data was
+     * collected successfully.
+     *
+     * @param cycleStart the time the cycle started
+     * @param collected true if the data was collected without error
+     */
+    private void updateFreshness(final long cycleStart, final boolean collected) {
+        boolean updated = false;
+
+        for (final BatteryPack pack : batteryPacks.values()) {
+            updated |= pack.getLastUpdate() >= cycleStart;
+        }
+
+        if (updated) {
+            tracksUpdates = true;
+        } else if (collected && !tracksUpdates) {
+            batteryPacks.values().forEach(pack -> pack.markUpdated(DataGroup.values()));
+        }
+
+        int stalePacks = 0;
+
+        for (final Map.Entry<Integer, BatteryPack> entry : batteryPacks.entrySet()) {
+            final BatteryPack pack = entry.getValue();
+            final Freshness freshness = pack.updateFreshness(pack.getLastUpdate() >= cycleStart, config.getFreshnessPolicy());
+            final String gauge = getBindingKey() + ".pack." + entry.getKey();
+
+            Metrics.setGauge(gauge + ".missedCycles", pack.getMissedCycles());
+            Metrics.setGauge(gauge + ".ageMs", pack.getLastUpdate() > 0 ? System.currentTimeMillis() - pack.getLastUpdate() : -1);
+
+            if (freshness != Freshness.FRESH) {
+                LOG.warn("BMS #{} battery pack #{} is {} after {} missed cycles", getBmsId(), entry.getKey(), freshness, pack.getMissedCycles());
+            }
+
+            if (freshness == Freshness.STALE) {
+                stalePacks++;
+            }
+        }
+
+        Metrics.setGauge(getBindingKey() + ".stalePacks", stalePacks);
+    }
+
+
+    /**
+     * Processes the collection of data from the specified {@link BatteryPack}. The default
+     * implementation sends the {@link BmsCommand}s registered via
+     * {@link #registerCommand(String, CommandTier, BmsCommand)} which are due in this cycle.
      *
      * @param port the allocated {@link Port}
      * @throws IOException if there is a problem with the port
      * @throws TooManyInvalidFramesException when too many invalid frames were received
      * @throws NoDataAvailableException when no data was received too many times
      */
-    protected abstract void collectData(Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException;
+    protected void collectData(final Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
+        sendScheduledCommands(port);
+    }
+
+
+    /**
+     * Registers a {@link BmsCommand} to be sent in the cycles defined by the {@link CommandTier}.
+     * {@link CommandTier#SLOW} commands are sent every <code>bms.x.slowCommandInterval</code>
+     * cycles. Commands are sent in the order of their registration.
+     *
+     * @param name the name of the command used for logging
+     * @param tier the {@link CommandTier}
+     * @param command the {@link BmsCommand}
+     */
+    protected void registerCommand(final String name, final CommandTier tier, final BmsCommand command) {
+        commands.add(new ScheduledCommand(name, tier, 0, command));
+    }
+
+
+    /**
+     * Registers a {@link CommandTier#SLOW} {@link BmsCommand} to be sent every specified number of
+     * cycles.
+     *
+     * @param name the name of the command used for logging
+     * @param everyCycles the number of cycles between two requests
+     * @param command the {@link BmsCommand}
+     */
+    protected void registerCommand(final String name, final int everyCycles, final BmsCommand command) {
+        commands.add(new ScheduledCommand(name, CommandTier.SLOW, everyCycles, command));
+    }
+
+
+    /**
+     * Sends the registered {@link BmsCommand}s which are due in this cycle. A failing
+     * {@link CommandTier#FAST} command aborts the cycle as before, while all other commands are
+     * logged and retried in the next cycle so they do not prevent reading the telemetry.
+     *
+     * @param port the allocated {@link Port}
+     * @throws IOException if there is a problem with the port
+     * @throws TooManyInvalidFramesException when too many invalid frames were received
+     * @throws NoDataAvailableException when no data was received too many times
+     */
+    protected void sendScheduledCommands(final Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
+        final boolean alarmActive = cycle == 0 || hasAlarms();
+        int sent = 0;
+
+        for (final ScheduledCommand scheduled : commands) {
+            if (!isDue(scheduled, alarmActive)) {
+                continue;
+            }
+
+            sent++;
+
+            if (scheduled.tier == CommandTier.FAST) {
+                send(port, scheduled);
+                continue;
+            }
+
+            try {
+                send(port, scheduled);
+                scheduled.done = true;
+                scheduled.nextCycle = cycle + (scheduled.interval > 0 ? scheduled.interval : config.getSlowCommandInterval());
+            } catch (final IOException | TooManyInvalidFramesException | NoDataAvailableException e) {
+                LOG.warn("BMS #{} command '{}' failed - retrying in next cycle: {}", getBmsId(), scheduled.name, e.getMessage());
+            }
+        }
+
+        cycle++;
+        commandsSent = sent;
+        Metrics.setGauge(getBindingKey() + ".commandsPerCycle", sent);
+    }
+
+
+    /**
+     * Marks the start of decoding a frame received from the port. Processors call this after the
+     * frame has been received, so the time waiting for the frame is not reported as decoding.
+     */
+    protected void beginFrameDecode() {
+        frameDecodeTracer = Tracing.get();
+        frameDecodeSpan = frameDecodeTracer.begin(Tracer.Operation.FRAME_DECODE);
+        frameDecodeStart = System.nanoTime();
+    }
+
+
+    /**
+     * Reports the decoding of the frame started with {@link #beginFrameDecode()}.
+     *
+     * @param port the {@link Port} the frame was received from
+     * @param frame the decoded frame
+     */
+    protected void endFrameDecode(final Port port, final ByteBuffer frame) {
+        if (frameDecodeTracer != null) {
+            frameDecodeTracer.frameDecode(frameDecodeSpan, port.getPortname(), frame != null ? frame.limit() : 0, System.nanoTime() - frameDecodeStart);
+            frameDecodeTracer = null;
+            frameDecodeSpan = null;
+        }
+    }
+
+
+    /**
+     * Decodes the frame received from the port with the specified handler and reports the
+     * decoding.
+     *
+     * @param port the {@link Port} the frame was received from
+     * @param frame the received frame
+     * @param handler the handler decoding the frame
+     */
+    protected void decodeFrame(final Port port, final ByteBuffer frame, final Consumer<ByteBuffer> handler) {
+        beginFrameDecode();
+
+        try {
+            handler.accept(frame);
+        } finally {
+            endFrameDecode(port, frame);
+        }
+    }
+
+
+    private void send(final Port port, final ScheduledCommand scheduled) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.REQUEST_ROUND_TRIP);
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            scheduled.command.send(port);
+            success = true;
+        } finally {
+            tracer.requestRoundTrip(span, getPortLocator(), scheduled.name, System.nanoTime() - start, success);
+        }
+    }
+
+
+    private boolean isDue(final ScheduledCommand scheduled, final boolean alarmActive) {
+        switch (scheduled.tier) {
+            case ONCE:
+                return !scheduled.done;
+            case SLOW:
+                return cycle >= scheduled.nextCycle;
+            case ON_ALARM:
+                return alarmActive;
+            default:
+                return true;
+        }
+    }
+
+
+    private boolean hasAlarms() {
+        return batteryPacks.values().stream().anyMatch(pack -> pack.alarms.values().stream().anyMatch(level -> level != AlarmLevel.NONE));
+    }
+
+
+    /**
+     * Resets the schedule of the registered {@link BmsCommand}s so that all commands are sent again
+     * in the next cycle.
+     */
+    protected void resetCommandSchedule() {
+        cycle = 0;
+        commands.forEach(scheduled -> {
+            scheduled.done = false;
+            scheduled.nextCycle = 0;
+        });
+    }
 
 
     /**
@@ -230,4 +630,15 @@ public abstract class BMS {
         return energyStorage;
     }
 
+
+    /**
+     * Sets the {@link EnergyStorage} the {@link BatteryPack}s of this BMS are added to, if not
+     * injected.
+     *
+     * @param energyStorage the {@link EnergyStorage}
+     */
+    public void setEnergyStorage(final EnergyStorage energyStorage) {
+        this.energyStorage = energyStorage;
+    }
+
 }
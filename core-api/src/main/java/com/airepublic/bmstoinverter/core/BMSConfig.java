@@ -10,6 +10,10 @@
  */
 package com.airepublic.bmstoinverter.core;
 
+import java.util.List;
+
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+
 /**
  * Configuration read from the confg.properties for each {@link BMS}.
  */
@@ -19,6 +23,11 @@ public class BMSConfig {
     private int baudRate;
     private long delayAfterNoBytes;
     private BMSDescriptor descriptor;
+    private FreshnessPolicy freshnessPolicy = new FreshnessPolicy(3, 10, 50);
+    private PollingPolicy pollingPolicy = new PollingPolicy(0, 0, 100, 50, 10);
+    private List<CANFilter> canFilters;
+    private int slowCommandInterval = 10;
+    private String schema;
 
     /**
      * Constructor.
@@ -124,4 +133,109 @@ public class BMSConfig {
     public BMSDescriptor getDescriptor() {
         return descriptor;
     }
+
+
+    /**
+     * Gets the {@link FreshnessPolicy} for the battery packs of the BMS.
+     *
+     * @return the {@link FreshnessPolicy}
+     */
+    public FreshnessPolicy getFreshnessPolicy() {
+        return freshnessPolicy;
+    }
+
+
+    /**
+     * Sets the {@link FreshnessPolicy} for the battery packs of the BMS.
+     *
+     * @param freshnessPolicy the {@link FreshnessPolicy}
+     */
+    public void setFreshnessPolicy(final FreshnessPolicy freshnessPolicy) {
+        this.freshnessPolicy = freshnessPolicy;
+    }
+
+
+    /**
+     * Gets the {@link PollingPolicy} adapting the polling interval of the BMS.
+     *
+     * @return the {@link PollingPolicy}
+     */
+    public PollingPolicy getPollingPolicy() {
+        return pollingPolicy;
+    }
+
+
+    /**
+     * Sets the {@link PollingPolicy} adapting the polling interval of the BMS.
+     *
+     * @param pollingPolicy the {@link PollingPolicy}
+     */
+    public void setPollingPolicy(final PollingPolicy pollingPolicy) {
+        this.pollingPolicy = pollingPolicy;
+    }
+
+
+    /**
+     * Gets the configured {@link CANFilter}s of the frames consumed by the BMS on a CAN port.
+     *
+     * @return the {@link CANFilter}s or null if the filters declared by the BMS should be used
+     */
+    public List<CANFilter> getCANFilters() {
+        return canFilters;
+    }
+
+
+    /**
+     * Sets the {@link CANFilter}s of the frames consumed by the BMS on a CAN port overriding the
+     * filters declared by the BMS.
+     *
+     * @param canFilters the {@link CANFilter}s
+     */
+    public void setCANFilters(final List<CANFilter> canFilters) {
+        this.canFilters = canFilters;
+    }
+
+
+    /**
+     * Gets the number of polling cycles between two requests of a {@link CommandTier#SLOW}
+     * {@link BmsCommand}.
+     *
+     * @return the number of cycles
+     */
+    public int getSlowCommandInterval() {
+        return slowCommandInterval;
+    }
+
+
+    /**
+     * Sets the number of polling cycles between two requests of a {@link CommandTier#SLOW}
+     * {@link BmsCommand}.
+     *
+     * @param slowCommandInterval the number of cycles
+     */
+    public void setSlowCommandInterval(final int slowCommandInterval) {
+        this.slowCommandInterval = slowCommandInterval;
+    }
+
+
+    /**
+     * Gets the file or classpath resource of the frame schema describing the messages of the
+     * {@link BMS}, if its type decodes the messages by a schema.
+     *
+     * @return the frame schema location or null if not configured
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+
+    /**
+     * Sets the file or classpath resource of the frame schema describing the messages of the
+     * {@link BMS}.
+     *
+     * @param schema the frame schema location
+     */
+    public void setSchema(final String schema) {
+        this.schema = schema;
+    }
 }
@@ -0,0 +1,372 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+import com.airepublic.bmstoinverter.core.util.Workers;
+
+/**
+ * Discovers which {@link BMS} protocol answers on which port and address. The serial ports
+ * <code>/dev/ttyUSB*</code> and <code>/dev/ttyACM*</code> are probed with the RS485 and Modbus
+ * protocols, the <code>can*</code> network interfaces with the CAN protocols. Each port is probed in
+ * its own worker thread, so all ports are probed concurrently, while the protocols and addresses of
+ * a port are probed one after another as they share the bus.
+ * <p>
+ * A probe collects the data once with the {@link BMS} implementation of a {@link BMSDescriptor} at
+ * its default baud rate, but without the recovery of the regular polling cycle, so protocols which
+ * do not answer are only logged at debug level. The protocol answered if the collection succeeded
+ * and a {@link BatteryPack} received values. A probe which does not finish within the probe timeout is aborted by closing
+ * its port and awaited before the next probe opens the port again. The discovery as a whole ends
+ * after the total timeout.
+ */
+public class BMSDiscovery {
+    private final static Logger LOG = LoggerFactory.getLogger(BMSDiscovery.class);
+    private final static Pattern SERIAL_PORT = Pattern.compile("ttyUSB\\d+|ttyACM\\d+");
+    private final static Pattern CAN_PORT = Pattern.compile("can\\d+");
+    private final static long DELAY_AFTER_NO_BYTES = 200;
+    private final Collection<BMSDescriptor> descriptors;
+    private final long probeTimeout;
+    private final long timeout;
+    private final int maxAddress;
+
+    /**
+     * A protocol which answered on a port.
+     */
+    public static class Match {
+        private final BMSDescriptor descriptor;
+        private final String portLocator;
+        private final int address;
+
+        Match(final BMSDescriptor descriptor, final String portLocator, final int address) {
+            this.descriptor = descriptor;
+            this.portLocator = portLocator;
+            this.address = address;
+        }
+
+
+        /**
+         * Gets the {@link BMSDescriptor} of the protocol which answered.
+         *
+         * @return the {@link BMSDescriptor}
+         */
+        public BMSDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+
+        /**
+         * Gets the port locator the protocol answered on.
+         *
+         * @return the port locator
+         */
+        public String getPortLocator() {
+            return portLocator;
+        }
+
+
+        /**
+         * Gets the address (BMS id) which answered.
+         *
+         * @return the address
+         */
+        public int getAddress() {
+            return address;
+        }
+
+
+        @Override
+        public String toString() {
+            return descriptor.getName() + " (ID: " + address + ") on " + portLocator + " at " + descriptor.getDefaultBaudRate() + " baud";
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param descriptors the {@link BMSDescriptor}s of the protocols to probe
+     * @param probeTimeout the maximum time of a single probe in milliseconds
+     * @param timeout the maximum time of the whole discovery in milliseconds
+     * @param maxAddress the highest address (BMS id) to probe starting at 1
+     */
+    public BMSDiscovery(final Collection<BMSDescriptor> descriptors, final long probeTimeout, final long timeout, final int maxAddress) {
+        this.descriptors = descriptors;
+        this.probeTimeout = probeTimeout;
+        this.timeout = timeout;
+        this.maxAddress = maxAddress;
+    }
+
+
+    /**
+     * Creates the {@link BMSDiscovery} for all {@link BMSDescriptor}s found by the
+     * {@link ServiceLoader} configured by the system properties <code>discovery.probeTimeout</code>,
+     * <code>discovery.timeout</code> and <code>discovery.maxAddress</code>.
+     *
+     * @return the {@link BMSDiscovery}
+     */
+    public static BMSDiscovery fromSystemProperties() {
+        final List<BMSDescriptor> descriptors = new ArrayList<>();
+        ServiceLoader.load(BMSDescriptor.class).forEach(descriptors::add);
+
+        final long probeTimeout = Long.parseLong(System.getProperty("discovery.probeTimeout", "1500"));
+        final long timeout = Long.parseLong(System.getProperty("discovery.timeout", "60")) * 1000L;
+        final int maxAddress = Integer.parseInt(System.getProperty("discovery.maxAddress", "1"));
+
+        return new BMSDiscovery(descriptors, probeTimeout, timeout, maxAddress);
+    }
+
+
+    /**
+     * Lists the serial ports and CAN interfaces available on this system.
+     *
+     * @return the port locators
+     */
+    public static List<String> listPorts() {
+        return listPorts(Paths.get("/dev"), Paths.get("/sys/class/net"));
+    }
+
+
+    /**
+     * Lists the serial ports in the specified device directory and the CAN interfaces in the
+     * specified network interface directory.
+     *
+     * @param deviceDir the device directory, e.g. /dev
+     * @param netDir the network interface directory, e.g. /sys/class/net
+     * @return the port locators
+     */
+    static List<String> listPorts(final Path deviceDir, final Path netDir) {
+        final List<String> ports = new ArrayList<>();
+
+        for (final String name : list(deviceDir)) {
+            if (SERIAL_PORT.matcher(name).matches()) {
+                ports.add(deviceDir.resolve(name).toString());
+            }
+        }
+
+        for (final String name : list(netDir)) {
+            if (CAN_PORT.matcher(name).matches()) {
+                ports.add(name);
+            }
+        }
+
+        return ports;
+    }
+
+
+    private static Collection<String> list(final Path dir) {
+        final Collection<String> names = new TreeSet<>();
+
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                stream.forEach(path -> names.add(path.getFileName().toString()));
+            } catch (final IOException e) {
+                LOG.warn("Could not list the ports in {}", dir, e);
+            }
+        }
+
+        return names;
+    }
+
+
+    /**
+     * Checks whether the protocol of the specified {@link BMSDescriptor} can be used on the specified
+     * port, i.e. CAN protocols on CAN interfaces and all others on serial ports.
+     *
+     * @param descriptor the {@link BMSDescriptor}
+     * @param portLocator the port locator
+     * @return true if the protocol should be probed on the port
+     */
+    static boolean isApplicable(final BMSDescriptor descriptor, final String portLocator) {
+        if ("NONE".equals(descriptor.getName())) {
+            return false;
+        }
+
+        final boolean canPort = CAN_PORT.matcher(Paths.get(portLocator).getFileName().toString()).matches();
+        return canPort == descriptor.getName().endsWith("_CAN");
+    }
+
+
+    /**
+     * Probes all available ports.
+     *
+     * @return the protocols which answered
+     */
+    public List<Match> discover() {
+        return discover(listPorts());
+    }
+
+
+    /**
+     * Probes the specified ports concurrently with all applicable protocols and addresses until the
+     * total timeout is reached.
+     *
+     * @param portLocators the port locators
+     * @return the protocols which answered ordered by the specified ports
+     */
+    public List<Match> discover(final List<String> portLocators) {
+        final long deadline = System.currentTimeMillis() + timeout;
+        final Map<String, List<Match>> matches = new LinkedHashMap<>();
+        final List<Thread> threads = new ArrayList<>();
+
+        for (final String portLocator : portLocators) {
+            final List<Match> portMatches = Collections.synchronizedList(new ArrayList<>());
+            matches.put(portLocator, portMatches);
+            threads.add(Workers.start("bms-discovery-" + portLocator, () -> probePort(portLocator, deadline, portMatches)));
+        }
+
+        try {
+            for (final Thread thread : threads) {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int i = 0; i < threads.size(); i++) {
+            if (threads.get(i).isAlive()) {
+                LOG.warn("Discovery on port {} did not finish in time!", portLocators.get(i));
+                threads.get(i).interrupt();
+                PortAllocator.removePort(portLocators.get(i));
+            }
+        }
+
+        final List<Match> result = new ArrayList<>();
+        matches.values().forEach(result::addAll);
+        return result;
+    }
+
+
+    private void probePort(final String portLocator, final long deadline, final List<Match> matches) {
+        for (final BMSDescriptor descriptor : descriptors) {
+            if (!isApplicable(descriptor, portLocator)) {
+                continue;
+            }
+
+            // a bus is used by one protocol only
+            if (!matches.isEmpty()) {
+                return;
+            }
+
+            for (int address = 1; address <= maxAddress; address++) {
+                final long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+
+                if (probe(descriptor, portLocator, address, Math.min(probeTimeout, remaining), deadline)) {
+                    final Match match = new Match(descriptor, portLocator, address);
+                    LOG.info("Discovered {}", match);
+                    matches.add(match);
+                }
+            }
+        }
+    }
+
+
+    private boolean probe(final BMSDescriptor descriptor, final String portLocator, final int address, final long maxDuration, final long deadline) {
+        final AtomicBoolean answered = new AtomicBoolean();
+        final Thread thread = Workers.start("bms-probe-" + portLocator, () -> {
+            try {
+                // each probe gets its own injected dependencies, e.g. the message handlers of the
+                // BMS implementations, and its own energy storage
+                final BeanFactory beanFactory = new BeanFactory();
+                beanFactory.register(EnergyStorage.class, new EnergyStorage());
+                final BMS bms = beanFactory.create(descriptor.getBMSClass());
+                bms.initialize(new BMSConfig(address, portLocator, descriptor.getDefaultBaudRate(), DELAY_AFTER_NO_BYTES, descriptor));
+                // most protocols do not answer, so this must not log errors or re-open the port
+                bms.probe();
+
+                for (final BatteryPack pack : bms.getBatteryPacks()) {
+                    if (pack.packVoltage > 0 || pack.numberOfCells > 0) {
+                        answered.set(true);
+                    }
+                }
+            } catch (final Throwable e) {
+                LOG.debug("{} (ID: {}) did not answer on {}: {}", descriptor.getName(), address, portLocator, e.toString());
+            }
+        });
+
+        try {
+            thread.join(maxDuration);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // closing the port aborts a probe which is still waiting for data
+        PortAllocator.removePort(portLocator);
+        thread.interrupt();
+
+        // the next probe must not re-open the port before this probe released it
+        try {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thread.isAlive()) {
+            LOG.warn("Probing {} (ID: {}) on {} could not be aborted - skipping the port!", descriptor.getName(), address, portLocator);
+            // stops probing this port
+            Thread.currentThread().interrupt();
+        }
+
+        return answered.get();
+    }
+
+
+    /**
+     * Creates the report of the discovered protocols as BMS configuration to be used in the
+     * config.properties.
+     *
+     * @param matches the discovered protocols
+     * @return the report
+     */
+    public static String createReport(final List<Match> matches) {
+        final StringBuilder report = new StringBuilder();
+
+        if (matches.isEmpty()) {
+            return report.append("No BMS answered on any port!").toString();
+        }
+
+        report.append("Discovered ").append(matches.size()).append(" BMS(es):\n");
+
+        for (int i = 0; i < matches.size(); i++) {
+            final Match match = matches.get(i);
+            final String prefix = "bms." + (i + 1) + ".";
+            report.append(prefix).append("type=").append(match.getDescriptor().getName()).append("\n");
+            report.append(prefix).append("id=").append(match.getAddress()).append("\n");
+            report.append(prefix).append("portLocator=").append(match.getPortLocator()).append("\n");
+            report.append(prefix).append("baudRate=").append(match.getDescriptor().getDefaultBaudRate()).append("\n");
+            report.append(prefix).append("delayAfterNoBytes=").append(DELAY_AFTER_NO_BYTES).append("\n");
+        }
+
+        return report.toString();
+    }
+}
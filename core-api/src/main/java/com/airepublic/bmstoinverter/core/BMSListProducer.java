@@ -17,16 +17,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.function.Function;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
-import javax.enterprise.inject.spi.CDI;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorageQualifier;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
 import com.airepublic.bmstoinverter.core.util.SystemProperties;
 
 @ApplicationScoped
@@ -58,6 +60,18 @@ public class BMSListProducer extends PluginProducer {
 
     @Produces
     public synchronized List<BMS> produceBMSList() {
+        return createBMSList(CDIBeanFactory::create);
+    }
+
+
+    /**
+     * Creates the list of configured {@link BMS}es using the specified factory to instantiate the
+     * {@link BMS} implementation classes.
+     *
+     * @param factory the factory to create the {@link BMS} instances
+     * @return the list of configured {@link BMS}es
+     */
+    public synchronized List<BMS> createBMSList(final Function<Class<? extends BMS>, BMS> factory) {
         if (bmsList == null) {
             bmsList = new ArrayList<>();
             String type = System.getProperty("bms.1.type");
@@ -79,7 +93,7 @@ public class BMSListProducer extends PluginProducer {
             int index = 1;
 
             while (type != null) {
-                final BMS bms = createBMS(index, type, plugins);
+                final BMS bms = createBMS(index, type, plugins, factory);
                 bmsList.add(bms);
 
                 index++;
@@ -91,15 +105,80 @@ public class BMSListProducer extends PluginProducer {
     }
 
 
-    private BMS createBMS(final int index, final String name, final Set<BmsPlugin> plugins) {
+    /**
+     * Re-creates the {@link BMS} binding with the specified index from the current system
+     * properties, e.g. after the configuration has changed. The {@link BatteryPack}s of the previous
+     * {@link BMS} are replaced in place in the {@link EnergyStorage} by packs adopted by the new
+     * {@link BMS}, so the indices of the packs of all other bindings are kept. If the binding is no
+     * longer configured it is removed from the list and its packs are removed.
+     *
+     * @param index the index of the {@link BMS} configuration (starting at 1)
+     * @param factory the factory to create the {@link BMS} instance
+     * @return the re-created {@link BMS} or null if it is no longer configured
+     */
+    public synchronized BMS recreateBMS(final int index, final Function<Class<? extends BMS>, BMS> factory) {
+        final List<BMS> list = createBMSList(factory);
+        final BMS oldBms = index <= list.size() ? list.get(index - 1) : null;
+        final String type = System.getProperty("bms." + index + ".type");
+
+        if (type == null) {
+            if (oldBms != null) {
+                energyStorage.replaceBatteryPacks(oldBms.getBatteryPacks(), null);
+                list.remove(index - 1);
+                LOG.info("Removed BMS #" + oldBms.getBmsId() + "[" + oldBms.getName() + "] on port " + oldBms.getPortLocator());
+            }
+
+            return null;
+        }
+
+        final BMS bms = createBMS(index, type, loadPlugins(BmsPlugin.class), factory);
+
+        if (oldBms != null) {
+            energyStorage.replaceBatteryPacks(oldBms.getBatteryPacks(), bms.getBindingKey());
+            list.set(index - 1, bms);
+        } else {
+            list.add(bms);
+        }
+
+        return bms;
+    }
+
+
+    /**
+     * Reloads the configured {@link BmsPlugin}s from the current system properties and assigns them
+     * to all {@link BMS}es.
+     */
+    public synchronized void reloadPlugins() {
+        if (bmsList == null) {
+            return;
+        }
+
+        final Set<BmsPlugin> plugins = loadPlugins(BmsPlugin.class);
+
+        for (final BMS bms : bmsList) {
+            bms.setPlugins(plugins);
+            plugins.forEach(p -> p.onInitialize(bms));
+        }
+    }
+
+
+    private BMS createBMS(final int index, final String name, final Set<BmsPlugin> plugins, final Function<Class<? extends BMS>, BMS> factory) {
         final BMSDescriptor bmsDescriptor = getBMSDescriptor(name);
-        final BMS bms = CDI.current().select(bmsDescriptor.getBMSClass()).get();
+        final BMS bms = factory.apply(bmsDescriptor.getBMSClass());
         energyStorage.getBatteryPacks().addAll(bms.getBatteryPacks());
         final int bmsId = Integer.valueOf(System.getProperty("bms." + index + ".id"));
         final String portLocator = System.getProperty("bms." + index + ".portLocator");
         final int baudRate = Integer.valueOf(System.getProperty("bms." + index + ".baudRate"));
         final int delayAfterNoBytes = Integer.valueOf(System.getProperty("bms." + index + ".delayAfterNoBytes"));
         final BMSConfig config = new BMSConfig(bmsId, portLocator, baudRate, delayAfterNoBytes, bmsDescriptor);
+        config.setFreshnessPolicy(FreshnessPolicy.fromSystemProperties(index));
+        config.setPollingPolicy(PollingPolicy.fromSystemProperties(index));
+        config.setSlowCommandInterval(Integer.parseInt(System.getProperty("bms." + index + ".slowCommandInterval", "10")));
+        config.setSchema(System.getProperty("bms." + index + ".schema"));
+
+        if (System.getProperty("bms." + index + ".canFilters") != null) {
+            config.setCANFilters(CANFilter.parseList(System.getProperty("bms." + index + ".canFilters")));
+        }
 
         bms.setPlugins(plugins);
         bms.initialize(config);
@@ -0,0 +1,115 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+/**
+ * A minimal bean factory used by the direct bootstrap mode to wire {@link BMS}, {@link Inverter}
+ * and service instances without scanning the classpath with CDI. Fields annotated with
+ * {@link Inject} are resolved by their generic or raw type from the registered instances or by
+ * creating a singleton of that type. Methods annotated with {@link PostConstruct} are called after injection.
+ */
+public class BeanFactory {
+    private final Map<Type, Object> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Registers an instance that will be injected into fields of the specified type.
+     *
+     * @param type the type of the injection point
+     * @param instance the instance
+     */
+    public <T> void register(final Class<T> type, final T instance) {
+        instances.put(type, instance);
+    }
+
+
+    /**
+     * Registers an instance that will be injected into fields of the specified generic type, e.g.
+     * to distinguish <code>List&lt;BMS&gt;</code> from <code>List&lt;Inverter&gt;</code>.
+     *
+     * @param type the generic type of the injection point
+     * @param instance the instance
+     */
+    public void register(final Type type, final Object instance) {
+        instances.put(type, instance);
+    }
+
+
+    /**
+     * Creates a new instance of the specified class and injects its dependencies.
+     *
+     * @param beanClass the class of the bean
+     * @return the new instance
+     */
+    public <T> T create(final Class<T> beanClass) {
+        try {
+            final T bean = beanClass.getConstructor().newInstance();
+            inject(bean, beanClass);
+            postConstruct(bean, beanClass);
+            return bean;
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create bean " + beanClass.getName(), e);
+        }
+    }
+
+
+    private void inject(final Object bean, final Class<?> clazz) throws ReflectiveOperationException {
+        if (clazz == null || clazz == Object.class) {
+            return;
+        }
+
+        inject(bean, clazz.getSuperclass());
+
+        for (final Field field : clazz.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Inject.class)) {
+                field.setAccessible(true);
+                final Object instance = instances.get(field.getGenericType());
+                field.set(bean, instance != null ? instance : resolve(field.getType()));
+            }
+        }
+    }
+
+
+    private Object resolve(final Class<?> type) {
+        Object instance = instances.get(type);
+
+        if (instance == null) {
+            instance = create(type);
+            instances.put(type, instance);
+        }
+
+        return instance;
+    }
+
+
+    private void postConstruct(final Object bean, final Class<?> clazz) throws ReflectiveOperationException {
+        if (clazz == null || clazz == Object.class) {
+            return;
+        }
+
+        postConstruct(bean, clazz.getSuperclass());
+
+        for (final Method method : clazz.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(PostConstruct.class)) {
+                method.setAccessible(true);
+                method.invoke(bean);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import java.io.IOException;
+
+/**
+ * A request sent by a {@link BMS} to collect a part of its data. Commands are registered with a
+ * {@link CommandTier} and scheduled by the {@link BMS}.
+ */
+@FunctionalInterface
+public interface BmsCommand {
+
+    /**
+     * Sends the request and processes the response(s).
+     *
+     * @param port the allocated {@link Port}
+     * @throws IOException if there is a problem with the port
+     * @throws TooManyInvalidFramesException when too many invalid frames were received
+     * @throws NoDataAvailableException when no data was received too many times
+     */
+    void send(Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException;
+}
@@ -0,0 +1,39 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.spi.Unmanaged;
+
+/**
+ * Creates the {@link BMS} and {@link Inverter} instances of the bindings in CDI mode. Each binding
+ * needs its own instance even if several bindings use the same implementation class, so the
+ * instances are created as non-contextual instances whose dependencies are injected by the CDI
+ * container instead of selecting the (usually {@link ApplicationScoped}) contextual instance which
+ * would be shared by all bindings.
+ */
+public class CDIBeanFactory {
+
+    private CDIBeanFactory() {
+    }
+
+
+    /**
+     * Creates a new instance of the specified class, injects its dependencies and calls its
+     * post-construct callbacks.
+     *
+     * @param beanClass the class of the bean
+     * @return the new instance
+     */
+    public static <T> T create(final Class<T> beanClass) {
+        return new Unmanaged<>(beanClass).newInstance().produce().inject().postConstruct().get();
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+/**
+ * The tier of a {@link BmsCommand} which defines in which polling cycles the {@link BMS} sends it.
+ */
+public enum CommandTier {
+    /** Sent until it succeeded once, e.g. for the manufacturer or protocol version. */
+    ONCE,
+    /** Sent every N cycles, e.g. for values which change slowly like the capacity. */
+    SLOW,
+    /** Sent every cycle, e.g. for the voltages, currents and alarms. */
+    FAST,
+    /** Sent in the first cycle and in every cycle while a battery pack reports an alarm. */
+    ON_ALARM
+}
@@ -0,0 +1,107 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.Freshness;
+
+/**
+ * Defines after how many missed BMS polling cycles the data of a {@link BatteryPack} is considered
+ * {@link Freshness#DEGRADED} or {@link Freshness#STALE}. A value of 0 disables the respective
+ * state.
+ */
+public class FreshnessPolicy {
+    private final int degradeAfterCycles;
+    private final int staleAfterCycles;
+    private final int degradedLimitPercent;
+
+    /**
+     * Constructor.
+     *
+     * @param degradeAfterCycles the number of missed cycles after which the current limits are
+     *        reduced
+     * @param staleAfterCycles the number of missed cycles after which the pack is excluded from
+     *        aggregation and charging is stopped
+     * @param degradedLimitPercent the percentage of the current limits to use while degraded
+     */
+    public FreshnessPolicy(final int degradeAfterCycles, final int staleAfterCycles, final int degradedLimitPercent) {
+        this.degradeAfterCycles = degradeAfterCycles;
+        this.staleAfterCycles = staleAfterCycles;
+        this.degradedLimitPercent = degradedLimitPercent;
+    }
+
+
+    /**
+     * Creates the {@link FreshnessPolicy} for the BMS binding with the specified index from the
+     * system properties <code>bms.x.degradeAfterCycles</code> (default 3),
+     * <code>bms.x.staleAfterCycles</code> (default 10) and <code>bms.x.degradedLimitPercent</code>
+     * (default 50).
+     *
+     * @param index the index of the BMS configuration
+     * @return the {@link FreshnessPolicy}
+     */
+    public static FreshnessPolicy fromSystemProperties(final int index) {
+        final int degradeAfter = Integer.parseInt(System.getProperty("bms." + index + ".degradeAfterCycles", "3"));
+        final int staleAfter = Integer.parseInt(System.getProperty("bms." + index + ".staleAfterCycles", "10"));
+        final int limitPercent = Integer.parseInt(System.getProperty("bms." + index + ".degradedLimitPercent", "50"));
+
+        return new FreshnessPolicy(degradeAfter, staleAfter, limitPercent);
+    }
+
+
+    /**
+     * Gets the number of missed cycles after which the current limits are reduced.
+     *
+     * @return the number of missed cycles
+     */
+    public int getDegradeAfterCycles() {
+        return degradeAfterCycles;
+    }
+
+
+    /**
+     * Gets the number of missed cycles after which the pack is excluded from aggregation.
+     *
+     * @return the number of missed cycles
+     */
+    public int getStaleAfterCycles() {
+        return staleAfterCycles;
+    }
+
+
+    /**
+     * Gets the percentage of the current limits to use while degraded.
+     *
+     * @return the percentage of the current limits
+     */
+    public int getDegradedLimitPercent() {
+        return degradedLimitPercent;
+    }
+
+
+    /**
+     * Determines the {@link Freshness} for the specified number of missed cycles.
+     *
+     * @param missedCycles the number of consecutively missed cycles
+     * @return the {@link Freshness}
+     */
+    public Freshness evaluate(final int missedCycles) {
+        if (staleAfterCycles > 0 && missedCycles >= staleAfterCycles) {
+            return Freshness.STALE;
+        }
+
+        if (degradeAfterCycles > 0 && missedCycles >= degradeAfterCycles) {
+            return Freshness.DEGRADED;
+        }
+
+        return Freshness.FRESH;
+    }
+}
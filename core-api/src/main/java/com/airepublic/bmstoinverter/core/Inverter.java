@@ -13,7 +13,6 @@ package com.airepublic.bmstoinverter.core;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -21,10 +20,15 @@ import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorageQualifier;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
+import com.airepublic.bmstoinverter.core.protocol.can.CANTransmitQueue.Priority;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
 
 /**
  * The class to identify an {@link Inverter}.
@@ -37,6 +41,9 @@ public abstract class Inverter {
     private EnergyStorage energyStorage;
     private BatteryPack aggregatedPack = new BatteryPack();
     private Set<InverterPlugin> plugins;
+    private PluginChain<ByteBuffer> receiveChain = PluginChain.empty();
+    private PluginChain<BatteryPack> batteryAggregationChain = PluginChain.empty();
+    private PluginChain<ByteBuffer> sendChain = PluginChain.empty();
 
     /**
      * Constructor.
@@ -73,6 +80,33 @@ public abstract class Inverter {
         if (!PortAllocator.hasPort(config.getPortLocator())) {
             PortAllocator.addPort(config.getPortLocator(), config.getDescriptor().createPort(config));
         }
+
+        // declare the frames consumed by this inverter on a CAN port
+        final Port port = PortAllocator.getPort(config.getPortLocator());
+
+        if (port instanceof CANPort) {
+            ((CANPort) port).registerFilters(getBindingKey(), this instanceof CANFilterProvider ? ((CANFilterProvider) this).getCANFilters() : null);
+        }
+    }
+
+
+    /**
+     * Gets the {@link InverterConfig} this {@link Inverter} was initialized with.
+     *
+     * @return the {@link InverterConfig}
+     */
+    public InverterConfig getConfig() {
+        return config;
+    }
+
+
+    /**
+     * Gets the key identifying this {@link Inverter} binding on its {@link Port}.
+     *
+     * @return the binding key
+     */
+    public String getBindingKey() {
+        return "inverter#" + config.getIndex();
     }
 
 
@@ -137,6 +171,9 @@ public abstract class Inverter {
      */
     public void setPlugins(final Set<InverterPlugin> plugins) {
         this.plugins = plugins;
+        receiveChain = PluginChain.compile(plugins, InverterPlugin.class, "onReceive", ByteBuffer.class, InverterPlugin::onReceive);
+        batteryAggregationChain = PluginChain.compile(plugins, InverterPlugin.class, "onBatteryAggregation", BatteryPack.class, InverterPlugin::onBatteryAggregation);
+        sendChain = PluginChain.compile(plugins, InverterPlugin.class, "onSend", ByteBuffer.class, InverterPlugin::onSend);
 
         if (plugins != null) {
             plugins.forEach(p -> LOG.info("Inverter using plugin: " + p.getName()));
@@ -144,80 +181,184 @@ public abstract class Inverter {
     }
 
 
+    /**
+     * Returns whether the inverter protocol is request driven, i.e. the inverter requests the
+     * battery data and expects an immediate response. Request driven bindings are served by a
+     * dedicated listener calling {@link #processRequest(Runnable)} instead of being processed in the
+     * send interval.
+     *
+     * @return true if the protocol is request driven
+     */
+    public boolean isRequestDriven() {
+        return false;
+    }
+
+
     /**
      * Process sending the data via the {@link Port} to the {@link Inverter}.
      *
      * @param callback the code executed after successful processing
      */
     public void process(final Runnable callback) {
-        ByteBuffer currentFrame = null;
-
         if (energyStorage.getBatteryPacks().size() > 0) {
             try {
                 // read any request from the inverter
-                final Port port = PortAllocator.allocate(getPortLocator());
+                final Port port = getBindingPort();
                 final ByteBuffer requestFrame = readRequest(port);
 
-                if (requestFrame != null) {
-                    LOG.debug("Inverter " + config.getDescriptor().getName() + " received: " + Port.printBuffer(requestFrame));
+                respond(port, requestFrame);
+            } catch (final Throwable e) {
+                LOG.error("Failed to read request from inverter " + config.getDescriptor().getName() + "!", e);
+            }
 
-                    // if a plugin is set
-                    if (getPlugins() != null) {
-                        // call the plugin to manipulate the frame
-                        getPlugins().stream().forEach(p -> {
-                            LOG.debug("Calling inverter plugin (onReceive): {}", p.getName());
-                            p.onReceive(requestFrame);
-                        });
+            try {
+                callback.run();
+            } catch (final Exception e) {
+                LOG.error("Inverter process callback threw an exception!", e);
+            }
+        } else {
+            LOG.debug("No battery data yet received to send to inverter " + config.getDescriptor().getName() + "!");
+        }
+    }
 
-                        LOG.debug("Inverter " + config.getDescriptor().getName() + " received (after running plugins): " + Port.printBuffer(requestFrame));
-                    }
+
+    /**
+     * Waits for the next request of a request driven inverter protocol and answers it immediately
+     * from the latest aggregated snapshot. The time from receiving the request at the port until the
+     * response has been sent is recorded as <code>inverter.N.responseLatency</code> and responses slower
+     * than the configured maximum response latency are counted as
+     * <code>inverter.N.slowResponses</code>.
+     *
+     * @param callback the code executed after a request has been answered
+     * @return true if a request has been answered, false if no request has been received
+     */
+    public boolean processRequest(final Runnable callback) {
+        if (energyStorage.getBatteryPacks().isEmpty()) {
+            return false;
+        }
+
+        final Port port = getBindingPort();
+        final long previousReceived = port.getFrameReceivedNanos();
+        final ByteBuffer requestFrame;
+
+        try {
+            requestFrame = readRequest(port);
+        } catch (final IOException e) {
+            // no request received within the receive timeout of the port
+            LOG.debug("No request received from inverter {}: {}", getName(), e.getMessage());
+            return false;
+        }
+
+        if (requestFrame == null) {
+            return false;
+        }
+
+        // measure from the time the port received the request, so the time it waited in the CAN
+        // demultiplexer queue or serial buffer is included
+        final long received = port.getFrameReceivedNanos();
+        final long start = received != 0 && received != previousReceived ? received : System.nanoTime();
+        respond(port, requestFrame);
+        final long latency = System.nanoTime() - start;
+        final String metric = "inverter." + config.getIndex() + ".";
+
+        Metrics.recordTime(metric + "responseLatency", latency);
+
+        if (latency > config.getMaxResponseLatency() * 1000000L) {
+            Metrics.increment(metric + "slowResponses");
+            LOG.warn("Response to inverter {} took {}ms (maximum {}ms)", getName(), latency / 1000000L, config.getMaxResponseLatency());
+        }
+
+        try {
+            callback.run();
+        } catch (final Exception e) {
+            LOG.error("Inverter process callback threw an exception!", e);
+        }
+
+        return true;
+    }
+
+
+    private Port getBindingPort() {
+        final Port sharedPort = PortAllocator.allocate(getPortLocator());
+        // on a shared CAN port only the frames of this binding are received and the frames sent to
+        // the inverter take precedence over the BMS requests
+        return sharedPort instanceof CANPort ? ((CANPort) sharedPort).getBindingPort(getBindingKey(), Priority.HIGH) : sharedPort;
+    }
+
+
+    /**
+     * Creates and sends the frames for the specified request (if any) from the aggregated snapshot
+     * of the last BMS cycle.
+     *
+     * @param port the {@link Port}
+     * @param requestFrame the request frame or null
+     */
+    private void respond(final Port port, final ByteBuffer requestFrame) {
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.INVERTER_SEND);
+        final long startNanos = System.nanoTime();
+        ByteBuffer currentFrame = null;
+        int sent = 0;
+        boolean success = false;
+
+        try {
+            if (requestFrame != null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Inverter {} received: {}", config.getDescriptor().getName(), Port.printBuffer(requestFrame));
                 }
 
-                // aggregate all battery packs into one
-                aggregatedPack = aggregatedBatteryInfo();
+                // call the plugins to manipulate the frame
+                if (!receiveChain.isEmpty()) {
+                    receiveChain.run(requestFrame);
 
-                // if a plugin is set
-                if (getPlugins() != null) {
-                    // call the plugin to manipulate the frame
-                    getPlugins().stream().forEach(p -> {
-                        LOG.debug("Calling inverter plugin (onBatteryAggregation): {}", p.getName());
-                        p.onBatteryAggregation(aggregatedPack);
-                    });
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Inverter {} received (after running plugins): {}", config.getDescriptor().getName(), Port.printBuffer(requestFrame));
+                    }
                 }
+            }
 
-                // create send frames based on the aggregated data
+            // use the aggregated snapshot of the last BMS cycle which is shared by all inverter
+            // bindings, so plugins get their own copy to modify
+            final BatteryPack snapshot = getEnergyStorage().getAggregatedSnapshot();
+            aggregatedPack = batteryAggregationChain.isEmpty() ? snapshot : snapshot.copy();
+
+            // call the plugins to manipulate the aggregated data
+            batteryAggregationChain.run(aggregatedPack);
+
+            // create send frames based on the aggregated data
+            // serializing the pack is too expensive for the response path unless debugging
+            if (LOG.isDebugEnabled()) {
                 LOG.debug("Collecting frames for aggregated battery data: {}", aggregatedPack.toJson());
-                final List<ByteBuffer> sendFrames = createSendFrames(requestFrame, aggregatedPack);
-
-                if (sendFrames != null && !sendFrames.isEmpty()) {
-                    for (final ByteBuffer frame : sendFrames) {
-                        // keep a reference on the frame being processed for the error log
-                        currentFrame = frame;
-
-                        // if a plugin is set
-                        if (getPlugins() != null) {
-                            // call the plugin to manipulate the frame
-                            getPlugins().stream().forEach(p -> {
-                                LOG.debug("Calling inverter plugin (onSend): {}", p.getName());
-                                p.onSend(frame);
-                            });
-                        }
-
-                        LOG.debug("Inverter " + config.getDescriptor().getName() + " send: {}", Port.printBuffer(frame));
-                        sendFrame(port, frame);
+            }
+
+            final List<ByteBuffer> sendFrames = createSendFrames(requestFrame, aggregatedPack);
+
+            if (sendFrames != null && !sendFrames.isEmpty()) {
+                for (final ByteBuffer frame : sendFrames) {
+                    // keep a reference on the frame being processed for the error log
+                    currentFrame = frame;
+
+                    // call the plugins to manipulate the frame
+                    sendChain.run(frame);
+
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Inverter {} send: {}", config.getDescriptor().getName(), Port.printBuffer(frame));
                     }
+
+                    sendFrame(port, frame);
+                    sent++;
                 }
-            } catch (final Throwable e) {
-                LOG.error("Failed to send frame to inverter " + config.getDescriptor().getName() + " :" + Port.printBuffer(currentFrame), e);
-            }
 
-            try {
-                callback.run();
-            } catch (final Exception e) {
-                LOG.error("Inverter process callback threw an exception!", e);
+                if (Metrics.setGaugeIfAbsent("startup.timeToFirstInverterFrameMs", Metrics.getUptimeMillis())) {
+                    LOG.info("First frame sent to inverter {} after {}ms", getName(), Metrics.getGauge("startup.timeToFirstInverterFrameMs"));
+                }
             }
-        } else {
-            LOG.debug("No battery data yet received to send to inverter " + config.getDescriptor().getName() + "!");
+
+            success = true;
+        } catch (final Throwable e) {
+            LOG.error("Failed to send frame to inverter " + config.getDescriptor().getName() + " :" + Port.printBuffer(currentFrame), e);
+        } finally {
+            tracer.inverterSend(span, getName(), sent, System.nanoTime() - startNanos, success);
         }
     }
 
@@ -257,170 +398,11 @@ public abstract class Inverter {
     /**
      * Aggregates all {@link BatteryPack}s listed in the {@link EnergyStorage} into one
      * {@link BatteryPack} which data will be sent to the {@link Inverter}.
+     *
+     * @return the aggregated {@link BatteryPack}
      */
     protected BatteryPack aggregatedBatteryInfo() {
-        int validPacks = 0;
-        final BatteryPack result = new BatteryPack();
-        result.packSOC = 0;
-        result.maxPackChargeCurrent = Integer.MAX_VALUE;
-        result.maxPackDischargeCurrent = Integer.MIN_VALUE;
-        result.maxPackVoltageLimit = Integer.MAX_VALUE;
-        result.minPackVoltageLimit = Integer.MIN_VALUE;
-        result.maxCellmV = Integer.MIN_VALUE;
-        result.minCellmV = Integer.MAX_VALUE;
-        result.tempMax = Integer.MIN_VALUE;
-        result.tempMin = Integer.MAX_VALUE;
-        result.maxModulemV = Integer.MIN_VALUE;
-        result.minModulemV = Integer.MAX_VALUE;
-        result.maxModuleTemp = Integer.MIN_VALUE;
-        result.minModuleTemp = Integer.MAX_VALUE;
-
-        // sum all values
-        for (final BatteryPack pack : energyStorage.getBatteryPacks()) {
-            if (!validateBatteryPack(pack)) {
-                continue;
-            }
-
-            validPacks++;
-
-            result.ratedCapacitymAh += pack.ratedCapacitymAh;
-
-            result.ratedCellmV += pack.ratedCellmV;
-            result.maxPackVoltageLimit = Math.min(result.maxPackVoltageLimit, pack.maxPackVoltageLimit);
-            result.minPackVoltageLimit = Math.max(result.minPackVoltageLimit, pack.minPackVoltageLimit);
-            result.maxPackChargeCurrent = Math.min(result.maxPackChargeCurrent, pack.maxPackChargeCurrent);
-            result.maxPackDischargeCurrent = Math.max(result.maxPackDischargeCurrent, pack.maxPackDischargeCurrent);
-            result.packVoltage += pack.packVoltage;
-            result.packCurrent += pack.packCurrent;
-            result.packSOC += pack.packSOC;
-            result.packSOH += pack.packSOH;
-            result.maxCellmV = Math.max(result.maxCellmV, pack.maxCellmV);
-            result.maxCellVNum = pack.maxCellmV == result.maxCellmV ? pack.maxCellVNum : result.maxCellVNum;
-            result.minCellmV = Math.min(result.minCellmV, pack.minCellmV);
-            result.minCellVNum = pack.minCellmV == result.minCellmV ? pack.minCellVNum : result.minCellVNum;
-            result.tempMax = Math.max(result.tempMax, pack.tempMax);
-            result.tempMin = Math.min(result.tempMin, pack.tempMin);
-
-            // result.chargeDischargeStatus = pack.chargeDischargeStatus;
-            result.chargeMOSState |= pack.chargeMOSState;
-            result.dischargeMOSState |= pack.dischargeMOSState;
-            result.forceCharge |= pack.forceCharge;
-            result.remainingCapacitymAh += pack.remainingCapacitymAh;
-            result.numberOfCells += pack.numberOfCells;
-            result.chargerState |= pack.chargerState;
-            result.loadState |= pack.loadState;
-            result.bmsCycles = Math.max(result.bmsCycles, pack.bmsCycles);
-            // cellVmV
-            // cellTemperature
-            // cellBalanceState
-            result.cellBalanceActive |= pack.cellBalanceActive;
-
-            aggregateAlarms(result, pack.getAlarms(AlarmLevel.WARNING, AlarmLevel.ALARM));
-
-            result.tempMaxCellNum = result.tempMax == pack.tempMax ? pack.tempMaxCellNum : result.tempMaxCellNum;
-            result.tempMinCellNum = result.tempMin == pack.tempMin ? pack.tempMinCellNum : result.tempMinCellNum;
-            result.maxModulemV = Math.max(result.maxModulemV, pack.maxModulemV);
-            result.minModulemV = Math.min(result.minModulemV, pack.minModulemV);
-            result.maxModulemVNum = pack.maxModulemV == result.maxModulemV ? pack.maxModulemVNum : result.maxModulemVNum;
-            result.minModulemVNum = pack.minModulemV == result.minModulemV ? pack.minModulemVNum : result.minModulemVNum;
-            result.maxModuleTemp = Math.max(result.maxModuleTemp, pack.maxModuleTemp);
-            result.minModuleTemp = Math.min(result.minModuleTemp, pack.minModuleTemp);
-            result.maxModuleTempNum = pack.maxModuleTemp == result.maxModuleTemp ? pack.maxModuleTempNum : result.maxModuleTempNum;
-            result.minModuleTempNum = pack.minModuleTemp == result.minModuleTemp ? pack.minModuleTempNum : result.minModuleTempNum;
-            result.modulesInSeries += pack.modulesInSeries;
-            result.moduleNumberOfCells += pack.moduleNumberOfCells;
-            result.moduleVoltage += pack.moduleVoltage;
-            result.moduleRatedCapacityAh += pack.moduleRatedCapacityAh;
-        }
-
-        // calculate averages
-        final int count = energyStorage.getBatteryPacks().size();
-
-        if (count > 0) {
-            result.ratedCapacitymAh = result.ratedCapacitymAh / count;
-            result.ratedCellmV = result.ratedCellmV / count;
-            result.maxPackVoltageLimit = result.maxPackVoltageLimit / count;
-            result.minPackVoltageLimit = result.minPackVoltageLimit / count;
-            result.packVoltage = result.packVoltage / count;
-            result.packSOC = result.packSOC / count;
-            result.packSOH = result.packSOH / count;
-            result.tempAverage = result.tempAverage / count;
-            result.bmsCycles = result.bmsCycles / count;
-            result.moduleVoltage = result.moduleVoltage / count;
-            result.moduleRatedCapacityAh = result.moduleRatedCapacityAh / count;
-
-            // other calculations
-            result.cellDiffmV = result.maxCellmV - result.minCellmV;
-            result.type = energyStorage.getBatteryPack(0).type;
-            result.manufacturerCode = energyStorage.getBatteryPack(0).manufacturerCode;
-            result.hardwareVersion = energyStorage.getBatteryPack(0).hardwareVersion;
-            result.softwareVersion = energyStorage.getBatteryPack(0).softwareVersion;
-        }
-
-        // check if values were not set and set them to some default
-        if (result.maxPackChargeCurrent == Integer.MAX_VALUE) {
-            result.maxPackChargeCurrent = 0;
-        }
-
-        if (result.maxPackDischargeCurrent == Integer.MIN_VALUE) {
-            result.maxPackDischargeCurrent = 0;
-        }
-        if (result.maxPackVoltageLimit == Integer.MAX_VALUE) {
-            result.maxPackVoltageLimit = 0;
-        }
-        if (result.minPackVoltageLimit == Integer.MIN_VALUE) {
-            result.minPackVoltageLimit = 0;
-        }
-        if (result.maxCellmV == Integer.MIN_VALUE) {
-            result.maxCellmV = 3000;
-        }
-        if (result.minCellmV == Integer.MAX_VALUE) {
-            result.minCellmV = 3000;
-        }
-        if (result.tempMax == Integer.MIN_VALUE) {
-            result.tempMax = 250;
-        }
-        if (result.tempMin == Integer.MAX_VALUE) {
-            result.tempMin = 250;
-        }
-        if (result.maxModulemV == Integer.MIN_VALUE) {
-            result.maxModulemV = 3000;
-        }
-        if (result.minModulemV == Integer.MAX_VALUE) {
-            result.minModulemV = 3000;
-        }
-        if (result.maxModuleTemp == Integer.MIN_VALUE) {
-            result.maxModuleTemp = 250;
-        }
-        if (result.minModuleTemp == Integer.MAX_VALUE) {
-            result.minModuleTemp = 250;
-        }
-
-        return result;
-    }
-
-
-    private boolean validateBatteryPack(final BatteryPack pack) {
-        if (pack != null && pack.numberOfCells > 0 && pack.ratedCapacitymAh > 0 && pack.maxPackChargeCurrent != 0 && pack.maxPackDischargeCurrent != 0 && pack.maxPackVoltageLimit != 0) {
-            return true;
-        }
-        return false;
-    }
-
-
-    private void aggregateAlarms(final BatteryPack result, final Map<Alarm, AlarmLevel> alarms) {
-        try {
-
-            for (final Map.Entry<Alarm, AlarmLevel> entry : alarms.entrySet()) {
-                final AlarmLevel level = result.getAlarmLevel(entry.getKey());
-
-                if (level == null || level == AlarmLevel.WARNING && entry.getValue() == AlarmLevel.ALARM) {
-                    result.setAlarm(entry.getKey(), entry.getValue());
-                }
-            }
-        } catch (final Exception e) {
-            LOG.error("Error aggregating alarms!", e);
-        }
+        return getEnergyStorage().aggregate();
     }
 
     // public static void main(final String[] args) {
@@ -14,12 +14,29 @@ package com.airepublic.bmstoinverter.core;
  * Configuration read from the confg.properties for the {@link Inverter}.
  */
 public class InverterConfig {
+    private final int index;
     private final String portLocator;
     private final int baudRate;
     private final int sendInterval;
     private final InverterDescriptor descriptor;
+    private long maxResponseLatency = 200;
 
     public InverterConfig(final String portLocator, final int baudRate, final int sendInterval, final InverterDescriptor descriptor) {
+        this(1, portLocator, baudRate, sendInterval, descriptor);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param index the index of the inverter binding in the <code>config.properties</code>
+     * @param portLocator the port locator
+     * @param baudRate the baud rate
+     * @param sendInterval the sending interval in seconds
+     * @param descriptor the {@link InverterDescriptor} of the {@link Inverter} to use
+     */
+    public InverterConfig(final int index, final String portLocator, final int baudRate, final int sendInterval, final InverterDescriptor descriptor) {
+        this.index = index;
         this.portLocator = portLocator;
         this.baudRate = baudRate;
         this.sendInterval = sendInterval;
@@ -27,6 +44,16 @@ public class InverterConfig {
     }
 
 
+    /**
+     * Gets the index of the inverter binding in the <code>config.properties</code>.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+
     /**
      * Gets the port locator like /dev/ttyS0, can0, com3, etc.
      *
@@ -65,4 +92,26 @@ public class InverterConfig {
     public InverterDescriptor getDescriptor() {
         return descriptor;
     }
+
+
+    /**
+     * Gets the maximum time to answer a request of a request driven inverter protocol in
+     * milliseconds. Slower responses are logged and counted.
+     *
+     * @return the maximum response latency in milliseconds
+     */
+    public long getMaxResponseLatency() {
+        return maxResponseLatency;
+    }
+
+
+    /**
+     * Sets the maximum time to answer a request of a request driven inverter protocol in
+     * milliseconds.
+     *
+     * @param maxResponseLatency the maximum response latency in milliseconds
+     */
+    public void setMaxResponseLatency(final long maxResponseLatency) {
+        this.maxResponseLatency = maxResponseLatency;
+    }
 }
@@ -12,9 +12,12 @@ package com.airepublic.bmstoinverter.core;
 
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,12 +26,15 @@ import com.airepublic.bmstoinverter.core.util.SystemProperties;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
-import javax.enterprise.inject.spi.CDI;
 
+/**
+ * Produces the {@link Inverter} bindings configured with <code>inverter.N.*</code> properties or
+ * the single binding configured with <code>inverter.*</code> properties.
+ */
 @ApplicationScoped
 public class InverterProducer extends PluginProducer {
     private final static Logger LOG = LoggerFactory.getLogger(InverterProducer.class);
-    private static Inverter inverter = null;
+    private static List<Inverter> inverters = null;
     private final Map<String, InverterDescriptor> descriptors = new HashMap<>();
 
     /**
@@ -50,41 +56,157 @@ public class InverterProducer extends PluginProducer {
     }
 
 
+    /**
+     * Gets the prefix of the configuration properties of the inverter binding with the specified
+     * index, i.e. <code>inverter.N.</code> or <code>inverter.</code> for a single binding
+     * configured without index.
+     *
+     * @param index the index of the inverter binding starting with 1
+     * @return the property prefix
+     */
+    public static String getPropertyPrefix(final int index) {
+        if (index == 1 && System.getProperty("inverter.1.type") == null && System.getProperty("inverter.type") != null) {
+            return "inverter.";
+        }
+
+        return "inverter." + index + ".";
+    }
+
+
+    private static boolean isConfigured(final int index) {
+        return System.getProperty(getPropertyPrefix(index) + "type") != null;
+    }
+
+
     @Produces
     @InverterQualifier
     public synchronized Inverter createInverter() {
-        if (inverter == null) {
-            String type = System.getProperty("inverter.type");
+        return createInverter(CDIBeanFactory::create);
+    }
 
+
+    @Produces
+    public synchronized List<Inverter> produceInverterList() {
+        return createInverters(CDIBeanFactory::create);
+    }
+
+
+    /**
+     * Creates the first configured {@link Inverter} binding using the specified factory to
+     * instantiate the {@link Inverter} implementation class.
+     *
+     * @param factory the factory to create the {@link Inverter} instance
+     * @return the first configured {@link Inverter}
+     */
+    public synchronized Inverter createInverter(final Function<Class<? extends Inverter>, Inverter> factory) {
+        final List<Inverter> list = createInverters(factory);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+
+    /**
+     * Creates all configured {@link Inverter} bindings using the specified factory to instantiate
+     * the {@link Inverter} implementation classes.
+     *
+     * @param factory the factory to create the {@link Inverter} instances
+     * @return the configured {@link Inverter}s
+     */
+    public synchronized List<Inverter> createInverters(final Function<Class<? extends Inverter>, Inverter> factory) {
+        if (inverters == null) {
             // if no inverter is found, probably the config.properties have not been read
-            if (type == null) {
+            if (!isConfigured(1)) {
                 SystemProperties.updateSystemProperties(Paths.get(System.getProperty("configFile", "config.properties")));
-                type = System.getProperty("inverter.type");
 
-                if (type == null) {
-                    LOG.error("No config.properties found or no BMSes are configured!");
+                if (!isConfigured(1)) {
+                    LOG.error("No config.properties found or no inverter is configured!");
                     System.exit(0);
                 }
             }
 
-            final InverterDescriptor descriptor = descriptors.get(System.getProperty("inverter.type"));
-            inverter = CDI.current().select(descriptor.getInverterClass()).get();
-            final String portLocator = System.getProperty("inverter.portLocator");
-            final int baudRate = Integer.valueOf(System.getProperty("inverter.baudRate"));
-            final int sendInterval = Integer.valueOf(System.getProperty("inverter.sendInterval"));
-            final InverterConfig config = new InverterConfig(portLocator, baudRate, sendInterval, descriptor);
-            LOG.info("Created inverter binding: " + descriptor.getName());
-
-            // load configured plugins for the inverter
+            // the list is modified in place when bindings are re-created and read by the sender
+            // threads concurrently
+            inverters = new CopyOnWriteArrayList<>();
             final Set<InverterPlugin> plugins = loadPlugins(InverterPlugin.class);
-            inverter.setPlugins(plugins);
-            inverter.initialize(config);
+
+            for (int index = 1; isConfigured(index); index++) {
+                inverters.add(createInverter(index, plugins, factory));
+            }
+        }
+
+        return inverters;
+    }
+
+
+    private Inverter createInverter(final int index, final Set<InverterPlugin> plugins, final Function<Class<? extends Inverter>, Inverter> factory) {
+        final String prefix = getPropertyPrefix(index);
+        final InverterDescriptor descriptor = descriptors.get(System.getProperty(prefix + "type"));
+        final Inverter inverter = factory.apply(descriptor.getInverterClass());
+        final String portLocator = System.getProperty(prefix + "portLocator");
+        final int baudRate = Integer.valueOf(System.getProperty(prefix + "baudRate"));
+        final int sendInterval = Integer.valueOf(System.getProperty(prefix + "sendInterval"));
+        final InverterConfig config = new InverterConfig(index, portLocator, baudRate, sendInterval, descriptor);
+        config.setMaxResponseLatency(Long.parseLong(System.getProperty(prefix + "maxResponseLatency", "200")));
+        LOG.info("Created inverter binding #" + index + ": " + descriptor.getName() + " on port " + portLocator);
+
+        inverter.setPlugins(plugins);
+        inverter.initialize(config);
+
+        return inverter;
+    }
+
+
+    /**
+     * Re-creates the {@link Inverter} binding with the specified index from the current system
+     * properties, e.g. after the configuration has changed. If the binding is no longer configured
+     * it is removed.
+     *
+     * @param index the index of the inverter binding starting with 1
+     * @param factory the factory to create the {@link Inverter} instance
+     * @return the re-created {@link Inverter} or null if the binding has been removed
+     */
+    public synchronized Inverter recreateInverter(final int index, final Function<Class<? extends Inverter>, Inverter> factory) {
+        final List<Inverter> list = createInverters(factory);
+        final Inverter oldInverter = index <= list.size() ? list.get(index - 1) : null;
+
+        if (!isConfigured(index)) {
+            if (oldInverter != null) {
+                list.remove(index - 1);
+                LOG.info("Removed inverter binding #" + index + ": " + oldInverter.getName() + " on port " + oldInverter.getPortLocator());
+            }
+
+            return null;
+        }
+
+        final Inverter inverter = createInverter(index, loadPlugins(InverterPlugin.class), factory);
+
+        if (oldInverter != null) {
+            list.set(index - 1, inverter);
+        } else {
+            list.add(inverter);
         }
 
         return inverter;
     }
 
 
+    /**
+     * Reloads the configured {@link InverterPlugin}s from the current system properties and assigns
+     * them to all {@link Inverter}s.
+     */
+    public synchronized void reloadPlugins() {
+        if (inverters == null) {
+            return;
+        }
+
+        final Set<InverterPlugin> plugins = loadPlugins(InverterPlugin.class);
+
+        for (final Inverter inverter : inverters) {
+            inverter.setPlugins(plugins);
+            plugins.forEach(p -> p.onInitialize(inverter));
+        }
+    }
+
+
     public static void main(final String[] args) {
         System.setProperty("inverter.type", "SMA_SI_CAN");
         System.setProperty("inverter.portLocator", "can1");
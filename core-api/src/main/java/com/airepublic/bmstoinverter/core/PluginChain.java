@@ -0,0 +1,125 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.util.Metrics;
+
+/**
+ * A compiled chain of the plugins implementing one hook, e.g. {@link InverterPlugin#onSend}.
+ * Plugins which do not override the hook are left out, so a hook without any implementing plugin
+ * costs a single array length check. The execution time of each plugin is recorded in the timer
+ * <code>plugin.&lt;name&gt;.&lt;hook&gt;</code> of the {@link Metrics}.
+ *
+ * @param <T> the type of the argument of the hook
+ */
+public class PluginChain<T> {
+    private final static Logger LOG = LoggerFactory.getLogger(PluginChain.class);
+    private final static PluginChain<?> EMPTY = new PluginChain<>(new ArrayList<>(), new ArrayList<>());
+    private final Consumer<T>[] hooks;
+    private final Metrics.Timer[] timers;
+
+    @SuppressWarnings("unchecked")
+    private PluginChain(final List<Consumer<T>> hooks, final List<Metrics.Timer> timers) {
+        this.hooks = hooks.toArray(new Consumer[hooks.size()]);
+        this.timers = timers.toArray(new Metrics.Timer[timers.size()]);
+    }
+
+
+    /**
+     * Gets the chain without any plugins.
+     *
+     * @param <T> the type of the argument of the hook
+     * @return the empty {@link PluginChain}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PluginChain<T> empty() {
+        return (PluginChain<T>) EMPTY;
+    }
+
+
+    /**
+     * Compiles the chain of the specified plugins which override the specified hook.
+     *
+     * @param <P> the plugin type
+     * @param <T> the type of the argument of the hook
+     * @param plugins the plugins in the order they should be called or null
+     * @param pluginClass the plugin super class declaring the hook
+     * @param hook the name of the hook method
+     * @param argumentType the parameter type of the hook method
+     * @param invoker the function calling the hook of a plugin
+     * @return the {@link PluginChain}
+     */
+    public static <P extends AbstractPlugin<?>, T> PluginChain<T> compile(final Collection<P> plugins, final Class<?> pluginClass, final String hook, final Class<?> argumentType, final BiConsumer<P, T> invoker) {
+        if (plugins == null || plugins.isEmpty()) {
+            return empty();
+        }
+
+        final List<Consumer<T>> hooks = new ArrayList<>();
+        final List<Metrics.Timer> timers = new ArrayList<>();
+
+        for (final P plugin : plugins) {
+            if (overrides(plugin, pluginClass, hook, argumentType)) {
+                hooks.add(argument -> invoker.accept(plugin, argument));
+                timers.add(Metrics.getTimer("plugin." + plugin.getName() + "." + hook));
+                LOG.debug("Compiled plugin '{}' into the {} chain", plugin.getName(), hook);
+            }
+        }
+
+        return hooks.isEmpty() ? empty() : new PluginChain<>(hooks, timers);
+    }
+
+
+    private static boolean overrides(final AbstractPlugin<?> plugin, final Class<?> pluginClass, final String hook, final Class<?> argumentType) {
+        try {
+            return plugin.getClass().getMethod(hook, argumentType).getDeclaringClass() != pluginClass;
+        } catch (final NoSuchMethodException e) {
+            // be on the safe side and call the plugin
+            return true;
+        }
+    }
+
+
+    /**
+     * Returns whether no plugin implements the hook.
+     *
+     * @return true if the chain is empty
+     */
+    public boolean isEmpty() {
+        return hooks.length == 0;
+    }
+
+
+    /**
+     * Calls the hook of all plugins of the chain in order.
+     *
+     * @param argument the argument of the hook
+     */
+    public void run(final T argument) {
+        for (int i = 0; i < hooks.length; i++) {
+            final long start = System.nanoTime();
+
+            try {
+                hooks[i].accept(argument);
+            } finally {
+                timers[i].record(System.nanoTime() - start);
+            }
+        }
+    }
+}
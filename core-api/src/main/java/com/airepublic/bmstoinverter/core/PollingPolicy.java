@@ -0,0 +1,158 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+
+/**
+ * Defines the bounds of the adaptive polling interval of a {@link BMS} and the thresholds of the
+ * {@link BatteryPack} activity which require fast polling. While a pack is active the {@link BMS}
+ * is polled with the minimum interval, otherwise the interval is doubled with each poll until the
+ * maximum interval is reached. An interval of 0 uses the global <code>bms.pollInterval</code>, so
+ * without any configured interval the {@link BMS} is polled at a fixed rate.
+ */
+public class PollingPolicy {
+    private final long minInterval;
+    private final long maxInterval;
+    private final int activeCurrent;
+    private final int currentChange;
+    private final int cellDeltaGrowth;
+
+    /**
+     * Constructor.
+     *
+     * @param minInterval the polling interval while a pack is active (in ms)
+     * @param maxInterval the polling interval while all packs are idle and stable (in ms)
+     * @param activeCurrent the absolute pack current from which a pack is active (0.1A)
+     * @param currentChange the change of the pack current between two polls from which a pack is
+     *        active (0.1A)
+     * @param cellDeltaGrowth the growth of the cell voltage difference between two polls from which
+     *        a pack is active (mV)
+     */
+    public PollingPolicy(final long minInterval, final long maxInterval, final int activeCurrent, final int currentChange, final int cellDeltaGrowth) {
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.activeCurrent = activeCurrent;
+        this.currentChange = currentChange;
+        this.cellDeltaGrowth = cellDeltaGrowth;
+    }
+
+
+    /**
+     * Creates the {@link PollingPolicy} for the BMS binding with the specified index from the
+     * system properties <code>bms.x.minPollInterval</code> and <code>bms.x.maxPollInterval</code>
+     * (in ms, default <code>bms.pollInterval</code>), <code>bms.x.activeCurrent</code> (0.1A,
+     * default 100), <code>bms.x.activeCurrentChange</code> (0.1A, default 50) and
+     * <code>bms.x.activeCellDeltaGrowth</code> (mV, default 10).
+     *
+     * @param index the index of the BMS configuration
+     * @return the {@link PollingPolicy}
+     */
+    public static PollingPolicy fromSystemProperties(final int index) {
+        final long minInterval = Long.parseLong(System.getProperty("bms." + index + ".minPollInterval", "0"));
+        final long maxInterval = Long.parseLong(System.getProperty("bms." + index + ".maxPollInterval", "0"));
+        final int activeCurrent = Integer.parseInt(System.getProperty("bms." + index + ".activeCurrent", "100"));
+        final int currentChange = Integer.parseInt(System.getProperty("bms." + index + ".activeCurrentChange", "50"));
+        final int cellDeltaGrowth = Integer.parseInt(System.getProperty("bms." + index + ".activeCellDeltaGrowth", "10"));
+
+        return new PollingPolicy(minInterval, maxInterval, activeCurrent, currentChange, cellDeltaGrowth);
+    }
+
+
+    /**
+     * Gets the polling interval while a pack is active.
+     *
+     * @return the interval in ms or 0 to use the global polling interval
+     */
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+
+    /**
+     * Gets the polling interval while all packs are idle and stable.
+     *
+     * @return the interval in ms or 0 to use the global polling interval
+     */
+    public long getMaxInterval() {
+        return maxInterval;
+    }
+
+
+    /**
+     * Gets the absolute pack current from which a pack is active.
+     *
+     * @return the current (0.1A)
+     */
+    public int getActiveCurrent() {
+        return activeCurrent;
+    }
+
+
+    /**
+     * Gets the change of the pack current between two polls from which a pack is active.
+     *
+     * @return the current change (0.1A)
+     */
+    public int getCurrentChange() {
+        return currentChange;
+    }
+
+
+    /**
+     * Gets the growth of the cell voltage difference between two polls from which a pack is
+     * active.
+     *
+     * @return the cell voltage difference growth (mV)
+     */
+    public int getCellDeltaGrowth() {
+        return cellDeltaGrowth;
+    }
+
+
+    /**
+     * Determines whether a {@link BatteryPack} is active and requires fast polling.
+     *
+     * @param current the current pack current (0.1A)
+     * @param previousCurrent the pack current of the previous poll (0.1A)
+     * @param cellDelta the current difference between the maximum and minimum cell voltage (mV)
+     * @param previousCellDelta the cell voltage difference of the previous poll (mV)
+     * @param alarms true if the pack has warnings or alarms
+     * @return true if the pack is active
+     */
+    public boolean isActive(final int current, final int previousCurrent, final int cellDelta, final int previousCellDelta, final boolean alarms) {
+        return alarms
+                || Math.abs(current) >= activeCurrent
+                || Math.abs(current - previousCurrent) >= currentChange
+                || cellDelta - previousCellDelta >= cellDeltaGrowth;
+    }
+
+
+    /**
+     * Calculates the next polling interval within the configured bounds.
+     *
+     * @param active true if any pack is active
+     * @param currentInterval the current polling interval (in ms)
+     * @param defaultInterval the global polling interval used for unconfigured bounds (in ms)
+     * @return the next polling interval (in ms)
+     */
+    public long nextInterval(final boolean active, final long currentInterval, final long defaultInterval) {
+        final long min = minInterval > 0 ? minInterval : defaultInterval;
+        final long max = Math.max(min, maxInterval > 0 ? maxInterval : defaultInterval);
+
+        if (active) {
+            return min;
+        }
+
+        // back off gradually while the packs are idle
+        return Math.min(max, Math.max(min, currentInterval * 2));
+    }
+}
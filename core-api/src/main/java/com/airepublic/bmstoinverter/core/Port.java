@@ -16,13 +16,19 @@ import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+
 /**
  * The definition of a communication port, e.g. for RS485, CAN, ModBus, etc.
  */
 public abstract class Port implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(Port.class);
+    private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final Object flightRecorderLock = new Object();
     private String portname;
     private int baudrate;
+    private FlightRecorder flightRecorder;
+    private volatile long frameReceivedNanos = 0;
 
     /**
      * Constructor.
@@ -130,6 +136,29 @@ public abstract class Port implements AutoCloseable {
     public abstract ByteBuffer receiveFrame() throws IOException;
 
 
+    /**
+     * Gets the time ({@link System#nanoTime()}) the last frame returned by {@link #receiveFrame()}
+     * was received by this port, i.e. before it waited in a receive queue or buffer, so response
+     * latencies can be measured from the arrival of a request.
+     *
+     * @return the receive time or 0 if not supported by the port
+     */
+    public long getFrameReceivedNanos() {
+        return frameReceivedNanos;
+    }
+
+
+    /**
+     * Sets the time ({@link System#nanoTime()}) the frame returned by {@link #receiveFrame()} was
+     * received by this port.
+     *
+     * @param frameReceivedNanos the receive time
+     */
+    protected void setFrameReceivedNanos(final long frameReceivedNanos) {
+        this.frameReceivedNanos = frameReceivedNanos;
+    }
+
+
     /**
      * Sends a frame to the ports stream.
      * 
@@ -149,6 +178,23 @@ public abstract class Port implements AutoCloseable {
     public abstract void close();
 
 
+    /**
+     * Gets the {@link FlightRecorder} keeping the last frames sent and received on this port. Ports
+     * wrapping another port should return the recorder of the wrapped port.
+     *
+     * @return the {@link FlightRecorder}
+     */
+    public FlightRecorder getFlightRecorder() {
+        synchronized (flightRecorderLock) {
+            if (flightRecorder == null) {
+                flightRecorder = FlightRecorder.fromSystemProperties();
+            }
+
+            return flightRecorder;
+        }
+    }
+
+
     /**
      * Utility method to print the contents of the buffer as HEX and INT string.
      *
@@ -156,27 +202,22 @@ public abstract class Port implements AutoCloseable {
      * @return the buffer as HEX and INT string
      */
     public static String printBuffer(final ByteBuffer buffer) {
-        final StringBuffer hex = new StringBuffer("Buffer (HEX): [");
-        // final StringBuffer dec = new StringBuffer("Buffer:(INT) [");
-
         if (buffer == null) {
-            hex.append("null");
-        } else {
-            for (int i = 0; i < buffer.capacity(); i++) {
-                hex.append("0x" + String.format("%02X", buffer.get(i)));
-                // dec.append(Byte.toUnsignedInt(buffer.get(i)));
-
-                if (i < buffer.capacity() - 1) {
-                    hex.append(", ");
-                    // dec.append(", ");
-                }
-            }
+            return "Buffer (HEX): [null]\n";
         }
 
-        hex.append("]\n");
-        // dec.append("]\n");
+        final StringBuilder hex = new StringBuilder(16 + buffer.capacity() * 6);
+        hex.append("Buffer (HEX): [");
+
+        for (int i = 0; i < buffer.capacity(); i++) {
+            appendHex(hex, buffer.get(i));
 
-        return hex.toString();// + dec.toString();
+            if (i < buffer.capacity() - 1) {
+                hex.append(", ");
+            }
+        }
+
+        return hex.append("]\n").toString();
     }
 
 
@@ -187,27 +228,27 @@ public abstract class Port implements AutoCloseable {
      * @return the buffer as HEX and INT string
      */
     public static String printBytes(final byte[] bytes) {
-        final StringBuffer hex = new StringBuffer("Buffer (HEX): [");
-        // final StringBuffer dec = new StringBuffer("RX Buffer:(INT) [");
-
         if (bytes == null) {
-            hex.append("null");
-        } else {
-            for (int i = 0; i < bytes.length; i++) {
-                hex.append("0x" + String.format("%02X", bytes[i]));
-                // dec.append(Byte.toUnsignedInt(bytes[i]));
-
-                if (i < bytes.length - 1) {
-                    hex.append(", ");
-                    // dec.append(", ");
-                }
+            return "Buffer (HEX): [null]\n";
+        }
+
+        final StringBuilder hex = new StringBuilder(16 + bytes.length * 6);
+        hex.append("Buffer (HEX): [");
+
+        for (int i = 0; i < bytes.length; i++) {
+            appendHex(hex, bytes[i]);
+
+            if (i < bytes.length - 1) {
+                hex.append(", ");
             }
         }
 
-        hex.append("]\n");
-        // dec.append("]\n");
+        return hex.append("]\n").toString();
+    }
+
 
-        return hex.toString();// + dec.toString();
+    private static void appendHex(final StringBuilder hex, final byte value) {
+        hex.append('0').append('x').append(HEX[(value & 0xF0) >>> 4]).append(HEX[value & 0x0F]);
     }
 
 
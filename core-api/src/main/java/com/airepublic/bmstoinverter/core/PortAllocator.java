@@ -10,29 +10,93 @@
  */
 package com.airepublic.bmstoinverter.core;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.capture.CapturePort;
+import com.airepublic.bmstoinverter.core.capture.FrameCapture;
+import com.airepublic.bmstoinverter.core.capture.ReplayPort;
+
 /**
  * Manages the {@link Port}s used by the {@link BMS}es to ensure that each BMSes reading round is
  * only for their use.
  */
 public class PortAllocator {
+    private final static Logger LOG = LoggerFactory.getLogger(PortAllocator.class);
     private final static Map<String, Port> ports = new ConcurrentHashMap<>();
     private final static Map<String, Boolean> usage = new ConcurrentHashMap<>();
 
     /**
-     * Adds the {@link Port} to be managed.
+     * Adds the {@link Port} to be managed. If a replay is configured for the port locator the
+     * {@link Port} is replaced by a {@link ReplayPort}, otherwise if capturing is enabled it is
+     * wrapped in a {@link CapturePort}.
      * 
      * @param portLocator the port locator
      * @param port the {@link Port}
      */
     public static void addPort(final String portLocator, final Port port) {
-        ports.put(portLocator, port);
+        Port managed = port;
+
+        if (System.getProperty("replay." + portLocator) != null) {
+            try {
+                managed = ReplayPort.fromSystemProperties(portLocator);
+            } catch (final IOException e) {
+                LOG.error("Could not load the replay for port '{}' - using the real port!", portLocator, e);
+            }
+        } else if (FrameCapture.isEnabled()) {
+            managed = CapturePort.wrap(port);
+        }
+
+        ports.put(portLocator, managed);
         usage.put(portLocator, false);
     }
 
 
+    /**
+     * Closes and removes the {@link Port} for the specified port locator, e.g. when its
+     * configuration has changed.
+     *
+     * @param portLocator the port locator
+     */
+    public static void removePort(final String portLocator) {
+        final Port port = ports.remove(portLocator);
+
+        if (port != null) {
+            synchronized (port) {
+                usage.remove(portLocator);
+                port.close();
+                port.notifyAll();
+            }
+        }
+    }
+
+
+    /**
+     * Gets the {@link Port} for the specified port locator without allocating it.
+     *
+     * @param portLocator the port locator
+     * @return the {@link Port} or null if not managed
+     */
+    public static Port getPort(final String portLocator) {
+        return ports.get(portLocator);
+    }
+
+
+    /**
+     * Gets all managed {@link Port}s by their port locator.
+     *
+     * @return an unmodifiable view of the managed {@link Port}s
+     */
+    public static Map<String, Port> getPorts() {
+        return Collections.unmodifiableMap(ports);
+    }
+
+
     /**
      * Returns true if a {@link Port} for the specified port locator is being managed.
      *
@@ -74,6 +138,11 @@ public class PortAllocator {
     public static void free(final String portLocator) {
         final Port port = ports.get(portLocator);
 
+        // the port might have been removed in the meantime
+        if (port == null) {
+            return;
+        }
+
         synchronized (port) {
             usage.put(portLocator, false);
             port.notify();
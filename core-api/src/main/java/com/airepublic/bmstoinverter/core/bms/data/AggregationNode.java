@@ -0,0 +1,182 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node of the aggregation tree of the {@link EnergyStorage}. A rack node aggregates its
+ * {@link BatteryPack}s and the system node merges the aggregations of its racks. An update of a
+ * {@link BatteryPack} marks the path to the system node dirty, so only dirty nodes are
+ * recomputed. Each recomputation increments the version of the node.
+ */
+class AggregationNode {
+    private final String name;
+    private final AggregationNode parent;
+    private final List<AggregationNode> children = new ArrayList<>();
+    private final List<BatteryPack> packs = new ArrayList<>();
+    private volatile boolean dirty = true;
+    private volatile boolean structureChanged = false;
+    private volatile long version = 0;
+    private PackAggregate aggregate;
+    private BatteryPack snapshot;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the node
+     * @param parent the parent node or null for the system node
+     */
+    AggregationNode(final String name, final AggregationNode parent) {
+        this.name = name;
+        this.parent = parent;
+
+        if (parent != null) {
+            parent.children.add(this);
+        }
+    }
+
+
+    /**
+     * Gets the name of the node.
+     *
+     * @return the name
+     */
+    String getName() {
+        return name;
+    }
+
+
+    /**
+     * Gets the version of the node which is incremented with each recomputation.
+     *
+     * @return the version
+     */
+    long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Gets the child nodes.
+     *
+     * @return the child nodes
+     */
+    List<AggregationNode> getChildren() {
+        return children;
+    }
+
+
+    /**
+     * Gets the {@link BatteryPack}s of a rack node.
+     *
+     * @return the {@link BatteryPack}s
+     */
+    List<BatteryPack> getPacks() {
+        return packs;
+    }
+
+
+    /**
+     * Adds the {@link BatteryPack} to this rack node so its updates mark this node dirty.
+     *
+     * @param pack the {@link BatteryPack}
+     */
+    void addPack(final BatteryPack pack) {
+        packs.add(pack);
+        pack.setAggregationNode(this);
+    }
+
+
+    /**
+     * Marks this node and its parents dirty.
+     */
+    void markDirty() {
+        AggregationNode node = this;
+
+        while (node != null) {
+            node.dirty = true;
+            node = node.parent;
+        }
+    }
+
+
+    /**
+     * Marks that the assignment of {@link BatteryPack}s to racks has changed, so the tree must be
+     * rebuilt.
+     */
+    void markStructureChanged() {
+        AggregationNode node = this;
+
+        while (node.parent != null) {
+            node = node.parent;
+        }
+
+        node.structureChanged = true;
+    }
+
+
+    /**
+     * Returns whether the assignment of {@link BatteryPack}s to racks has changed since the tree
+     * was built.
+     *
+     * @return true if the tree must be rebuilt
+     */
+    boolean isStructureChanged() {
+        return structureChanged;
+    }
+
+
+    /**
+     * Gets the partial aggregation of this node recomputing it only if the node is dirty.
+     *
+     * @return the {@link PackAggregate}
+     */
+    synchronized PackAggregate getAggregate() {
+        if (dirty || aggregate == null) {
+            // reset first so updates during the recomputation mark the node dirty again
+            dirty = false;
+            final PackAggregate result = new PackAggregate();
+
+            for (final BatteryPack pack : packs) {
+                result.add(pack);
+            }
+
+            for (final AggregationNode child : children) {
+                result.merge(child.getAggregate());
+            }
+
+            aggregate = result;
+            snapshot = null;
+            version++;
+        }
+
+        return aggregate;
+    }
+
+
+    /**
+     * Gets the aggregated {@link BatteryPack} of this node. The snapshot is shared and must not be
+     * modified.
+     *
+     * @return the aggregated {@link BatteryPack}
+     */
+    synchronized BatteryPack getSnapshot() {
+        final PackAggregate current = getAggregate();
+
+        if (snapshot == null) {
+            snapshot = current.toBatteryPack();
+        }
+
+        return snapshot;
+    }
+}
@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.airepublic.bmstoinverter.core.AlarmLevel;
+import com.airepublic.bmstoinverter.core.FreshnessPolicy;
 import com.google.gson.Gson;
 
 /**
@@ -24,6 +25,15 @@ import com.google.gson.Gson;
  */
 public class BatteryPack {
     private transient final static Gson gson = new Gson();
+    private transient final long[] lastUpdate = new long[DataGroup.values().length];
+    private transient volatile Freshness freshness = Freshness.FRESH;
+    private transient volatile int missedCycles;
+    private transient volatile int limitPercent = 100;
+    private transient volatile long version;
+    private transient volatile long restoredUntil;
+    private transient volatile String rack;
+    private transient volatile int batteryId;
+    private transient volatile AggregationNode aggregationNode;
 
     public final Map<Alarm, AlarmLevel> alarms = new HashMap<>();
     /** Battery type: 0=lithium iron, 1=ternary lithium, 2=lithium titanate */
@@ -205,6 +215,330 @@ public class BatteryPack {
     }
 
 
+    /**
+     * Records that the values of the specified {@link DataGroup}s have just been updated.
+     *
+     * @param groups the updated {@link DataGroup}s
+     */
+    public void markUpdated(final DataGroup... groups) {
+        final long now = System.currentTimeMillis();
+
+        for (final DataGroup group : groups) {
+            lastUpdate[group.ordinal()] = now;
+        }
+
+        // the BMS delivers current data again
+        restoredUntil = 0;
+        changed();
+    }
+
+
+    private void changed() {
+        version++;
+        final AggregationNode node = aggregationNode;
+
+        if (node != null) {
+            node.markDirty();
+        }
+    }
+
+
+    /**
+     * Gets the version of the values of this pack which is incremented with each update.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Gets the name of the rack this pack is aggregated in, e.g. the binding of the BMS managing
+     * the pack.
+     *
+     * @return the rack or null if not assigned
+     */
+    public String getRack() {
+        return rack;
+    }
+
+
+    /**
+     * Sets the name of the rack this pack is aggregated in.
+     *
+     * @param rack the rack
+     */
+    public void setRack(final String rack) {
+        if (rack != null && rack.equals(this.rack)) {
+            return;
+        }
+
+        this.rack = rack;
+        final AggregationNode node = aggregationNode;
+
+        if (node != null) {
+            node.markStructureChanged();
+        }
+    }
+
+
+    /**
+     * Gets the id of this pack at the BMS managing it.
+     *
+     * @return the battery id
+     */
+    public int getBatteryId() {
+        return batteryId;
+    }
+
+
+    /**
+     * Sets the id of this pack at the BMS managing it.
+     *
+     * @param batteryId the battery id
+     */
+    public void setBatteryId(final int batteryId) {
+        this.batteryId = batteryId;
+    }
+
+
+    /**
+     * Sets the rack node of the aggregation tree this pack marks dirty when updated.
+     *
+     * @param aggregationNode the rack node
+     */
+    void setAggregationNode(final AggregationNode aggregationNode) {
+        this.aggregationNode = aggregationNode;
+    }
+
+
+    /**
+     * Gets the time in milliseconds when the values of the specified {@link DataGroup} were last
+     * updated.
+     *
+     * @param group the {@link DataGroup}
+     * @return the time of the last update or 0 if never updated
+     */
+    public long getLastUpdate(final DataGroup group) {
+        return lastUpdate[group.ordinal()];
+    }
+
+
+    /**
+     * Gets the time in milliseconds when any of the values were last updated.
+     *
+     * @return the time of the last update or 0 if never updated
+     */
+    public long getLastUpdate() {
+        long last = 0;
+
+        for (final long time : lastUpdate) {
+            last = Math.max(last, time);
+        }
+
+        return last;
+    }
+
+
+    /**
+     * Updates the {@link Freshness} of this pack after a polling cycle of its BMS.
+     *
+     * @param updated true if the pack has been updated during the cycle
+     * @param policy the {@link FreshnessPolicy} of the BMS binding
+     * @return the new {@link Freshness}
+     */
+    public Freshness updateFreshness(final boolean updated, final FreshnessPolicy policy) {
+        final Freshness previous = freshness;
+        final int previousLimitPercent = limitPercent;
+        missedCycles = updated ? 0 : missedCycles + 1;
+
+        // restored values keep their conservative limits or stay stale after they expired until
+        // the pack is updated
+        if (restoredUntil != 0) {
+            return freshness;
+        }
+
+        freshness = policy.evaluate(missedCycles);
+        limitPercent = freshness == Freshness.DEGRADED ? policy.getDegradedLimitPercent() : 100;
+
+        // the freshness decides how the pack is aggregated
+        if (freshness != previous || limitPercent != previousLimitPercent) {
+            changed();
+        }
+
+        return freshness;
+    }
+
+
+    /**
+     * Marks the values of this pack as restored from a warm-start snapshot. Until the pack is
+     * updated by its BMS the values are aggregated as {@link Freshness#DEGRADED} with the specified
+     * percentage of the current limits and become {@link Freshness#STALE} when the validity expired.
+     *
+     * @param validUntil the time in milliseconds until the restored values may be used
+     * @param limitPercent the percentage of the current limits to use
+     */
+    public void markRestored(final long validUntil, final int limitPercent) {
+        restoredUntil = validUntil;
+        freshness = Freshness.DEGRADED;
+        this.limitPercent = limitPercent;
+        changed();
+    }
+
+
+    /**
+     * Returns true if the values of this pack have been restored from a warm-start snapshot and
+     * not yet been updated by its BMS, even if their validity already expired.
+     *
+     * @return true if restored otherwise false
+     */
+    public boolean isRestored() {
+        return restoredUntil != 0;
+    }
+
+
+    /**
+     * Marks the restored values of this pack as {@link Freshness#STALE} if their validity expired.
+     *
+     * @param now the current time in milliseconds
+     * @return true if the restored values expired
+     */
+    public boolean expireRestored(final long now) {
+        if (restoredUntil <= 0 || now < restoredUntil) {
+            return false;
+        }
+
+        restoredUntil = -1;
+        freshness = Freshness.STALE;
+        limitPercent = 100;
+        changed();
+        return true;
+    }
+
+
+    /**
+     * Gets the {@link Freshness} of the data of this pack.
+     *
+     * @return the {@link Freshness}
+     */
+    public Freshness getFreshness() {
+        return freshness;
+    }
+
+
+    /**
+     * Gets the number of consecutive BMS polling cycles this pack has not been updated.
+     *
+     * @return the number of missed cycles
+     */
+    public int getMissedCycles() {
+        return missedCycles;
+    }
+
+
+    /**
+     * Gets the percentage of the reported current limits which should be used according to the
+     * {@link Freshness} of the data.
+     *
+     * @return the percentage of the current limits
+     */
+    public int getLimitPercent() {
+        return limitPercent;
+    }
+
+
+    /**
+     * Creates a copy of the values of this pack, e.g. to modify a shared snapshot.
+     *
+     * @return the copy
+     */
+    public BatteryPack copy() {
+        final BatteryPack copy = new BatteryPack();
+        copy.alarms.putAll(alarms);
+        copy.type = type;
+        copy.ratedCapacitymAh = ratedCapacitymAh;
+        copy.ratedCellmV = ratedCellmV;
+        copy.maxPackVoltageLimit = maxPackVoltageLimit;
+        copy.minPackVoltageLimit = minPackVoltageLimit;
+        copy.maxPackChargeCurrent = maxPackChargeCurrent;
+        copy.maxPackDischargeCurrent = maxPackDischargeCurrent;
+        copy.packVoltage = packVoltage;
+        copy.packCurrent = packCurrent;
+        copy.packSOC = packSOC;
+        copy.packSOH = packSOH;
+        copy.maxCellVoltageLimit = maxCellVoltageLimit;
+        copy.minCellVoltageLimit = minCellVoltageLimit;
+        copy.maxCellmV = maxCellmV;
+        copy.maxCellVNum = maxCellVNum;
+        copy.minCellmV = minCellmV;
+        copy.minCellVNum = minCellVNum;
+        copy.cellDiffmV = cellDiffmV;
+        copy.tempMax = tempMax;
+        copy.tempMin = tempMin;
+        copy.tempAverage = tempAverage;
+        copy.chargeDischargeStatus = chargeDischargeStatus;
+        copy.chargeMOSState = chargeMOSState;
+        copy.dischargeMOSState = dischargeMOSState;
+        copy.forceCharge = forceCharge;
+        copy.forceDischarge = forceDischarge;
+        copy.bmsHeartBeat = bmsHeartBeat;
+        copy.remainingCapacitymAh = remainingCapacitymAh;
+        copy.numberOfCells = numberOfCells;
+        copy.numOfTempSensors = numOfTempSensors;
+        copy.chargerState = chargerState;
+        copy.loadState = loadState;
+        copy.bmsCycles = bmsCycles;
+        copy.cellBalanceActive = cellBalanceActive;
+        copy.manufacturerCode = manufacturerCode;
+        copy.hardwareVersion = hardwareVersion;
+        copy.softwareVersion = softwareVersion;
+        copy.tempMaxCellNum = tempMaxCellNum;
+        copy.tempMinCellNum = tempMinCellNum;
+        copy.maxModulemV = maxModulemV;
+        copy.minModulemV = minModulemV;
+        copy.maxModulemVNum = maxModulemVNum;
+        copy.minModulemVNum = minModulemVNum;
+        copy.maxModuleTemp = maxModuleTemp;
+        copy.minModuleTemp = minModuleTemp;
+        copy.maxModuleTempNum = maxModuleTempNum;
+        copy.minModuleTempNum = minModuleTempNum;
+        copy.modulesInSeries = modulesInSeries;
+        copy.moduleNumberOfCells = moduleNumberOfCells;
+        copy.moduleVoltage = moduleVoltage;
+        copy.moduleRatedCapacityAh = moduleRatedCapacityAh;
+        copy.serialnumber = serialnumber;
+        copy.dIO = copyOf(dIO, copy.dIO);
+        copy.cellVmV = copyOf(cellVmV, copy.cellVmV);
+        copy.cellTemperature = copyOf(cellTemperature, copy.cellTemperature);
+        copy.cellBalanceState = copyOf(cellBalanceState, copy.cellBalanceState);
+
+        return copy;
+    }
+
+
+    // copies into the preallocated target array unless the source was replaced by one of another
+    // length
+    private static int[] copyOf(final int[] source, final int[] target) {
+        if (source.length != target.length) {
+            return source.clone();
+        }
+
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+
+
+    private static boolean[] copyOf(final boolean[] source, final boolean[] target) {
+        if (source.length != target.length) {
+            return source.clone();
+        }
+
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+
+
     /**
      * Creates a JSON string representation of this {@link EnergyStorage} object.
      *
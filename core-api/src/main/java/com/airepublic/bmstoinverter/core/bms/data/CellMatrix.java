@@ -0,0 +1,274 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dense, columnar view of the cell voltages, cell temperatures and cell balance states of all
+ * {@link BatteryPack}s, i.e. a packs x cells matrix as needed for a heatmap, without the 1024
+ * element arrays of each {@link BatteryPack}. The matrix is immutable and is derived from the
+ * previous matrix by copying only the rows of the {@link BatteryPack}s which have been updated since.
+ * <p>
+ * The binary format is little-endian:
+ *
+ * <pre>
+ * byte     version
+ * short    number of packs
+ * short    number of cells per pack (the maximum of all packs)
+ * short    number of temperature sensors per pack (the maximum of all packs)
+ * short[]  the cell voltages (1mV) row by row
+ * short[]  the cell temperatures (0.1C) row by row
+ * byte[]   the cell balance states as bits row by row, the lowest bit first
+ * </pre>
+ *
+ * Cells or sensors which a pack does not have are 0.
+ */
+public class CellMatrix {
+    /** The version of the binary format. */
+    public final static int VERSION = 1;
+    private final static CellMatrix EMPTY = new CellMatrix(0, 0, 0, new long[0]);
+    private final int packs;
+    private final int cells;
+    private final int sensors;
+    private final long[] packVersions;
+    private final short[] voltages;
+    private final short[] temperatures;
+    private final byte[] balancing;
+
+    private CellMatrix(final int packs, final int cells, final int sensors, final long[] packVersions) {
+        this.packs = packs;
+        this.cells = cells;
+        this.sensors = sensors;
+        this.packVersions = packVersions;
+        voltages = new short[packs * cells];
+        temperatures = new short[packs * sensors];
+        balancing = new byte[(packs * cells + 7) / 8];
+    }
+
+
+    /**
+     * Gets an empty {@link CellMatrix} to derive the first matrix from.
+     *
+     * @return the empty {@link CellMatrix}
+     */
+    public static CellMatrix empty() {
+        return EMPTY;
+    }
+
+
+    /**
+     * Creates the {@link CellMatrix} of the specified {@link BatteryPack}s. If the dimensions did
+     * not change only the rows of the {@link BatteryPack}s with a changed version are read from the
+     * packs, all others are copied from this matrix.
+     *
+     * @param batteryPacks the {@link BatteryPack}s
+     * @return this {@link CellMatrix} if no {@link BatteryPack} has changed otherwise a new one
+     */
+    public CellMatrix update(final List<BatteryPack> batteryPacks) {
+        int maxCells = 0;
+        int maxSensors = 0;
+        boolean changed = batteryPacks.size() != packs;
+
+        for (int p = 0; p < batteryPacks.size(); p++) {
+            final BatteryPack pack = batteryPacks.get(p);
+            maxCells = Math.max(maxCells, cellCount(pack));
+            maxSensors = Math.max(maxSensors, sensorCount(pack));
+            changed |= p < packs && pack.getVersion() != packVersions[p];
+        }
+
+        final boolean sameShape = batteryPacks.size() == packs && maxCells == cells && maxSensors == sensors;
+
+        if (!changed && sameShape) {
+            return this;
+        }
+
+        final CellMatrix matrix = new CellMatrix(batteryPacks.size(), maxCells, maxSensors, new long[batteryPacks.size()]);
+
+        if (sameShape) {
+            System.arraycopy(voltages, 0, matrix.voltages, 0, voltages.length);
+            System.arraycopy(temperatures, 0, matrix.temperatures, 0, temperatures.length);
+            System.arraycopy(balancing, 0, matrix.balancing, 0, balancing.length);
+        }
+
+        for (int p = 0; p < batteryPacks.size(); p++) {
+            final BatteryPack pack = batteryPacks.get(p);
+            final long version = pack.getVersion();
+
+            if (!sameShape || version != packVersions[p]) {
+                matrix.readRow(p, pack);
+            }
+
+            matrix.packVersions[p] = version;
+        }
+
+        return matrix;
+    }
+
+
+    private void readRow(final int p, final BatteryPack pack) {
+        final int cellCount = cellCount(pack);
+        final int sensorCount = sensorCount(pack);
+
+        for (int c = 0; c < cells; c++) {
+            final int index = p * cells + c;
+            voltages[index] = c < cellCount ? (short) pack.cellVmV[c] : 0;
+
+            if (c < cellCount && pack.cellBalanceState[c]) {
+                balancing[index / 8] |= 1 << index % 8;
+            } else {
+                balancing[index / 8] &= ~(1 << index % 8);
+            }
+        }
+
+        for (int s = 0; s < sensors; s++) {
+            temperatures[p * sensors + s] = s < sensorCount ? (short) pack.cellTemperature[s] : 0;
+        }
+    }
+
+
+    private static int cellCount(final BatteryPack pack) {
+        return Math.max(0, Math.min(pack.numberOfCells, pack.cellVmV.length));
+    }
+
+
+    private static int sensorCount(final BatteryPack pack) {
+        return Math.max(0, Math.min(pack.numOfTempSensors, pack.cellTemperature.length));
+    }
+
+
+    /**
+     * Gets the number of packs (rows).
+     *
+     * @return the number of packs
+     */
+    public int getPacks() {
+        return packs;
+    }
+
+
+    /**
+     * Gets the number of cells per pack (columns of the voltages and balance states).
+     *
+     * @return the number of cells
+     */
+    public int getCells() {
+        return cells;
+    }
+
+
+    /**
+     * Gets the number of temperature sensors per pack (columns of the temperatures).
+     *
+     * @return the number of sensors
+     */
+    public int getSensors() {
+        return sensors;
+    }
+
+
+    /**
+     * Gets the cell voltage (1mV) of the specified pack and cell.
+     *
+     * @param pack the index of the pack
+     * @param cell the index of the cell
+     * @return the cell voltage
+     */
+    public int getVoltage(final int pack, final int cell) {
+        return voltages[pack * cells + cell];
+    }
+
+
+    /**
+     * Gets the temperature (0.1C) of the specified pack and sensor.
+     *
+     * @param pack the index of the pack
+     * @param sensor the index of the sensor
+     * @return the temperature
+     */
+    public int getTemperature(final int pack, final int sensor) {
+        return temperatures[pack * sensors + sensor];
+    }
+
+
+    /**
+     * Gets whether the specified cell of the specified pack is being balanced.
+     *
+     * @param pack the index of the pack
+     * @param cell the index of the cell
+     * @return true if the cell is being balanced
+     */
+    public boolean isBalancing(final int pack, final int cell) {
+        final int index = pack * cells + cell;
+        return (balancing[index / 8] & 1 << index % 8) != 0;
+    }
+
+
+    /**
+     * Encodes the matrix in the little-endian binary format.
+     *
+     * @return the encoded matrix
+     */
+    public byte[] toBytes() {
+        final ByteBuffer buffer = ByteBuffer.allocate(7 + 2 * voltages.length + 2 * temperatures.length + balancing.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) packs);
+        buffer.putShort((short) cells);
+        buffer.putShort((short) sensors);
+        buffer.asShortBuffer().put(voltages);
+        buffer.position(buffer.position() + 2 * voltages.length);
+        buffer.asShortBuffer().put(temperatures);
+        buffer.position(buffer.position() + 2 * temperatures.length);
+        buffer.put(balancing);
+
+        return buffer.array();
+    }
+
+
+    /**
+     * Creates the JSON fallback of the matrix with one array per pack for the voltages,
+     * temperatures and balance states.
+     *
+     * @return the matrix as a map to be serialized to JSON
+     */
+    public Map<String, Object> toMap() {
+        final int[][] voltageRows = new int[packs][cells];
+        final int[][] temperatureRows = new int[packs][sensors];
+        final boolean[][] balancingRows = new boolean[packs][cells];
+
+        for (int p = 0; p < packs; p++) {
+            for (int c = 0; c < cells; c++) {
+                voltageRows[p][c] = getVoltage(p, c);
+                balancingRows[p][c] = isBalancing(p, c);
+            }
+
+            for (int s = 0; s < sensors; s++) {
+                temperatureRows[p][s] = getTemperature(p, s);
+            }
+        }
+
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("version", VERSION);
+        map.put("packs", packs);
+        map.put("cells", cells);
+        map.put("sensors", sensors);
+        map.put("voltages", voltageRows);
+        map.put("temperatures", temperatureRows);
+        map.put("balancing", balancingRows);
+
+        return map;
+    }
+
+}
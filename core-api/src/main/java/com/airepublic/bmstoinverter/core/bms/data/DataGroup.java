@@ -0,0 +1,32 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import com.airepublic.bmstoinverter.core.BMS;
+
+/**
+ * Groups of {@link BatteryPack} values which are usually updated together by one message of a
+ * {@link BMS}. The time of the last update is tracked per group to detect stale data.
+ */
+public enum DataGroup {
+    /** Pack voltage, current, SOC and SOH */
+    STATUS,
+    /** Charge/discharge current and voltage limits */
+    LIMITS,
+    /** Cell voltages */
+    CELLS,
+    /** Cell and pack temperatures */
+    TEMPERATURES,
+    /** Alarms and warnings */
+    ALARMS,
+    /** Static information like versions, capacity or number of cells */
+    INFO
+}
@@ -11,10 +11,22 @@
 package com.airepublic.bmstoinverter.core.bms.data;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.inject.Vetoed;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.util.Metrics;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
 import com.google.gson.Gson;
 
 @Vetoed
@@ -22,8 +34,98 @@ import com.google.gson.Gson;
  * This class holds the data of the all battery storage modules ({@link BatteryPack} of the system.
  */
 public class EnergyStorage {
+    private transient final static Logger LOG = LoggerFactory.getLogger(EnergyStorage.class);
     private transient final static Gson gson = new Gson();
-    private final List<BatteryPack> batteryPacks = new ArrayList<>();
+    private final static String DEFAULT_RACK = "default";
+    private final List<BatteryPack> batteryPacks = new PackList();
+    private transient volatile List<Rack> racks = Collections.emptyList();
+    private transient volatile BatteryPack aggregatedSnapshot;
+    private transient volatile long snapshotVersion;
+    private transient volatile CellMatrix cellMatrix = CellMatrix.empty();
+    private transient AggregationNode system;
+    private transient int structureModCount = -1;
+    private transient final Map<String, BatteryPack> pendingPacks = new ConcurrentHashMap<>();
+
+    /**
+     * The list of {@link BatteryPack}s exposing its modification count to detect when packs have
+     * been added, removed or replaced.
+     */
+    private static class PackList extends ArrayList<BatteryPack> {
+        private static final long serialVersionUID = 1L;
+        private int replacements = 0;
+
+        int getModCount() {
+            return modCount + replacements;
+        }
+
+
+        /**
+         * Replaces the pack at the specified index without a structural modification, so iterating
+         * readers are not failed.
+         */
+        void replace(final int index, final BatteryPack pack) {
+            set(index, pack);
+            replacements++;
+        }
+    }
+
+    /**
+     * The aggregated view of a rack of {@link BatteryPack}s, e.g. the packs managed by one BMS.
+     */
+    public static class Rack {
+        private final String name;
+        private final long version;
+        private final int numberOfPacks;
+        private final BatteryPack aggregate;
+
+        Rack(final String name, final long version, final int numberOfPacks, final BatteryPack aggregate) {
+            this.name = name;
+            this.version = version;
+            this.numberOfPacks = numberOfPacks;
+            this.aggregate = aggregate;
+        }
+
+
+        /**
+         * Gets the name of the rack.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+
+        /**
+         * Gets the version of the aggregation which changes whenever a pack of the rack has been
+         * updated.
+         *
+         * @return the version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+
+        /**
+         * Gets the number of {@link BatteryPack}s of the rack.
+         *
+         * @return the number of packs
+         */
+        public int getNumberOfPacks() {
+            return numberOfPacks;
+        }
+
+
+        /**
+         * Gets the aggregated {@link BatteryPack} of the rack which must not be modified.
+         *
+         * @return the aggregated {@link BatteryPack}
+         */
+        public BatteryPack getAggregate() {
+            return aggregate;
+        }
+    }
 
     /**
      * Constructor.
@@ -53,6 +155,285 @@ public class EnergyStorage {
     }
 
 
+    /**
+     * Gets the {@link BatteryPack} of the specified rack and battery id.
+     *
+     * @param rack the rack, e.g. the binding key of the BMS
+     * @param batteryId the id of the pack at its BMS
+     * @return the {@link BatteryPack} or null if not found
+     */
+    public BatteryPack getBatteryPack(final String rack, final int batteryId) {
+        for (final BatteryPack pack : batteryPacks) {
+            if (Objects.equals(rack, pack.getRack()) && pack.getBatteryId() == batteryId) {
+                return pack;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Adds a {@link BatteryPack} restored from a warm-start snapshot which has not been created by
+     * its BMS yet, so the BMS can adopt it via {@link #adoptPack(String, int)}.
+     *
+     * @param pack the restored {@link BatteryPack} with its rack and battery id
+     */
+    void addRestoredPack(final BatteryPack pack) {
+        synchronized (batteryPacks) {
+            pendingPacks.put(packKey(pack.getRack(), pack.getBatteryId()), pack);
+            batteryPacks.add(pack);
+        }
+    }
+
+
+    /**
+     * Replaces the {@link BatteryPack}s of a re-created BMS in place with empty packs of the
+     * specified rack, so the indices of all packs are kept and readers never see the packs missing.
+     * The new BMS adopts the packs via {@link #adoptPack(String, int)} and releases those it does
+     * not manage with {@link #removeUnadoptedPacks(String)}. If the rack is null the packs are
+     * removed.
+     *
+     * @param oldPacks the {@link BatteryPack}s of the previous BMS
+     * @param rack the rack of the new BMS, e.g. its binding key, or null if it has been removed
+     */
+    public void replaceBatteryPacks(final Collection<BatteryPack> oldPacks, final String rack) {
+        synchronized (batteryPacks) {
+            for (final BatteryPack oldPack : oldPacks) {
+                pendingPacks.remove(packKey(oldPack.getRack(), oldPack.getBatteryId()), oldPack);
+                final int index = batteryPacks.indexOf(oldPack);
+
+                if (index < 0) {
+                    continue;
+                }
+
+                if (rack == null) {
+                    batteryPacks.remove(index);
+                } else {
+                    final BatteryPack pack = new BatteryPack();
+                    pack.setRack(rack);
+                    pack.setBatteryId(oldPack.getBatteryId());
+                    pendingPacks.put(packKey(rack, pack.getBatteryId()), pack);
+                    ((PackList) batteryPacks).replace(index, pack);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Takes over the {@link BatteryPack} restored or replaced for the specified rack and battery id,
+     * so that the BMS continues to update it instead of creating a new pack beside it.
+     *
+     * @param rack the rack, e.g. the binding key of the BMS
+     * @param batteryId the id of the pack at its BMS
+     * @return the pending {@link BatteryPack} which is already part of this {@link EnergyStorage} or
+     *         null if there is none
+     */
+    public BatteryPack adoptPack(final String rack, final int batteryId) {
+        return pendingPacks.remove(packKey(rack, batteryId));
+    }
+
+
+    /**
+     * Adds a {@link BatteryPack} created by a BMS.
+     *
+     * @param pack the {@link BatteryPack}
+     */
+    public void addBatteryPack(final BatteryPack pack) {
+        synchronized (batteryPacks) {
+            batteryPacks.add(pack);
+        }
+    }
+
+
+    /**
+     * Removes the {@link BatteryPack}s of the specified rack which have been replaced for a
+     * re-created BMS but have not been adopted by it, e.g. after its first polling cycle. Restored
+     * packs are kept until they expire.
+     *
+     * @param rack the rack, e.g. the binding key of the BMS
+     */
+    public void removeUnadoptedPacks(final String rack) {
+        synchronized (batteryPacks) {
+            for (final BatteryPack pack : new ArrayList<>(pendingPacks.values())) {
+                if (Objects.equals(rack, pack.getRack()) && !pack.isRestored() && pendingPacks.remove(packKey(rack, pack.getBatteryId()), pack)) {
+                    batteryPacks.remove(pack);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Removes the specified restored {@link BatteryPack} if it has not been adopted by a BMS, e.g.
+     * because the BMS is no longer configured.
+     *
+     * @param pack the restored {@link BatteryPack}
+     * @return true if the pack has been removed
+     */
+    boolean removeUnadoptedPack(final BatteryPack pack) {
+        synchronized (batteryPacks) {
+            if (pendingPacks.remove(packKey(pack.getRack(), pack.getBatteryId()), pack)) {
+                batteryPacks.remove(pack);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    private static String packKey(final String rack, final int batteryId) {
+        return rack + "/" + batteryId;
+    }
+
+
+    /**
+     * Aggregates all {@link BatteryPack}s and publishes the result as the snapshot shared by all
+     * inverter bindings. This is called once per BMS polling cycle. The {@link BatteryPack}s are
+     * aggregated per rack and the racks into the system, recomputing only the racks with updated
+     * {@link BatteryPack}s. The {@link CellMatrix} is updated likewise for the updated packs only.
+     *
+     * @return the new aggregated snapshot
+     */
+    public synchronized BatteryPack updateAggregatedSnapshot() {
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.AGGREGATION);
+        final long start = System.nanoTime();
+        final AggregationNode root = getAggregationTree();
+        final long previousVersion = root.getVersion();
+        final BatteryPack snapshot = root.getSnapshot();
+        final int stalePacks = root.getAggregate().getStalePacks();
+
+        if (root.getVersion() != previousVersion) {
+            final List<Rack> views = new ArrayList<>();
+
+            for (final AggregationNode rack : root.getChildren()) {
+                views.add(new Rack(rack.getName(), rack.getVersion(), rack.getPacks().size(), rack.getSnapshot()));
+            }
+
+            racks = Collections.unmodifiableList(views);
+        }
+
+        logStalePacks(stalePacks);
+        aggregatedSnapshot = snapshot;
+        snapshotVersion = root.getVersion();
+        cellMatrix = cellMatrix.update(batteryPacks);
+        tracer.aggregation(span, batteryPacks.size(), root.getVersion() != previousVersion, System.nanoTime() - start);
+
+        return snapshot;
+    }
+
+
+    /**
+     * Gets the aggregated snapshot of the last BMS polling cycle or aggregates the
+     * {@link BatteryPack}s if no snapshot has been published yet. The snapshot is shared by all
+     * inverter bindings and must not be modified - use {@link BatteryPack#copy()} to modify it.
+     *
+     * @return the aggregated snapshot
+     */
+    public BatteryPack getAggregatedSnapshot() {
+        final BatteryPack snapshot = aggregatedSnapshot;
+
+        if (snapshot == null) {
+            return updateAggregatedSnapshot();
+        }
+
+        return snapshot;
+    }
+
+
+    /**
+     * Gets the version of the aggregated snapshot which changes whenever a {@link BatteryPack} has
+     * been updated.
+     *
+     * @return the version of the aggregated snapshot
+     */
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+
+    /**
+     * Gets the {@link CellMatrix} of the cell voltages, temperatures and balance states of all
+     * {@link BatteryPack}s of the last published snapshot.
+     *
+     * @return the {@link CellMatrix}
+     */
+    public CellMatrix getCellMatrix() {
+        if (aggregatedSnapshot == null) {
+            updateAggregatedSnapshot();
+        }
+
+        return cellMatrix;
+    }
+
+
+    /**
+     * Gets the aggregated views of the racks of the last published snapshot. They are not part of
+     * {@link #toJson()} as each rack carries a full aggregated {@link BatteryPack}.
+     *
+     * @return the {@link Rack}s
+     */
+    public List<Rack> getRacks() {
+        return racks;
+    }
+
+
+    private AggregationNode getAggregationTree() {
+        final int modCount = ((PackList) batteryPacks).getModCount();
+
+        if (system == null || system.isStructureChanged() || modCount != structureModCount) {
+            structureModCount = modCount;
+            system = buildAggregationTree();
+        }
+
+        return system;
+    }
+
+
+    private AggregationNode buildAggregationTree() {
+        final AggregationNode root = new AggregationNode("system", null);
+        final Map<String, AggregationNode> rackNodes = new LinkedHashMap<>();
+
+        for (final BatteryPack pack : batteryPacks) {
+            final String name = pack.getRack() != null ? pack.getRack() : DEFAULT_RACK;
+            rackNodes.computeIfAbsent(name, k -> new AggregationNode(k, root)).addPack(pack);
+        }
+
+        return root;
+    }
+
+
+    /**
+     * Aggregates all {@link BatteryPack}s into one new {@link BatteryPack} as sent to the
+     * inverters without using the aggregation tree.
+     *
+     * @return the aggregated {@link BatteryPack}
+     */
+    public BatteryPack aggregate() {
+        final PackAggregate result = new PackAggregate();
+
+        for (final BatteryPack pack : batteryPacks) {
+            result.add(pack);
+        }
+
+        logStalePacks(result.getStalePacks());
+        return result.toBatteryPack();
+    }
+
+
+    private void logStalePacks(final int stalePacks) {
+        // charging is stopped as long as the state of a pack is unknown
+        if (stalePacks > 0) {
+            LOG.warn("{} stale battery pack(s) excluded from aggregation - charging is disabled", stalePacks);
+        }
+
+        Metrics.setGauge("inverter.stalePacks", stalePacks);
+    }
+
+
     /**
      * Creates a JSON string representation of this {@link EnergyStorage} object.
      *
@@ -0,0 +1,26 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import com.airepublic.bmstoinverter.core.FreshnessPolicy;
+
+/**
+ * The freshness state of the data of a {@link BatteryPack} as determined by the
+ * {@link FreshnessPolicy} of its BMS binding.
+ */
+public enum Freshness {
+    /** The data has been updated recently */
+    FRESH,
+    /** Some cycles have been missed - the current limits are reduced */
+    DEGRADED,
+    /** Too many cycles have been missed - the pack is excluded from aggregation */
+    STALE
+}
@@ -0,0 +1,266 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import java.util.Map;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+
+/**
+ * The partial aggregation of a set of {@link BatteryPack}s holding the sums, minimums and
+ * maximums before averages are calculated, so partial aggregations of racks can be merged into
+ * the aggregation of the system without revisiting their packs.
+ */
+class PackAggregate {
+    private final BatteryPack result = new BatteryPack();
+    private int packs = 0;
+    private int validPacks = 0;
+    private int stalePacks = 0;
+    private BatteryPack firstPack;
+
+    /**
+     * Constructor.
+     */
+    PackAggregate() {
+        result.packSOC = 0;
+        result.maxPackChargeCurrent = Integer.MAX_VALUE;
+        result.maxPackDischargeCurrent = Integer.MIN_VALUE;
+        result.maxPackVoltageLimit = Integer.MAX_VALUE;
+        result.minPackVoltageLimit = Integer.MIN_VALUE;
+        result.maxCellmV = Integer.MIN_VALUE;
+        result.minCellmV = Integer.MAX_VALUE;
+        result.tempMax = Integer.MIN_VALUE;
+        result.tempMin = Integer.MAX_VALUE;
+        result.maxModulemV = Integer.MIN_VALUE;
+        result.minModulemV = Integer.MAX_VALUE;
+        result.maxModuleTemp = Integer.MIN_VALUE;
+        result.minModuleTemp = Integer.MAX_VALUE;
+    }
+
+
+    /**
+     * Adds the values of the {@link BatteryPack}. Stale and invalid packs are counted but their
+     * values are not aggregated.
+     *
+     * @param pack the {@link BatteryPack}
+     */
+    void add(final BatteryPack pack) {
+        if (firstPack == null) {
+            firstPack = pack;
+        }
+
+        // do not act on outdated data
+        if (pack.getFreshness() == Freshness.STALE) {
+            stalePacks++;
+            return;
+        }
+
+        packs++;
+
+        if (!validateBatteryPack(pack)) {
+            return;
+        }
+
+        validPacks++;
+        combine(pack, pack.getLimitPercent());
+    }
+
+
+    /**
+     * Merges the partial aggregation of another set of {@link BatteryPack}s.
+     *
+     * @param other the other {@link PackAggregate}
+     */
+    void merge(final PackAggregate other) {
+        if (firstPack == null) {
+            firstPack = other.firstPack;
+        }
+
+        packs += other.packs;
+        validPacks += other.validPacks;
+        stalePacks += other.stalePacks;
+        combine(other.result, 100);
+    }
+
+
+    private void combine(final BatteryPack pack, final int limitPercent) {
+        result.ratedCapacitymAh += pack.ratedCapacitymAh;
+
+        result.ratedCellmV += pack.ratedCellmV;
+        result.maxPackVoltageLimit = Math.min(result.maxPackVoltageLimit, pack.maxPackVoltageLimit);
+        result.minPackVoltageLimit = Math.max(result.minPackVoltageLimit, pack.minPackVoltageLimit);
+        result.maxPackChargeCurrent = Math.min(result.maxPackChargeCurrent, limitPercent == 100 ? pack.maxPackChargeCurrent : pack.maxPackChargeCurrent * limitPercent / 100);
+        result.maxPackDischargeCurrent = Math.max(result.maxPackDischargeCurrent, limitPercent == 100 ? pack.maxPackDischargeCurrent : pack.maxPackDischargeCurrent * limitPercent / 100);
+        result.packVoltage += pack.packVoltage;
+        result.packCurrent += pack.packCurrent;
+        result.packSOC += pack.packSOC;
+        result.packSOH += pack.packSOH;
+        result.maxCellmV = Math.max(result.maxCellmV, pack.maxCellmV);
+        result.maxCellVNum = pack.maxCellmV == result.maxCellmV ? pack.maxCellVNum : result.maxCellVNum;
+        result.minCellmV = Math.min(result.minCellmV, pack.minCellmV);
+        result.minCellVNum = pack.minCellmV == result.minCellmV ? pack.minCellVNum : result.minCellVNum;
+        result.tempMax = Math.max(result.tempMax, pack.tempMax);
+        result.tempMin = Math.min(result.tempMin, pack.tempMin);
+
+        // result.chargeDischargeStatus = pack.chargeDischargeStatus;
+        result.chargeMOSState |= pack.chargeMOSState;
+        result.dischargeMOSState |= pack.dischargeMOSState;
+        result.forceCharge |= pack.forceCharge;
+        result.remainingCapacitymAh += pack.remainingCapacitymAh;
+        result.numberOfCells += pack.numberOfCells;
+        result.chargerState |= pack.chargerState;
+        result.loadState |= pack.loadState;
+        result.bmsCycles = Math.max(result.bmsCycles, pack.bmsCycles);
+        // cellVmV
+        // cellTemperature
+        // cellBalanceState
+        result.cellBalanceActive |= pack.cellBalanceActive;
+
+        aggregateAlarms(result, pack.getAlarms(AlarmLevel.WARNING, AlarmLevel.ALARM));
+
+        result.tempMaxCellNum = result.tempMax == pack.tempMax ? pack.tempMaxCellNum : result.tempMaxCellNum;
+        result.tempMinCellNum = result.tempMin == pack.tempMin ? pack.tempMinCellNum : result.tempMinCellNum;
+        result.maxModulemV = Math.max(result.maxModulemV, pack.maxModulemV);
+        result.minModulemV = Math.min(result.minModulemV, pack.minModulemV);
+        result.maxModulemVNum = pack.maxModulemV == result.maxModulemV ? pack.maxModulemVNum : result.maxModulemVNum;
+        result.minModulemVNum = pack.minModulemV == result.minModulemV ? pack.minModulemVNum : result.minModulemVNum;
+        result.maxModuleTemp = Math.max(result.maxModuleTemp, pack.maxModuleTemp);
+        result.minModuleTemp = Math.min(result.minModuleTemp, pack.minModuleTemp);
+        result.maxModuleTempNum = pack.maxModuleTemp == result.maxModuleTemp ? pack.maxModuleTempNum : result.maxModuleTempNum;
+        result.minModuleTempNum = pack.minModuleTemp == result.minModuleTemp ? pack.minModuleTempNum : result.minModuleTempNum;
+        result.modulesInSeries += pack.modulesInSeries;
+        result.moduleNumberOfCells += pack.moduleNumberOfCells;
+        result.moduleVoltage += pack.moduleVoltage;
+        result.moduleRatedCapacityAh += pack.moduleRatedCapacityAh;
+    }
+
+
+    /**
+     * Gets the number of stale {@link BatteryPack}s excluded from the aggregation.
+     *
+     * @return the number of stale packs
+     */
+    int getStalePacks() {
+        return stalePacks;
+    }
+
+
+    /**
+     * Gets the number of {@link BatteryPack}s with valid values.
+     *
+     * @return the number of valid packs
+     */
+    int getValidPacks() {
+        return validPacks;
+    }
+
+
+    /**
+     * Creates a new {@link BatteryPack} from this partial aggregation calculating the averages.
+     * This partial aggregation is not changed.
+     *
+     * @return the aggregated {@link BatteryPack}
+     */
+    BatteryPack toBatteryPack() {
+        final PackAggregate copy = new PackAggregate();
+        copy.combine(this.result, 100);
+        final BatteryPack result = copy.result;
+
+        // calculate averages
+        final int count = packs;
+
+        if (count > 0) {
+            result.ratedCapacitymAh = result.ratedCapacitymAh / count;
+            result.ratedCellmV = result.ratedCellmV / count;
+            result.maxPackVoltageLimit = result.maxPackVoltageLimit / count;
+            result.minPackVoltageLimit = result.minPackVoltageLimit / count;
+            result.packVoltage = result.packVoltage / count;
+            result.packSOC = result.packSOC / count;
+            result.packSOH = result.packSOH / count;
+            result.tempAverage = result.tempAverage / count;
+            result.bmsCycles = result.bmsCycles / count;
+            result.moduleVoltage = result.moduleVoltage / count;
+            result.moduleRatedCapacityAh = result.moduleRatedCapacityAh / count;
+
+            // other calculations
+            result.cellDiffmV = result.maxCellmV - result.minCellmV;
+            result.type = firstPack.type;
+            result.manufacturerCode = firstPack.manufacturerCode;
+            result.hardwareVersion = firstPack.hardwareVersion;
+            result.softwareVersion = firstPack.softwareVersion;
+        }
+
+        // stop charging as long as the state of a pack is unknown
+        if (stalePacks > 0) {
+            result.maxPackChargeCurrent = 0;
+        }
+
+        // check if values were not set and set them to some default
+        if (result.maxPackChargeCurrent == Integer.MAX_VALUE) {
+            result.maxPackChargeCurrent = 0;
+        }
+
+        if (result.maxPackDischargeCurrent == Integer.MIN_VALUE) {
+            result.maxPackDischargeCurrent = 0;
+        }
+        if (result.maxPackVoltageLimit == Integer.MAX_VALUE) {
+            result.maxPackVoltageLimit = 0;
+        }
+        if (result.minPackVoltageLimit == Integer.MIN_VALUE) {
+            result.minPackVoltageLimit = 0;
+        }
+        if (result.maxCellmV == Integer.MIN_VALUE) {
+            result.maxCellmV = 3000;
+        }
+        if (result.minCellmV == Integer.MAX_VALUE) {
+            result.minCellmV = 3000;
+        }
+        if (result.tempMax == Integer.MIN_VALUE) {
+            result.tempMax = 250;
+        }
+        if (result.tempMin == Integer.MAX_VALUE) {
+            result.tempMin = 250;
+        }
+        if (result.maxModulemV == Integer.MIN_VALUE) {
+            result.maxModulemV = 3000;
+        }
+        if (result.minModulemV == Integer.MAX_VALUE) {
+            result.minModulemV = 3000;
+        }
+        if (result.maxModuleTemp == Integer.MIN_VALUE) {
+            result.maxModuleTemp = 250;
+        }
+        if (result.minModuleTemp == Integer.MAX_VALUE) {
+            result.minModuleTemp = 250;
+        }
+
+        return result;
+    }
+
+
+    private static boolean validateBatteryPack(final BatteryPack pack) {
+        if (pack != null && pack.numberOfCells > 0 && pack.ratedCapacitymAh > 0 && pack.maxPackChargeCurrent != 0 && pack.maxPackDischargeCurrent != 0 && pack.maxPackVoltageLimit != 0) {
+            return true;
+        }
+        return false;
+    }
+
+
+    private static void aggregateAlarms(final BatteryPack result, final Map<Alarm, AlarmLevel> alarms) {
+        for (final Map.Entry<Alarm, AlarmLevel> entry : alarms.entrySet()) {
+            final AlarmLevel level = result.getAlarmLevel(entry.getKey());
+
+            if (level == null || level == AlarmLevel.WARNING && entry.getValue() == AlarmLevel.ALARM) {
+                result.setAlarm(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+
+/**
+ * Encodes the {@link BatteryPack}s of the {@link EnergyStorage} into a compact, schema-versioned
+ * binary telemetry message as an alternative to {@link EnergyStorage#toJson()}, e.g. for MQTT
+ * targets on metered connections or the web UI. Integers are written as zigzag varints, booleans
+ * and alarms as bit masks and the cell voltages as deltas to the previous cell, so a message is
+ * typically more than 10 times smaller than the JSON.
+ * <p>
+ * The message format is:
+ *
+ * <pre>
+ * byte    version
+ * varint  number of packs followed by the packs:
+ *   zigzag  the values in the order of {@link #getSchema()} <code>fields</code>
+ *   varint  the flags as bits in the order of {@link #getSchema()} <code>flags</code>
+ *   byte    the digital I/O states as bits
+ *   varint  number of cell voltages followed by the zigzag differences to the previous cell (starting at 0)
+ *   varint  number of cell temperatures followed by the zigzag differences to the previous sensor (starting at 0)
+ *   bytes   the cell balance states as bits, one bit per cell voltage
+ *   varint  length of the alarm masks followed by the warning and the alarm mask with one bit per {@link Alarm} ordinal
+ *   string  manufacturer code, hardware version, software version and serial number as varint length and UTF-8 bytes
+ * </pre>
+ *
+ * The version changes whenever the format, the fields, the flags or the {@link Alarm}s change, so
+ * decoders can detect an incompatible schema.
+ */
+public class TelemetryEncoder {
+    /** The version of the telemetry schema. */
+    public final static int VERSION = 1;
+
+    /**
+     * The integer values of a {@link BatteryPack} in the order they are encoded.
+     */
+    private enum Field {
+        type(p -> p.type, (p, v) -> p.type = v),
+        ratedCapacitymAh(p -> p.ratedCapacitymAh, (p, v) -> p.ratedCapacitymAh = v),
+        ratedCellmV(p -> p.ratedCellmV, (p, v) -> p.ratedCellmV = v),
+        maxPackVoltageLimit(p -> p.maxPackVoltageLimit, (p, v) -> p.maxPackVoltageLimit = v),
+        minPackVoltageLimit(p -> p.minPackVoltageLimit, (p, v) -> p.minPackVoltageLimit = v),
+        maxPackChargeCurrent(p -> p.maxPackChargeCurrent, (p, v) -> p.maxPackChargeCurrent = v),
+        maxPackDischargeCurrent(p -> p.maxPackDischargeCurrent, (p, v) -> p.maxPackDischargeCurrent = v),
+        packVoltage(p -> p.packVoltage, (p, v) -> p.packVoltage = v),
+        packCurrent(p -> p.packCurrent, (p, v) -> p.packCurrent = v),
+        packSOC(p -> p.packSOC, (p, v) -> p.packSOC = v),
+        packSOH(p -> p.packSOH, (p, v) -> p.packSOH = v),
+        maxCellVoltageLimit(p -> p.maxCellVoltageLimit, (p, v) -> p.maxCellVoltageLimit = v),
+        minCellVoltageLimit(p -> p.minCellVoltageLimit, (p, v) -> p.minCellVoltageLimit = v),
+        maxCellmV(p -> p.maxCellmV, (p, v) -> p.maxCellmV = v),
+        maxCellVNum(p -> p.maxCellVNum, (p, v) -> p.maxCellVNum = v),
+        minCellmV(p -> p.minCellmV, (p, v) -> p.minCellmV = v),
+        minCellVNum(p -> p.minCellVNum, (p, v) -> p.minCellVNum = v),
+        cellDiffmV(p -> p.cellDiffmV, (p, v) -> p.cellDiffmV = v),
+        tempMax(p -> p.tempMax, (p, v) -> p.tempMax = v),
+        tempMin(p -> p.tempMin, (p, v) -> p.tempMin = v),
+        tempAverage(p -> p.tempAverage, (p, v) -> p.tempAverage = v),
+        tempMaxCellNum(p -> p.tempMaxCellNum, (p, v) -> p.tempMaxCellNum = v),
+        tempMinCellNum(p -> p.tempMinCellNum, (p, v) -> p.tempMinCellNum = v),
+        chargeDischargeStatus(p -> p.chargeDischargeStatus, (p, v) -> p.chargeDischargeStatus = v),
+        bmsHeartBeat(p -> p.bmsHeartBeat, (p, v) -> p.bmsHeartBeat = v),
+        remainingCapacitymAh(p -> p.remainingCapacitymAh, (p, v) -> p.remainingCapacitymAh = v),
+        numberOfCells(p -> p.numberOfCells, (p, v) -> p.numberOfCells = v),
+        numOfTempSensors(p -> p.numOfTempSensors, (p, v) -> p.numOfTempSensors = v),
+        bmsCycles(p -> p.bmsCycles, (p, v) -> p.bmsCycles = v),
+        maxModulemV(p -> p.maxModulemV, (p, v) -> p.maxModulemV = v),
+        minModulemV(p -> p.minModulemV, (p, v) -> p.minModulemV = v),
+        maxModulemVNum(p -> p.maxModulemVNum, (p, v) -> p.maxModulemVNum = v),
+        minModulemVNum(p -> p.minModulemVNum, (p, v) -> p.minModulemVNum = v),
+        maxModuleTemp(p -> p.maxModuleTemp, (p, v) -> p.maxModuleTemp = v),
+        minModuleTemp(p -> p.minModuleTemp, (p, v) -> p.minModuleTemp = v),
+        maxModuleTempNum(p -> p.maxModuleTempNum, (p, v) -> p.maxModuleTempNum = v),
+        minModuleTempNum(p -> p.minModuleTempNum, (p, v) -> p.minModuleTempNum = v),
+        modulesInSeries(p -> p.modulesInSeries, (p, v) -> p.modulesInSeries = v),
+        moduleNumberOfCells(p -> p.moduleNumberOfCells, (p, v) -> p.moduleNumberOfCells = (byte) v),
+        moduleVoltage(p -> p.moduleVoltage, (p, v) -> p.moduleVoltage = v),
+        moduleRatedCapacityAh(p -> p.moduleRatedCapacityAh, (p, v) -> p.moduleRatedCapacityAh = v);
+
+        private final ToIntFunction<BatteryPack> getter;
+        private final ObjIntConsumer<BatteryPack> setter;
+
+        Field(final ToIntFunction<BatteryPack> getter, final ObjIntConsumer<BatteryPack> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * The boolean values of a {@link BatteryPack} in the order of their bits.
+     */
+    private enum Flag {
+        chargeMOSState(p -> p.chargeMOSState, (p, v) -> p.chargeMOSState = v),
+        dischargeMOSState(p -> p.dischargeMOSState, (p, v) -> p.dischargeMOSState = v),
+        forceCharge(p -> p.forceCharge, (p, v) -> p.forceCharge = v),
+        forceDischarge(p -> p.forceDischarge, (p, v) -> p.forceDischarge = v),
+        chargerState(p -> p.chargerState, (p, v) -> p.chargerState = v),
+        loadState(p -> p.loadState, (p, v) -> p.loadState = v),
+        cellBalanceActive(p -> p.cellBalanceActive, (p, v) -> p.cellBalanceActive = v);
+
+        private final Predicate<BatteryPack> getter;
+        private final BiConsumer<BatteryPack, Boolean> setter;
+
+        Flag(final Predicate<BatteryPack> getter, final BiConsumer<BatteryPack, Boolean> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * Encodes the {@link BatteryPack}s of the {@link EnergyStorage}.
+     *
+     * @param energyStorage the {@link EnergyStorage}
+     * @return the encoded telemetry message
+     */
+    public static byte[] encode(final EnergyStorage energyStorage) {
+        return encode(energyStorage.getBatteryPacks());
+    }
+
+
+    /**
+     * Encodes the specified {@link BatteryPack}s.
+     *
+     * @param packs the {@link BatteryPack}s
+     * @return the encoded telemetry message
+     */
+    public static byte[] encode(final List<BatteryPack> packs) {
+        final Writer out = new Writer(64 * packs.size() + 8);
+        out.write(VERSION);
+        out.writeVarint(packs.size());
+
+        for (final BatteryPack pack : packs) {
+            writePack(out, pack);
+        }
+
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Decodes the telemetry message into new {@link BatteryPack}s.
+     *
+     * @param data the encoded telemetry message
+     * @return the decoded {@link BatteryPack}s
+     * @throws IOException if the message is corrupt or of an unknown version
+     */
+    public static List<BatteryPack> decode(final byte[] data) throws IOException {
+        final Reader in = new Reader(data);
+
+        try {
+            final int version = in.read();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported telemetry version " + version);
+            }
+
+            final int count = in.readVarint();
+
+            if (count > data.length) {
+                throw new IOException("Invalid number of packs " + count);
+            }
+
+            final List<BatteryPack> packs = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                packs.add(readPack(in));
+            }
+
+            return packs;
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated telemetry message", e);
+        }
+    }
+
+
+    /**
+     * Gets the schema of the current version describing the order of the fields, the flags and
+     * the {@link Alarm}s for decoders, e.g. the web UI.
+     *
+     * @return the schema
+     */
+    public static Map<String, Object> getSchema() {
+        final List<String> fields = new ArrayList<>();
+        final List<String> flags = new ArrayList<>();
+        final List<String> alarms = new ArrayList<>();
+
+        for (final Field field : Field.values()) {
+            fields.add(field.name());
+        }
+
+        for (final Flag flag : Flag.values()) {
+            flags.add(flag.name());
+        }
+
+        for (final Alarm alarm : Alarm.values()) {
+            alarms.add(alarm.name());
+        }
+
+        final Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("version", VERSION);
+        schema.put("fields", fields);
+        schema.put("flags", flags);
+        schema.put("alarms", alarms);
+
+        return schema;
+    }
+
+
+    private static void writePack(final Writer out, final BatteryPack pack) {
+        for (final Field field : Field.values()) {
+            out.writeZigzag(field.getter.applyAsInt(pack));
+        }
+
+        int flags = 0;
+
+        for (final Flag flag : Flag.values()) {
+            flags |= flag.getter.test(pack) ? 1 << flag.ordinal() : 0;
+        }
+
+        out.writeVarint(flags);
+
+        int dio = 0;
+
+        for (int i = 0; i < Math.min(8, pack.dIO.length); i++) {
+            dio |= pack.dIO[i] ? 1 << i : 0;
+        }
+
+        out.write(dio);
+
+        final int cells = Math.max(0, Math.min(pack.numberOfCells, pack.cellVmV.length));
+        writeDeltas(out, pack.cellVmV, cells);
+        writeDeltas(out, pack.cellTemperature, Math.max(0, Math.min(pack.numOfTempSensors, pack.cellTemperature.length)));
+
+        for (int i = 0; i < cells; i += 8) {
+            int bits = 0;
+
+            for (int bit = 0; bit < 8 && i + bit < cells; bit++) {
+                bits |= pack.cellBalanceState[i + bit] ? 1 << bit : 0;
+            }
+
+            out.write(bits);
+        }
+
+        final int maskLength = (Alarm.values().length + 7) / 8;
+        final byte[] warnings = new byte[maskLength];
+        final byte[] alarms = new byte[maskLength];
+
+        for (final Map.Entry<Alarm, AlarmLevel> entry : pack.getAlarms(AlarmLevel.WARNING, AlarmLevel.ALARM).entrySet()) {
+            final int ordinal = entry.getKey().ordinal();
+            final byte[] mask = entry.getValue() == AlarmLevel.ALARM ? alarms : warnings;
+            mask[ordinal / 8] |= 1 << ordinal % 8;
+        }
+
+        out.writeVarint(maskLength);
+        out.writeAll(warnings);
+        out.writeAll(alarms);
+
+        out.writeString(pack.manufacturerCode);
+        out.writeString(pack.hardwareVersion);
+        out.writeString(pack.softwareVersion);
+        out.writeString(pack.serialnumber);
+    }
+
+
+    private static void writeDeltas(final Writer out, final int[] values, final int count) {
+        out.writeVarint(count);
+        int previous = 0;
+
+        for (int i = 0; i < count; i++) {
+            out.writeZigzag(values[i] - previous);
+            previous = values[i];
+        }
+    }
+
+
+    private static BatteryPack readPack(final Reader in) throws IOException {
+        final BatteryPack pack = new BatteryPack();
+
+        for (final Field field : Field.values()) {
+            field.setter.accept(pack, in.readZigzag());
+        }
+
+        final int flags = in.readVarint();
+
+        for (final Flag flag : Flag.values()) {
+            flag.setter.accept(pack, (flags & 1 << flag.ordinal()) != 0);
+        }
+
+        final int dio = in.read();
+
+        for (int i = 0; i < Math.min(8, pack.dIO.length); i++) {
+            pack.dIO[i] = (dio & 1 << i) != 0;
+        }
+
+        final int cells = readDeltas(in, pack.cellVmV);
+        readDeltas(in, pack.cellTemperature);
+
+        for (int i = 0; i < cells; i += 8) {
+            final int bits = in.read();
+
+            for (int bit = 0; bit < 8 && i + bit < cells; bit++) {
+                pack.cellBalanceState[i + bit] = (bits & 1 << bit) != 0;
+            }
+        }
+
+        final int maskLength = in.readVarint();
+        final int warnings = in.position;
+        final int alarms = warnings + maskLength;
+        in.position = alarms + maskLength;
+
+        for (final Alarm alarm : Alarm.values()) {
+            final int index = alarm.ordinal() / 8;
+
+            if (index < maskLength) {
+                final int bit = 1 << alarm.ordinal() % 8;
+
+                if ((in.data[alarms + index] & bit) != 0) {
+                    pack.setAlarm(alarm, AlarmLevel.ALARM);
+                } else if ((in.data[warnings + index] & bit) != 0) {
+                    pack.setAlarm(alarm, AlarmLevel.WARNING);
+                }
+            }
+        }
+
+        pack.manufacturerCode = in.readString();
+        pack.hardwareVersion = in.readString();
+        pack.softwareVersion = in.readString();
+        pack.serialnumber = in.readString();
+
+        return pack;
+    }
+
+
+    private static int readDeltas(final Reader in, final int[] values) throws IOException {
+        final int count = in.readVarint();
+
+        if (count > values.length) {
+            throw new IOException("Invalid number of values " + count);
+        }
+
+        int previous = 0;
+
+        for (int i = 0; i < count; i++) {
+            previous += in.readZigzag();
+            values[i] = previous;
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes the varints to a growing byte array.
+     */
+    private static class Writer extends ByteArrayOutputStream {
+        Writer(final int size) {
+            super(size);
+        }
+
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write(value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+
+            write(value);
+        }
+
+
+        void writeZigzag(final int value) {
+            writeVarint(value << 1 ^ value >> 31);
+        }
+
+
+        void writeAll(final byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+
+
+        void writeString(final String value) {
+            final byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            writeVarint(bytes.length);
+            writeAll(bytes);
+        }
+    }
+
+    /**
+     * Reads the varints from a byte array.
+     */
+    private static class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(final byte[] data) {
+            this.data = data;
+        }
+
+
+        int read() {
+            return data[position++] & 0xFF;
+        }
+
+
+        int readVarint() throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = read();
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed varint at position " + position);
+        }
+
+
+        int readZigzag() throws IOException {
+            final int value = readVarint();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+
+        String readString() throws IOException {
+            final int length = readVarint();
+
+            if (length < 0 || position + length > data.length) {
+                throw new IOException("Invalid string length " + length);
+            }
+
+            final String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
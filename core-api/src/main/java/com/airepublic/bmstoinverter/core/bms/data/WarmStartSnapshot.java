@@ -0,0 +1,441 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+
+/**
+ * Persists the values of the {@link BatteryPack}s of the {@link EnergyStorage} to a compact binary
+ * snapshot, so that after a restart the inverters can be served immediately with the last known
+ * values until the BMSes deliver current data. Restored packs are aggregated with conservative
+ * current limits and only for a short validity window.
+ * <p>
+ * The snapshot is disabled by default, because the repeated writes wear the SD cards and flash
+ * memories of small devices. It is written atomically to the file set with the system property
+ * <code>warmStart.file</code> at most every <code>warmStart.writeInterval</code> seconds (default
+ * 300) and only if the values have changed since the last write. An unchanged snapshot is only
+ * rewritten before it becomes too old to be restored. On startup it is only restored if it is not
+ * older than <code>warmStart.maxAge</code> seconds (default 900) and is used for
+ * <code>warmStart.validity</code> seconds (default 60) with <code>warmStart.limitPercent</code>
+ * percent of the current limits (default 50).
+ * <p>
+ * The file format is:
+ *
+ * <pre>
+ * int    magic 'BTIS'
+ * short  version
+ * long   time of the snapshot (epoch milliseconds)
+ * short  number of packs followed by the packs each prefixed with
+ *        UTF    rack, i.e. the binding key of its BMS
+ *        short  battery id at its BMS
+ * </pre>
+ * <p>
+ * Restored packs are matched to the packs of the {@link EnergyStorage} by their rack and battery
+ * id. Packs which have not been created by their BMS yet are added to the {@link EnergyStorage} and
+ * adopted by the BMS when it creates the pack with
+ * {@link EnergyStorage#adoptPack(String, int)}.
+ */
+public class WarmStartSnapshot {
+    private final static Logger LOG = LoggerFactory.getLogger(WarmStartSnapshot.class);
+    /** The magic number at the start of the snapshot file. */
+    public final static int MAGIC = 0x42544953;
+    /** The version of the snapshot file format. */
+    public final static short VERSION = 2;
+    private final Path file;
+    private final long writeIntervalMs;
+    private final long maxAgeMs;
+    private final long validityMs;
+    private final int limitPercent;
+    private long lastWrite = 0;
+    private byte[] lastData;
+
+    /**
+     * Constructor.
+     *
+     * @param file the snapshot file or null to disable
+     * @param writeIntervalMs the minimum time between two writes in milliseconds
+     * @param maxAgeMs the maximum age of a snapshot to be restored in milliseconds
+     * @param validityMs the time restored values are used after startup in milliseconds
+     * @param limitPercent the percentage of the current limits of restored packs
+     */
+    public WarmStartSnapshot(final Path file, final long writeIntervalMs, final long maxAgeMs, final long validityMs, final int limitPercent) {
+        this.file = file;
+        this.writeIntervalMs = writeIntervalMs;
+        this.maxAgeMs = maxAgeMs;
+        this.validityMs = validityMs;
+        this.limitPercent = limitPercent;
+    }
+
+
+    /**
+     * Creates a {@link WarmStartSnapshot} configured from the system properties
+     * <code>warmStart.file</code>, <code>warmStart.writeInterval</code>,
+     * <code>warmStart.maxAge</code>, <code>warmStart.validity</code> (times in seconds) and
+     * <code>warmStart.limitPercent</code>.
+     *
+     * @return the {@link WarmStartSnapshot}
+     */
+    public static WarmStartSnapshot fromSystemProperties() {
+        final String file = System.getProperty("warmStart.file", "");
+        final long writeInterval = Long.parseLong(System.getProperty("warmStart.writeInterval", "300"));
+        final long maxAge = Long.parseLong(System.getProperty("warmStart.maxAge", "900"));
+        final long validity = Long.parseLong(System.getProperty("warmStart.validity", "60"));
+        final int limitPercent = Integer.parseInt(System.getProperty("warmStart.limitPercent", "50"));
+
+        return new WarmStartSnapshot(file.trim().isEmpty() ? null : Paths.get(file), writeInterval * 1000, maxAge * 1000, validity * 1000, limitPercent);
+    }
+
+
+    /**
+     * Returns true if a snapshot file is configured.
+     *
+     * @return true if enabled otherwise false
+     */
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+
+    /**
+     * Writes the snapshot of the {@link EnergyStorage} if the write interval has passed since the
+     * last write and the values have changed or the last snapshot would otherwise become too old to
+     * be restored. The snapshot is not written while there are restored packs which have not been
+     * updated by their BMS yet, so outdated values are not persisted again.
+     *
+     * @param energyStorage the {@link EnergyStorage}
+     */
+    public void saveIfDue(final EnergyStorage energyStorage) {
+        final long now = System.currentTimeMillis();
+
+        if (file == null || now - lastWrite < writeIntervalMs) {
+            return;
+        }
+
+        final List<BatteryPack> packs = energyStorage.getBatteryPacks();
+
+        if (packs.stream().anyMatch(BatteryPack::isRestored)) {
+            return;
+        }
+
+        try {
+            // encode without the time to compare the values with the last snapshot
+            final byte[] data = encode(packs, 0);
+
+            if (Arrays.equals(data, lastData) && now - lastWrite < maxAgeMs - writeIntervalMs) {
+                return;
+            }
+
+            lastWrite = now;
+            final byte[] values = data.clone();
+            // the time follows the magic and the version
+            ByteBuffer.wrap(data).putLong(6, now);
+
+            final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastData = values;
+        } catch (final IOException e) {
+            LOG.error("Could not write the warm-start snapshot to {}!", file, e);
+        }
+    }
+
+
+    /**
+     * Restores the values of the {@link BatteryPack}s of the {@link EnergyStorage} from the
+     * snapshot if it exists and is not too old. Packs not yet created by their BMS are added to be
+     * adopted later.
+     *
+     * @param energyStorage the {@link EnergyStorage}
+     * @return true if the packs have been restored
+     */
+    public boolean restore(final EnergyStorage energyStorage) {
+        if (file == null || !Files.exists(file)) {
+            return false;
+        }
+
+        try {
+            final long now = System.currentTimeMillis();
+            final List<BatteryPack> restored = new ArrayList<>();
+            final long time = decode(Files.readAllBytes(file), energyStorage, now - maxAgeMs, restored);
+
+            if (time == 0 || restored.isEmpty()) {
+                return false;
+            }
+
+            for (final BatteryPack pack : restored) {
+                pack.markRestored(now + validityMs, limitPercent);
+            }
+
+            LOG.info("Restored {} battery packs from the warm-start snapshot of {}ms ago", restored.size(), now - time);
+            return true;
+        } catch (final Exception e) {
+            LOG.error("Could not restore the warm-start snapshot from {}!", file, e);
+            return false;
+        }
+    }
+
+
+    /**
+     * Marks restored packs which have not been updated within the validity window as stale. Expired
+     * packs which have never been adopted by a BMS are removed from the {@link EnergyStorage}.
+     *
+     * @param energyStorage the {@link EnergyStorage}
+     * @return true if any restored pack expired
+     */
+    public boolean expire(final EnergyStorage energyStorage) {
+        final long now = System.currentTimeMillis();
+        boolean expired = false;
+
+        for (final BatteryPack pack : new ArrayList<>(energyStorage.getBatteryPacks())) {
+            if (pack.expireRestored(now)) {
+                expired = true;
+
+                if (energyStorage.removeUnadoptedPack(pack)) {
+                    LOG.warn("Removed restored battery pack #{} of {} which is not managed by any BMS", pack.getBatteryId(), pack.getRack());
+                }
+            }
+        }
+
+        if (expired) {
+            LOG.warn("Restored battery pack values expired before the BMS delivered current data");
+        }
+
+        return expired;
+    }
+
+
+    /**
+     * Encodes the values of the {@link BatteryPack}s.
+     *
+     * @param packs the {@link BatteryPack}s
+     * @param time the time of the snapshot
+     * @return the encoded snapshot
+     * @throws IOException if the snapshot could not be encoded
+     */
+    static byte[] encode(final List<BatteryPack> packs, final long time) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * packs.size() + 16);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(time);
+            out.writeShort(packs.size());
+
+            for (final BatteryPack pack : packs) {
+                out.writeUTF(pack.getRack() != null ? pack.getRack() : "");
+                out.writeShort(pack.getBatteryId());
+                writePack(out, pack);
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Decodes the snapshot into the {@link BatteryPack}s of the {@link EnergyStorage} matching their
+     * rack and battery id or into new packs to be adopted by their BMS.
+     *
+     * @param data the encoded snapshot
+     * @param energyStorage the {@link EnergyStorage} to restore
+     * @param notBefore the minimum time of the snapshot
+     * @param restored the list to add the restored {@link BatteryPack}s to
+     * @return the time of the snapshot or 0 if it has not been restored
+     * @throws IOException if the snapshot is corrupt
+     */
+    static long decode(final byte[] data, final EnergyStorage energyStorage, final long notBefore, final List<BatteryPack> restored) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                LOG.warn("Ignoring warm-start snapshot with unknown format");
+                return 0;
+            }
+
+            final long time = in.readLong();
+
+            if (time < notBefore) {
+                LOG.info("Ignoring outdated warm-start snapshot");
+                return 0;
+            }
+
+            final int count = in.readUnsignedShort();
+
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                final String rack = name.isEmpty() ? null : name;
+                final int batteryId = in.readUnsignedShort();
+                BatteryPack pack = energyStorage.getBatteryPack(rack, batteryId);
+
+                if (pack != null) {
+                    readPack(in, pack);
+                } else {
+                    pack = new BatteryPack();
+                    pack.setRack(rack);
+                    pack.setBatteryId(batteryId);
+                    readPack(in, pack);
+                    energyStorage.addRestoredPack(pack);
+                }
+
+                restored.add(pack);
+            }
+
+            return time;
+        }
+    }
+
+
+    private static void writePack(final DataOutputStream out, final BatteryPack pack) throws IOException {
+        out.writeInt(pack.type);
+        out.writeInt(pack.ratedCapacitymAh);
+        out.writeInt(pack.ratedCellmV);
+        out.writeInt(pack.maxPackVoltageLimit);
+        out.writeInt(pack.minPackVoltageLimit);
+        out.writeInt(pack.maxPackChargeCurrent);
+        out.writeInt(pack.maxPackDischargeCurrent);
+        out.writeInt(pack.packVoltage);
+        out.writeInt(pack.packCurrent);
+        out.writeInt(pack.packSOC);
+        out.writeInt(pack.packSOH);
+        out.writeInt(pack.maxCellVoltageLimit);
+        out.writeInt(pack.minCellVoltageLimit);
+        out.writeInt(pack.maxCellmV);
+        out.writeInt(pack.maxCellVNum);
+        out.writeInt(pack.minCellmV);
+        out.writeInt(pack.minCellVNum);
+        out.writeInt(pack.cellDiffmV);
+        out.writeInt(pack.tempMax);
+        out.writeInt(pack.tempMin);
+        out.writeInt(pack.tempAverage);
+        out.writeInt(pack.tempMaxCellNum);
+        out.writeInt(pack.tempMinCellNum);
+        out.writeInt(pack.chargeDischargeStatus);
+        out.writeInt(pack.remainingCapacitymAh);
+        out.writeInt(pack.bmsCycles);
+        out.writeInt(pack.maxModulemV);
+        out.writeInt(pack.minModulemV);
+        out.writeInt(pack.maxModuleTemp);
+        out.writeInt(pack.minModuleTemp);
+        out.writeInt(pack.modulesInSeries);
+        out.writeInt(pack.moduleVoltage);
+        out.writeInt(pack.moduleRatedCapacityAh);
+        out.writeByte((pack.chargeMOSState ? 1 : 0) | (pack.dischargeMOSState ? 2 : 0) | (pack.forceCharge ? 4 : 0) | (pack.forceDischarge ? 8 : 0));
+
+        final int cells = Math.min(pack.numberOfCells, pack.cellVmV.length);
+        out.writeShort(cells);
+
+        for (int i = 0; i < cells; i++) {
+            out.writeShort(pack.cellVmV[i]);
+        }
+
+        final int sensors = Math.min(pack.numOfTempSensors, pack.cellTemperature.length);
+        out.writeShort(sensors);
+
+        for (int i = 0; i < sensors; i++) {
+            out.writeShort(pack.cellTemperature[i]);
+        }
+
+        final Map<Alarm, AlarmLevel> alarms = pack.getAlarms(AlarmLevel.WARNING, AlarmLevel.ALARM);
+        out.writeShort(alarms.size());
+
+        for (final Map.Entry<Alarm, AlarmLevel> entry : alarms.entrySet()) {
+            out.writeUTF(entry.getKey().name());
+            out.writeByte(entry.getValue().ordinal());
+        }
+    }
+
+
+    private static void readPack(final DataInputStream in, final BatteryPack pack) throws IOException {
+        pack.type = in.readInt();
+        pack.ratedCapacitymAh = in.readInt();
+        pack.ratedCellmV = in.readInt();
+        pack.maxPackVoltageLimit = in.readInt();
+        pack.minPackVoltageLimit = in.readInt();
+        pack.maxPackChargeCurrent = in.readInt();
+        pack.maxPackDischargeCurrent = in.readInt();
+        pack.packVoltage = in.readInt();
+        pack.packCurrent = in.readInt();
+        pack.packSOC = in.readInt();
+        pack.packSOH = in.readInt();
+        pack.maxCellVoltageLimit = in.readInt();
+        pack.minCellVoltageLimit = in.readInt();
+        pack.maxCellmV = in.readInt();
+        pack.maxCellVNum = in.readInt();
+        pack.minCellmV = in.readInt();
+        pack.minCellVNum = in.readInt();
+        pack.cellDiffmV = in.readInt();
+        pack.tempMax = in.readInt();
+        pack.tempMin = in.readInt();
+        pack.tempAverage = in.readInt();
+        pack.tempMaxCellNum = in.readInt();
+        pack.tempMinCellNum = in.readInt();
+        pack.chargeDischargeStatus = in.readInt();
+        pack.remainingCapacitymAh = in.readInt();
+        pack.bmsCycles = in.readInt();
+        pack.maxModulemV = in.readInt();
+        pack.minModulemV = in.readInt();
+        pack.maxModuleTemp = in.readInt();
+        pack.minModuleTemp = in.readInt();
+        pack.modulesInSeries = in.readInt();
+        pack.moduleVoltage = in.readInt();
+        pack.moduleRatedCapacityAh = in.readInt();
+
+        final int flags = in.readByte();
+        pack.chargeMOSState = (flags & 1) != 0;
+        pack.dischargeMOSState = (flags & 2) != 0;
+        pack.forceCharge = (flags & 4) != 0;
+        pack.forceDischarge = (flags & 8) != 0;
+
+        pack.numberOfCells = in.readShort();
+
+        for (int i = 0; i < pack.numberOfCells; i++) {
+            pack.cellVmV[i] = in.readShort();
+        }
+
+        pack.numOfTempSensors = in.readShort();
+
+        for (int i = 0; i < pack.numOfTempSensors; i++) {
+            pack.cellTemperature[i] = in.readShort();
+        }
+
+        final int alarms = in.readShort();
+        final AlarmLevel[] levels = AlarmLevel.values();
+
+        for (int i = 0; i < alarms; i++) {
+            final String alarm = in.readUTF();
+            final int level = in.readByte();
+
+            try {
+                if (level < levels.length) {
+                    pack.setAlarm(Alarm.valueOf(alarm), levels[level]);
+                }
+            } catch (final IllegalArgumentException e) {
+                // the alarm is not known in this version
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
+
+/**
+ * Wraps a {@link CANPort} and appends every sent and received frame to a {@link FrameCapture}. The
+ * {@link CANFilter}s registered on this port are passed on to the wrapped {@link CANPort}.
+ */
+public class CANCapturePort extends CANPort {
+    private final CANPort port;
+    private final FrameCapture capture;
+
+    /**
+     * Constructor.
+     *
+     * @param port the captured {@link CANPort}
+     * @param capture the {@link FrameCapture} to write to
+     */
+    public CANCapturePort(final CANPort port, final FrameCapture capture) {
+        super(port.getPortname(), port.getBaudrate());
+        this.port = port;
+        this.capture = capture;
+    }
+
+
+    @Override
+    public void registerFilters(final String bindingKey, final List<CANFilter> filters) {
+        super.registerFilters(bindingKey, filters);
+        port.registerFilters(bindingKey, filters);
+    }
+
+
+    @Override
+    public void unregisterFilters(final String bindingKey) {
+        super.unregisterFilters(bindingKey);
+        port.unregisterFilters(bindingKey);
+    }
+
+
+    @Override
+    public void open() throws Exception {
+        port.open();
+    }
+
+
+    @Override
+    public boolean isOpen() {
+        return port.isOpen();
+    }
+
+
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        final ByteBuffer frame = port.receiveFrame();
+        setFrameReceivedNanos(port.getFrameReceivedNanos());
+        capture.append(FrameCapture.TYPE_RECEIVED, frame);
+        return frame;
+    }
+
+
+    @Override
+    public void sendFrame(final ByteBuffer frame) throws IOException {
+        capture.append(FrameCapture.TYPE_SENT, frame);
+        port.sendFrame(frame);
+    }
+
+
+    @Override
+    public void sendExtendedFrame(final ByteBuffer frame) throws IOException {
+        capture.append(FrameCapture.TYPE_SENT_EXTENDED, frame);
+        port.sendExtendedFrame(frame);
+    }
+
+
+    @Override
+    public void clearBuffers() {
+        port.clearBuffers();
+    }
+
+
+    @Override
+    public void close() {
+        stopWorkers();
+        capture.force();
+        port.close();
+    }
+
+
+    @Override
+    public FlightRecorder getFlightRecorder() {
+        return port.getFlightRecorder();
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
+
+/**
+ * Wraps a {@link Port} and appends every sent and received frame to a {@link FrameCapture}. Use
+ * {@link #wrap(Port)} to create the matching wrapper for a {@link CANPort}.
+ */
+public class CapturePort extends Port {
+    private final Port port;
+    private final FrameCapture capture;
+
+    /**
+     * Constructor.
+     *
+     * @param port the captured {@link Port}
+     * @param capture the {@link FrameCapture} to write to
+     */
+    public CapturePort(final Port port, final FrameCapture capture) {
+        super(port.getPortname(), port.getBaudrate());
+        this.port = port;
+        this.capture = capture;
+    }
+
+
+    /**
+     * Wraps the {@link Port} in a {@link CapturePort} or {@link CANCapturePort} writing to a
+     * {@link FrameCapture} configured from the system properties.
+     *
+     * @param port the {@link Port} to capture
+     * @return the wrapping {@link Port}
+     */
+    public static Port wrap(final Port port) {
+        final FrameCapture capture = FrameCapture.fromSystemProperties(port.getPortname());
+
+        if (port instanceof CANPort) {
+            return new CANCapturePort((CANPort) port, capture);
+        }
+
+        return new CapturePort(port, capture);
+    }
+
+
+    @Override
+    public void open() throws Exception {
+        port.open();
+    }
+
+
+    @Override
+    public boolean isOpen() {
+        return port.isOpen();
+    }
+
+
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        final ByteBuffer frame = port.receiveFrame();
+        setFrameReceivedNanos(port.getFrameReceivedNanos());
+        capture.append(FrameCapture.TYPE_RECEIVED, frame);
+        return frame;
+    }
+
+
+    @Override
+    public void sendFrame(final ByteBuffer frame) throws IOException {
+        capture.append(FrameCapture.TYPE_SENT, frame);
+        port.sendFrame(frame);
+    }
+
+
+    @Override
+    public void clearBuffers() {
+        port.clearBuffers();
+    }
+
+
+    @Override
+    public void close() {
+        capture.force();
+        port.close();
+    }
+
+
+    @Override
+    public FlightRecorder getFlightRecorder() {
+        return port.getFlightRecorder();
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of capture files written by {@link FrameCapture}.
+ */
+public class CaptureReader {
+
+    /**
+     * A captured frame.
+     */
+    public static class Record {
+        private final long nanos;
+        private final byte type;
+        private final ByteOrder order;
+        private final byte[] data;
+
+        /**
+         * Constructor.
+         *
+         * @param nanos the nanoseconds since the start of the capture
+         * @param type the record type
+         * @param order the {@link ByteOrder} of the frame buffer
+         * @param data the bytes of the frame
+         */
+        public Record(final long nanos, final byte type, final ByteOrder order, final byte[] data) {
+            this.nanos = nanos;
+            this.type = type;
+            this.order = order;
+            this.data = data;
+        }
+
+
+        /**
+         * Gets the nanoseconds since the start of the capture.
+         *
+         * @return the nanoseconds since the start of the capture
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+
+        /**
+         * Gets the record type, e.g. {@link FrameCapture#TYPE_RECEIVED}.
+         *
+         * @return the record type
+         */
+        public byte getType() {
+            return type;
+        }
+
+
+        /**
+         * Returns true if the frame was received.
+         *
+         * @return true if the frame was received otherwise false
+         */
+        public boolean isReceived() {
+            return type == FrameCapture.TYPE_RECEIVED;
+        }
+
+
+        /**
+         * Creates a new {@link ByteBuffer} of the frame in its original {@link ByteOrder}.
+         *
+         * @return the frame {@link ByteBuffer}
+         */
+        public ByteBuffer toFrame() {
+            return ByteBuffer.wrap(data.clone()).order(order);
+        }
+    }
+
+    /**
+     * Reads all records of the specified capture files in the order of the files.
+     *
+     * @param files the capture files
+     * @return the {@link Record}s
+     * @throws IOException if a file could not be read or is no capture file
+     */
+    public static List<Record> read(final List<Path> files) throws IOException {
+        final List<Record> records = new ArrayList<>();
+
+        for (final Path file : files) {
+            records.addAll(read(file));
+        }
+
+        return records;
+    }
+
+
+    /**
+     * Reads all records of the specified capture file.
+     *
+     * @param file the capture file
+     * @return the {@link Record}s
+     * @throws IOException if the file could not be read or is no capture file
+     */
+    public static List<Record> read(final Path file) throws IOException {
+        final List<Record> records = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 16 || buffer.getInt() != FrameCapture.MAGIC) {
+                throw new IOException("Not a capture file: " + file);
+            }
+
+            final short version = buffer.getShort();
+
+            if (version != FrameCapture.VERSION) {
+                throw new IOException("Unsupported capture file version " + version + ": " + file);
+            }
+
+            buffer.getLong(); // start of the capture
+            final byte[] portname = new byte[buffer.getShort()];
+            buffer.get(portname);
+
+            while (buffer.remaining() >= 12) {
+                final long nanos = buffer.getLong();
+                final byte type = buffer.get();
+
+                if (type == 0) {
+                    break;
+                }
+
+                final ByteOrder order = (buffer.get() & FrameCapture.FLAG_LITTLE_ENDIAN) != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+                final byte[] data = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(data);
+                records.add(new Record(nanos, type, order, data));
+            }
+        }
+
+        return records;
+    }
+
+
+    /**
+     * Reads the name of the captured port from the header of the capture file.
+     *
+     * @param file the capture file
+     * @return the name of the captured port
+     * @throws IOException if the file could not be read or is no capture file
+     */
+    public static String readPortname(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), 16 + 0xFFFF));
+            channel.read(header);
+            header.flip();
+
+            if (header.remaining() < 16 || header.getInt() != FrameCapture.MAGIC) {
+                throw new IOException("Not a capture file: " + file);
+            }
+
+            header.getShort();
+            header.getLong();
+            final byte[] portname = new byte[header.getShort()];
+            header.get(portname);
+
+            return new String(portname, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.airepublic.bmstoinverter.core.Port;
+
+/**
+ * Keeps the last frames sent and received on a {@link Port} in a fixed-size ring buffer so they can
+ * be inspected after a failure. Recording copies the raw bytes into preallocated arrays and does
+ * not allocate, the frames are only formatted when they are dumped, e.g. on too many invalid
+ * frames, on an alarm or via the web endpoint <code>/frames</code>.
+ * <p>
+ * The number of recorded frames can be set with the system property
+ * <code>flightRecorder.frames</code> (default 256, 0 disables recording) and the maximum number of
+ * bytes kept per frame with <code>flightRecorder.frameSize</code> (default 64).
+ */
+public class FlightRecorder {
+    /** The direction of a received frame. */
+    public final static byte DIRECTION_RECEIVED = 0;
+    /** The direction of a sent frame. */
+    public final static byte DIRECTION_SENT = 1;
+    /** The outcome of a frame which has not been validated. */
+    public final static byte OUTCOME_NONE = 0;
+    /** The outcome of a received frame which could not be interpreted. */
+    public final static byte OUTCOME_INVALID = 1;
+    private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final int capacity;
+    private final int frameSize;
+    private final long[] timestamps;
+    private final byte[] directions;
+    private final byte[] outcomes;
+    private final int[] lengths;
+    private final byte[] data;
+    private long count = 0;
+    private int lastReceived = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the number of frames to keep, 0 to disable recording
+     * @param frameSize the maximum number of bytes kept per frame
+     */
+    public FlightRecorder(final int capacity, final int frameSize) {
+        this.capacity = Math.max(0, capacity);
+        this.frameSize = Math.max(0, frameSize);
+        timestamps = new long[this.capacity];
+        directions = new byte[this.capacity];
+        outcomes = new byte[this.capacity];
+        lengths = new int[this.capacity];
+        data = new byte[this.capacity * this.frameSize];
+    }
+
+
+    /**
+     * Creates a {@link FlightRecorder} configured from the system properties
+     * <code>flightRecorder.frames</code> and <code>flightRecorder.frameSize</code>.
+     *
+     * @return the {@link FlightRecorder}
+     */
+    public static FlightRecorder fromSystemProperties() {
+        final int frames = Integer.parseInt(System.getProperty("flightRecorder.frames", "256"));
+        final int frameSize = Integer.parseInt(System.getProperty("flightRecorder.frameSize", "64"));
+
+        return new FlightRecorder(frames, frameSize);
+    }
+
+
+    /**
+     * Returns true if frames are recorded.
+     *
+     * @return true if enabled otherwise false
+     */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+
+    /**
+     * Records the bytes of the frame up to its limit without changing its position.
+     *
+     * @param direction the direction {@link #DIRECTION_RECEIVED} or {@link #DIRECTION_SENT}
+     * @param frame the frame
+     */
+    public synchronized void record(final byte direction, final ByteBuffer frame) {
+        if (capacity == 0 || frame == null) {
+            return;
+        }
+
+        final int slot = (int) (count++ % capacity);
+        final int length = frame.limit();
+        final int copy = Math.min(length, frameSize);
+        final int offset = slot * frameSize;
+
+        for (int i = 0; i < copy; i++) {
+            data[offset + i] = frame.get(i);
+        }
+
+        timestamps[slot] = System.currentTimeMillis();
+        directions[slot] = direction;
+        outcomes[slot] = OUTCOME_NONE;
+        lengths[slot] = length;
+
+        if (direction == DIRECTION_RECEIVED) {
+            lastReceived = slot;
+        }
+    }
+
+
+    /**
+     * Sets the validation outcome of the last received frame.
+     *
+     * @param outcome the outcome, e.g. {@link #OUTCOME_INVALID}
+     */
+    public synchronized void markLastReceived(final byte outcome) {
+        if (lastReceived >= 0) {
+            outcomes[lastReceived] = outcome;
+        }
+    }
+
+
+    /**
+     * Gets the number of frames recorded since the start.
+     *
+     * @return the number of recorded frames
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Formats the recorded frames, the oldest first.
+     *
+     * @return a line per recorded frame
+     */
+    public synchronized List<String> format() {
+        final int size = (int) Math.min(count, capacity);
+        final List<String> lines = new ArrayList<>(size);
+        final SimpleDateFormat df = new SimpleDateFormat("HH:mm:ss.SSS");
+
+        for (int n = 0; n < size; n++) {
+            final int slot = (int) ((count - size + n) % capacity);
+            final int copy = Math.min(lengths[slot], frameSize);
+            final StringBuilder line = new StringBuilder(32 + copy * 3);
+            line.append(df.format(new Date(timestamps[slot]))).append(directions[slot] == DIRECTION_SENT ? " TX " : " RX ");
+            line.append('[').append(lengths[slot]).append(']');
+
+            for (int i = 0; i < copy; i++) {
+                final int b = data[slot * frameSize + i] & 0xFF;
+                line.append(' ').append(HEX[b >>> 4]).append(HEX[b & 0x0F]);
+            }
+
+            if (copy < lengths[slot]) {
+                line.append(" ...");
+            }
+
+            if (outcomes[slot] == OUTCOME_INVALID) {
+                line.append(" INVALID");
+            }
+
+            lines.add(line.toString());
+        }
+
+        return lines;
+    }
+
+
+    /**
+     * Formats the recorded frames into one string, e.g. for logging.
+     *
+     * @return the recorded frames separated by line breaks
+     */
+    public String dump() {
+        return String.join("\n", format());
+    }
+
+}
@@ -0,0 +1,232 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.Port;
+
+/**
+ * Appends the frames sent and received on a {@link Port} to a compact binary capture log which can
+ * be fed back via the {@link ReplayPort}. The log is written to memory-mapped files which are
+ * rotated when they reach the maximum file size, keeping only the newest files.
+ * <p>
+ * Each file starts with a header:
+ *
+ * <pre>
+ * int    magic 'BTIC'
+ * short  version
+ * long   start of the capture (epoch milliseconds)
+ * short  length of the port name followed by the UTF-8 bytes of the port name
+ * </pre>
+ *
+ * followed by the records:
+ *
+ * <pre>
+ * long   nanoseconds since the start of the capture
+ * byte   type - 1 received, 2 sent, 3 sent as extended CAN frame, 0 end of records
+ * byte   flags - bit 0 set if the frame buffer is little endian
+ * short  length of the frame (unsigned) followed by the bytes of the frame
+ * </pre>
+ *
+ * Capturing is enabled by setting the system property <code>capture.dir</code> to the directory of
+ * the capture files. The size of each file can be set with <code>capture.maxFileSize</code> (in MB,
+ * default 16) and the number of files kept per port with <code>capture.maxFiles</code> (default 10).
+ */
+public class FrameCapture implements AutoCloseable {
+    private final static Logger LOG = LoggerFactory.getLogger(FrameCapture.class);
+    /** The magic number at the start of each capture file. */
+    public final static int MAGIC = 0x42544943;
+    /** The version of the capture file format. */
+    public final static short VERSION = 1;
+    /** The record type of a received frame. */
+    public final static byte TYPE_RECEIVED = 1;
+    /** The record type of a sent frame. */
+    public final static byte TYPE_SENT = 2;
+    /** The record type of a frame sent as extended CAN frame. */
+    public final static byte TYPE_SENT_EXTENDED = 3;
+    /** The flag set if the frame buffer is little endian. */
+    public final static byte FLAG_LITTLE_ENDIAN = 1;
+    // timestamp, type, flags and length
+    private final static int RECORD_HEADER_SIZE = 8 + 1 + 1 + 2;
+    private final Path directory;
+    private final String portname;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final LinkedList<Path> files = new LinkedList<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int fileIndex = 0;
+    private boolean failed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param directory the directory to write the capture files to
+     * @param portname the name of the captured {@link Port}
+     * @param maxFileSize the maximum size of a capture file in bytes
+     * @param maxFiles the maximum number of capture files to keep
+     */
+    public FrameCapture(final Path directory, final String portname, final long maxFileSize, final int maxFiles) {
+        this.directory = directory;
+        this.portname = portname;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+
+    /**
+     * Returns true if capturing is enabled by the system property <code>capture.dir</code>.
+     *
+     * @return true if enabled otherwise false
+     */
+    public static boolean isEnabled() {
+        return System.getProperty("capture.dir") != null;
+    }
+
+
+    /**
+     * Creates a {@link FrameCapture} for the specified port configured from the system properties.
+     *
+     * @param portname the name of the captured {@link Port}
+     * @return the {@link FrameCapture}
+     */
+    public static FrameCapture fromSystemProperties(final String portname) {
+        final Path directory = Paths.get(System.getProperty("capture.dir", "capture"));
+        final long maxFileSize = Long.parseLong(System.getProperty("capture.maxFileSize", "16")) * 1024 * 1024;
+        final int maxFiles = Integer.parseInt(System.getProperty("capture.maxFiles", "10"));
+
+        return new FrameCapture(directory, portname, maxFileSize, maxFiles);
+    }
+
+
+    /**
+     * Appends the frame to the capture log. Errors are logged and disable the capture so that the
+     * communication on the {@link Port} is not affected.
+     *
+     * @param type the record type
+     * @param frame the frame {@link ByteBuffer}
+     */
+    public synchronized void append(final byte type, final ByteBuffer frame) {
+        if (failed || frame == null) {
+            return;
+        }
+
+        final long nanos = System.nanoTime() - startNanos;
+        final ByteBuffer data = frame.duplicate();
+        data.rewind();
+        final int length = data.remaining();
+
+        if (length > 0xFFFF) {
+            LOG.warn("Frame of {} bytes on port '{}' is too large to be captured", length, portname);
+            return;
+        }
+
+        try {
+            // keep at least one byte for the end marker
+            if (buffer == null || buffer.remaining() < RECORD_HEADER_SIZE + length + 1) {
+                rotate();
+            }
+
+            buffer.putLong(nanos);
+            buffer.put(type);
+            buffer.put(frame.order() == ByteOrder.LITTLE_ENDIAN ? FLAG_LITTLE_ENDIAN : 0);
+            buffer.putShort((short) length);
+            buffer.put(data);
+        } catch (final Exception e) {
+            LOG.error("Capturing frames of port '{}' failed - capture disabled!", portname, e);
+            failed = true;
+            finish();
+        }
+    }
+
+
+    private void rotate() throws IOException {
+        finish();
+        Files.createDirectories(directory);
+
+        final String name = portname.replaceAll("[^A-Za-z0-9.-]+", "_").replaceAll("^_", "");
+        final Path file = directory.resolve(name + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(startMillis)) + String.format("-%05d.cap", fileIndex++));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxFileSize);
+
+        final byte[] nameBytes = portname.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(startMillis);
+        buffer.putShort((short) nameBytes.length);
+        buffer.put(nameBytes);
+
+        files.add(file);
+        LOG.info("Capturing frames of port '{}' to {}", portname, file);
+
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.removeFirst());
+        }
+    }
+
+
+    /**
+     * Forces the captured frames to be written to the storage device.
+     */
+    public synchronized void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+
+    private void finish() {
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            buffer.force();
+            // the mapped file is zero filled, so the remaining bytes already mark the end of the
+            // records - truncating just saves space and is not supported on all platforms
+            channel.truncate(buffer.position() + 1);
+        } catch (final Exception e) {
+            LOG.debug("Could not truncate capture file of port '{}'", portname, e);
+        }
+
+        try {
+            channel.close();
+        } catch (final IOException e) {
+        }
+
+        channel = null;
+        buffer = null;
+    }
+
+
+    @Override
+    public synchronized void close() {
+        finish();
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.Inverter;
+import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
+
+/**
+ * A {@link CANPort} feeding the frames received in a capture written by {@link FrameCapture} back
+ * into any {@link BMS} or {@link Inverter} binding, either at their original timing or as fast as
+ * possible. Sent frames are only counted. As it is a {@link CANPort} it can be used for CAN and
+ * serial bindings.
+ * <p>
+ * A {@link Port} is replaced by a {@link ReplayPort} if the system property
+ * <code>replay.&lt;portLocator&gt;</code> is set to a capture file or a directory of capture files.
+ * The system property <code>replay.originalTiming</code> (default true) defines whether the frames
+ * are replayed at their original timing.
+ */
+public class ReplayPort extends CANPort {
+    private final static Logger LOG = LoggerFactory.getLogger(ReplayPort.class);
+    private final List<CaptureReader.Record> records;
+    private final boolean originalTiming;
+    private int index = 0;
+    private long replayStartNanos = -1;
+    private long sentFrames = 0;
+    private boolean open = false;
+
+    /**
+     * Constructor.
+     *
+     * @param portname the portname
+     * @param records the captured {@link CaptureReader.Record}s
+     * @param originalTiming true to replay the frames at their original timing, false to replay as
+     *        fast as possible
+     */
+    public ReplayPort(final String portname, final List<CaptureReader.Record> records, final boolean originalTiming) {
+        super(portname, 0);
+        this.records = records;
+        this.originalTiming = originalTiming;
+    }
+
+
+    /**
+     * Creates a {@link ReplayPort} replaying the specified capture files.
+     *
+     * @param portname the portname
+     * @param files the capture files in the order to replay
+     * @param originalTiming true to replay the frames at their original timing, false to replay as
+     *        fast as possible
+     * @return the {@link ReplayPort}
+     * @throws IOException if a capture file could not be read
+     */
+    public static ReplayPort fromFiles(final String portname, final List<Path> files, final boolean originalTiming) throws IOException {
+        return new ReplayPort(portname, CaptureReader.read(files), originalTiming);
+    }
+
+
+    /**
+     * Creates a {@link ReplayPort} for the specified port locator from the capture file or
+     * directory configured in the system property <code>replay.&lt;portLocator&gt;</code>.
+     *
+     * @param portLocator the port locator
+     * @return the {@link ReplayPort}
+     * @throws IOException if the capture files could not be read
+     */
+    public static ReplayPort fromSystemProperties(final String portLocator) throws IOException {
+        final Path path = Paths.get(System.getProperty("replay." + portLocator));
+        final boolean originalTiming = Boolean.parseBoolean(System.getProperty("replay.originalTiming", "true"));
+        final List<Path> files = new ArrayList<>();
+
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.list(path)) {
+                files.addAll(stream.filter(file -> file.getFileName().toString().endsWith(".cap")).sorted().collect(Collectors.toList()));
+            }
+        } else {
+            files.add(path);
+        }
+
+        final ReplayPort port = fromFiles(portLocator, files, originalTiming);
+        LOG.info("Replaying {} frames from {} on port '{}'", port.records.size(), path, portLocator);
+
+        return port;
+    }
+
+
+    @Override
+    public void open() {
+        open = true;
+    }
+
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+
+    @Override
+    public synchronized ByteBuffer receiveFrame() throws IOException {
+        while (index < records.size()) {
+            final CaptureReader.Record record = records.get(index++);
+
+            if (!record.isReceived()) {
+                continue;
+            }
+
+            if (originalTiming) {
+                awaitOriginalTime(record);
+            }
+
+            return record.toFrame();
+        }
+
+        throw new IOException("End of capture reached on port " + getPortname());
+    }
+
+
+    private void awaitOriginalTime(final CaptureReader.Record record) throws IOException {
+        if (replayStartNanos < 0) {
+            replayStartNanos = System.nanoTime() - (record.getNanos() - records.get(0).getNanos());
+        }
+
+        final long wait = replayStartNanos + record.getNanos() - records.get(0).getNanos() - System.nanoTime();
+
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying on port " + getPortname(), e);
+            }
+        }
+    }
+
+
+    @Override
+    public synchronized void sendFrame(final ByteBuffer frame) {
+        sentFrames++;
+    }
+
+
+    @Override
+    public synchronized void sendExtendedFrame(final ByteBuffer frame) {
+        sentFrames++;
+    }
+
+
+    /**
+     * Gets the number of frames sent to this port.
+     *
+     * @return the number of sent frames
+     */
+    public synchronized long getSentFrames() {
+        return sentFrames;
+    }
+
+
+    /**
+     * Returns true if all captured frames have been replayed.
+     *
+     * @return true if finished otherwise false
+     */
+    public synchronized boolean isFinished() {
+        return index >= records.size();
+    }
+
+
+    /**
+     * Gets the captured {@link CaptureReader.Record}s.
+     *
+     * @return the {@link CaptureReader.Record}s
+     */
+    public List<CaptureReader.Record> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+
+    /**
+     * Restarts the replay from the first frame.
+     */
+    public synchronized void rewind() {
+        index = 0;
+        replayStartNanos = -1;
+        sentFrames = 0;
+    }
+
+
+    @Override
+    public void clearBuffers() {
+    }
+
+
+    @Override
+    public void close() {
+        stopWorkers();
+        open = false;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sum of the unsigned bytes truncated to 8 or 16 bits, optionally negated (two's complement) as
+ * used e.g. by Daly (8 bit sum), JBD and the Pylon CHKSUM (negated 16 bit sum).
+ */
+public class ByteSumChecksum implements FrameChecksum {
+    private final int mask;
+    private final boolean negate;
+    private int sum = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param bits the width of the checksum in bits, 8 or 16
+     * @param negate true if the two's complement of the sum is the checksum
+     */
+    public ByteSumChecksum(final int bits, final boolean negate) {
+        if (bits != 8 && bits != 16) {
+            throw new IllegalArgumentException("Only 8 or 16 bit sums are supported: " + bits);
+        }
+
+        mask = (1 << bits) - 1;
+        this.negate = negate;
+    }
+
+
+    /**
+     * Creates the 8 bit sum of the bytes.
+     *
+     * @return the {@link ByteSumChecksum}
+     */
+    public static ByteSumChecksum sum8() {
+        return new ByteSumChecksum(8, false);
+    }
+
+
+    /**
+     * Creates the two's complement of the 16 bit sum of the bytes.
+     *
+     * @return the {@link ByteSumChecksum}
+     */
+    public static ByteSumChecksum negatedSum16() {
+        return new ByteSumChecksum(16, true);
+    }
+
+
+    @Override
+    public void reset() {
+        sum = 0;
+    }
+
+
+    @Override
+    public void update(final int b) {
+        sum += b & 0xFF;
+    }
+
+
+    @Override
+    public void update(final ByteBuffer buffer, final int from, final int to) {
+        int value = sum;
+
+        for (int i = from; i < to; i++) {
+            value += buffer.get(i) & 0xFF;
+        }
+
+        sum = value;
+    }
+
+
+    @Override
+    public int getValue() {
+        return (negate ? -sum : sum) & mask;
+    }
+}
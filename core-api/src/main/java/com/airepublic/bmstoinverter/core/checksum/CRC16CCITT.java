@@ -0,0 +1,83 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table-driven CRC-CCITT (polynomial 0x1021, not reflected). The initial value is 0xFFFF for the
+ * common CCITT-FALSE variant or 0x0000 for the XModem variant.
+ */
+public class CRC16CCITT implements FrameChecksum {
+    private final static int[] TABLE = new int[256];
+    private final int initialValue;
+    private int crc;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int value = i << 8;
+
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 0x8000) != 0 ? value << 1 ^ 0x1021 : value << 1;
+            }
+
+            TABLE[i] = value & 0xFFFF;
+        }
+    }
+
+    /**
+     * Constructor for the CCITT-FALSE variant with initial value 0xFFFF.
+     */
+    public CRC16CCITT() {
+        this(0xFFFF);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param initialValue the initial value of the CRC
+     */
+    public CRC16CCITT(final int initialValue) {
+        this.initialValue = initialValue & 0xFFFF;
+        crc = this.initialValue;
+    }
+
+
+    @Override
+    public void reset() {
+        crc = initialValue;
+    }
+
+
+    @Override
+    public void update(final int b) {
+        crc = (crc << 8 ^ TABLE[(crc >>> 8 ^ b) & 0xFF]) & 0xFFFF;
+    }
+
+
+    @Override
+    public void update(final ByteBuffer buffer, final int from, final int to) {
+        int value = crc;
+
+        for (int i = from; i < to; i++) {
+            value = (value << 8 ^ TABLE[(value >>> 8 ^ buffer.get(i)) & 0xFF]) & 0xFFFF;
+        }
+
+        crc = value;
+    }
+
+
+    @Override
+    public int getValue() {
+        return crc;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table-driven CRC16 as used by Modbus RTU (reflected polynomial 0xA001, initial value 0xFFFF). The
+ * low byte of the value is transmitted first.
+ */
+public class CRC16Modbus implements FrameChecksum {
+    private final static int[] TABLE = new int[256];
+    private int crc = 0xFFFF;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int value = i;
+
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 1) != 0 ? value >>> 1 ^ 0xA001 : value >>> 1;
+            }
+
+            TABLE[i] = value;
+        }
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFF;
+    }
+
+
+    @Override
+    public void update(final int b) {
+        crc = crc >>> 8 ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+
+    @Override
+    public void update(final ByteBuffer buffer, final int from, final int to) {
+        int value = crc;
+
+        for (int i = from; i < to; i++) {
+            value = value >>> 8 ^ TABLE[(value ^ buffer.get(i)) & 0xFF];
+        }
+
+        crc = value;
+    }
+
+
+    @Override
+    public int getValue() {
+        return crc;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A checksum which is updated incrementally with the bytes of a frame, e.g. while the bytes are
+ * received, or computed over a range of a {@link ByteBuffer} without copying it. Implementations
+ * hold state and are not thread-safe.
+ */
+public interface FrameChecksum {
+
+    /**
+     * Resets the checksum to its initial value.
+     */
+    void reset();
+
+
+    /**
+     * Updates the checksum with the specified byte.
+     *
+     * @param b the byte (only the lower 8 bits are used)
+     */
+    void update(int b);
+
+
+    /**
+     * Updates the checksum with the bytes of the {@link ByteBuffer} in the specified range of
+     * absolute indexes. The position of the {@link ByteBuffer} is not changed.
+     *
+     * @param buffer the {@link ByteBuffer}
+     * @param from the index of the first byte (inclusive)
+     * @param to the index of the last byte (exclusive)
+     */
+    default void update(final ByteBuffer buffer, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            update(buffer.get(i));
+        }
+    }
+
+
+    /**
+     * Gets the current value of the checksum.
+     *
+     * @return the checksum value
+     */
+    int getValue();
+
+
+    /**
+     * Resets the checksum and computes it over the specified range of the {@link ByteBuffer}.
+     *
+     * @param buffer the {@link ByteBuffer}
+     * @param from the index of the first byte (inclusive)
+     * @param to the index of the last byte (exclusive)
+     * @return the checksum value
+     */
+    default int compute(final ByteBuffer buffer, final int from, final int to) {
+        reset();
+        update(buffer, from, to);
+        return getValue();
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The checksums of the Pylon RS485 protocol (also used by similar protocols like Seplos) where all
+ * values are transmitted as ASCII hex digits:
+ * <ul>
+ * <li>CHKSUM - the two's complement of the 16 bit sum of all ASCII bytes between SOI and CHKSUM</li>
+ * <li>LCHKSUM - the upper 4 bits of the LENGTH field, the two's complement of the sum of the 3
+ * nibbles of the 12 bit LENID modulo 16</li>
+ * </ul>
+ */
+public class PylonChecksum {
+    private final static byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+    /**
+     * Creates a {@link FrameChecksum} for the CHKSUM.
+     *
+     * @return the {@link FrameChecksum}
+     */
+    public static FrameChecksum chksum() {
+        return ByteSumChecksum.negatedSum16();
+    }
+
+
+    /**
+     * Calculates the LCHKSUM of the 12 bit LENID.
+     *
+     * @param lenid the number of ASCII bytes of the INFO
+     * @return the 4 bit LCHKSUM
+     */
+    public static int lengthChecksum(final int lenid) {
+        final int sum = (lenid & 0xF) + (lenid >> 4 & 0xF) + (lenid >> 8 & 0xF);
+        return -(sum % 16) & 0xF;
+    }
+
+
+    /**
+     * Creates the 16 bit LENGTH field consisting of the LCHKSUM and the LENID.
+     *
+     * @param lenid the number of ASCII bytes of the INFO
+     * @return the LENGTH field
+     */
+    public static int lengthField(final int lenid) {
+        return lengthChecksum(lenid) << 12 | lenid & 0x0FFF;
+    }
+
+
+    /**
+     * Returns true if the LCHKSUM of the LENGTH field matches its LENID.
+     *
+     * @param lengthField the LENGTH field
+     * @return true if valid otherwise false
+     */
+    public static boolean isValidLength(final int lengthField) {
+        return lengthField >> 12 == lengthChecksum(lengthField & 0x0FFF);
+    }
+
+
+    /**
+     * Reads a value from ASCII hex digits at the specified index of the {@link ByteBuffer} without
+     * changing its position.
+     *
+     * @param buffer the {@link ByteBuffer}
+     * @param index the index of the first digit
+     * @param digits the number of digits
+     * @return the value or -1 if a byte is not a hex digit
+     */
+    public static int readAsciiHex(final ByteBuffer buffer, final int index, final int digits) {
+        int value = 0;
+
+        for (int i = index; i < index + digits; i++) {
+            final int digit = Character.digit(buffer.get(i), 16);
+
+            if (digit < 0) {
+                return -1;
+            }
+
+            value = value << 4 | digit;
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Writes the value as upper case ASCII hex digits at the current position of the
+     * {@link ByteBuffer}.
+     *
+     * @param buffer the {@link ByteBuffer}
+     * @param value the value
+     * @param digits the number of digits
+     */
+    public static void writeAsciiHex(final ByteBuffer buffer, final int value, final int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            buffer.put(HEX_DIGITS[value >> shift & 0xF]);
+        }
+    }
+
+
+    /**
+     * Returns true if the CHKSUM of the Pylon frame in the {@link ByteBuffer} is valid. The frame
+     * must start with SOI at index 0 and end with the CHKSUM followed by EOI at the limit.
+     *
+     * @param frame the frame {@link ByteBuffer}
+     * @param checksum the {@link FrameChecksum} created by {@link #chksum()} to reuse
+     * @return true if valid otherwise false
+     */
+    public static boolean isValidFrame(final ByteBuffer frame, final FrameChecksum checksum) {
+        final int end = frame.limit() - 5;
+
+        if (end < 1) {
+            return false;
+        }
+
+        return readAsciiHex(frame, end, 4) == checksum.compute(frame, 1, end);
+    }
+}
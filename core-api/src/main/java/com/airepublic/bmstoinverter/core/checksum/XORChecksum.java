@@ -0,0 +1,49 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The 8 bit XOR of all bytes.
+ */
+public class XORChecksum implements FrameChecksum {
+    private int value = 0;
+
+    @Override
+    public void reset() {
+        value = 0;
+    }
+
+
+    @Override
+    public void update(final int b) {
+        value ^= b & 0xFF;
+    }
+
+
+    @Override
+    public void update(final ByteBuffer buffer, final int from, final int to) {
+        int result = value;
+
+        for (int i = from; i < to; i++) {
+            result ^= buffer.get(i);
+        }
+
+        value = result & 0xFF;
+    }
+
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+}
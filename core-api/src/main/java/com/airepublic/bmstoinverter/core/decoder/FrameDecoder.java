@@ -0,0 +1,403 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.decoder;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+import com.airepublic.bmstoinverter.core.bms.data.Alarm;
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
+import com.airepublic.bmstoinverter.core.decoder.FrameSchema.FieldDefinition;
+import com.airepublic.bmstoinverter.core.decoder.FrameSchema.FrameDefinition;
+
+/**
+ * Decodes frames into a {@link BatteryPack} as described by a {@link FrameSchema}. On compilation
+ * the frame ids are sorted into a lookup table and each field is resolved to its absolute index in
+ * the frame and a {@link MethodHandle} setting the {@link BatteryPack} field, so decoding reads the
+ * values directly from the received buffer without copying or reflection.
+ */
+public class FrameDecoder {
+    private final static MethodType LONG_SETTER = MethodType.methodType(void.class, BatteryPack.class, long.class);
+    private final static MethodHandle NON_ZERO;
+    private final String name;
+    private final int idOffset;
+    private final int idWidth;
+    private final int[] frameIds;
+    private final CompiledFrame[] frames;
+
+    static {
+        try {
+            NON_ZERO = MethodHandles.lookup().findStatic(FrameDecoder.class, "nonZero", MethodType.methodType(boolean.class, long.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The compiled fields of one frame id.
+     */
+    private static class CompiledFrame {
+        private final DataGroup group;
+        private final boolean clearAlarms;
+        private final FieldAccessor[] fields;
+
+        private CompiledFrame(final DataGroup group, final boolean clearAlarms, final FieldAccessor[] fields) {
+            this.group = group;
+            this.clearAlarms = clearAlarms;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Writes one value of a frame to the {@link BatteryPack}.
+     */
+    private interface FieldAccessor {
+        void apply(ByteBuffer frame, BatteryPack pack) throws Throwable;
+    }
+
+    /**
+     * Writes an integral value, a scaled value or a single bit to a primitive field.
+     */
+    private static class NumericField implements FieldAccessor {
+        private final int index;
+        private final int width;
+        private final boolean signed;
+        private final boolean littleEndian;
+        private final int bit;
+        private final long multiply;
+        private final long divide;
+        private final MethodHandle setter;
+
+        private NumericField(final int index, final int width, final boolean signed, final boolean littleEndian, final int bit, final long multiply, final long divide, final MethodHandle setter) {
+            this.index = index;
+            this.width = width;
+            this.signed = signed;
+            this.littleEndian = littleEndian;
+            this.bit = bit;
+            this.multiply = multiply;
+            this.divide = divide;
+            this.setter = setter;
+        }
+
+
+        @Override
+        public void apply(final ByteBuffer frame, final BatteryPack pack) throws Throwable {
+            if (index + width > frame.limit()) {
+                return;
+            }
+
+            long value = read(frame, index, width, signed, littleEndian);
+
+            if (bit >= 0) {
+                value = value >> bit & 1;
+            } else if (multiply != 1 || divide != 1) {
+                value = value * multiply / divide;
+            }
+
+            setter.invokeExact(pack, value);
+        }
+    }
+
+    /**
+     * Writes a zero terminated ASCII string to a {@link String} field.
+     */
+    private static class AsciiField implements FieldAccessor {
+        private final int index;
+        private final int width;
+        private final MethodHandle setter;
+
+        private AsciiField(final int index, final int width, final MethodHandle setter) {
+            this.index = index;
+            this.width = width;
+            this.setter = setter;
+        }
+
+
+        @Override
+        public void apply(final ByteBuffer frame, final BatteryPack pack) throws Throwable {
+            final int end = Math.min(index + width, frame.limit());
+            final StringBuilder value = new StringBuilder(width);
+
+            for (int i = index; i < end; i++) {
+                final byte chr = frame.get(i);
+
+                if (chr == 0x00) {
+                    break;
+                }
+
+                value.append((char) chr);
+            }
+
+            setter.invokeExact(pack, value.toString());
+        }
+    }
+
+    /**
+     * Sets the level of an {@link Alarm} from an alarm bit and an optional warning bit.
+     */
+    private static class AlarmField implements FieldAccessor {
+        private final Alarm alarm;
+        private final int index;
+        private final int bit;
+        private final int warningIndex;
+        private final int warningBit;
+
+        private AlarmField(final Alarm alarm, final int index, final int bit, final int warningIndex, final int warningBit) {
+            this.alarm = alarm;
+            this.index = index;
+            this.bit = bit;
+            this.warningIndex = warningIndex;
+            this.warningBit = warningBit;
+        }
+
+
+        @Override
+        public void apply(final ByteBuffer frame, final BatteryPack pack) {
+            if (isSet(frame, index, bit)) {
+                pack.setAlarm(alarm, AlarmLevel.ALARM);
+            } else if (warningBit >= 0 && isSet(frame, warningIndex, warningBit)) {
+                pack.setAlarm(alarm, AlarmLevel.WARNING);
+            } else {
+                pack.setAlarm(alarm, AlarmLevel.NONE);
+            }
+        }
+
+
+        private static boolean isSet(final ByteBuffer frame, final int index, final int bit) {
+            return index < frame.limit() && (frame.get(index) >> bit & 1) == 1;
+        }
+    }
+
+    private FrameDecoder(final String name, final int idOffset, final int idWidth, final int[] frameIds, final CompiledFrame[] frames) {
+        this.name = name;
+        this.idOffset = idOffset;
+        this.idWidth = idWidth;
+        this.frameIds = frameIds;
+        this.frames = frames;
+    }
+
+
+    /**
+     * Loads and compiles the {@link FrameSchema} from the specified file or classpath resource.
+     *
+     * @param location the file path or classpath resource
+     * @return the {@link FrameDecoder}
+     * @throws IOException if the schema could not be found or read
+     */
+    public static FrameDecoder load(final String location) throws IOException {
+        return compile(FrameSchema.load(location));
+    }
+
+
+    /**
+     * Compiles the specified {@link FrameSchema}.
+     *
+     * @param schema the {@link FrameSchema}
+     * @return the {@link FrameDecoder}
+     * @throws IllegalArgumentException if the schema is invalid, e.g. refers to an unknown field
+     */
+    public static FrameDecoder compile(final FrameSchema schema) {
+        if (schema.idWidth != 1 && schema.idWidth != 2 && schema.idWidth != 4) {
+            throw new IllegalArgumentException("Invalid id width " + schema.idWidth + " in frame schema '" + schema.name + "'!");
+        }
+
+        final TreeMap<Integer, CompiledFrame> compiled = new TreeMap<>();
+
+        for (final FrameDefinition frame : schema.frames) {
+            final int id = Integer.decode(frame.id);
+            final List<FieldAccessor> fields = new ArrayList<>();
+
+            for (final FieldDefinition field : frame.fields) {
+                fields.add(compileField(schema, field));
+            }
+
+            if (compiled.put(id, new CompiledFrame(frame.group, frame.clearAlarms, fields.toArray(new FieldAccessor[fields.size()]))) != null) {
+                throw new IllegalArgumentException("Duplicate frame id " + frame.id + " in frame schema '" + schema.name + "'!");
+            }
+        }
+
+        final int[] frameIds = compiled.keySet().stream().mapToInt(Integer::intValue).toArray();
+        return new FrameDecoder(schema.name, schema.idOffset, schema.idWidth, frameIds, compiled.values().toArray(new CompiledFrame[compiled.size()]));
+    }
+
+
+    private static FieldAccessor compileField(final FrameSchema schema, final FieldDefinition field) {
+        final int index = schema.dataOffset + field.offset;
+
+        if (field.alarm != null) {
+            final int warningIndex = schema.dataOffset + field.warningOffset;
+            return new AlarmField(Alarm.valueOf(field.alarm), index, field.bit, warningIndex, field.warningBit);
+        }
+
+        if (field.width < 1 || field.width > 8 && !"ascii".equalsIgnoreCase(field.type)) {
+            throw new IllegalArgumentException("Invalid width " + field.width + " of field '" + field.target + "' in frame schema '" + schema.name + "'!");
+        }
+
+        final Field target;
+        final MethodHandle setter;
+
+        try {
+            target = BatteryPack.class.getField(field.target);
+
+            if (Modifier.isFinal(target.getModifiers()) || Modifier.isStatic(target.getModifiers())) {
+                throw new IllegalArgumentException("Field '" + field.target + "' in frame schema '" + schema.name + "' is not writable!");
+            }
+
+            setter = MethodHandles.publicLookup().unreflectSetter(target);
+        } catch (final NoSuchFieldException | IllegalAccessException | NullPointerException e) {
+            throw new IllegalArgumentException("Unknown field '" + field.target + "' in frame schema '" + schema.name + "'!", e);
+        }
+
+        if ("ascii".equalsIgnoreCase(field.type)) {
+            if (target.getType() != String.class) {
+                throw new IllegalArgumentException("Field '" + field.target + "' in frame schema '" + schema.name + "' is not a String!");
+            }
+
+            return new AsciiField(index, field.width, setter);
+        }
+
+        final Class<?> type = target.getType();
+        final MethodHandle longSetter;
+
+        if (type == boolean.class) {
+            longSetter = MethodHandles.filterArguments(setter, 1, NON_ZERO);
+        } else if (type == int.class || type == long.class || type == short.class || type == byte.class || type == char.class) {
+            longSetter = MethodHandles.explicitCastArguments(setter, LONG_SETTER);
+        } else {
+            throw new IllegalArgumentException("Field '" + field.target + "' of type " + type.getSimpleName() + " in frame schema '" + schema.name + "' is not supported!");
+        }
+
+        final String byteOrder = field.byteOrder != null ? field.byteOrder : schema.byteOrder;
+        final boolean littleEndian = "LITTLE_ENDIAN".equalsIgnoreCase(byteOrder);
+
+        return new NumericField(index, field.width, field.signed, littleEndian, field.bit, field.multiply, field.divide, longSetter);
+    }
+
+
+    /**
+     * Reads an integral value of up to 8 bytes at the specified absolute index without changing the
+     * position of the buffer.
+     *
+     * @param frame the frame
+     * @param index the index of the first byte
+     * @param width the number of bytes
+     * @param signed whether the value is signed
+     * @param littleEndian whether the least significant byte comes first
+     * @return the value
+     */
+    static long read(final ByteBuffer frame, final int index, final int width, final boolean signed, final boolean littleEndian) {
+        long value = 0;
+
+        for (int i = 0; i < width; i++) {
+            value = value << 8 | frame.get(littleEndian ? index + width - 1 - i : index + i) & 0xFF;
+        }
+
+        if (signed && width < 8) {
+            final int shift = 64 - width * 8;
+            value = value << shift >> shift;
+        }
+
+        return value;
+    }
+
+
+    private static boolean nonZero(final long value) {
+        return value != 0;
+    }
+
+
+    /**
+     * Gets the name of the compiled schema.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Gets the sorted frame ids known to this decoder, e.g. to derive CAN filters.
+     *
+     * @return the frame ids
+     */
+    public int[] getFrameIds() {
+        return frameIds.clone();
+    }
+
+
+    /**
+     * Reads the frame id with the byte order of the buffer.
+     *
+     * @param frame the frame
+     * @return the frame id
+     */
+    public int readFrameId(final ByteBuffer frame) {
+        switch (idWidth) {
+            case 1:
+                return frame.get(idOffset) & 0xFF;
+            case 2:
+                return frame.getShort(idOffset) & 0xFFFF;
+            default:
+                return frame.getInt(idOffset);
+        }
+    }
+
+
+    /**
+     * Decodes the frame into the {@link BatteryPack} and marks the {@link DataGroup} of the frame
+     * as updated.
+     *
+     * @param frame the received frame
+     * @param pack the {@link BatteryPack} to update
+     * @return true if the frame id is described by the schema, otherwise false
+     */
+    public boolean decode(final ByteBuffer frame, final BatteryPack pack) {
+        final int idx = Arrays.binarySearch(frameIds, readFrameId(frame));
+
+        if (idx < 0) {
+            return false;
+        }
+
+        final CompiledFrame compiled = frames[idx];
+
+        if (compiled.clearAlarms) {
+            pack.alarms.clear();
+        }
+
+        try {
+            for (final FieldAccessor field : compiled.fields) {
+                field.apply(frame, pack);
+            }
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException("Error decoding frame with schema '" + name + "'!", t);
+        }
+
+        if (compiled.group != null) {
+            pack.markUpdated(compiled.group);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
+import com.google.gson.Gson;
+
+/**
+ * The JSON model of a frame schema describing for each frame id which bytes of the frame are
+ * written to which {@link BatteryPack} field. A schema is compiled into a {@link FrameDecoder}.
+ *
+ * <pre>
+ * {
+ *   "name": "Pylon CAN",
+ *   "byteOrder": "LITTLE_ENDIAN",
+ *   "idOffset": 0, "idWidth": 4, "dataOffset": 8,
+ *   "frames": [
+ *     { "id": "0x355", "group": "STATUS", "fields": [
+ *         { "target": "packSOC", "offset": 0, "width": 2, "multiply": 10 } ] },
+ *     { "id": "0x359", "group": "ALARMS", "clearAlarms": true, "fields": [
+ *         { "alarm": "CELL_VOLTAGE_HIGH", "offset": 2, "bit": 1, "warningOffset": 0, "warningBit": 1 } ] }
+ *   ]
+ * }
+ * </pre>
+ */
+public class FrameSchema {
+    private final static Gson gson = new Gson();
+    String name;
+    String byteOrder = "LITTLE_ENDIAN";
+    int idOffset = 0;
+    int idWidth = 4;
+    int dataOffset = 8;
+    List<FrameDefinition> frames = new ArrayList<>();
+
+    /**
+     * The definition of the fields of one frame id.
+     */
+    static class FrameDefinition {
+        String id;
+        DataGroup group;
+        boolean clearAlarms;
+        List<FieldDefinition> fields = new ArrayList<>();
+    }
+
+    /**
+     * The definition of one value of a frame. The value is either written to the
+     * {@link BatteryPack} field named by <code>target</code> or sets the level of the
+     * <code>alarm</code>.
+     */
+    static class FieldDefinition {
+        String target;
+        String alarm;
+        String type;
+        int offset;
+        int width = 1;
+        boolean signed;
+        String byteOrder;
+        long multiply = 1;
+        long divide = 1;
+        int bit = -1;
+        int warningOffset = -1;
+        int warningBit = -1;
+    }
+
+    /**
+     * Gets the name of the schema.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Parses a schema from the specified JSON.
+     *
+     * @param reader the {@link Reader} providing the JSON
+     * @return the {@link FrameSchema}
+     */
+    public static FrameSchema parse(final Reader reader) {
+        final FrameSchema schema = gson.fromJson(reader, FrameSchema.class);
+
+        if (schema == null) {
+            throw new IllegalArgumentException("Empty frame schema!");
+        }
+
+        return schema;
+    }
+
+
+    /**
+     * Loads a schema from the specified file or, if no such file exists, from the classpath
+     * resource of that name.
+     *
+     * @param location the file path or classpath resource
+     * @return the {@link FrameSchema}
+     * @throws IOException if the schema could not be found or read
+     */
+    public static FrameSchema load(final String location) throws IOException {
+        final Path file = Paths.get(location);
+
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return parse(reader);
+            }
+        }
+
+        final InputStream in = FrameSchema.class.getClassLoader().getResourceAsStream(location);
+
+        if (in == null) {
+            throw new IOException("Frame schema '" + location + "' not found!");
+        }
+
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+}
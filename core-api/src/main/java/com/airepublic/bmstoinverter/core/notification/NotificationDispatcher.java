@@ -0,0 +1,432 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.notification;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.service.INotificationChannel;
+import com.airepublic.bmstoinverter.core.util.Workers;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Dispatches alarm notifications asynchronously to the registered {@link INotificationChannel}s.
+ * Alarm transitions are collected into a digest for a configurable window, an alarm that flaps back
+ * to its last notified state within the window is not reported, and each alarm is notified at most
+ * once per rate limit period. Outbound notifications are persisted to a queue file and retried with
+ * exponential backoff until all channels have delivered them.
+ */
+public class NotificationDispatcher implements AutoCloseable {
+    private final static Logger LOG = LoggerFactory.getLogger(NotificationDispatcher.class);
+    private final static Gson gson = new Gson();
+    private final List<INotificationChannel> channels = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Transition> transitions = new LinkedBlockingQueue<>();
+    private final Map<String, Transition> digest = new LinkedHashMap<>();
+    private final Map<String, Boolean> notifiedState = new HashMap<>();
+    private final Map<String, Long> lastNotified = new HashMap<>();
+    private final Map<String, Integer> flaps = new HashMap<>();
+    private final LinkedList<Notification> outbound = new LinkedList<>();
+    private final Path queueFile;
+    private final long digestWindowMs;
+    private final long rateLimitMs;
+    private final int maxRetries;
+    private final long retryDelayMs;
+    private final LongSupplier clock;
+    private long digestStart;
+    private volatile boolean running = false;
+    private Thread worker;
+
+    /**
+     * A transition of an alarm from not present to raised or vice versa.
+     */
+    private static class Transition {
+        private final String alarmKey;
+        private final String description;
+        private final boolean raised;
+        private final long time;
+
+        private Transition(final String alarmKey, final String description, final boolean raised, final long time) {
+            this.alarmKey = alarmKey;
+            this.description = description;
+            this.raised = raised;
+            this.time = time;
+        }
+    }
+
+    /**
+     * An outbound notification as persisted in the queue file.
+     */
+    static class Notification {
+        String subject;
+        String message;
+        int attempts;
+        long nextAttempt;
+        List<String> deliveredChannels = new ArrayList<>();
+
+        Notification(final String subject, final String message) {
+            this.subject = subject;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param queueFile the file to persist the outbound queue to
+     * @param digestWindowMs the time window in milliseconds to collect alarm transitions into one
+     *        notification
+     * @param rateLimitMs the minimum time in milliseconds between two notifications of the same
+     *        alarm
+     * @param maxRetries the maximum number of retries to deliver a notification
+     * @param retryDelayMs the initial delay in milliseconds before a retry, doubled with each retry
+     */
+    public NotificationDispatcher(final Path queueFile, final long digestWindowMs, final long rateLimitMs, final int maxRetries, final long retryDelayMs) {
+        this(queueFile, digestWindowMs, rateLimitMs, maxRetries, retryDelayMs, System::currentTimeMillis);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param queueFile the file to persist the outbound queue to
+     * @param digestWindowMs the time window in milliseconds to collect alarm transitions into one
+     *        notification
+     * @param rateLimitMs the minimum time in milliseconds between two notifications of the same
+     *        alarm
+     * @param maxRetries the maximum number of retries to deliver a notification
+     * @param retryDelayMs the initial delay in milliseconds before a retry, doubled with each retry
+     * @param clock the clock supplying the current time in milliseconds
+     */
+    NotificationDispatcher(final Path queueFile, final long digestWindowMs, final long rateLimitMs, final int maxRetries, final long retryDelayMs, final LongSupplier clock) {
+        this.clock = clock;
+        this.queueFile = queueFile;
+        this.digestWindowMs = digestWindowMs;
+        this.rateLimitMs = rateLimitMs;
+        this.maxRetries = maxRetries;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+
+    /**
+     * Creates a {@link NotificationDispatcher} configured from the system properties
+     * <code>notification.queueFile</code>, <code>notification.digestWindow</code>,
+     * <code>notification.rateLimit</code>, <code>notification.maxRetries</code> and
+     * <code>notification.retryDelay</code> (times in seconds).
+     *
+     * @return the {@link NotificationDispatcher}
+     */
+    public static NotificationDispatcher fromSystemProperties() {
+        final Path queueFile = Paths.get(System.getProperty("notification.queueFile", "notifications.queue"));
+        final long digestWindow = Long.parseLong(System.getProperty("notification.digestWindow", "60"));
+        final long rateLimit = Long.parseLong(System.getProperty("notification.rateLimit", "900"));
+        final int maxRetries = Integer.parseInt(System.getProperty("notification.maxRetries", "5"));
+        final long retryDelay = Long.parseLong(System.getProperty("notification.retryDelay", "30"));
+
+        return new NotificationDispatcher(queueFile, digestWindow * 1000, rateLimit * 1000, maxRetries, retryDelay * 1000);
+    }
+
+
+    /**
+     * Adds a {@link INotificationChannel} to deliver the notifications to.
+     *
+     * @param channel the {@link INotificationChannel}
+     */
+    public void addChannel(final INotificationChannel channel) {
+        channels.add(channel);
+        LOG.info("Registered notification channel '{}'", channel.getName());
+    }
+
+
+    /**
+     * Gets the registered {@link INotificationChannel}s.
+     *
+     * @return the registered {@link INotificationChannel}s
+     */
+    public List<INotificationChannel> getChannels() {
+        return channels;
+    }
+
+
+    /**
+     * Starts the worker thread after loading any notifications persisted from a previous run.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        loadQueue();
+        running = true;
+        worker = Workers.newThread("notification-dispatcher", this::run);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+
+    /**
+     * Reports that the specified alarm has been raised. This method does not block.
+     *
+     * @param alarmKey the unique key of the alarm
+     * @param description the human readable description of the alarm
+     */
+    public void alarmRaised(final String alarmKey, final String description) {
+        transitions.offer(new Transition(alarmKey, description, true, clock.getAsLong()));
+    }
+
+
+    /**
+     * Reports that the specified alarm has been resolved. This method does not block.
+     *
+     * @param alarmKey the unique key of the alarm
+     * @param description the human readable description of the alarm
+     */
+    public void alarmResolved(final String alarmKey, final String description) {
+        transitions.offer(new Transition(alarmKey, description, false, clock.getAsLong()));
+    }
+
+
+    private void run() {
+        while (running) {
+            try {
+                final Transition transition = transitions.poll(1, TimeUnit.SECONDS);
+
+                if (transition != null) {
+                    addToDigest(transition);
+                }
+
+                dispatch(clock.getAsLong());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (final Throwable t) {
+                LOG.error("Error dispatching notifications!", t);
+            }
+        }
+    }
+
+
+    /**
+     * Adds the reported alarm transitions to the digest, flushes the digest if its window expired
+     * and sends the notifications which are due.
+     *
+     * @param now the current time in milliseconds
+     */
+    void dispatch(final long now) {
+        Transition transition;
+
+        while ((transition = transitions.poll()) != null) {
+            addToDigest(transition);
+        }
+
+        if (!digest.isEmpty() && now - digestStart >= digestWindowMs) {
+            flushDigest(now);
+        }
+
+        sendPending(now);
+    }
+
+
+    private void addToDigest(final Transition transition) {
+        final boolean notifiedRaised = notifiedState.getOrDefault(transition.alarmKey, false);
+
+        // the alarm flapped back to the last notified state, so there is nothing to report
+        if (notifiedRaised == transition.raised) {
+            if (digest.remove(transition.alarmKey) != null) {
+                flaps.merge(transition.alarmKey, 1, Integer::sum);
+            }
+
+            return;
+        }
+
+        if (digest.isEmpty()) {
+            digestStart = transition.time;
+        }
+
+        digest.put(transition.alarmKey, transition);
+    }
+
+
+    private void flushDigest(final long now) {
+        final StringBuilder raised = new StringBuilder();
+        final StringBuilder resolved = new StringBuilder();
+        final Iterator<Transition> it = digest.values().iterator();
+
+        while (it.hasNext()) {
+            final Transition transition = it.next();
+            final Long last = lastNotified.get(transition.alarmKey);
+
+            // keep rate limited alarms in the digest until their period expired
+            if (last != null && now - last < rateLimitMs) {
+                continue;
+            }
+
+            (transition.raised ? raised : resolved).append("\t" + transition.description + "\r\n");
+            notifiedState.put(transition.alarmKey, transition.raised);
+            lastNotified.put(transition.alarmKey, now);
+            it.remove();
+        }
+
+        digestStart = now;
+
+        if (raised.length() == 0 && resolved.length() == 0) {
+            return;
+        }
+
+        final StringBuilder content = new StringBuilder("This is a generated email - do not reply!\n\n");
+
+        if (raised.length() > 0) {
+            content.append("Your BMS has reported the following alarms:\n").append(raised).append("\n");
+        }
+
+        if (resolved.length() > 0) {
+            content.append("The following alarms have been resolved:\n").append(resolved).append("\n");
+        }
+
+        if (!flaps.isEmpty()) {
+            content.append("The following alarms were toggling within the digest window:\n");
+            flaps.forEach((key, count) -> content.append("\t" + key + " (" + count + "x)\r\n"));
+            flaps.clear();
+        }
+
+        final boolean anyRaised = notifiedState.values().stream().anyMatch(Boolean::booleanValue);
+        final String subject = anyRaised ? "BMS Alarms occured" : "BMS Alarms resolved";
+
+        synchronized (outbound) {
+            outbound.add(new Notification(subject, content.toString()));
+            saveQueue();
+        }
+    }
+
+
+    private void sendPending(final long now) {
+        synchronized (outbound) {
+            final Iterator<Notification> it = outbound.iterator();
+            boolean changed = false;
+
+            while (it.hasNext()) {
+                final Notification notification = it.next();
+
+                if (notification.nextAttempt > now) {
+                    continue;
+                }
+
+                boolean allDelivered = true;
+
+                for (final INotificationChannel channel : channels) {
+                    if (notification.deliveredChannels.contains(channel.getName())) {
+                        continue;
+                    }
+
+                    try {
+                        channel.send(notification.subject, notification.message);
+                        notification.deliveredChannels.add(channel.getName());
+                    } catch (final Throwable e) {
+                        LOG.error("Notification could not be sent via channel '{}'!", channel.getName(), e);
+                        allDelivered = false;
+                    }
+                }
+
+                changed = true;
+
+                if (allDelivered) {
+                    it.remove();
+                } else if (++notification.attempts > maxRetries) {
+                    LOG.error("Dropping notification '{}' after {} retries!", notification.subject, maxRetries);
+                    it.remove();
+                } else {
+                    notification.nextAttempt = now + (retryDelayMs << notification.attempts - 1);
+                }
+            }
+
+            if (changed) {
+                saveQueue();
+            }
+        }
+    }
+
+
+    private void loadQueue() {
+        if (queueFile == null || !Files.exists(queueFile)) {
+            return;
+        }
+
+        try {
+            final Type type = new TypeToken<List<Notification>>() {
+            }.getType();
+            final List<Notification> persisted = gson.fromJson(new String(Files.readAllBytes(queueFile), StandardCharsets.UTF_8), type);
+
+            if (persisted != null) {
+                synchronized (outbound) {
+                    outbound.addAll(persisted);
+                }
+
+                LOG.info("Loaded {} pending notifications from {}", persisted.size(), queueFile);
+            }
+        } catch (final Exception e) {
+            LOG.error("Could not load pending notifications from {}!", queueFile, e);
+        }
+    }
+
+
+    private void saveQueue() {
+        if (queueFile == null) {
+            return;
+        }
+
+        try {
+            final Path temp = queueFile.resolveSibling(queueFile.getFileName() + ".tmp");
+            Files.write(temp, gson.toJson(outbound).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, queueFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOG.error("Could not persist pending notifications to {}!", queueFile, e);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        running = false;
+
+        if (worker != null) {
+            worker.interrupt();
+
+            try {
+                worker.join(2000);
+            } catch (final InterruptedException e) {
+            }
+        }
+
+        synchronized (outbound) {
+            saveQueue();
+        }
+    }
+}
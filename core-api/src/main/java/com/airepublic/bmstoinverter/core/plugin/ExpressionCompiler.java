@@ -0,0 +1,601 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+
+/**
+ * Compiles rules like <code>maxPackChargeCurrent = min(maxPackChargeCurrent, lerp(maxCellmV, 3450,
+ * 3550, maxPackChargeCurrent, 0))</code> over the numeric and boolean fields of a
+ * {@link BatteryPack} into a {@link MethodHandle} tree. The rules are parsed once and the resulting
+ * handle reads and writes the fields directly, so evaluating a rule needs neither parsing nor
+ * reflection.
+ * <p>
+ * Expressions are calculated as double values where booleans are 1 (true) or 0 (false) and any
+ * non-zero value is true. The result is rounded when it is assigned to an integer field. The
+ * following is supported:
+ * <ul>
+ * <li>numbers, <code>true</code>, <code>false</code> and the public fields of the
+ * {@link BatteryPack}</li>
+ * <li>the operators <code>+ - * / %</code>, <code>&lt; &lt;= &gt; &gt;= == !=</code>,
+ * <code>&amp;&amp; || !</code> and <code>condition ? value : otherValue</code></li>
+ * <li>the functions <code>min(a, b, ...)</code>, <code>max(a, b, ...)</code>, <code>abs(x)</code>,
+ * <code>clamp(x, min, max)</code> and <code>lerp(x, x0, x1, y0, y1)</code> which interpolates
+ * linearly from y0 at x0 to y1 at x1 and is constant outside</li>
+ * </ul>
+ */
+public class ExpressionCompiler {
+    private final static MethodType EXPRESSION = MethodType.methodType(double.class, BatteryPack.class);
+    private final static MethodType RULE = MethodType.methodType(void.class, BatteryPack.class);
+    private final static List<String> TWO_CHAR_OPERATORS = Arrays.asList("<=", ">=", "==", "!=", "&&", "||");
+    private final static MethodHandle ADD = operator("add", 2);
+    private final static MethodHandle SUBTRACT = operator("subtract", 2);
+    private final static MethodHandle MULTIPLY = operator("multiply", 2);
+    private final static MethodHandle DIVIDE = operator("divide", 2);
+    private final static MethodHandle REMAINDER = operator("remainder", 2);
+    private final static MethodHandle LESS = operator("less", 2);
+    private final static MethodHandle LESS_OR_EQUAL = operator("lessOrEqual", 2);
+    private final static MethodHandle EQUAL = operator("equal", 2);
+    private final static MethodHandle NOT_EQUAL = operator("notEqual", 2);
+    private final static MethodHandle NEGATE = operator("negate", 1);
+    private final static MethodHandle NOT = operator("not", 1);
+    private final static MethodHandle NORMALIZE = operator("normalize", 1);
+    private final static MethodHandle MIN = operator("min", 2);
+    private final static MethodHandle MAX = operator("max", 2);
+    private final static MethodHandle ABS = operator("abs", 1);
+    private final static MethodHandle CLAMP = operator("clamp", 3);
+    private final static MethodHandle LERP = operator("lerp", 5);
+    private final static MethodHandle IS_TRUE;
+    private final static MethodHandle FROM_BOOLEAN;
+    private final static MethodHandle TO_INT;
+    private final String source;
+    private final List<String> tokens = new ArrayList<>();
+    private final List<Integer> positions = new ArrayList<>();
+    private int index = 0;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            IS_TRUE = lookup.findStatic(ExpressionCompiler.class, "isTrue", MethodType.methodType(boolean.class, double.class));
+            FROM_BOOLEAN = lookup.findStatic(ExpressionCompiler.class, "fromBoolean", MethodType.methodType(double.class, boolean.class));
+            TO_INT = lookup.findStatic(ExpressionCompiler.class, "toInt", MethodType.methodType(int.class, double.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ExpressionCompiler(final String source) {
+        this.source = source;
+        tokenize();
+    }
+
+
+    /**
+     * Compiles the specified rule <code>field = expression</code>.
+     *
+     * @param rule the rule
+     * @return the {@link MethodHandle} of type <code>(BatteryPack)void</code> applying the rule
+     * @throws IllegalArgumentException if the rule is invalid, e.g. refers to an unknown field
+     */
+    public static MethodHandle compileRule(final String rule) {
+        final ExpressionCompiler compiler = new ExpressionCompiler(rule);
+        final int fieldPosition = compiler.position();
+        final String fieldName = compiler.next();
+
+        if (!compiler.accept("=")) {
+            throw compiler.error("Expected '=' after the field name");
+        }
+
+        final MethodHandle setter = setter(fieldName, fieldPosition, compiler);
+        final MethodHandle expression = compiler.parseExpression();
+        compiler.expectEnd();
+
+        // (BatteryPack, double) -> (BatteryPack, BatteryPack) -> (BatteryPack)
+        return MethodHandles.permuteArguments(MethodHandles.filterArguments(setter, 1, expression), RULE, 0, 0);
+    }
+
+
+    /**
+     * Compiles the specified expression.
+     *
+     * @param expression the expression
+     * @return the {@link MethodHandle} of type <code>(BatteryPack)double</code> calculating the
+     *         expression
+     * @throws IllegalArgumentException if the expression is invalid, e.g. refers to an unknown field
+     */
+    public static MethodHandle compileExpression(final String expression) {
+        final ExpressionCompiler compiler = new ExpressionCompiler(expression);
+        final MethodHandle handle = compiler.parseExpression();
+        compiler.expectEnd();
+
+        return handle;
+    }
+
+
+    /**
+     * Combines the specified compiled rules into one {@link MethodHandle} applying them in order.
+     *
+     * @param rules the compiled rules
+     * @return the {@link MethodHandle} of type <code>(BatteryPack)void</code> applying all rules
+     */
+    public static MethodHandle chain(final List<MethodHandle> rules) {
+        MethodHandle chain = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null).asType(MethodType.methodType(void.class)), 0, BatteryPack.class);
+
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            chain = MethodHandles.foldArguments(chain, rules.get(i));
+        }
+
+        return chain;
+    }
+
+
+    private void tokenize() {
+        int pos = 0;
+
+        while (pos < source.length()) {
+            final char c = source.charAt(pos);
+            int end = pos + 1;
+
+            if (Character.isWhitespace(c)) {
+                pos++;
+                continue;
+            } else if (Character.isDigit(c) || c == '.') {
+                while (end < source.length() && (Character.isDigit(source.charAt(end)) || source.charAt(end) == '.')) {
+                    end++;
+                }
+            } else if (Character.isJavaIdentifierStart(c)) {
+                while (end < source.length() && Character.isJavaIdentifierPart(source.charAt(end))) {
+                    end++;
+                }
+            } else if (TWO_CHAR_OPERATORS.contains(source.substring(pos, Math.min(pos + 2, source.length())))) {
+                end++;
+            } else if ("+-*/%<>=!?:(),".indexOf(c) < 0) {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + (pos + 1) + " in: " + source);
+            }
+
+            tokens.add(source.substring(pos, end));
+            positions.add(pos);
+            pos = end;
+        }
+    }
+
+
+    private String peek() {
+        return index < tokens.size() ? tokens.get(index) : "";
+    }
+
+
+    private String next() {
+        if (index >= tokens.size()) {
+            throw error("Unexpected end");
+        }
+
+        return tokens.get(index++);
+    }
+
+
+    private int position() {
+        return index < positions.size() ? positions.get(index) : source.length();
+    }
+
+
+    private boolean accept(final String token) {
+        if (peek().equals(token)) {
+            index++;
+            return true;
+        }
+
+        return false;
+    }
+
+
+    private void expect(final String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+
+    private void expectEnd() {
+        if (index < tokens.size()) {
+            throw error("Unexpected '" + peek() + "'");
+        }
+    }
+
+
+    private IllegalArgumentException error(final String message) {
+        return error(message, position());
+    }
+
+
+    private IllegalArgumentException error(final String message, final int position) {
+        return new IllegalArgumentException(message + " at position " + (position + 1) + " in: " + source);
+    }
+
+
+    private MethodHandle parseExpression() {
+        final MethodHandle condition = parseOr();
+
+        if (accept("?")) {
+            final MethodHandle value = parseExpression();
+            expect(":");
+            final MethodHandle otherValue = parseExpression();
+
+            return MethodHandles.guardWithTest(MethodHandles.filterReturnValue(condition, IS_TRUE), value, otherValue);
+        }
+
+        return condition;
+    }
+
+
+    private MethodHandle parseOr() {
+        MethodHandle left = parseAnd();
+
+        while (accept("||")) {
+            final MethodHandle right = parseAnd();
+            left = MethodHandles.guardWithTest(MethodHandles.filterReturnValue(left, IS_TRUE), constant(1), MethodHandles.filterReturnValue(right, NORMALIZE));
+        }
+
+        return left;
+    }
+
+
+    private MethodHandle parseAnd() {
+        MethodHandle left = parseEquality();
+
+        while (accept("&&")) {
+            final MethodHandle right = parseEquality();
+            left = MethodHandles.guardWithTest(MethodHandles.filterReturnValue(left, IS_TRUE), MethodHandles.filterReturnValue(right, NORMALIZE), constant(0));
+        }
+
+        return left;
+    }
+
+
+    private MethodHandle parseEquality() {
+        MethodHandle left = parseRelational();
+
+        while (true) {
+            if (accept("==")) {
+                left = apply(EQUAL, left, parseRelational());
+            } else if (accept("!=")) {
+                left = apply(NOT_EQUAL, left, parseRelational());
+            } else {
+                return left;
+            }
+        }
+    }
+
+
+    private MethodHandle parseRelational() {
+        MethodHandle left = parseAdditive();
+
+        while (true) {
+            if (accept("<")) {
+                left = apply(LESS, left, parseAdditive());
+            } else if (accept("<=")) {
+                left = apply(LESS_OR_EQUAL, left, parseAdditive());
+            } else if (accept(">")) {
+                left = apply(LESS, parseAdditive(), left);
+            } else if (accept(">=")) {
+                left = apply(LESS_OR_EQUAL, parseAdditive(), left);
+            } else {
+                return left;
+            }
+        }
+    }
+
+
+    private MethodHandle parseAdditive() {
+        MethodHandle left = parseMultiplicative();
+
+        while (true) {
+            if (accept("+")) {
+                left = apply(ADD, left, parseMultiplicative());
+            } else if (accept("-")) {
+                left = apply(SUBTRACT, left, parseMultiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+
+    private MethodHandle parseMultiplicative() {
+        MethodHandle left = parseUnary();
+
+        while (true) {
+            if (accept("*")) {
+                left = apply(MULTIPLY, left, parseUnary());
+            } else if (accept("/")) {
+                left = apply(DIVIDE, left, parseUnary());
+            } else if (accept("%")) {
+                left = apply(REMAINDER, left, parseUnary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+
+    private MethodHandle parseUnary() {
+        if (accept("-")) {
+            return apply(NEGATE, parseUnary());
+        } else if (accept("!")) {
+            return apply(NOT, parseUnary());
+        }
+
+        return parsePrimary();
+    }
+
+
+    private MethodHandle parsePrimary() {
+        final int position = position();
+        final String token = next();
+
+        if (token.equals("(")) {
+            final MethodHandle expression = parseExpression();
+            expect(")");
+            return expression;
+        } else if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '.') {
+            try {
+                return constant(Double.parseDouble(token));
+            } catch (final NumberFormatException e) {
+                throw error("Invalid number '" + token + "'", position);
+            }
+        } else if (token.equals("true")) {
+            return constant(1);
+        } else if (token.equals("false")) {
+            return constant(0);
+        } else if (Character.isJavaIdentifierStart(token.charAt(0))) {
+            return accept("(") ? parseFunction(token, position) : getter(token, position);
+        }
+
+        throw error("Unexpected '" + token + "'", position);
+    }
+
+
+    private MethodHandle parseFunction(final String name, final int position) {
+        final List<MethodHandle> arguments = new ArrayList<>();
+
+        if (!accept(")")) {
+            do {
+                arguments.add(parseExpression());
+            } while (accept(","));
+
+            expect(")");
+        }
+
+        switch (name) {
+            case "min":
+            case "max":
+                if (arguments.size() < 2) {
+                    throw error("Function '" + name + "' needs at least 2 arguments", position);
+                }
+
+                MethodHandle result = arguments.get(0);
+
+                for (int i = 1; i < arguments.size(); i++) {
+                    result = apply(name.equals("min") ? MIN : MAX, result, arguments.get(i));
+                }
+
+                return result;
+            case "abs":
+                return function(name, position, ABS, arguments);
+            case "clamp":
+                return function(name, position, CLAMP, arguments);
+            case "lerp":
+                return function(name, position, LERP, arguments);
+            default:
+                throw error("Unknown function '" + name + "'", position);
+        }
+    }
+
+
+    private MethodHandle function(final String name, final int position, final MethodHandle function, final List<MethodHandle> arguments) {
+        if (arguments.size() != function.type().parameterCount()) {
+            throw error("Function '" + name + "' needs " + function.type().parameterCount() + " arguments", position);
+        }
+
+        return apply(function, arguments.toArray(new MethodHandle[arguments.size()]));
+    }
+
+
+    private MethodHandle getter(final String name, final int position) {
+        final Field field = field(name, position, this);
+
+        try {
+            final MethodHandle getter = MethodHandles.publicLookup().unreflectGetter(field);
+
+            if (field.getType() == boolean.class) {
+                return MethodHandles.filterReturnValue(getter, FROM_BOOLEAN);
+            } else if (field.getType().isPrimitive() && field.getType() != char.class) {
+                return getter.asType(EXPRESSION);
+            }
+        } catch (final IllegalAccessException e) {
+            // fall through
+        }
+
+        throw error("Field '" + name + "' is not a number or boolean", position);
+    }
+
+
+    private static MethodHandle setter(final String name, final int position, final ExpressionCompiler compiler) {
+        final Field field = field(name, position, compiler);
+
+        if (Modifier.isFinal(field.getModifiers()) || field.getType() != int.class && field.getType() != boolean.class) {
+            throw compiler.error("Field '" + name + "' is not a writable int or boolean", position);
+        }
+
+        try {
+            final MethodHandle setter = MethodHandles.publicLookup().unreflectSetter(field);
+            return MethodHandles.filterArguments(setter, 1, field.getType() == int.class ? TO_INT : IS_TRUE);
+        } catch (final IllegalAccessException e) {
+            throw compiler.error("Field '" + name + "' is not writable", position);
+        }
+    }
+
+
+    private static Field field(final String name, final int position, final ExpressionCompiler compiler) {
+        try {
+            final Field field = BatteryPack.class.getField(name);
+
+            if (Modifier.isStatic(field.getModifiers())) {
+                throw compiler.error("Unknown field '" + name + "'", position);
+            }
+
+            return field;
+        } catch (final NoSuchFieldException e) {
+            throw compiler.error("Unknown field '" + name + "'", position);
+        }
+    }
+
+
+    private static MethodHandle constant(final double value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, BatteryPack.class);
+    }
+
+
+    /**
+     * Applies the operator to the results of the operand handles, i.e. creates the handle
+     * <code>pack -> operator(operand1(pack), operand2(pack), ...)</code>.
+     */
+    private static MethodHandle apply(final MethodHandle operator, final MethodHandle... operands) {
+        return MethodHandles.permuteArguments(MethodHandles.filterArguments(operator, 0, operands), EXPRESSION, new int[operands.length]);
+    }
+
+
+    private static MethodHandle operator(final String name, final int parameters) {
+        final Class<?>[] types = new Class<?>[parameters];
+        Arrays.fill(types, double.class);
+
+        try {
+            return MethodHandles.lookup().findStatic(ExpressionCompiler.class, name, MethodType.methodType(double.class, types));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+
+    private static double add(final double a, final double b) {
+        return a + b;
+    }
+
+
+    private static double subtract(final double a, final double b) {
+        return a - b;
+    }
+
+
+    private static double multiply(final double a, final double b) {
+        return a * b;
+    }
+
+
+    private static double divide(final double a, final double b) {
+        return a / b;
+    }
+
+
+    private static double remainder(final double a, final double b) {
+        return a % b;
+    }
+
+
+    private static double less(final double a, final double b) {
+        return a < b ? 1 : 0;
+    }
+
+
+    private static double lessOrEqual(final double a, final double b) {
+        return a <= b ? 1 : 0;
+    }
+
+
+    private static double equal(final double a, final double b) {
+        return a == b ? 1 : 0;
+    }
+
+
+    private static double notEqual(final double a, final double b) {
+        return a != b ? 1 : 0;
+    }
+
+
+    private static double negate(final double a) {
+        return -a;
+    }
+
+
+    private static double not(final double a) {
+        return a == 0 ? 1 : 0;
+    }
+
+
+    private static double normalize(final double a) {
+        return a != 0 ? 1 : 0;
+    }
+
+
+    private static double min(final double a, final double b) {
+        return Math.min(a, b);
+    }
+
+
+    private static double max(final double a, final double b) {
+        return Math.max(a, b);
+    }
+
+
+    private static double abs(final double a) {
+        return Math.abs(a);
+    }
+
+
+    private static double clamp(final double x, final double min, final double max) {
+        return Math.max(min, Math.min(max, x));
+    }
+
+
+    private static double lerp(final double x, final double x0, final double x1, final double y0, final double y1) {
+        if (x0 == x1) {
+            return x < x0 ? y0 : y1;
+        }
+
+        final double t = clamp((x - x0) / (x1 - x0), 0, 1);
+        return y0 + t * (y1 - y0);
+    }
+
+
+    private static boolean isTrue(final double a) {
+        return a != 0;
+    }
+
+
+    private static double fromBoolean(final boolean a) {
+        return a ? 1 : 0;
+    }
+
+
+    private static int toInt(final double a) {
+        // Math.round is 0 for NaN and saturates at the long range
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(a)));
+    }
+}
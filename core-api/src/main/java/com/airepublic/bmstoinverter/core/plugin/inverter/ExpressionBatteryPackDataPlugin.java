@@ -0,0 +1,94 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.plugin.inverter;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.Inverter;
+import com.airepublic.bmstoinverter.core.InverterPlugin;
+import com.airepublic.bmstoinverter.core.PluginProperty;
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.plugin.ExpressionCompiler;
+
+/**
+ * Manipulates the aggregated battery information for an {@link Inverter} by rules over the
+ * {@link BatteryPack} fields, e.g. to derate the charge current linearly above a maximum cell
+ * voltage of 3.45V:
+ *
+ * <pre>
+ * maxPackChargeCurrent = min(maxPackChargeCurrent, lerp(maxCellmV, 3450, 3550, maxPackChargeCurrent, 0))
+ * </pre>
+ *
+ * Each non-empty property value is a rule which are applied in the order of the properties. The
+ * rules are compiled by the {@link ExpressionCompiler} when the properties change. Invalid rules are
+ * logged and ignored.
+ */
+public class ExpressionBatteryPackDataPlugin extends InverterPlugin {
+    private final static Logger LOG = LoggerFactory.getLogger(ExpressionBatteryPackDataPlugin.class);
+    public final static String PROPERTY_RULE = "Rule ";
+    private final static int DEFAULT_RULES = 5;
+    // the compiled rules or null if there are none
+    private MethodHandle rules;
+
+    @Override
+    public String getName() {
+        return "ExpressionBatteryPackDataPlugin";
+    }
+
+
+    /**
+     * Constructor.
+     */
+    public ExpressionBatteryPackDataPlugin() {
+        for (int i = 1; i <= DEFAULT_RULES; i++) {
+            addProperty(new PluginProperty(PROPERTY_RULE + i, "", "A rule 'field = expression' over the batterypack fields, e.g. packSOC = lerp(packSOC, 100, 950, 0, 1000)"));
+        }
+    }
+
+
+    @Override
+    protected void onPropertiesChanged() {
+        final List<MethodHandle> compiled = new ArrayList<>();
+
+        for (final PluginProperty property : getProperties()) {
+            final String rule = property.getValue();
+
+            if (rule != null && !rule.trim().isEmpty()) {
+                try {
+                    compiled.add(ExpressionCompiler.compileRule(rule));
+                } catch (final IllegalArgumentException e) {
+                    LOG.error("Ignoring invalid rule '{}' of plugin '{}': {}", property.getName(), getName(), e.getMessage());
+                }
+            }
+        }
+
+        rules = compiled.isEmpty() ? null : ExpressionCompiler.chain(compiled);
+    }
+
+
+    @Override
+    public void onBatteryAggregation(final BatteryPack aggregatedPack) {
+        final MethodHandle handle = rules;
+
+        if (handle != null) {
+            try {
+                handle.invokeExact(aggregatedPack);
+            } catch (final Throwable e) {
+                LOG.error("Failed to apply the rules of plugin '{}'!", getName(), e);
+            }
+        }
+    }
+}
@@ -29,6 +29,16 @@ public class ManipulateBatteryPackDataPlugin extends InverterPlugin {
     public final static String PROPERTY_PRESET_MAX_VOLTAGE = "Max. voltage limit";
     public final static String PROPERTY_PRESET_MIN_VOLTAGE = "Min. voltage lime";
     public final static String PROPERTY_PRESET_AVG_TEMPERATURE = "Average Temperature";
+    // the parsed property values or null if not set
+    private Integer soc;
+    private Integer soh;
+    private Integer current;
+    private Integer voltage;
+    private Integer maxChargeCurrent;
+    private Integer maxDischargeCurrent;
+    private Integer maxVoltage;
+    private Integer minVoltage;
+    private Integer avgTemperature;
 
     @Override
     public String getName() {
@@ -53,57 +63,55 @@ public class ManipulateBatteryPackDataPlugin extends InverterPlugin {
 
 
     @Override
-    public void onBatteryAggregation(final BatteryPack aggregatedPack) {
-        String value = getPropertyValue(PROPERTY_PRESET_SOC, "");
-
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.packSOC = Integer.parseInt(value);
-        }
+    protected void onPropertiesChanged() {
+        soc = getIntPropertyValue(PROPERTY_PRESET_SOC, null);
+        soh = getIntPropertyValue(PROPERTY_PRESET_SOH, null);
+        current = getIntPropertyValue(PROPERTY_PRESET_CURRENT, null);
+        voltage = getIntPropertyValue(PROPERTY_PRESET_VOLTAGE, null);
+        maxChargeCurrent = getIntPropertyValue(PROPERTY_PRESET_MAX_CHARGE_CURRENT, null);
+        maxDischargeCurrent = getIntPropertyValue(PROPERTY_PRESET_MAX_DISCHARGE_CURRENT, null);
+        maxVoltage = getIntPropertyValue(PROPERTY_PRESET_MAX_VOLTAGE, null);
+        minVoltage = getIntPropertyValue(PROPERTY_PRESET_MIN_VOLTAGE, null);
+        avgTemperature = getIntPropertyValue(PROPERTY_PRESET_AVG_TEMPERATURE, null);
+    }
 
-        value = getPropertyValue(PROPERTY_PRESET_SOH, "");
 
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.packSOH = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_SOH, ""));
+    @Override
+    public void onBatteryAggregation(final BatteryPack aggregatedPack) {
+        if (soc != null) {
+            aggregatedPack.packSOC = soc;
         }
 
-        value = getPropertyValue(PROPERTY_PRESET_CURRENT, "");
-
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.packCurrent = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_CURRENT, ""));
+        if (soh != null) {
+            aggregatedPack.packSOH = soh;
         }
 
-        value = getPropertyValue(PROPERTY_PRESET_VOLTAGE, "");
-
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.packVoltage = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_VOLTAGE, ""));
+        if (current != null) {
+            aggregatedPack.packCurrent = current;
         }
 
-        value = getPropertyValue(PROPERTY_PRESET_MAX_CHARGE_CURRENT, "");
-
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.maxPackChargeCurrent = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MAX_CHARGE_CURRENT, ""));
+        if (voltage != null) {
+            aggregatedPack.packVoltage = voltage;
         }
 
-        value = getPropertyValue(PROPERTY_PRESET_MAX_DISCHARGE_CURRENT, "");
-
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.maxPackDischargeCurrent = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MAX_DISCHARGE_CURRENT, ""));
+        if (maxChargeCurrent != null) {
+            aggregatedPack.maxPackChargeCurrent = maxChargeCurrent;
         }
-        value = getPropertyValue(PROPERTY_PRESET_MAX_VOLTAGE, "");
 
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.maxPackVoltageLimit = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MAX_VOLTAGE, ""));
+        if (maxDischargeCurrent != null) {
+            aggregatedPack.maxPackDischargeCurrent = maxDischargeCurrent;
         }
 
-        value = getPropertyValue(PROPERTY_PRESET_MIN_VOLTAGE, "");
+        if (maxVoltage != null) {
+            aggregatedPack.maxPackVoltageLimit = maxVoltage;
+        }
 
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.minPackVoltageLimit = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MIN_VOLTAGE, ""));
+        if (minVoltage != null) {
+            aggregatedPack.minPackVoltageLimit = minVoltage;
         }
 
-        value = getPropertyValue(PROPERTY_PRESET_AVG_TEMPERATURE, "");
-        if (value != null && !value.trim().isEmpty()) {
-            aggregatedPack.tempAverage = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_AVG_TEMPERATURE, ""));
+        if (avgTemperature != null) {
+            aggregatedPack.tempAverage = avgTemperature;
         }
     }
 }
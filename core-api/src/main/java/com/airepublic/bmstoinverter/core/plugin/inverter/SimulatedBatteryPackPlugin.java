@@ -30,6 +30,16 @@ public class SimulatedBatteryPackPlugin extends InverterPlugin {
     public final static String PROPERTY_PRESET_MAX_VOLTAGE = "Max. voltage limit";
     public final static String PROPERTY_PRESET_MIN_VOLTAGE = "Min. voltage lime";
     public final static String PROPERTY_PRESET_AVG_TEMPERATURE = "Average Temperature";
+    // the parsed property values
+    private int soc;
+    private int soh;
+    private int current;
+    private int voltage;
+    private int maxChargeCurrent;
+    private int maxDischargeCurrent;
+    private int maxVoltage;
+    private int minVoltage;
+    private int avgTemperature;
 
     @Override
     public String getName() {
@@ -53,17 +63,31 @@ public class SimulatedBatteryPackPlugin extends InverterPlugin {
     }
 
 
+    @Override
+    protected void onPropertiesChanged() {
+        soc = getIntPropertyValue(PROPERTY_PRESET_SOC, 500);
+        soh = getIntPropertyValue(PROPERTY_PRESET_SOH, 990);
+        current = getIntPropertyValue(PROPERTY_PRESET_CURRENT, 0);
+        voltage = getIntPropertyValue(PROPERTY_PRESET_VOLTAGE, 520);
+        maxChargeCurrent = getIntPropertyValue(PROPERTY_PRESET_MAX_CHARGE_CURRENT, 200);
+        maxDischargeCurrent = getIntPropertyValue(PROPERTY_PRESET_MAX_DISCHARGE_CURRENT, 200);
+        maxVoltage = getIntPropertyValue(PROPERTY_PRESET_MAX_VOLTAGE, 540);
+        minVoltage = getIntPropertyValue(PROPERTY_PRESET_MIN_VOLTAGE, 480);
+        avgTemperature = getIntPropertyValue(PROPERTY_PRESET_AVG_TEMPERATURE, 250);
+    }
+
+
     @Override
     public void onBatteryAggregation(final BatteryPack aggregatedPack) {
         // set configured or default values
-        aggregatedPack.packSOC = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_SOC, "500"));
-        aggregatedPack.packSOH = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_SOH, "990"));
-        aggregatedPack.packCurrent = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_CURRENT, "0"));
-        aggregatedPack.packVoltage = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_VOLTAGE, "520"));
-        aggregatedPack.maxPackChargeCurrent = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MAX_CHARGE_CURRENT, "200"));
-        aggregatedPack.maxPackDischargeCurrent = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MAX_DISCHARGE_CURRENT, "200"));
-        aggregatedPack.maxPackVoltageLimit = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MAX_VOLTAGE, "540"));
-        aggregatedPack.minPackVoltageLimit = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_MIN_VOLTAGE, "480"));
-        aggregatedPack.tempAverage = Integer.parseInt(getPropertyValue(PROPERTY_PRESET_AVG_TEMPERATURE, "250"));
+        aggregatedPack.packSOC = soc;
+        aggregatedPack.packSOH = soh;
+        aggregatedPack.packCurrent = current;
+        aggregatedPack.packVoltage = voltage;
+        aggregatedPack.maxPackChargeCurrent = maxChargeCurrent;
+        aggregatedPack.maxPackDischargeCurrent = maxDischargeCurrent;
+        aggregatedPack.maxPackVoltageLimit = maxVoltage;
+        aggregatedPack.minPackVoltageLimit = minVoltage;
+        aggregatedPack.tempAverage = avgTemperature;
     }
 }
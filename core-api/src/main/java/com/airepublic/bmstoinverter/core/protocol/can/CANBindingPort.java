@@ -0,0 +1,177 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.protocol.can.CANTransmitQueue.Priority;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+
+/**
+ * A view on a shared {@link CANPort} for one binding. While the {@link CANPort} is demultiplexed
+ * frames are received from the binding's own queue, otherwise directly from the {@link CANPort}.
+ * Frames are sent via the {@link CANTransmitQueue} of the {@link CANPort} with the binding's
+ * {@link Priority} if enabled. All other operations are delegated to the shared {@link CANPort}.
+ */
+public class CANBindingPort extends CANPort {
+    private final static int QUEUE_SIZE = Integer.parseInt(System.getProperty("can.demux.queueSize", "256"));
+    private final CANPort port;
+    private final String bindingKey;
+    private final BlockingQueue<ReceivedFrame> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private volatile Priority priority = Priority.NORMAL;
+
+    /**
+     * A frame in the binding's queue with the time it was received from the {@link CANPort}.
+     */
+    private static class ReceivedFrame {
+        private final ByteBuffer frame;
+        private final long receivedNanos;
+
+        ReceivedFrame(final ByteBuffer frame, final long receivedNanos) {
+            this.frame = frame;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param port the shared {@link CANPort}
+     * @param bindingKey the unique key of the binding on the port
+     */
+    CANBindingPort(final CANPort port, final String bindingKey) {
+        super(port.getPortname(), port.getBaudrate());
+        this.port = port;
+        this.bindingKey = bindingKey;
+    }
+
+
+    /**
+     * Gets the unique key of the binding on the port.
+     *
+     * @return the binding key
+     */
+    public String getBindingKey() {
+        return bindingKey;
+    }
+
+
+    /**
+     * Gets the {@link Priority} the frames of this binding are sent with.
+     *
+     * @return the {@link Priority}
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+
+    /**
+     * Sets the {@link Priority} the frames of this binding are sent with.
+     *
+     * @param priority the {@link Priority}
+     */
+    public void setPriority(final Priority priority) {
+        this.priority = priority;
+    }
+
+
+    @Override
+    public void open() throws Exception {
+        port.open();
+    }
+
+
+    @Override
+    public boolean isOpen() {
+        return port.isOpen();
+    }
+
+
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        if (!port.isDemultiplexed()) {
+            final ByteBuffer frame = port.receiveFrame();
+            setFrameReceivedNanos(port.getFrameReceivedNanos());
+            return frame;
+        }
+
+        try {
+            final ReceivedFrame received = queue.poll(1000, TimeUnit.MILLISECONDS);
+
+            if (received == null) {
+                throw new IOException("No frame received on port " + getPortname() + " for " + bindingKey);
+            }
+
+            setFrameReceivedNanos(received.receivedNanos);
+            return received.frame;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while receiving frame on port " + getPortname(), e);
+        }
+    }
+
+
+    @Override
+    public void sendFrame(final ByteBuffer frame) throws IOException {
+        port.transmit(frame, false, priority);
+    }
+
+
+    @Override
+    public void sendExtendedFrame(final ByteBuffer frame) throws IOException {
+        port.transmit(frame, true, priority);
+    }
+
+
+    @Override
+    public void clearBuffers() {
+        if (port.isDemultiplexed()) {
+            queue.clear();
+        } else {
+            port.clearBuffers();
+        }
+    }
+
+
+    @Override
+    public void close() {
+        port.close();
+    }
+
+
+    @Override
+    public FlightRecorder getFlightRecorder() {
+        return port.getFlightRecorder();
+    }
+
+
+    /**
+     * Offers a received frame to the binding's queue, dropping the oldest frame if the binding does
+     * not keep up.
+     *
+     * @param frame the frame {@link ByteBuffer}
+     * @param receivedNanos the time the frame was received from the {@link CANPort}
+     */
+    void offer(final ByteBuffer frame, final long receivedNanos) {
+        final ReceivedFrame received = new ReceivedFrame(frame, receivedNanos);
+
+        while (!queue.offer(received)) {
+            queue.poll();
+            Metrics.increment("can." + getPortname() + ".droppedFrames");
+        }
+    }
+}
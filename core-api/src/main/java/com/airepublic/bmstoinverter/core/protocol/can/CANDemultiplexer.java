@@ -0,0 +1,124 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.util.Workers;
+
+/**
+ * Reads all frames of a shared {@link CANPort} in one thread and distributes them by the
+ * {@link CANFilter}s of the bindings into bounded per-binding queues. Each binding reads from its
+ * own {@link CANBindingPort}, so multiple {@link BMS}es on one interface do not consume each other's
+ * frames. The queue size can be configured with the system property
+ * <code>can.demux.queueSize</code> (default 256).
+ */
+public class CANDemultiplexer {
+    private final static Logger LOG = LoggerFactory.getLogger(CANDemultiplexer.class);
+    private final CANPort port;
+    private final Collection<CANBindingPort> bindingPorts;
+    private volatile boolean running = false;
+    private Thread reader;
+
+    /**
+     * Constructor.
+     *
+     * @param port the shared {@link CANPort}
+     * @param bindingPorts the live collection of the {@link CANBindingPort}s of the shared
+     *        {@link CANPort}
+     */
+    public CANDemultiplexer(final CANPort port, final Collection<CANBindingPort> bindingPorts) {
+        this.port = port;
+        this.bindingPorts = bindingPorts;
+    }
+
+
+    /**
+     * Starts the reader thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        reader = Workers.newThread("can-demux-" + port.getPortname(), this::run);
+        reader.setDaemon(true);
+        reader.start();
+        LOG.info("Started CAN demultiplexer for shared port '{}'", port.getPortname());
+    }
+
+
+    private void run() {
+        while (running) {
+            try {
+                final ByteBuffer frame = port.receiveFrame();
+
+                if (frame != null) {
+                    dispatch(frame);
+                }
+            } catch (final IOException e) {
+                // receive timeout - nothing on the bus
+            } catch (final Throwable t) {
+                if (running) {
+                    LOG.error("Error reading from shared port '{}'!", port.getPortname(), t);
+
+                    try {
+                        Thread.sleep(1000);
+                    } catch (final InterruptedException e) {
+                        running = false;
+                    }
+                }
+            }
+        }
+    }
+
+
+    private void dispatch(final ByteBuffer frame) {
+        final int frameId = frame.getInt(0);
+        final long receivedNanos = port.getFrameReceivedNanos() != 0 ? port.getFrameReceivedNanos() : System.nanoTime();
+
+        for (final CANBindingPort bindingPort : bindingPorts) {
+            final List<CANFilter> filters = port.getFilters(bindingPort.getBindingKey());
+
+            if (filters == null || filters.stream().anyMatch(filter -> filter.matches(frameId))) {
+                // each binding gets its own view of the frame
+                bindingPort.offer(frame.duplicate().order(frame.order()), receivedNanos);
+            }
+        }
+    }
+
+
+    /**
+     * Stops the reader thread.
+     */
+    public synchronized void stop() {
+        running = false;
+
+        if (reader != null && reader != Thread.currentThread()) {
+            reader.interrupt();
+
+            try {
+                reader.join(2000);
+            } catch (final InterruptedException e) {
+            }
+        }
+
+        reader = null;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A filter for CAN frame ids. A frame is accepted if <code>(frameId &amp; mask) == (id &amp; mask)</code>.
+ */
+public class CANFilter {
+    /** The mask to match an exact standard or extended frame id */
+    public final static int EXACT = 0x1FFFFFFF;
+    private final int id;
+    private final int mask;
+
+    /**
+     * Constructor.
+     *
+     * @param id the frame id
+     * @param mask the mask
+     */
+    public CANFilter(final int id, final int mask) {
+        this.id = id;
+        this.mask = mask;
+    }
+
+
+    /**
+     * Creates a filter matching exactly the specified frame id.
+     *
+     * @param id the frame id
+     * @return the {@link CANFilter}
+     */
+    public static CANFilter exact(final int id) {
+        return new CANFilter(id, EXACT);
+    }
+
+
+    /**
+     * Parses a comma separated list of filters in the form <code>id/mask</code> or
+     * <code>id</code> for an exact match, e.g. <code>0x4211/0x1FFFFF0F,0x7311/0x1FFFFF0F</code>.
+     *
+     * @param value the filter list
+     * @return the {@link CANFilter}s
+     */
+    public static List<CANFilter> parseList(final String value) {
+        final List<CANFilter> filters = new ArrayList<>();
+
+        for (final String entry : value.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            final String[] parts = entry.trim().split("/");
+            final int id = Integer.decode(parts[0].trim());
+            final int mask = parts.length > 1 ? Integer.decode(parts[1].trim()) : EXACT;
+            filters.add(new CANFilter(id, mask));
+        }
+
+        return filters;
+    }
+
+
+    /**
+     * Gets the frame id.
+     *
+     * @return the frame id
+     */
+    public int getId() {
+        return id;
+    }
+
+
+    /**
+     * Gets the mask.
+     *
+     * @return the mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+
+    /**
+     * Checks whether the specified frame id is accepted by this filter.
+     *
+     * @param frameId the frame id
+     * @return true if accepted
+     */
+    public boolean matches(final int frameId) {
+        return (frameId & mask) == (id & mask);
+    }
+
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof CANFilter)) {
+            return false;
+        }
+
+        final CANFilter other = (CANFilter) obj;
+        return id == other.id && mask == other.mask;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * id + mask;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("0x%08X/0x%08X", id, mask);
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import java.util.List;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.Inverter;
+
+/**
+ * Implemented by {@link BMS} and {@link Inverter} bindings on a {@link CANPort} to declare the CAN
+ * frame ids they consume. Bindings not implementing this interface receive all frames.
+ */
+public interface CANFilterProvider {
+
+    /**
+     * Gets the {@link CANFilter}s matching the frames this binding consumes. An empty list means
+     * the binding does not read any frames.
+     *
+     * @return the {@link CANFilter}s
+     */
+    List<CANFilter> getCANFilters();
+}
@@ -12,13 +12,27 @@ package com.airepublic.bmstoinverter.core.protocol.can;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.protocol.can.CANTransmitQueue.Priority;
 
 /**
  * A {@link Port} that is used for CAN messages.
  */
 public abstract class CANPort extends Port {
+    // the filters of each binding on this port - null if the binding consumes all frames
+    private final Map<String, List<CANFilter>> bindingFilters = new ConcurrentHashMap<>();
+    private final Set<String> unfilteredBindings = ConcurrentHashMap.newKeySet();
+    private final Map<String, CANBindingPort> bindingPorts = new ConcurrentHashMap<>();
+    private volatile CANDemultiplexer demultiplexer;
+    private volatile CANTransmitQueue transmitQueue;
+
     /**
      * Constructor.
      */
@@ -44,4 +58,199 @@ public abstract class CANPort extends Port {
      * @throws IOException if an exception occurs
      */
     public abstract void sendExtendedFrame(ByteBuffer frame) throws IOException;
+
+
+    /**
+     * Registers the {@link CANFilter}s of a binding, replacing any previously registered filters of
+     * that binding.
+     *
+     * @param bindingKey the unique key of the binding on this port
+     * @param filters the {@link CANFilter}s or null if the binding consumes all frames
+     */
+    public void registerFilters(final String bindingKey, final List<CANFilter> filters) {
+        if (filters == null) {
+            bindingFilters.remove(bindingKey);
+            unfilteredBindings.add(bindingKey);
+        } else {
+            unfilteredBindings.remove(bindingKey);
+            bindingFilters.put(bindingKey, new ArrayList<>(filters));
+        }
+
+        onFiltersChanged();
+    }
+
+
+    /**
+     * Unregisters the {@link CANFilter}s of a binding.
+     *
+     * @param bindingKey the unique key of the binding on this port
+     */
+    public void unregisterFilters(final String bindingKey) {
+        bindingFilters.remove(bindingKey);
+        unfilteredBindings.remove(bindingKey);
+        bindingPorts.remove(bindingKey);
+        onFiltersChanged();
+    }
+
+
+    /**
+     * Gets the {@link CANFilter}s of the specified binding.
+     *
+     * @param bindingKey the unique key of the binding on this port
+     * @return the {@link CANFilter}s or null if the binding consumes all frames
+     */
+    public List<CANFilter> getFilters(final String bindingKey) {
+        return bindingFilters.get(bindingKey);
+    }
+
+
+    /**
+     * Gets the union of the {@link CANFilter}s of all bindings on this port.
+     *
+     * @return the {@link CANFilter}s or null if all frames must be received
+     */
+    public List<CANFilter> getFilters() {
+        if (!unfilteredBindings.isEmpty() || bindingFilters.isEmpty()) {
+            return null;
+        }
+
+        final Set<CANFilter> filters = new LinkedHashSet<>();
+        bindingFilters.values().forEach(filters::addAll);
+
+        return new ArrayList<>(filters);
+    }
+
+
+    /**
+     * Called when the registered {@link CANFilter}s changed so implementations can update the
+     * filters of the underlying interface.
+     */
+    protected void onFiltersChanged() {
+    }
+
+
+    /**
+     * Gets the {@link Port} the specified binding should use to receive and send frames with
+     * {@link Priority#NORMAL}.
+     *
+     * @param bindingKey the unique key of the binding on this port
+     * @return the {@link Port} for the binding
+     * @see #getBindingPort(String, Priority)
+     */
+    public Port getBindingPort(final String bindingKey) {
+        return getBindingPort(bindingKey, Priority.NORMAL);
+    }
+
+
+    /**
+     * Gets the {@link Port} the specified binding should use to receive and send frames. If more
+     * than one binding reads frames from this port a {@link CANDemultiplexer} is started and each
+     * binding receives only its own frames. If the {@link CANTransmitQueue} is enabled the frames
+     * of the binding are sent via the queue with the specified {@link Priority}. If neither applies
+     * this port is returned.
+     *
+     * @param bindingKey the unique key of the binding on this port
+     * @param priority the {@link Priority} to send the frames of the binding with
+     * @return the {@link Port} for the binding
+     */
+    public synchronized Port getBindingPort(final String bindingKey, final Priority priority) {
+        final long readingBindings = unfilteredBindings.size() + bindingFilters.values().stream().filter(filters -> !filters.isEmpty()).count();
+
+        if (readingBindings < 2 && !CANTransmitQueue.isEnabled()) {
+            return this;
+        }
+
+        if (readingBindings >= 2 && demultiplexer == null) {
+            // create the queues of all bindings up-front so no frames get lost
+            unfilteredBindings.forEach(key -> bindingPorts.computeIfAbsent(key, k -> new CANBindingPort(this, k)));
+            bindingFilters.keySet().forEach(key -> bindingPorts.computeIfAbsent(key, k -> new CANBindingPort(this, k)));
+            demultiplexer = new CANDemultiplexer(this, bindingPorts.values());
+            demultiplexer.start();
+        }
+
+        final CANBindingPort bindingPort = bindingPorts.computeIfAbsent(bindingKey, k -> new CANBindingPort(this, k));
+        bindingPort.setPriority(priority);
+
+        return bindingPort;
+    }
+
+
+    /**
+     * Returns true if the received frames are distributed to the bindings by a
+     * {@link CANDemultiplexer}.
+     *
+     * @return true if demultiplexed otherwise false
+     */
+    public boolean isDemultiplexed() {
+        return demultiplexer != null;
+    }
+
+
+    /**
+     * Sends the frame via the {@link CANTransmitQueue} of this port if enabled, otherwise directly.
+     *
+     * @param frame the frame {@link ByteBuffer}
+     * @param extended true if the frame should be sent as extended frame
+     * @param priority the {@link Priority} of the frame
+     * @throws IOException if the frame was sent directly and an exception occurs
+     */
+    public void transmit(final ByteBuffer frame, final boolean extended, final Priority priority) throws IOException {
+        final CANTransmitQueue queue = getTransmitQueue();
+
+        if (queue != null) {
+            queue.enqueue(frame, extended, priority);
+        } else if (extended) {
+            sendExtendedFrame(frame);
+        } else {
+            sendFrame(frame);
+        }
+    }
+
+
+    private CANTransmitQueue getTransmitQueue() {
+        if (!CANTransmitQueue.isEnabled()) {
+            return null;
+        }
+
+        CANTransmitQueue queue = transmitQueue;
+
+        if (queue == null) {
+            synchronized (this) {
+                if (transmitQueue == null) {
+                    transmitQueue = CANTransmitQueue.fromSystemProperties(this);
+                    transmitQueue.start();
+                }
+
+                queue = transmitQueue;
+            }
+        }
+
+        return queue;
+    }
+
+
+    /**
+     * Stops the {@link CANDemultiplexer} and the {@link CANTransmitQueue} if they have been
+     * started. Implementations must call this when the port is closed.
+     */
+    protected void stopWorkers() {
+        final CANDemultiplexer stoppingDemultiplexer;
+        final CANTransmitQueue stoppingQueue;
+
+        synchronized (this) {
+            stoppingDemultiplexer = demultiplexer;
+            stoppingQueue = transmitQueue;
+            demultiplexer = null;
+            transmitQueue = null;
+        }
+
+        // stop outside the lock as the threads might be waiting for it
+        if (stoppingDemultiplexer != null) {
+            stoppingDemultiplexer.stop();
+        }
+
+        if (stoppingQueue != null) {
+            stoppingQueue.stop();
+        }
+    }
 }
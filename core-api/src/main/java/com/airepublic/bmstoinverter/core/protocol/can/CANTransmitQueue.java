@@ -0,0 +1,265 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+import com.airepublic.bmstoinverter.core.util.Workers;
+
+/**
+ * Transmits the frames of a {@link CANPort} in a dedicated thread so that callers only enqueue the
+ * frame and return immediately. Frames are sent by {@link Priority} and in enqueue order within the
+ * same {@link Priority}, paced by a minimum gap between two frames. Frames which could not be sent
+ * before their deadline are dropped. The following system properties are used:
+ * <ul>
+ * <li><code>can.tx.queue</code> - true (default) to enable the transmit queue</li>
+ * <li><code>can.tx.frameGap</code> - the minimum gap between two frames in microseconds (default
+ * 200)</li>
+ * <li><code>can.tx.deadline</code> - the time in milliseconds after which an unsent frame is dropped
+ * (default 1000)</li>
+ * </ul>
+ */
+public class CANTransmitQueue {
+    private final static Logger LOG = LoggerFactory.getLogger(CANTransmitQueue.class);
+    private final CANPort port;
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final long frameGapNanos;
+    private final long deadlineNanos;
+    private final String metricsPrefix;
+    private volatile boolean running = false;
+    private Thread sender;
+
+    /**
+     * The priority of a frame, frames of a higher priority are sent first.
+     */
+    public enum Priority {
+        /** Frames which keep the inverter operating safely, e.g. the battery limits. */
+        HIGH,
+        /** Requests to the BMSes. */
+        NORMAL,
+        /** Frames which may be delayed arbitrarily. */
+        LOW
+    }
+
+    /**
+     * A frame waiting to be sent.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final ByteBuffer frame;
+        private final boolean extended;
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueued;
+        private final long deadline;
+
+        private Entry(final ByteBuffer frame, final boolean extended, final Priority priority, final long sequence, final long enqueued, final long deadline) {
+            this.frame = frame;
+            this.extended = extended;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueued = enqueued;
+            this.deadline = deadline;
+        }
+
+
+        @Override
+        public int compareTo(final Entry other) {
+            final int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param port the {@link CANPort} to send the frames with
+     * @param frameGapMicros the minimum gap between two frames in microseconds
+     * @param deadlineMillis the default time in milliseconds after which an unsent frame is dropped
+     */
+    public CANTransmitQueue(final CANPort port, final long frameGapMicros, final long deadlineMillis) {
+        this.port = port;
+        frameGapNanos = TimeUnit.MICROSECONDS.toNanos(frameGapMicros);
+        deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        metricsPrefix = "can." + port.getPortname() + ".tx.";
+    }
+
+
+    /**
+     * Creates a {@link CANTransmitQueue} for the {@link CANPort} configured from the system
+     * properties.
+     *
+     * @param port the {@link CANPort} to send the frames with
+     * @return the {@link CANTransmitQueue}
+     */
+    public static CANTransmitQueue fromSystemProperties(final CANPort port) {
+        final long frameGap = Long.parseLong(System.getProperty("can.tx.frameGap", "200"));
+        final long deadline = Long.parseLong(System.getProperty("can.tx.deadline", "1000"));
+
+        return new CANTransmitQueue(port, frameGap, deadline);
+    }
+
+
+    /**
+     * Returns true if the transmit queue is enabled by the system property
+     * <code>can.tx.queue</code>.
+     *
+     * @return true if enabled otherwise false
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("can.tx.queue", "true"));
+    }
+
+
+    /**
+     * Enqueues a copy of the frame to be sent before the default deadline. This method does not
+     * block.
+     *
+     * @param frame the frame {@link ByteBuffer}
+     * @param extended true if the frame should be sent as extended frame
+     * @param priority the {@link Priority}
+     */
+    public void enqueue(final ByteBuffer frame, final boolean extended, final Priority priority) {
+        enqueue(frame, extended, priority, deadlineNanos);
+    }
+
+
+    /**
+     * Enqueues a copy of the frame to be sent before the specified deadline. This method does not
+     * block.
+     *
+     * @param frame the frame {@link ByteBuffer}
+     * @param extended true if the frame should be sent as extended frame
+     * @param priority the {@link Priority}
+     * @param deadlineNanos the time in nanoseconds after which the frame is dropped if unsent
+     */
+    public void enqueue(final ByteBuffer frame, final boolean extended, final Priority priority, final long deadlineNanos) {
+        final long now = System.nanoTime();
+        // callers usually re-use their frame buffer for the next frame
+        queue.offer(new Entry(copy(frame), extended, priority, sequence.incrementAndGet(), now, now + deadlineNanos));
+        Metrics.setGauge(metricsPrefix + "queued", queue.size());
+    }
+
+
+    private static ByteBuffer copy(final ByteBuffer frame) {
+        final ByteBuffer source = frame.duplicate();
+        source.rewind();
+        final ByteBuffer copy = frame.isDirect() ? ByteBuffer.allocateDirect(frame.capacity()) : ByteBuffer.allocate(frame.capacity());
+        copy.order(frame.order());
+        copy.put(source);
+        copy.rewind();
+        copy.limit(frame.limit());
+
+        return copy;
+    }
+
+
+    /**
+     * Gets the number of frames waiting to be sent.
+     *
+     * @return the number of frames waiting to be sent
+     */
+    public int size() {
+        return queue.size();
+    }
+
+
+    /**
+     * Starts the sender thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        sender = Workers.newThread("can-tx-" + port.getPortname(), this::run);
+        sender.setDaemon(true);
+        sender.start();
+        LOG.info("Started CAN transmit queue for port '{}'", port.getPortname());
+    }
+
+
+    private void run() {
+        long lastSent = 0;
+
+        while (running) {
+            try {
+                final Entry entry = queue.take();
+                Metrics.setGauge(metricsPrefix + "queued", queue.size());
+
+                // pace bursts so other nodes on the bus get a chance to send
+                final long gap = lastSent + frameGapNanos - System.nanoTime();
+
+                if (lastSent != 0 && gap > 0) {
+                    LockSupport.parkNanos(gap);
+                }
+
+                final long now = System.nanoTime();
+
+                if (now > entry.deadline) {
+                    Metrics.increment(metricsPrefix + "expired");
+                    LOG.debug("Dropped expired CAN frame on port '{}': {}", port.getPortname(), Port.printBuffer(entry.frame));
+                    continue;
+                }
+
+                try {
+                    if (entry.extended) {
+                        port.sendExtendedFrame(entry.frame);
+                    } else {
+                        port.sendFrame(entry.frame);
+                    }
+
+                    lastSent = System.nanoTime();
+                    Metrics.recordTime(metricsPrefix + "latency", lastSent - entry.enqueued);
+                    Metrics.increment(metricsPrefix + "sent");
+                } catch (final IOException e) {
+                    Metrics.increment(metricsPrefix + "errors");
+                    LOG.error("Failed to send CAN frame on port '{}': {}", port.getPortname(), Port.printBuffer(entry.frame), e);
+                }
+            } catch (final InterruptedException e) {
+                running = false;
+            } catch (final Throwable t) {
+                LOG.error("Error in CAN transmit queue of port '{}'!", port.getPortname(), t);
+            }
+        }
+    }
+
+
+    /**
+     * Stops the sender thread and discards all unsent frames.
+     */
+    public synchronized void stop() {
+        running = false;
+
+        if (sender != null && sender != Thread.currentThread()) {
+            sender.interrupt();
+
+            try {
+                sender.join(2000);
+            } catch (final InterruptedException e) {
+            }
+        }
+
+        sender = null;
+        queue.clear();
+    }
+}
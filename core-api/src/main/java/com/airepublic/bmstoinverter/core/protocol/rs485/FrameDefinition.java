@@ -15,6 +15,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import com.airepublic.bmstoinverter.core.checksum.FrameChecksum;
+
 /**
  * Class to define how a frame is structured by evaluating a definition string, e.g. SSACLOODVV (see
  * {@link FrameDefinitionPartType} for the character meanings). The pattern will be parsed to
@@ -29,10 +31,16 @@ import java.util.List;
  * character. The length of the data bytes will be determined by the actual value in the frame bytes
  * at the position of the {@link FrameDefinitionPartType#LENGTH} part during parsing<br/>
  * If there is no {@link FrameDefinitionPartType#LENGTH} character multiple
- * {@link FrameDefinitionPartType#DATA} characters can be defined, e.g SACDDDDDDDD (8 data bytes).
+ * {@link FrameDefinitionPartType#DATA} characters can be defined, e.g SACDDDDDDDD (8 data bytes).<br/>
+ * <br/>
+ * Optionally a {@link FrameChecksum} can be set with {@link #withChecksum(FrameChecksum, int)}
+ * which is then updated while the frame bytes are received and compared to the big-endian value
+ * of the {@link FrameDefinitionPartType#CHECKSUM} bytes once the frame is complete.
  */
 public class FrameDefinition implements Iterable<FrameDefinitionPart> {
     private List<FrameDefinitionPart> parts = new ArrayList<>();
+    private FrameChecksum checksum;
+    private int checksumStart;
 
     public FrameDefinition(final ArrayList<FrameDefinitionPart> parts) {
         this.parts = parts;
@@ -203,4 +211,119 @@ public class FrameDefinition implements Iterable<FrameDefinitionPart> {
     public List<FrameDefinitionPart> getParts() {
         return parts;
     }
+
+
+    /**
+     * Sets the {@link FrameChecksum} that covers the frame bytes from the specified index up to the
+     * {@link FrameDefinitionPartType#CHECKSUM} bytes. The {@link FrameChecksum} is stateful, so
+     * the {@link FrameDefinition} must only be used by one port.
+     *
+     * @param checksum the {@link FrameChecksum}
+     * @param from the index of the first byte covered by the checksum
+     * @return this {@link FrameDefinition}
+     * @throws IllegalArgumentException if the definition has no
+     *         {@link FrameDefinitionPartType#CHECKSUM} part
+     */
+    public FrameDefinition withChecksum(final FrameChecksum checksum, final int from) throws IllegalArgumentException {
+        if (getChecksumTrailerLength() == -1) {
+            throw new IllegalArgumentException("The frame definition has no checksum part!");
+        }
+
+        this.checksum = checksum;
+        checksumStart = from;
+        return this;
+    }
+
+
+    /**
+     * Resets the {@link FrameChecksum} to start a new frame. Does nothing if no
+     * {@link FrameChecksum} is set.
+     */
+    public void resetChecksum() {
+        if (checksum != null) {
+            checksum.reset();
+        }
+    }
+
+
+    /**
+     * Updates the {@link FrameChecksum} after the byte at the specified index has been received.
+     * Because the checksum bytes and all bytes after them are not covered, the update lags behind
+     * by their count, so the checksum is complete when the last byte of the frame is received.
+     *
+     * @param bytes the bytes received for the frame so far
+     * @param index the index of the received byte
+     */
+    public void updateChecksum(final byte[] bytes, final int index) {
+        if (checksum != null) {
+            final int covered = index - getChecksumTrailerLength();
+
+            if (covered >= checksumStart) {
+                checksum.update(bytes[covered]);
+            }
+        }
+    }
+
+
+    /**
+     * Checks if the {@link FrameChecksum} updated while receiving the specified frame matches the
+     * {@link FrameDefinitionPartType#CHECKSUM} bytes of the frame. Returns true if no
+     * {@link FrameChecksum} is set.
+     *
+     * @param frame the complete frame
+     * @return true if the checksum matches
+     */
+    public boolean isChecksumValid(final ByteBuffer frame) {
+        if (checksum == null) {
+            return true;
+        }
+
+        int index = frame.capacity() - getChecksumTrailerLength();
+        final int end = index + getChecksumLength();
+        int expected = 0;
+
+        for (; index < end; index++) {
+            expected = expected << 8 | frame.get(index) & 0xFF;
+        }
+
+        return expected == checksum.getValue();
+    }
+
+
+    /**
+     * Gets the number of bytes of the {@link FrameDefinitionPartType#CHECKSUM} part and all parts
+     * after it.
+     *
+     * @return the number of bytes or -1 if there is no {@link FrameDefinitionPartType#CHECKSUM}
+     *         part
+     */
+    private int getChecksumTrailerLength() {
+        int length = 0;
+
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            length += parts.get(i).getByteCount();
+
+            if (parts.get(i).getType().equals(FrameDefinitionPartType.CHECKSUM)) {
+                return length;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Gets the number of bytes of the last {@link FrameDefinitionPartType#CHECKSUM} part.
+     *
+     * @return the number of bytes
+     */
+    private int getChecksumLength() {
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            if (parts.get(i).getType().equals(FrameDefinitionPartType.CHECKSUM)) {
+                return parts.get(i).getByteCount();
+            }
+        }
+
+        return 0;
+    }
 }
@@ -14,7 +14,7 @@ package com.airepublic.bmstoinverter.core.service;
  * Service interface for the email service. It will read the config.properties for the email
  * configuration and send emails with the configured settings.
  */
-public interface IEmailService {
+public interface IEmailService extends INotificationChannel {
 
     /**
      * Sends an email with the specified message.
@@ -24,4 +24,16 @@ public interface IEmailService {
      */
     void sendEmail(String subject, String message);
 
+
+    @Override
+    default String getName() {
+        return "email";
+    }
+
+
+    @Override
+    default void send(final String subject, final String message) throws Exception {
+        sendEmail(subject, message);
+    }
+
 }
\ No newline at end of file
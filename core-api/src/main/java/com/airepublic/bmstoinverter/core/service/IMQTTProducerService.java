@@ -45,6 +45,18 @@ public interface IMQTTProducerService extends AutoCloseable {
     void sendMessage(String content) throws IOException;
 
 
+    /**
+     * Sends the specified binary message content, e.g. encoded with the
+     * {@link com.airepublic.bmstoinverter.core.bms.data.TelemetryEncoder}, to the connected topic.
+     *
+     * @param content the binary message content
+     * @throws IOException if an error occurs or binary messages are not supported
+     */
+    default void sendMessage(final byte[] content) throws IOException {
+        throw new IOException("Binary messages are not supported by " + getClass().getName());
+    }
+
+
     /**
      * Stops the MQTT producer service.
      */
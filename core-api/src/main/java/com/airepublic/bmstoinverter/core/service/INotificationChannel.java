@@ -0,0 +1,36 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.service;
+
+/**
+ * Service interface for a channel that delivers alarm notifications, e.g. email, messenger or SMS.
+ * Implementations are registered via the {@link java.util.ServiceLoader}.
+ */
+public interface INotificationChannel {
+
+    /**
+     * Gets the name of the channel.
+     *
+     * @return the name of the channel
+     */
+    String getName();
+
+
+    /**
+     * Sends the notification with the specified subject and message.
+     *
+     * @param subject the subject of the notification
+     * @param message the message to send
+     * @throws Exception if the notification could not be sent
+     */
+    void send(String subject, String message) throws Exception;
+
+}
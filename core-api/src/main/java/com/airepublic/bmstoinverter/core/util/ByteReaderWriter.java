@@ -135,6 +135,16 @@ public class ByteReaderWriter implements AutoCloseable {
     }
 
 
+    /**
+     * Returns whether there are no bytes available.
+     *
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+
     /**
      * Clears the underlying queue.
      */
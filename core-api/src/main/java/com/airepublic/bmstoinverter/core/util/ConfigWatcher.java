@@ -0,0 +1,139 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the <code>config.properties</code> for modifications, reloads the changed properties
+ * into the system properties and notifies the listener with the names of the changed properties.
+ */
+public class ConfigWatcher implements AutoCloseable {
+    private final static Logger LOG = LoggerFactory.getLogger(ConfigWatcher.class);
+    private final Path configFile;
+    private final Consumer<Set<String>> listener;
+    private WatchService watchService;
+    private Thread worker;
+    private volatile boolean running = false;
+
+    /**
+     * Constructor.
+     *
+     * @param configFile the <code>config.properties</code> to watch
+     * @param listener the listener called with the names of the changed properties
+     */
+    public ConfigWatcher(final Path configFile, final Consumer<Set<String>> listener) {
+        this.configFile = configFile.toAbsolutePath();
+        this.listener = listener;
+    }
+
+
+    /**
+     * Starts watching the <code>config.properties</code>.
+     *
+     * @throws IOException if the directory of the file could not be watched
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        configFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        running = true;
+        worker = Workers.newThread("config-watcher", this::run);
+        worker.setDaemon(true);
+        worker.start();
+        LOG.info("Watching {} for changes", configFile);
+    }
+
+
+    private void run() {
+        while (running) {
+            try {
+                final WatchKey key = watchService.take();
+                boolean modified = false;
+
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path && configFile.getFileName().equals(event.context())) {
+                        modified = true;
+                    }
+                }
+
+                key.reset();
+
+                if (modified) {
+                    // editors often write the file in several steps, so wait for them to finish
+                    Thread.sleep(500);
+                    drainEvents();
+                    reload();
+                }
+            } catch (final InterruptedException | ClosedWatchServiceException e) {
+                running = false;
+            } catch (final Throwable t) {
+                LOG.error("Error watching {}!", configFile, t);
+            }
+        }
+    }
+
+
+    private void drainEvents() throws InterruptedException {
+        WatchKey key;
+
+        while ((key = watchService.poll(100, TimeUnit.MILLISECONDS)) != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+
+    private void reload() {
+        try {
+            final Set<String> changed = SystemProperties.reloadSystemProperties(configFile);
+
+            if (!changed.isEmpty()) {
+                listener.accept(changed);
+            }
+        } catch (final Exception e) {
+            LOG.error("Could not reload {}!", configFile, e);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        running = false;
+
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (final IOException e) {
+        }
+
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application wide registry of simple gauges, counters and timers which can be published, e.g. via
+ * the webserver.
+ */
+public class Metrics {
+    private final static Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private final static Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Statistics of a timed operation.
+     */
+    public static class Timer {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        /**
+         * Records the duration of an operation.
+         *
+         * @param nanos the duration in nanoseconds
+         */
+        public synchronized void record(final long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+
+        private synchronized Map<String, Object> toMap() {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("avgMicros", count > 0 ? totalNanos / count / 1000 : 0);
+            map.put("maxMicros", maxNanos / 1000);
+            return map;
+        }
+    }
+
+    /**
+     * Sets the gauge with the specified name to the value.
+     *
+     * @param name the name of the gauge
+     * @param value the value
+     */
+    public static void setGauge(final String name, final long value) {
+        gauges.computeIfAbsent(name, k -> new AtomicLong()).set(value);
+    }
+
+
+    /**
+     * Sets the gauge with the specified name to the value only if it has not been set before.
+     *
+     * @param name the name of the gauge
+     * @param value the value
+     * @return true if the gauge was set, false if it already existed
+     */
+    public static boolean setGaugeIfAbsent(final String name, final long value) {
+        return gauges.putIfAbsent(name, new AtomicLong(value)) == null;
+    }
+
+
+    /**
+     * Increments the counter with the specified name by one.
+     *
+     * @param name the name of the counter
+     * @return the incremented value
+     */
+    public static long increment(final String name) {
+        return gauges.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+    }
+
+
+    /**
+     * Gets the current value of the gauge or counter with the specified name.
+     *
+     * @param name the name
+     * @return the value or 0 if not present
+     */
+    public static long getGauge(final String name) {
+        final AtomicLong value = gauges.get(name);
+        return value != null ? value.get() : 0;
+    }
+
+
+    /**
+     * Records the duration of an operation for the timer with the specified name.
+     *
+     * @param name the name of the timer
+     * @param nanos the duration in nanoseconds
+     */
+    public static void recordTime(final String name, final long nanos) {
+        timers.computeIfAbsent(name, k -> new Timer()).record(nanos);
+    }
+
+
+    /**
+     * Gets the timer with the specified name, e.g. to record the durations of a hot path without
+     * looking up the timer each time.
+     *
+     * @param name the name of the timer
+     * @return the {@link Timer}
+     */
+    public static Timer getTimer(final String name) {
+        return timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+
+    /**
+     * Gets the milliseconds since the JVM was started.
+     *
+     * @return the milliseconds since the JVM was started
+     */
+    public static long getUptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+
+    /**
+     * Creates a sorted snapshot of all gauges, counters and timers.
+     *
+     * @return the snapshot
+     */
+    public static Map<String, Object> snapshot() {
+        final Map<String, Object> snapshot = new TreeMap<>();
+        gauges.forEach((name, value) -> snapshot.put(name, value.get()));
+        timers.forEach((name, timer) -> snapshot.put(name, timer.toMap()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The default {@link WorkerProvider} creating platform threads.
+ */
+public class PlatformWorkerProvider implements WorkerProvider {
+    public final static String NAME = "platform";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+
+    @Override
+    public Thread newThread(final String name, final Runnable task) {
+        return new Thread(task, name);
+    }
+
+
+    @Override
+    public ExecutorService newExecutor(final String name) {
+        return Executors.newSingleThreadExecutor(task -> newThread(name, task));
+    }
+}
@@ -1,15 +1,23 @@
 package com.airepublic.bmstoinverter.core.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SystemProperties {
     private final static Logger LOG = LoggerFactory.getLogger(SystemProperties.class);
+    // the properties which have been set from the config file (not overridden by -D parameters)
+    private final static Map<String, String> fileProperties = new ConcurrentHashMap<>();
 
     /**
      * Reads the <code>config.properties</code> and adds them to the system properties.
@@ -35,8 +43,58 @@ public class SystemProperties {
             final String key = name.toString();
             if (System.getProperty(key) == null) {
                 System.setProperty(key, props.getProperty(key));
+                fileProperties.put(key, props.getProperty(key));
             }
         }
     }
 
+
+    /**
+     * Re-reads the <code>config.properties</code> and updates the system properties which have
+     * changed since they were last read. Properties which have been specified via command line -D
+     * parameters are not overridden and properties which have been removed from the file are
+     * cleared.
+     *
+     * @param config the path to the <code>config.properties</code>
+     * @return the sorted names of the changed properties
+     * @throws IOException if the file could not be read
+     */
+    public static Set<String> reloadSystemProperties(final Path config) throws IOException {
+        final Properties props = new Properties();
+
+        try (InputStream in = Files.newInputStream(config)) {
+            props.load(in);
+        }
+
+        final Set<String> changed = new TreeSet<>();
+        final Set<String> keys = new HashSet<>(props.stringPropertyNames());
+        keys.addAll(fileProperties.keySet());
+
+        for (final String key : keys) {
+            final String value = props.getProperty(key);
+            final String current = System.getProperty(key);
+
+            // skip properties set via command line
+            if (!fileProperties.containsKey(key) && current != null) {
+                continue;
+            }
+
+            if (value == null) {
+                System.clearProperty(key);
+                fileProperties.remove(key);
+                changed.add(key);
+            } else if (!value.equals(current)) {
+                System.setProperty(key, value);
+                fileProperties.put(key, value);
+                changed.add(key);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            LOG.info("Reloaded config.properties from {} - changed properties: {}", config, changed);
+        }
+
+        return changed;
+    }
+
 }
@@ -0,0 +1,134 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+/**
+ * Receives the application-level events of the polling and send pipeline, e.g. to emit them as
+ * Java Flight Recorder events. Each operation is started with {@link #begin(Operation)} and the
+ * returned span is passed to the method reporting its end on the same thread. All methods are
+ * no-ops by default and are called on the hot paths, so implementations must not block.
+ */
+public interface Tracer {
+    /**
+     * The traced operations.
+     */
+    enum Operation {
+        BMS_CYCLE,
+        REQUEST_ROUND_TRIP,
+        FRAME_DECODE,
+        AGGREGATION,
+        INVERTER_SEND,
+        MQTT_PUBLISH,
+        SNAPSHOT_SERIALIZATION
+    }
+
+    /**
+     * Marks the start of an operation, so the event reported at its end covers the real time span
+     * of the operation.
+     *
+     * @param operation the {@link Operation}
+     * @return the span to pass to the method reporting the end of the operation or null if the
+     *         operation is not traced
+     */
+    default Object begin(final Operation operation) {
+        return null;
+    }
+
+
+    /**
+     * A BMS polling cycle has finished.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param bms the name of the BMS
+     * @param port the port locator
+     * @param commands the number of commands sent in the cycle
+     * @param durationNanos the duration of the cycle in nanoseconds
+     * @param outcome the outcome, e.g. <code>OK</code>, <code>NO_DATA</code>,
+     *        <code>INVALID_FRAMES</code> or <code>ERROR</code>
+     */
+    default void bmsCycle(final Object span, final String bms, final String port, final int commands, final long durationNanos, final String outcome) {
+    }
+
+
+    /**
+     * A request has been sent to a device and its response received.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param port the name of the port
+     * @param request the name of the request
+     * @param durationNanos the duration of the round trip in nanoseconds
+     * @param success true if the response has been received
+     */
+    default void requestRoundTrip(final Object span, final String port, final String request, final long durationNanos, final boolean success) {
+    }
+
+
+    /**
+     * A received frame has been decoded into the battery data. The time waiting for the frame is
+     * not part of the decoding.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param port the name of the port
+     * @param length the length of the frame in bytes
+     * @param durationNanos the duration of the decoding in nanoseconds
+     */
+    default void frameDecode(final Object span, final String port, final int length, final long durationNanos) {
+    }
+
+
+    /**
+     * The battery packs have been aggregated into the snapshot for the inverters.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param packs the number of battery packs
+     * @param changed true if the snapshot has changed
+     * @param durationNanos the duration of the aggregation in nanoseconds
+     */
+    default void aggregation(final Object span, final int packs, final boolean changed, final long durationNanos) {
+    }
+
+
+    /**
+     * A batch of frames has been sent to an inverter.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param inverter the name of the inverter
+     * @param frames the number of frames sent
+     * @param durationNanos the duration of creating and sending the frames in nanoseconds
+     * @param success true if all frames have been sent
+     */
+    default void inverterSend(final Object span, final String inverter, final int frames, final long durationNanos, final boolean success) {
+    }
+
+
+    /**
+     * A message has been published via MQTT.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param bytes the size of the encoded payload in bytes
+     * @param durationNanos the duration of publishing in nanoseconds
+     * @param success true if the message has been published
+     */
+    default void mqttPublish(final Object span, final int bytes, final long durationNanos, final boolean success) {
+    }
+
+
+    /**
+     * A snapshot has been serialized for a web endpoint.
+     *
+     * @param span the span returned by {@link #begin(Operation)}
+     * @param endpoint the path of the endpoint
+     * @param bytes the size of the serialized snapshot
+     * @param durationNanos the duration of the serialization in nanoseconds
+     */
+    default void snapshotSerialization(final Object span, final String endpoint, final int bytes, final long durationNanos) {
+    }
+}
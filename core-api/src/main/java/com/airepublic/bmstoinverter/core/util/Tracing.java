@@ -0,0 +1,90 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gives access to the {@link Tracer} of the application. If the JVM supports the Java Flight
+ * Recorder the events are emitted as custom JFR events, so they can be correlated with GC pauses and
+ * CPU spikes in a continuous recording. Otherwise or if disabled by the system property
+ * <code>trace.jfr=false</code> all events are no-ops.
+ */
+public class Tracing {
+    private final static Logger LOG = LoggerFactory.getLogger(Tracing.class);
+    private final static String JFR_TRACER = "com.airepublic.bmstoinverter.core.util.jfr.JfrTracer";
+    private final static Tracer NOOP = new Tracer() {
+    };
+    private static volatile Tracer tracer;
+
+    /**
+     * Gets the {@link Tracer}.
+     *
+     * @return the {@link Tracer}
+     */
+    public static Tracer get() {
+        Tracer current = tracer;
+
+        if (current == null) {
+            synchronized (Tracing.class) {
+                current = tracer;
+
+                if (current == null) {
+                    current = loadTracer();
+                    tracer = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+
+    /**
+     * Replaces the {@link Tracer}, e.g. to measure the bus timings in a benchmark.
+     *
+     * @param replacement the {@link Tracer} to use or null to load the default {@link Tracer} again
+     * @return the previous {@link Tracer}
+     */
+    public static synchronized Tracer setTracer(final Tracer replacement) {
+        final Tracer previous = tracer;
+        tracer = replacement;
+        return previous;
+    }
+
+
+    private static Tracer loadTracer() {
+        if (!Boolean.parseBoolean(System.getProperty("trace.jfr", "true"))) {
+            return NOOP;
+        }
+
+        try {
+            // loaded reflectively so the JFR classes are never linked on JVMs without JFR
+            final Tracer jfr = (Tracer) Class.forName(JFR_TRACER).getDeclaredConstructor().newInstance();
+            LOG.info("Emitting Java Flight Recorder events");
+            return jfr;
+        } catch (final Throwable e) {
+            LOG.info("Java Flight Recorder is not available - events are disabled");
+            return NOOP;
+        }
+    }
+
+
+    /**
+     * Returns true if the events are emitted.
+     *
+     * @return true if enabled otherwise false
+     */
+    public static boolean isEnabled() {
+        return get() != NOOP;
+    }
+}
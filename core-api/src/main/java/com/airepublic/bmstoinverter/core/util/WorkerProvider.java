@@ -0,0 +1,51 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the threads and executors for all workers of the application, e.g. the BMS and inverter
+ * runners, port readers and service workers. Implementations are registered via the
+ * {@link java.util.ServiceLoader} and selected by their name with the system property
+ * <code>worker.mode</code>.
+ */
+public interface WorkerProvider {
+
+    /**
+     * Gets the name used to select this {@link WorkerProvider} with the system property
+     * <code>worker.mode</code>.
+     *
+     * @return the name
+     */
+    String getName();
+
+
+    /**
+     * Creates a new unstarted thread executing the specified task.
+     *
+     * @param name the name of the thread
+     * @param task the task to execute
+     * @return the unstarted thread
+     */
+    Thread newThread(String name, Runnable task);
+
+
+    /**
+     * Creates a new serial {@link ExecutorService} to execute tasks asynchronously. The tasks are
+     * executed one after another in the order they were submitted, so callers may rely on tasks not
+     * running concurrently, e.g. when they share a port or state.
+     *
+     * @param name the name prefix of the threads of the executor
+     * @return the {@link ExecutorService}
+     */
+    ExecutorService newExecutor(String name);
+}
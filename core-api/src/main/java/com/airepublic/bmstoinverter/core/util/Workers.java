@@ -0,0 +1,109 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the threads and executors of all workers with the {@link WorkerProvider} selected by
+ * the system property <code>worker.mode</code> (default <code>platform</code>). If the selected
+ * {@link WorkerProvider} is not available, e.g. because the runtime does not support virtual
+ * threads, platform threads are used.
+ */
+public class Workers {
+    private final static Logger LOG = LoggerFactory.getLogger(Workers.class);
+    private static volatile WorkerProvider provider;
+
+    /**
+     * Gets the selected {@link WorkerProvider}.
+     *
+     * @return the {@link WorkerProvider}
+     */
+    public static WorkerProvider getProvider() {
+        WorkerProvider current = provider;
+
+        if (current == null) {
+            synchronized (Workers.class) {
+                current = provider;
+
+                if (current == null) {
+                    current = loadProvider(System.getProperty("worker.mode", PlatformWorkerProvider.NAME));
+                    provider = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+
+    private static WorkerProvider loadProvider(final String mode) {
+        if (!PlatformWorkerProvider.NAME.equalsIgnoreCase(mode)) {
+            try {
+                for (final WorkerProvider candidate : ServiceLoader.load(WorkerProvider.class)) {
+                    if (candidate.getName().equalsIgnoreCase(mode)) {
+                        LOG.info("Using {} threads for all workers", candidate.getName());
+                        return candidate;
+                    }
+                }
+            } catch (final Throwable e) {
+                // e.g. a provider compiled for a newer Java version
+                LOG.error("Could not load the worker provider '{}'!", mode, e);
+            }
+
+            LOG.warn("Worker mode '{}' is not available - using platform threads", mode);
+        }
+
+        return new PlatformWorkerProvider();
+    }
+
+
+    /**
+     * Creates a new unstarted worker thread executing the specified task.
+     *
+     * @param name the name of the thread
+     * @param task the task to execute
+     * @return the unstarted thread
+     */
+    public static Thread newThread(final String name, final Runnable task) {
+        return getProvider().newThread(name, task);
+    }
+
+
+    /**
+     * Creates and starts a new worker thread executing the specified task.
+     *
+     * @param name the name of the thread
+     * @param task the task to execute
+     * @return the started thread
+     */
+    public static Thread start(final String name, final Runnable task) {
+        final Thread thread = newThread(name, task);
+        thread.start();
+        return thread;
+    }
+
+
+    /**
+     * Creates a new serial {@link ExecutorService} to execute tasks asynchronously one after another
+     * in the order they were submitted.
+     *
+     * @param name the name prefix of the threads of the executor
+     * @return the {@link ExecutorService}
+     */
+    public static ExecutorService newExecutor(final String name) {
+        return getProvider().newExecutor(name);
+    }
+}
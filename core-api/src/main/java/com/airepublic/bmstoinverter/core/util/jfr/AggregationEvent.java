@@ -0,0 +1,32 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The aggregation of the battery packs into the snapshot for the inverters.
+ */
+@Name(JfrTracer.PREFIX + "Aggregation")
+@Label("Aggregation")
+@Category({ JfrTracer.CATEGORY, "Inverter" })
+public class AggregationEvent extends Event {
+    @Label("Packs")
+    @Description("The number of battery packs")
+    public int packs;
+    @Label("Changed")
+    @Description("True if the snapshot has changed")
+    public boolean changed;
+}
@@ -0,0 +1,38 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A polling cycle of a BMS.
+ */
+@Name(JfrTracer.PREFIX + "BmsCycle")
+@Label("BMS Cycle")
+@Category({ JfrTracer.CATEGORY, "BMS" })
+public class BmsCycleEvent extends Event {
+    @Label("BMS")
+    @Description("The name of the BMS")
+    public String bms;
+    @Label("Port")
+    @Description("The port locator")
+    public String port;
+    @Label("Commands")
+    @Description("The number of commands sent in the cycle")
+    public int commands;
+    @Label("Outcome")
+    @Description("The outcome of the cycle")
+    public String outcome;
+}
@@ -0,0 +1,32 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The decoding of a received frame into the battery data.
+ */
+@Name(JfrTracer.PREFIX + "FrameDecode")
+@Label("Frame Decode")
+@Category({ JfrTracer.CATEGORY, "BMS" })
+public class FrameDecodeEvent extends Event {
+    @Label("Port")
+    @Description("The name of the port")
+    public String port;
+    @Label("Length")
+    @Description("The length of the frame in bytes")
+    public int length;
+}
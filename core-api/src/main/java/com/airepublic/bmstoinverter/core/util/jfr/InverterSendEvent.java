@@ -0,0 +1,35 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A batch of frames sent to an inverter.
+ */
+@Name(JfrTracer.PREFIX + "InverterSend")
+@Label("Inverter Send")
+@Category({ JfrTracer.CATEGORY, "Inverter" })
+public class InverterSendEvent extends Event {
+    @Label("Inverter")
+    @Description("The name of the inverter")
+    public String inverter;
+    @Label("Frames")
+    @Description("The number of frames sent")
+    public int frames;
+    @Label("Success")
+    @Description("True if all frames have been sent")
+    public boolean success;
+}
@@ -0,0 +1,196 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Emits the events of the {@link Tracer} as Java Flight Recorder events. Each event is begun at
+ * the start of its operation, so JFR records the real start time and duration, and is only
+ * populated and committed if it is enabled and exceeds the threshold of the running recording.
+ * This class is only loaded by {@link Tracing} on JVMs supporting JFR.
+ */
+public class JfrTracer implements Tracer {
+    /** The prefix of the names of all events. */
+    public final static String PREFIX = "com.airepublic.bmstoinverter.";
+    /** The top level category of all events. */
+    public final static String CATEGORY = "BMS to Inverter";
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalStateException if JFR is not available in this JVM
+     */
+    public JfrTracer() {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("Java Flight Recorder is not available!");
+        }
+
+        FlightRecorder.register(BmsCycleEvent.class);
+        FlightRecorder.register(RequestRoundTripEvent.class);
+        FlightRecorder.register(FrameDecodeEvent.class);
+        FlightRecorder.register(AggregationEvent.class);
+        FlightRecorder.register(InverterSendEvent.class);
+        FlightRecorder.register(MqttPublishEvent.class);
+        FlightRecorder.register(SnapshotSerializationEvent.class);
+    }
+
+
+    @Override
+    public Object begin(final Operation operation) {
+        final Event event;
+
+        switch (operation) {
+            case BMS_CYCLE:
+                event = new BmsCycleEvent();
+            break;
+            case REQUEST_ROUND_TRIP:
+                event = new RequestRoundTripEvent();
+            break;
+            case FRAME_DECODE:
+                event = new FrameDecodeEvent();
+            break;
+            case AGGREGATION:
+                event = new AggregationEvent();
+            break;
+            case INVERTER_SEND:
+                event = new InverterSendEvent();
+            break;
+            case MQTT_PUBLISH:
+                event = new MqttPublishEvent();
+            break;
+            default:
+                event = new SnapshotSerializationEvent();
+            break;
+        }
+
+        // operations of disabled events are not reported
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+
+    @Override
+    public void bmsCycle(final Object span, final String bms, final String port, final int commands, final long durationNanos, final String outcome) {
+        if (span instanceof BmsCycleEvent) {
+            final BmsCycleEvent event = (BmsCycleEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.bms = bms;
+                event.port = port;
+                event.commands = commands;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+
+    @Override
+    public void requestRoundTrip(final Object span, final String port, final String request, final long durationNanos, final boolean success) {
+        if (span instanceof RequestRoundTripEvent) {
+            final RequestRoundTripEvent event = (RequestRoundTripEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.port = port;
+                event.request = request;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+
+    @Override
+    public void frameDecode(final Object span, final String port, final int length, final long durationNanos) {
+        if (span instanceof FrameDecodeEvent) {
+            final FrameDecodeEvent event = (FrameDecodeEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.port = port;
+                event.length = length;
+                event.commit();
+            }
+        }
+    }
+
+
+    @Override
+    public void aggregation(final Object span, final int packs, final boolean changed, final long durationNanos) {
+        if (span instanceof AggregationEvent) {
+            final AggregationEvent event = (AggregationEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.packs = packs;
+                event.changed = changed;
+                event.commit();
+            }
+        }
+    }
+
+
+    @Override
+    public void inverterSend(final Object span, final String inverter, final int frames, final long durationNanos, final boolean success) {
+        if (span instanceof InverterSendEvent) {
+            final InverterSendEvent event = (InverterSendEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.inverter = inverter;
+                event.frames = frames;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+
+    @Override
+    public void mqttPublish(final Object span, final int bytes, final long durationNanos, final boolean success) {
+        if (span instanceof MqttPublishEvent) {
+            final MqttPublishEvent event = (MqttPublishEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.bytes = bytes;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+
+    @Override
+    public void snapshotSerialization(final Object span, final String endpoint, final int bytes, final long durationNanos) {
+        if (span instanceof SnapshotSerializationEvent) {
+            final SnapshotSerializationEvent event = (SnapshotSerializationEvent) span;
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.endpoint = endpoint;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A message published via MQTT.
+ */
+@Name(JfrTracer.PREFIX + "MqttPublish")
+@Label("MQTT Publish")
+@Category({ JfrTracer.CATEGORY, "Services" })
+public class MqttPublishEvent extends Event {
+    @Label("Bytes")
+    @Description("The size of the message")
+    @DataAmount
+    public int bytes;
+    @Label("Success")
+    @Description("True if the message has been published")
+    public boolean success;
+}
@@ -0,0 +1,34 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A snapshot serialized for a web endpoint.
+ */
+@Name(JfrTracer.PREFIX + "SnapshotSerialization")
+@Label("Snapshot Serialization")
+@Category({ JfrTracer.CATEGORY, "Services" })
+public class SnapshotSerializationEvent extends Event {
+    @Label("Endpoint")
+    @Description("The path of the endpoint")
+    public String endpoint;
+    @Label("Bytes")
+    @Description("The size of the serialized snapshot")
+    @DataAmount
+    public int bytes;
+}
@@ -0,0 +1,74 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.Alarm;
+
+public class BMSCommandScheduleTest {
+
+    private static class TieredBMS extends BMS {
+        private final List<String> sent = new ArrayList<>();
+        private boolean failOnce = true;
+
+        TieredBMS() {
+            registerCommand("once", CommandTier.ONCE, port -> {
+                if (failOnce) {
+                    failOnce = false;
+                    throw new NoDataAvailableException();
+                }
+
+                sent.add("once");
+            });
+            registerCommand("slow", 3, port -> sent.add("slow"));
+            registerCommand("fast", CommandTier.FAST, port -> sent.add("fast"));
+            registerCommand("alarm", CommandTier.ON_ALARM, port -> sent.add("alarm"));
+        }
+    }
+
+    @Test
+    public void testCommandsAreSentByTier() throws Exception {
+        // GIVEN a BMS with commands of each tier where the first request of the once command fails
+        PortAllocator.addPort("schedule", new DummyPort());
+        final TieredBMS bms = new TieredBMS();
+        bms.initialize(new BMSConfig(1, "schedule", 0, 0, null));
+        bms.getBatteryPack(0);
+
+        // WHEN 4 cycles are run and an alarm is raised before the last cycle
+        final List<List<String>> cycles = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            if (i == 3) {
+                bms.getBatteryPack(0).setAlarm(Alarm.CELL_VOLTAGE_HIGH, AlarmLevel.ALARM);
+            }
+
+            bms.sent.clear();
+            bms.sendScheduledCommands(null);
+            cycles.add(new ArrayList<>(bms.sent));
+        }
+
+        // THEN
+        // - the first cycle should send all but the failed command
+        // - the failed once command should be retried in the next cycle only
+        // - the slow command should be sent every 3 cycles and the alarm command when an alarm is present
+        assertEquals(Arrays.asList("slow", "fast", "alarm"), cycles.get(0));
+        assertEquals(Arrays.asList("once", "fast"), cycles.get(1));
+        assertEquals(Arrays.asList("fast"), cycles.get(2));
+        assertEquals(Arrays.asList("slow", "fast", "alarm"), cycles.get(3));
+    }
+}
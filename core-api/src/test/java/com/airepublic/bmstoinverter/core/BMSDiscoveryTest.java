@@ -0,0 +1,182 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+
+public class BMSDiscoveryTest {
+
+    public static class VoltageHandler {
+        public void handle(final BatteryPack pack) {
+            pack.packVoltage = 520;
+        }
+    }
+
+    public static class AnsweringBMS extends BMS {
+        @Inject
+        private VoltageHandler voltageHandler;
+
+        @Override
+        protected void collectData(final Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
+            if (getBmsId() != 2) {
+                throw new NoDataAvailableException();
+            }
+
+            voltageHandler.handle(getBatteryPack(0));
+        }
+    }
+
+    public static class HangingBMS extends BMS {
+        @Override
+        protected void collectData(final Port port) throws IOException, TooManyInvalidFramesException, NoDataAvailableException {
+            try {
+                Thread.sleep(10000);
+            } catch (final InterruptedException e) {
+                throw new NoDataAvailableException();
+            }
+        }
+    }
+
+    private static class TestDescriptor implements BMSDescriptor {
+        private final String name;
+        private final Class<? extends BMS> bmsClass;
+
+        TestDescriptor(final String name, final Class<? extends BMS> bmsClass) {
+            this.name = name;
+            this.bmsClass = bmsClass;
+        }
+
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+
+        @Override
+        public int getDefaultBaudRate() {
+            return 9600;
+        }
+
+
+        @Override
+        public Class<? extends BMS> getBMSClass() {
+            return bmsClass;
+        }
+
+
+        @Override
+        public Port createPort(final BMSConfig config) {
+            return new DummyPort();
+        }
+    }
+
+    private static class CountingPort extends DummyPort {
+        private final AtomicInteger opens;
+        private boolean open = false;
+
+        CountingPort(final AtomicInteger opens) {
+            this.opens = opens;
+        }
+
+
+        @Override
+        public void open() throws Exception {
+            opens.incrementAndGet();
+            open = true;
+        }
+
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    @Test
+    public void testDiscoverProtocolAndAddress(@TempDir final Path dir) throws Exception {
+        // GIVEN a serial port and a CAN interface, a hanging and an answering serial protocol and a CAN protocol
+        final Path dev = Files.createDirectories(dir.resolve("dev"));
+        final Path net = Files.createDirectories(dir.resolve("net"));
+        Files.createFile(dev.resolve("ttyUSB0"));
+        Files.createFile(dev.resolve("tty0"));
+        Files.createDirectory(net.resolve("can0"));
+        Files.createDirectory(net.resolve("eth0"));
+        final List<BMSDescriptor> descriptors = Arrays.asList(new TestDescriptor("HANG_RS485", HangingBMS.class),
+                new TestDescriptor("ANSWER_RS485", AnsweringBMS.class),
+                new TestDescriptor("ANSWER_CAN", HangingBMS.class));
+        final BMSDiscovery discovery = new BMSDiscovery(descriptors, 200, 5000, 3);
+
+        // WHEN the ports are listed and probed
+        final List<String> ports = BMSDiscovery.listPorts(dev, net);
+        final long start = System.currentTimeMillis();
+        final List<BMSDiscovery.Match> matches = discovery.discover(ports);
+        final long duration = System.currentTimeMillis() - start;
+
+        // THEN
+        // - only the serial port and the CAN interface should be found
+        // - only the answering protocol should match with the address 2 on the serial port with
+        // its dependencies injected
+        // - the hanging probes should be aborted after the probe timeout
+        assertEquals(Arrays.asList(dev.resolve("ttyUSB0").toString(), "can0"), ports);
+        assertEquals(1, matches.size());
+        assertEquals("ANSWER_RS485", matches.get(0).getDescriptor().getName());
+        assertEquals(2, matches.get(0).getAddress());
+        assertEquals(dev.resolve("ttyUSB0").toString(), matches.get(0).getPortLocator());
+        assertTrue(duration < 3000, "took " + duration + "ms");
+        assertTrue(BMSDiscovery.createReport(matches).contains("bms.1.type=ANSWER_RS485\nbms.1.id=2\n"));
+    }
+
+
+    @Test
+    public void testSilentProtocolDoesNotReopenThePort(@TempDir final Path dir) throws Exception {
+        // GIVEN a serial port on which the probed protocol does not answer
+        final AtomicInteger opens = new AtomicInteger();
+        final BMSDescriptor descriptor = new TestDescriptor("SILENT_RS485", AnsweringBMS.class) {
+            @Override
+            public Port createPort(final BMSConfig config) {
+                return new CountingPort(opens);
+            }
+        };
+        final BMSDiscovery discovery = new BMSDiscovery(Collections.singletonList(descriptor), 200, 5000, 1);
+
+        // WHEN the port is probed
+        final List<BMSDiscovery.Match> matches = discovery.discover(Collections.singletonList(dir.resolve("ttyUSB9").toString()));
+
+        // THEN
+        // - no protocol should match
+        // - the port should have been opened only once for the probe and not re-opened to recover
+        assertTrue(matches.isEmpty());
+        assertEquals(1, opens.get());
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+
+public class BMSListProducerTest {
+
+    public static class TestBMS extends BMS {
+    }
+
+    public static class TestBMSDescriptor implements BMSDescriptor {
+        @Override
+        public String getName() {
+            return "TEST_BMS";
+        }
+
+
+        @Override
+        public int getDefaultBaudRate() {
+            return 9600;
+        }
+
+
+        @Override
+        public Class<? extends BMS> getBMSClass() {
+            return TestBMS.class;
+        }
+
+
+        @Override
+        public Port createPort(final BMSConfig config) {
+            return new DummyPort();
+        }
+    }
+
+    private static void configure(final int index, final String portLocator) {
+        System.setProperty("bms." + index + ".type", "TEST_BMS");
+        System.setProperty("bms." + index + ".id", "1");
+        System.setProperty("bms." + index + ".portLocator", portLocator);
+        System.setProperty("bms." + index + ".baudRate", "9600");
+        System.setProperty("bms." + index + ".delayAfterNoBytes", "0");
+    }
+
+
+    private static void unconfigure(final int index) {
+        System.clearProperty("bms." + index + ".type");
+        System.clearProperty("bms." + index + ".id");
+        System.clearProperty("bms." + index + ".portLocator");
+        System.clearProperty("bms." + index + ".baudRate");
+        System.clearProperty("bms." + index + ".delayAfterNoBytes");
+    }
+
+
+    @Test
+    public void testRecreatedBMSReplacesItsPacksInPlace() {
+        // GIVEN two BMSes of the same type with two packs each
+        final BMSListProducer producer = new BMSListProducer();
+        final EnergyStorage storage = producer.getEnergyStorage();
+        final BeanFactory beanFactory = new BeanFactory();
+        beanFactory.register(EnergyStorage.class, storage);
+        configure(1, "reloadPort1");
+        configure(2, "reloadPort2");
+
+        try {
+            final List<BMS> bmsList = producer.createBMSList(beanFactory::create);
+            final BMS oldBms = bmsList.get(0);
+
+            for (final BMS bms : bmsList) {
+                bms.getBatteryPack(0);
+                bms.getBatteryPack(1);
+            }
+
+            final BatteryPack otherPack = storage.getBatteryPack(2);
+
+            // WHEN the port of the first BMS is changed and the binding is re-created
+            configure(1, "reloadPort3");
+            final BMS bms = producer.recreateBMS(1, beanFactory::create);
+
+            // THEN
+            // - the binding should get a new instance
+            // - the new BMS should adopt the replaced packs at the indices of the old packs
+            // - the packs of the other BMS should keep their indices
+            // - the packs not managed by the new BMS should be released after its first cycle
+            assertNotSame(oldBms, bms);
+            assertSame(bms, bmsList.get(0));
+            assertEquals(4, storage.getBatteryPacks().size());
+            assertSame(storage.getBatteryPack(0), bms.getBatteryPack(0));
+            assertEquals("bms#1@reloadPort3", storage.getBatteryPack(0).getRack());
+            assertSame(otherPack, storage.getBatteryPack(2));
+
+            storage.removeUnadoptedPacks(bms.getBindingKey());
+            assertEquals(3, storage.getBatteryPacks().size());
+            assertSame(otherPack, storage.getBatteryPack(1));
+
+            // WHEN the second BMS is removed from the configuration
+            unconfigure(2);
+            assertNull(producer.recreateBMS(2, beanFactory::create));
+
+            // THEN its packs should be removed
+            assertEquals(1, bmsList.size());
+            assertEquals(1, storage.getBatteryPacks().size());
+            assertSame(bms.getBatteryPack(0), storage.getBatteryPack(0));
+        } finally {
+            unconfigure(1);
+            unconfigure(2);
+        }
+    }
+}
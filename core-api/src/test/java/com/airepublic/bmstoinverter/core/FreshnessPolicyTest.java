@@ -0,0 +1,90 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.Freshness;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+
+public class FreshnessPolicyTest {
+    @Test
+    public void testFreshnessTransitions() {
+        // GIVEN a pack with a policy degrading after 2 and staling after 4 missed cycles
+        final FreshnessPolicy policy = new FreshnessPolicy(2, 4, 50);
+        final BatteryPack pack = new BatteryPack();
+
+        // WHEN cycles are missed
+        // THEN
+        // - the pack should be degraded with reduced limits and later stale
+        assertEquals(Freshness.FRESH, pack.updateFreshness(false, policy));
+        assertEquals(Freshness.DEGRADED, pack.updateFreshness(false, policy));
+        assertEquals(50, pack.getLimitPercent());
+        pack.updateFreshness(false, policy);
+        assertEquals(Freshness.STALE, pack.updateFreshness(false, policy));
+        assertEquals(4, pack.getMissedCycles());
+
+        // WHEN the pack is updated again
+        // THEN
+        // - it should be fresh with full limits
+        assertEquals(Freshness.FRESH, pack.updateFreshness(true, policy));
+        assertEquals(100, pack.getLimitPercent());
+        assertEquals(0, pack.getMissedCycles());
+    }
+
+
+    @Test
+    public void testDisabledPolicy() {
+        // GIVEN a policy with all states disabled
+        final FreshnessPolicy policy = new FreshnessPolicy(0, 0, 50);
+
+        // WHEN many cycles are missed
+        // THEN
+        // - the data should still be considered fresh
+        assertEquals(Freshness.FRESH, policy.evaluate(1000));
+    }
+
+
+    @Test
+    public void testGaugesOfSameBmsIdOnDifferentPorts() {
+        // GIVEN two BMSes with the same id on different ports where only the first delivers data
+        final BMS[] bmses = new BMS[2];
+
+        for (int i = 0; i < bmses.length; i++) {
+            final String portLocator = "freshnessPort" + (i + 1);
+            final boolean delivers = i == 0;
+            PortAllocator.addPort(portLocator, new DummyPort());
+            bmses[i] = new BMS() {
+                @Override
+                protected void collectData(final Port port) throws NoDataAvailableException {
+                    if (!delivers) {
+                        throw new NoDataAvailableException();
+                    }
+                }
+            };
+            bmses[i].initialize(new BMSConfig(1, portLocator, 0, 0, null));
+            bmses[i].getBatteryPack(0);
+        }
+
+        // WHEN both are processed
+        for (final BMS bms : bmses) {
+            bms.process(() -> {
+            });
+        }
+
+        // THEN the gauges of each BMS should be kept apart
+        assertEquals(0, Metrics.getGauge("bms#1@freshnessPort1.pack.0.missedCycles"));
+        assertEquals(1, Metrics.getGauge("bms#1@freshnessPort2.pack.0.missedCycles"));
+    }
+}
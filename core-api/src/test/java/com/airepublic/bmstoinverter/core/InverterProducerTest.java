@@ -0,0 +1,111 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.util.TypeLiteral;
+
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+
+public class InverterProducerTest {
+
+    @ApplicationScoped
+    public static class TestInverter extends Inverter {
+
+        @Override
+        protected ByteBuffer readRequest(final Port port) {
+            return null;
+        }
+
+
+        @Override
+        protected void sendFrame(final Port port, final ByteBuffer frame) {
+        }
+
+
+        @Override
+        protected List<ByteBuffer> createSendFrames(final ByteBuffer requestFrame, final BatteryPack aggregatedPack) {
+            return Collections.emptyList();
+        }
+    }
+
+    public static class TestInverterDescriptor implements InverterDescriptor {
+        @Override
+        public String getName() {
+            return "TEST_INVERTER";
+        }
+
+
+        @Override
+        public int getDefaultBaudRate() {
+            return 500000;
+        }
+
+
+        @Override
+        public Class<? extends Inverter> getInverterClass() {
+            return TestInverter.class;
+        }
+
+
+        @Override
+        public Port createPort(final InverterConfig config) {
+            return new DummyPort();
+        }
+    }
+
+    @Test
+    public void testBindingsOfSameTypeGetOwnInstances() {
+        // GIVEN two inverter bindings of the same application scoped type
+        for (final int index : new int[] { 1, 2 }) {
+            System.setProperty("inverter." + index + ".type", "TEST_INVERTER");
+            System.setProperty("inverter." + index + ".portLocator", "producerPort" + index);
+            System.setProperty("inverter." + index + ".baudRate", "500000");
+            System.setProperty("inverter." + index + ".sendInterval", "1");
+        }
+
+        try (WeldContainer container = new Weld().disableDiscovery().addBeanClasses(BMSListProducer.class, InverterProducer.class, TestInverter.class).initialize()) {
+            // WHEN the inverter list is produced by the CDI container
+            final List<Inverter> inverters = container.select(new TypeLiteral<List<Inverter>>() {
+            }).get();
+
+            // THEN
+            // - each binding should have its own instance with its own configuration
+            // - the dependencies of each instance should be injected
+            assertEquals(2, inverters.size());
+            assertNotSame(inverters.get(0), inverters.get(1));
+            assertEquals("producerPort1", inverters.get(0).getPortLocator());
+            assertEquals("producerPort2", inverters.get(1).getPortLocator());
+            assertNotNull(inverters.get(0).getEnergyStorage());
+            assertSame(inverters.get(0).getEnergyStorage(), inverters.get(1).getEnergyStorage());
+        } finally {
+            for (final int index : new int[] { 1, 2 }) {
+                System.clearProperty("inverter." + index + ".type");
+                System.clearProperty("inverter." + index + ".portLocator");
+                System.clearProperty("inverter." + index + ".baudRate");
+                System.clearProperty("inverter." + index + ".sendInterval");
+            }
+        }
+    }
+}
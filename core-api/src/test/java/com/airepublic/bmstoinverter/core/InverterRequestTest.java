@@ -0,0 +1,202 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+
+public class InverterRequestTest {
+
+    private static class RequestDrivenInverter extends Inverter {
+        private final LinkedList<ByteBuffer> requests = new LinkedList<>();
+        private final List<ByteBuffer> sent = new ArrayList<>();
+        private long responseDelay = 0;
+
+        RequestDrivenInverter(final EnergyStorage energyStorage) {
+            super(energyStorage);
+        }
+
+
+        @Override
+        public boolean isRequestDriven() {
+            return true;
+        }
+
+
+        @Override
+        protected ByteBuffer readRequest(final Port port) throws IOException {
+            if (requests.isEmpty()) {
+                throw new IOException("No frame received");
+            }
+
+            return requests.poll();
+        }
+
+
+        @Override
+        protected void sendFrame(final Port port, final ByteBuffer frame) throws IOException {
+            sent.add(frame);
+        }
+
+
+        @Override
+        protected List<ByteBuffer> createSendFrames(final ByteBuffer requestFrame, final BatteryPack aggregatedPack) {
+            try {
+                Thread.sleep(responseDelay);
+            } catch (final InterruptedException e) {
+            }
+
+            return Arrays.asList(ByteBuffer.allocate(8).putInt(0, aggregatedPack.packSOC));
+        }
+    }
+
+    private static class PortReadingInverter extends RequestDrivenInverter {
+        PortReadingInverter(final EnergyStorage energyStorage) {
+            super(energyStorage);
+        }
+
+
+        @Override
+        protected ByteBuffer readRequest(final Port port) throws IOException {
+            return port.receiveFrame();
+        }
+    }
+
+    private static class QueuedPort extends DummyPort {
+        private final LinkedList<ByteBuffer> frames = new LinkedList<>();
+        private final LinkedList<Long> receivedNanos = new LinkedList<>();
+
+        @Override
+        public ByteBuffer receiveFrame() throws IOException {
+            if (frames.isEmpty()) {
+                throw new IOException("No frame received");
+            }
+
+            setFrameReceivedNanos(receivedNanos.poll());
+            return frames.poll();
+        }
+    }
+
+    private static InverterDescriptor descriptor() {
+        return new InverterDescriptor() {
+            @Override
+            public String getName() {
+                return "TEST";
+            }
+
+
+            @Override
+            public int getDefaultBaudRate() {
+                return 500000;
+            }
+
+
+            @Override
+            public Class<? extends Inverter> getInverterClass() {
+                return RequestDrivenInverter.class;
+            }
+
+
+            @Override
+            public Port createPort(final InverterConfig config) {
+                return new DummyPort();
+            }
+        };
+    }
+
+
+    @Test
+    public void testAnswersEachRequest() {
+        // GIVEN a request driven inverter binding and an energy storage with one pack
+        final EnergyStorage storage = new EnergyStorage();
+        final BatteryPack pack = new BatteryPack();
+        pack.numberOfCells = 16;
+        pack.ratedCapacitymAh = 100000;
+        pack.maxPackChargeCurrent = 1000;
+        pack.maxPackDischargeCurrent = -1000;
+        pack.maxPackVoltageLimit = 560;
+        pack.packSOC = 550;
+        storage.getBatteryPacks().add(pack);
+        final RequestDrivenInverter inverter = new RequestDrivenInverter(storage);
+        final InverterConfig config = new InverterConfig(7, "test-request", 500000, 1, descriptor());
+        config.setMaxResponseLatency(20);
+        inverter.initialize(config);
+
+        // WHEN two requests arrive
+        inverter.requests.add(ByteBuffer.allocate(8));
+        inverter.requests.add(ByteBuffer.allocate(8));
+
+        // THEN
+        // - each request should be answered from the aggregated snapshot
+        assertTrue(inverter.processRequest(() -> {
+        }));
+        assertTrue(inverter.processRequest(() -> {
+        }));
+        assertEquals(2, inverter.sent.size());
+        assertEquals(550, inverter.sent.get(0).getInt(0));
+        // - no request should be reported when none has been received
+        assertFalse(inverter.processRequest(() -> {
+        }));
+
+        // WHEN a response takes longer than the maximum response latency
+        final long slowResponses = Metrics.getGauge("inverter.7.slowResponses");
+        inverter.responseDelay = 50;
+        inverter.requests.add(ByteBuffer.allocate(8));
+        inverter.processRequest(() -> {
+        });
+
+        // THEN
+        // - the slow response should be counted
+        assertEquals(slowResponses + 1, Metrics.getGauge("inverter.7.slowResponses"));
+    }
+
+
+    @Test
+    public void testLatencyIncludesTimeQueuedAtThePort() throws Exception {
+        // GIVEN a request driven inverter binding reading from a port and a request which has
+        // been waiting in the port's queue for 50ms
+        final EnergyStorage storage = new EnergyStorage();
+        final BatteryPack pack = new BatteryPack();
+        pack.numberOfCells = 16;
+        storage.getBatteryPacks().add(pack);
+        final QueuedPort port = new QueuedPort();
+        PortAllocator.addPort("test-queued", port);
+        final PortReadingInverter inverter = new PortReadingInverter(storage);
+        final InverterConfig config = new InverterConfig(8, "test-queued", 500000, 1, descriptor());
+        config.setMaxResponseLatency(20);
+        inverter.initialize(config);
+        port.frames.add(ByteBuffer.allocate(8));
+        port.receivedNanos.add(System.nanoTime() - 50000000L);
+
+        // WHEN the request is answered immediately
+        final long slowResponses = Metrics.getGauge("inverter.8.slowResponses");
+        assertTrue(inverter.processRequest(() -> {
+        }));
+
+        // THEN
+        // - the response should be counted as slow as the request was received 50ms ago
+        assertEquals(slowResponses + 1, Metrics.getGauge("inverter.8.slowResponses"));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.plugin.inverter.ManipulateBatteryPackDataPlugin;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+
+public class PluginChainTest {
+
+    private static class SendPlugin extends InverterPlugin {
+        @Override
+        public String getName() {
+            return "SendPlugin";
+        }
+
+
+        @Override
+        public void onSend(final ByteBuffer frame) {
+            frame.put(0, (byte) (frame.get(0) + 1));
+        }
+    }
+
+    @Test
+    public void testChainContainsOnlyImplementingPlugins() {
+        // GIVEN a plugin implementing onSend and a plugin implementing onBatteryAggregation
+        final ManipulateBatteryPackDataPlugin manipulate = new ManipulateBatteryPackDataPlugin();
+        final Set<InverterPlugin> plugins = new LinkedHashSet<>(Arrays.asList(new SendPlugin(), manipulate));
+
+        // WHEN the chains are compiled and the send chain is run
+        final PluginChain<ByteBuffer> sendChain = PluginChain.compile(plugins, InverterPlugin.class, "onSend", ByteBuffer.class, InverterPlugin::onSend);
+        final PluginChain<ByteBuffer> receiveChain = PluginChain.compile(plugins, InverterPlugin.class, "onReceive", ByteBuffer.class, InverterPlugin::onReceive);
+        final ByteBuffer frame = ByteBuffer.allocate(1);
+        sendChain.run(frame);
+
+        // THEN
+        // - only the send plugin should be called and its execution time recorded
+        // - the receive chain should be empty
+        assertEquals(1, frame.get(0));
+        assertTrue(Metrics.snapshot().get("plugin.SendPlugin.onSend") instanceof Map);
+        assertTrue(receiveChain.isEmpty());
+    }
+
+
+    @Test
+    public void testPropertiesAreParsedOnChange() {
+        // GIVEN a plugin with an empty SOC and a SOH property
+        final ManipulateBatteryPackDataPlugin plugin = new ManipulateBatteryPackDataPlugin();
+        plugin.addProperty(new PluginProperty(ManipulateBatteryPackDataPlugin.PROPERTY_PRESET_SOH, "950", ""));
+        final BatteryPack pack = new BatteryPack();
+        pack.packSOC = 400;
+
+        // WHEN the aggregated data is manipulated
+        plugin.onBatteryAggregation(pack);
+
+        // THEN
+        // - only the configured value should be overwritten
+        // - a missing property should be null
+        assertEquals(400, pack.packSOC);
+        assertEquals(950, pack.packSOH);
+        assertNull(plugin.getProperty("unknown"));
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PollingPolicyTest {
+    @Test
+    public void testBackOffAndSpeedUp() {
+        // GIVEN a policy polling between 250ms and 4s
+        final PollingPolicy policy = new PollingPolicy(250, 4000, 100, 50, 10);
+
+        // WHEN the packs are idle
+        // THEN
+        // - the interval should double with each poll up to the maximum
+        long interval = policy.nextInterval(false, 0, 1000);
+        assertEquals(250, interval);
+        interval = policy.nextInterval(false, interval, 1000);
+        assertEquals(500, interval);
+
+        for (int i = 0; i < 10; i++) {
+            interval = policy.nextInterval(false, interval, 1000);
+        }
+
+        assertEquals(4000, interval);
+
+        // WHEN a pack becomes active
+        // THEN
+        // - the minimum interval should be used
+        assertEquals(250, policy.nextInterval(true, interval, 1000));
+    }
+
+
+    @Test
+    public void testActivity() {
+        // GIVEN the default thresholds
+        final PollingPolicy policy = new PollingPolicy(0, 0, 100, 50, 10);
+
+        // WHEN the pack state is evaluated
+        // THEN
+        // - a stable idle pack should not be active
+        assertFalse(policy.isActive(5, 3, 20, 20, false));
+        // - a high or changing current, a growing cell delta or alarms should make it active
+        assertTrue(policy.isActive(-150, -150, 20, 20, false));
+        assertTrue(policy.isActive(60, 0, 20, 20, false));
+        assertTrue(policy.isActive(0, 0, 35, 20, false));
+        assertTrue(policy.isActive(0, 0, 20, 20, true));
+    }
+
+
+    @Test
+    public void testUnconfiguredBoundsUseGlobalInterval() {
+        // GIVEN a policy without configured intervals
+        final PollingPolicy policy = new PollingPolicy(0, 0, 100, 50, 10);
+
+        // WHEN the packs are idle
+        // THEN
+        // - the global polling interval should be used as before
+        assertEquals(1000, policy.nextInterval(false, 1000, 1000));
+        assertEquals(1000, policy.nextInterval(true, 1000, 1000));
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+
+public class BatteryPackTest {
+
+    @Test
+    public void testCopyContainsAllValues() throws Exception {
+        // GIVEN a pack with every value field set to a non-default value
+        final BatteryPack pack = new BatteryPack();
+        int value = 1;
+
+        for (final Field field : BatteryPack.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                continue;
+            }
+
+            final Class<?> type = field.getType();
+
+            if (type == int.class) {
+                field.setInt(pack, value++);
+            } else if (type == byte.class) {
+                field.setByte(pack, (byte) value++);
+            } else if (type == boolean.class) {
+                field.setBoolean(pack, !field.getBoolean(pack));
+            } else if (type == String.class) {
+                field.set(pack, field.getName() + value++);
+            }
+        }
+
+        pack.cellVmV[3] = 3300;
+        pack.cellTemperature[5] = 250;
+        pack.cellBalanceState[7] = true;
+        pack.dIO[1] = true;
+        pack.setAlarm(Alarm.CELL_VOLTAGE_HIGH, AlarmLevel.WARNING);
+
+        // WHEN the pack is copied
+        final BatteryPack copy = pack.copy();
+
+        // THEN
+        // - the copy should contain the same values
+        assertEquals(pack.toJson(), copy.toJson());
+    }
+
+
+    @Test
+    public void testCopyIsIndependent() {
+        // GIVEN a pack with cell values and an alarm
+        final BatteryPack pack = new BatteryPack();
+        pack.packSOC = 500;
+        pack.cellVmV[0] = 3300;
+        pack.cellTemperature[0] = 250;
+        pack.cellBalanceState[0] = true;
+        pack.dIO[0] = true;
+        pack.setAlarm(Alarm.CELL_VOLTAGE_HIGH, AlarmLevel.WARNING);
+
+        // WHEN the copy is modified
+        final BatteryPack copy = pack.copy();
+        copy.packSOC = 100;
+        copy.cellVmV[0] = 2500;
+        copy.cellTemperature[0] = 600;
+        copy.cellBalanceState[0] = false;
+        copy.dIO[0] = false;
+        copy.setAlarm(Alarm.CELL_VOLTAGE_HIGH, AlarmLevel.ALARM);
+
+        // THEN
+        // - the arrays should not be shared
+        // - the original pack should be unchanged
+        assertNotSame(pack.cellVmV, copy.cellVmV);
+        assertNotSame(pack.cellTemperature, copy.cellTemperature);
+        assertNotSame(pack.cellBalanceState, copy.cellBalanceState);
+        assertNotSame(pack.dIO, copy.dIO);
+        assertEquals(500, pack.packSOC);
+        assertEquals(3300, pack.cellVmV[0]);
+        assertEquals(250, pack.cellTemperature[0]);
+        assertTrue(pack.cellBalanceState[0]);
+        assertTrue(pack.dIO[0]);
+        assertEquals(AlarmLevel.WARNING, pack.getAlarmLevel(Alarm.CELL_VOLTAGE_HIGH));
+    }
+
+
+    @Test
+    public void testCopyOfReplacedArray() {
+        // GIVEN a pack whose cell voltage array was replaced by a smaller one
+        final BatteryPack pack = new BatteryPack();
+        pack.cellVmV = new int[] { 3300, 3310 };
+
+        // WHEN the pack is copied
+        final BatteryPack copy = pack.copy();
+
+        // THEN
+        // - the copy should have an independent array of the same length
+        assertEquals(2, copy.cellVmV.length);
+        assertEquals(3310, copy.cellVmV[1]);
+        assertNotSame(pack.cellVmV, copy.cellVmV);
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.BMSConfig;
+import com.airepublic.bmstoinverter.core.DummyPort;
+import com.airepublic.bmstoinverter.core.PortAllocator;
+
+public class EnergyStorageTest {
+
+    private static BatteryPack pack(final int soc) {
+        final BatteryPack pack = new BatteryPack();
+        pack.numberOfCells = 16;
+        pack.ratedCapacitymAh = 100000;
+        pack.maxPackChargeCurrent = 1000;
+        pack.maxPackDischargeCurrent = -1000;
+        pack.maxPackVoltageLimit = 560;
+        pack.packSOC = soc;
+        return pack;
+    }
+
+
+    @Test
+    public void testSharedSnapshot() {
+        // GIVEN an energy storage with two packs
+        final EnergyStorage storage = new EnergyStorage();
+        storage.getBatteryPacks().add(pack(400));
+        storage.getBatteryPacks().add(pack(600));
+
+        // WHEN the snapshot is requested by several inverter bindings within one BMS cycle
+        final BatteryPack first = storage.getAggregatedSnapshot();
+        final BatteryPack second = storage.getAggregatedSnapshot();
+
+        // THEN
+        // - all bindings should get the same aggregated instance
+        assertSame(first, second);
+        assertEquals(500, first.packSOC);
+
+        // WHEN the packs change and the next BMS cycle publishes a new snapshot
+        storage.getBatteryPack(1).packSOC = 800;
+        storage.getBatteryPack(1).markUpdated(DataGroup.STATUS);
+        final BatteryPack next = storage.updateAggregatedSnapshot();
+
+        // THEN
+        // - the new snapshot should be returned and the previous one be unchanged
+        assertSame(next, storage.getAggregatedSnapshot());
+        assertEquals(600, next.packSOC);
+        assertEquals(500, first.packSOC);
+    }
+
+
+    @Test
+    public void testCopyIsIndependent() {
+        // GIVEN an aggregated snapshot
+        final EnergyStorage storage = new EnergyStorage();
+        storage.getBatteryPacks().add(pack(400));
+        final BatteryPack snapshot = storage.getAggregatedSnapshot();
+
+        // WHEN a copy is modified, e.g. by an inverter plugin
+        final BatteryPack copy = snapshot.copy();
+        copy.packSOC = 1000;
+
+        // THEN
+        // - the shared snapshot should not change
+        assertNotSame(snapshot, copy);
+        assertEquals(400, snapshot.packSOC);
+    }
+
+
+    @Test
+    public void testOnlyDirtyRackIsRecomputed() {
+        // GIVEN an energy storage with two racks of two packs each
+        final EnergyStorage storage = new EnergyStorage();
+
+        for (int i = 0; i < 4; i++) {
+            final BatteryPack pack = pack(400 + i * 100);
+            pack.setRack(i < 2 ? "bms#1" : "bms#2");
+            storage.getBatteryPacks().add(pack);
+        }
+
+        storage.updateAggregatedSnapshot();
+        final long rack1Version = storage.getRacks().get(0).getVersion();
+        final long rack2Version = storage.getRacks().get(1).getVersion();
+        final long systemVersion = storage.getSnapshotVersion();
+
+        // WHEN a pack of the second rack is updated
+        storage.getBatteryPack(3).packSOC = 1000;
+        storage.getBatteryPack(3).markUpdated(DataGroup.STATUS);
+        final BatteryPack snapshot = storage.updateAggregatedSnapshot();
+
+        // THEN
+        // - only the second rack and the system should have been recomputed
+        assertEquals(rack1Version, storage.getRacks().get(0).getVersion());
+        assertNotEquals(rack2Version, storage.getRacks().get(1).getVersion());
+        assertNotEquals(systemVersion, storage.getSnapshotVersion());
+        assertEquals(2, storage.getRacks().get(1).getNumberOfPacks());
+        assertEquals(800, storage.getRacks().get(1).getAggregate().packSOC);
+
+        // - the incremental result should equal the full aggregation
+        assertEquals(storage.aggregate().toJson(), snapshot.toJson());
+    }
+
+
+    @Test
+    public void testRacksOfSameBmsIdOnDifferentPorts() {
+        // GIVEN two BMSes with the same id on different ports
+        final EnergyStorage storage = new EnergyStorage();
+
+        for (final String portLocator : new String[] { "rackPort1", "rackPort2" }) {
+            PortAllocator.addPort(portLocator, new DummyPort());
+            final BMS bms = new BMS() {
+            };
+            bms.initialize(new BMSConfig(1, portLocator, 0, 0, null));
+            storage.getBatteryPacks().add(bms.getBatteryPack(0));
+        }
+
+        // WHEN the packs are aggregated
+        storage.updateAggregatedSnapshot();
+
+        // THEN each BMS should have its own rack
+        assertEquals(2, storage.getRacks().size());
+        assertEquals("bms#1@rackPort1", storage.getRacks().get(0).getName());
+        assertEquals("bms#1@rackPort2", storage.getRacks().get(1).getName());
+    }
+
+
+    @Test
+    public void testRacksAreNotSerialized() {
+        // GIVEN an energy storage with an aggregated rack
+        final EnergyStorage storage = new EnergyStorage();
+        final BatteryPack pack = pack(500);
+        pack.setRack("bms#1");
+        storage.getBatteryPacks().add(pack);
+        storage.updateAggregatedSnapshot();
+
+        // WHEN the energy storage is serialized
+        final String json = storage.toJson();
+
+        // THEN
+        // - only the packs should be serialized but not the rack aggregates
+        assertEquals(1, storage.getRacks().size());
+        assertTrue(json.contains("\"batteryPacks\""));
+        assertFalse(json.contains("\"racks\""));
+    }
+
+
+    @Test
+    public void testCellMatrixCopiesUnchangedPacks() {
+        // GIVEN a 16 pack x 16 cell energy storage with an aggregated snapshot
+        final EnergyStorage storage = new EnergyStorage();
+
+        for (int p = 0; p < 16; p++) {
+            final BatteryPack pack = pack(500);
+            pack.numOfTempSensors = 2;
+            pack.cellVmV[3] = 3300 + p;
+            storage.getBatteryPacks().add(pack);
+        }
+
+        final CellMatrix before = storage.getCellMatrix();
+
+        // WHEN one pack is updated and the next snapshot is aggregated
+        final BatteryPack updated = storage.getBatteryPack(5);
+        updated.cellVmV[3] = 3400;
+        updated.cellBalanceState[3] = true;
+        updated.markUpdated(DataGroup.values());
+        storage.getBatteryPack(6).cellVmV[3] = 9999;
+        storage.updateAggregatedSnapshot();
+        final CellMatrix after = storage.getCellMatrix();
+
+        // THEN
+        // - only the row of the updated pack should have been read again
+        // - the packed matrix should be a few hundred bytes
+        assertNotSame(before, after);
+        assertEquals(3305, before.getVoltage(5, 3));
+        assertEquals(3400, after.getVoltage(5, 3));
+        assertEquals(3306, after.getVoltage(6, 3));
+        assertTrue(after.isBalancing(5, 3));
+        assertFalse(after.isBalancing(6, 3));
+        assertEquals(7 + 16 * 16 * 2 + 16 * 2 * 2 + 32, after.toBytes().length);
+        assertSame(after, after.update(storage.getBatteryPacks()));
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+
+public class TelemetryEncoderTest {
+    // the version and the hash of the fields, flags and alarms it was released with
+    private final static int PINNED_VERSION = 1;
+    private final static int PINNED_LAYOUT_HASH = 1548131901;
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        // GIVEN an energy storage with two 16 cell packs
+        final EnergyStorage storage = new EnergyStorage();
+
+        for (int p = 0; p < 2; p++) {
+            final BatteryPack pack = new BatteryPack();
+            pack.numberOfCells = 16;
+            pack.numOfTempSensors = 4;
+            pack.packVoltage = 532;
+            pack.packCurrent = -254;
+            pack.packSOC = 815;
+            pack.maxPackDischargeCurrent = -1000;
+            pack.forceCharge = true;
+            pack.manufacturerCode = "PYLON";
+
+            for (int i = 0; i < 16; i++) {
+                pack.cellVmV[i] = 3320 + i % 3;
+            }
+
+            pack.cellTemperature[3] = -52;
+            pack.cellBalanceState[9] = true;
+            pack.setAlarm(Alarm.CELL_VOLTAGE_HIGH, AlarmLevel.WARNING);
+            pack.setAlarm(Alarm.CELL_TEMPERATURE_LOW, AlarmLevel.ALARM);
+            storage.getBatteryPacks().add(pack);
+        }
+
+        // WHEN the energy storage is encoded and decoded
+        final byte[] data = TelemetryEncoder.encode(storage);
+        final List<BatteryPack> packs = TelemetryEncoder.decode(data);
+
+        // THEN
+        // - all values should be decoded
+        // - the message should be more than 10 times smaller than the JSON
+        assertEquals(2, packs.size());
+        final BatteryPack pack = packs.get(1);
+        assertEquals(532, pack.packVoltage);
+        assertEquals(-254, pack.packCurrent);
+        assertEquals(815, pack.packSOC);
+        assertEquals(-1000, pack.maxPackDischargeCurrent);
+        assertTrue(pack.forceCharge);
+        assertTrue(pack.chargeMOSState);
+        assertFalse(pack.forceDischarge);
+        assertEquals("PYLON", pack.manufacturerCode);
+        assertEquals(3322, pack.cellVmV[2]);
+        assertEquals(3320, pack.cellVmV[15]);
+        assertEquals(-52, pack.cellTemperature[3]);
+        assertTrue(pack.cellBalanceState[9]);
+        assertFalse(pack.cellBalanceState[8]);
+        assertEquals(AlarmLevel.WARNING, pack.getAlarmLevel(Alarm.CELL_VOLTAGE_HIGH));
+        assertEquals(AlarmLevel.ALARM, pack.getAlarmLevel(Alarm.CELL_TEMPERATURE_LOW));
+        assertEquals(2, pack.getAlarms(AlarmLevel.WARNING, AlarmLevel.ALARM).size());
+        assertTrue(data.length * 10 < storage.toJson().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+
+    @Test
+    public void testVersionIsBumpedWhenTheLayoutChanges() {
+        // GIVEN the schema of the current version
+        final Map<String, Object> schema = TelemetryEncoder.getSchema();
+
+        // WHEN the hash of the encoded layout is computed
+        final int layoutHash = (schema.get("fields") + "|" + schema.get("flags") + "|" + schema.get("alarms")).hashCode();
+
+        // THEN
+        // - a changed field, flag or alarm layout must come with a new version and a new pinned hash
+        assertEquals(PINNED_VERSION, TelemetryEncoder.VERSION, "TelemetryEncoder.VERSION changed - update the pinned version and the pinned hash to " + layoutHash);
+        assertEquals(PINNED_LAYOUT_HASH, layoutHash, "The telemetry layout changed - bump TelemetryEncoder.VERSION");
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.bms.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.BMSConfig;
+import com.airepublic.bmstoinverter.core.DummyPort;
+import com.airepublic.bmstoinverter.core.PortAllocator;
+
+public class WarmStartSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    private static EnergyStorage storage() {
+        final EnergyStorage storage = new EnergyStorage();
+        storage.getBatteryPacks().add(new BatteryPack());
+        return storage;
+    }
+
+
+    private static BMS bms(final String portLocator, final EnergyStorage storage) {
+        if (!PortAllocator.hasPort(portLocator)) {
+            PortAllocator.addPort(portLocator, new DummyPort());
+        }
+
+        final BMS bms = new BMS() {
+        };
+        bms.setEnergyStorage(storage);
+        bms.initialize(new BMSConfig(1, portLocator, 0, 0, null));
+        return bms;
+    }
+
+
+    @Test
+    public void testRestoreWithConservativeLimits() {
+        // GIVEN a snapshot of an updated battery pack
+        final Path file = tempDir.resolve("energystorage.snapshot");
+        final EnergyStorage before = storage();
+        final BatteryPack pack = before.getBatteryPack(0);
+        pack.numberOfCells = 2;
+        pack.cellVmV[1] = 3312;
+        pack.ratedCapacitymAh = 100000;
+        pack.maxPackChargeCurrent = 1000;
+        pack.maxPackDischargeCurrent = -1000;
+        pack.maxPackVoltageLimit = 560;
+        pack.packSOC = 800;
+        pack.setAlarm(Alarm.CELL_VOLTAGE_HIGH, AlarmLevel.WARNING);
+        pack.markUpdated(DataGroup.values());
+        new WarmStartSnapshot(file, 0, 60000, 60000, 50).saveIfDue(before);
+
+        // WHEN the snapshot is restored after a restart
+        final EnergyStorage after = storage();
+        final WarmStartSnapshot warmStart = new WarmStartSnapshot(file, 0, 60000, 60000, 50);
+        assertTrue(warmStart.restore(after));
+        final BatteryPack snapshot = after.updateAggregatedSnapshot();
+
+        // THEN
+        // - the values should be restored
+        // - the inverter should get the values with half the current limits
+        final BatteryPack restored = after.getBatteryPack(0);
+        assertTrue(restored.isRestored());
+        assertEquals(3312, restored.cellVmV[1]);
+        assertEquals(AlarmLevel.WARNING, restored.getAlarmLevel(Alarm.CELL_VOLTAGE_HIGH));
+        assertEquals(800, snapshot.packSOC);
+        assertEquals(500, snapshot.maxPackChargeCurrent);
+        assertFalse(warmStart.expire(after));
+    }
+
+
+    @Test
+    public void testRestoredValuesExpire() {
+        // GIVEN a snapshot restored with no validity window
+        final Path file = tempDir.resolve("energystorage.snapshot");
+        final EnergyStorage before = storage();
+        before.getBatteryPack(0).markUpdated(DataGroup.values());
+        new WarmStartSnapshot(file, 0, 60000, 0, 50).saveIfDue(before);
+
+        final EnergyStorage after = storage();
+        final WarmStartSnapshot warmStart = new WarmStartSnapshot(file, 0, 60000, 0, 50);
+        assertTrue(warmStart.restore(after));
+
+        // WHEN the validity is checked
+        final boolean expired = warmStart.expire(after);
+
+        // THEN
+        // - the restored pack should be stale until updated by its BMS
+        assertTrue(expired);
+        assertEquals(Freshness.STALE, after.getBatteryPack(0).getFreshness());
+
+        after.getBatteryPack(0).markUpdated(DataGroup.STATUS);
+        assertFalse(after.getBatteryPack(0).isRestored());
+    }
+
+
+    @Test
+    public void testRestoredPacksAreAdoptedByTheirBMS() {
+        // GIVEN a snapshot of the packs of two BMSes with the same id on different ports
+        final Path file = tempDir.resolve("energystorage.snapshot");
+        final EnergyStorage before = new EnergyStorage();
+        bms("warmPort1", before).getBatteryPack(0).packSOC = 810;
+        bms("warmPort2", before).getBatteryPack(0).packSOC = 620;
+        before.getBatteryPacks().forEach(pack -> pack.markUpdated(DataGroup.values()));
+        new WarmStartSnapshot(file, 0, 60000, 0, 50).saveIfDue(before);
+
+        // WHEN the snapshot is restored before the BMSes created their packs and only the first BMS
+        // is still configured
+        final EnergyStorage after = new EnergyStorage();
+        final WarmStartSnapshot warmStart = new WarmStartSnapshot(file, 0, 60000, 0, 50);
+        assertTrue(warmStart.restore(after));
+        final BatteryPack restored = after.getBatteryPack("bms#1@warmPort1", 0);
+        final BatteryPack pack = bms("warmPort1", after).getBatteryPack(0);
+
+        // THEN
+        // - the BMS should continue with the restored pack instead of adding a new one
+        // - the pack of the BMS no longer configured should be removed when it expires
+        assertSame(restored, pack);
+        assertTrue(pack.isRestored());
+        assertEquals(810, pack.packSOC);
+        assertEquals(2, after.getBatteryPacks().size());
+
+        assertTrue(warmStart.expire(after));
+        assertEquals(1, after.getBatteryPacks().size());
+        assertSame(pack, after.getBatteryPack(0));
+    }
+
+
+    @Test
+    public void testUnchangedSnapshotIsNotRewritten() throws Exception {
+        // GIVEN a written snapshot
+        final Path file = tempDir.resolve("energystorage.snapshot");
+        final EnergyStorage storage = storage();
+        storage.getBatteryPack(0).packSOC = 800;
+        storage.getBatteryPack(0).markUpdated(DataGroup.values());
+        final WarmStartSnapshot warmStart = new WarmStartSnapshot(file, 0, 60000, 60000, 50);
+        warmStart.saveIfDue(storage);
+        assertTrue(Files.exists(file));
+        Files.delete(file);
+
+        // WHEN the snapshot is saved again without and then with changed values
+        warmStart.saveIfDue(storage);
+        final boolean writtenUnchanged = Files.exists(file);
+        storage.getBatteryPack(0).packSOC = 790;
+        warmStart.saveIfDue(storage);
+
+        // THEN
+        // - the unchanged values should not be written again
+        // - the changed values should be written
+        assertFalse(writtenUnchanged);
+        assertTrue(Files.exists(file));
+    }
+
+
+    @Test
+    public void testDisabledByDefault() {
+        // GIVEN no configured snapshot file
+        System.clearProperty("warmStart.file");
+
+        // WHEN
+        final WarmStartSnapshot warmStart = WarmStartSnapshot.fromSystemProperties();
+
+        // THEN
+        assertFalse(warmStart.isEnabled());
+    }
+}
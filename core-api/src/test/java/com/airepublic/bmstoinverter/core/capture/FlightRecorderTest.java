@@ -0,0 +1,50 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void testRingBufferKeepsLastFrames() {
+        // GIVEN a flight recorder for 3 frames of at most 4 bytes
+        final FlightRecorder recorder = new FlightRecorder(3, 4);
+
+        // WHEN 5 frames are recorded and the last received frame is invalid
+        for (int i = 1; i <= 4; i++) {
+            recorder.record(FlightRecorder.DIRECTION_SENT, ByteBuffer.wrap(new byte[] { (byte) i }));
+        }
+
+        final ByteBuffer received = ByteBuffer.wrap(new byte[] { 0x0A, (byte) 0xBC, 0x01, 0x02, 0x03, 0x04 });
+        received.position(3);
+        recorder.record(FlightRecorder.DIRECTION_RECEIVED, received);
+        recorder.markLastReceived(FlightRecorder.OUTCOME_INVALID);
+
+        // THEN
+        // - only the last 3 frames should be kept, the oldest first
+        // - the frame should be truncated to the frame size without changing its position
+        // - the outcome should be shown for the received frame
+        final List<String> lines = recorder.format();
+        assertEquals(5, recorder.getCount());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith(" TX [1] 03"));
+        assertTrue(lines.get(1).endsWith(" TX [1] 04"));
+        assertTrue(lines.get(2).endsWith(" RX [6] 0A BC 01 02 ... INVALID"));
+        assertEquals(3, received.position());
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.capture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
+
+public class FrameCaptureTest {
+    @TempDir
+    Path tempDir;
+
+    private static class EchoPort extends CANPort {
+        private int frameId = 0x350;
+
+        EchoPort() {
+            super("can0", 500000);
+        }
+
+
+        @Override
+        public void open() {
+        }
+
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+
+        @Override
+        public ByteBuffer receiveFrame() {
+            final ByteBuffer frame = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            frame.putInt(frameId++);
+            frame.rewind();
+            return frame;
+        }
+
+
+        @Override
+        public void sendFrame(final ByteBuffer frame) {
+        }
+
+
+        @Override
+        public void sendExtendedFrame(final ByteBuffer frame) {
+        }
+
+
+        @Override
+        public void clearBuffers() {
+        }
+
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testCaptureAndReplay() throws IOException {
+        // GIVEN a captured CAN port with capture files just large enough for 2 records each
+        final FrameCapture capture = new FrameCapture(tempDir, "can0", 20 + 2 * 28 + 1, 10);
+        final CANCapturePort port = new CANCapturePort(new EchoPort(), capture);
+
+        // WHEN frames are sent and received
+        port.sendExtendedFrame(ByteBuffer.allocate(16).putInt(0, 0x4200));
+        port.receiveFrame();
+        port.receiveFrame();
+        port.receiveFrame();
+        capture.close();
+
+        // THEN
+        // - the capture should be rotated into 2 files
+        // - the replay should return the received frames in order and their original byte order
+        final List<Path> files;
+
+        try (Stream<Path> stream = Files.list(tempDir)) {
+            files = stream.sorted().collect(Collectors.toList());
+        }
+
+        assertEquals(2, files.size());
+        assertEquals("can0", CaptureReader.readPortname(files.get(0)));
+        assertEquals(FrameCapture.TYPE_SENT_EXTENDED, CaptureReader.read(files.get(0)).get(0).getType());
+
+        final ReplayPort replay = ReplayPort.fromFiles("can0", files, false);
+        final ByteBuffer first = replay.receiveFrame();
+        assertEquals(ByteOrder.LITTLE_ENDIAN, first.order());
+        assertEquals(0x350, first.getInt());
+        assertEquals(0x351, replay.receiveFrame().getInt());
+        assertEquals(0x352, replay.receiveFrame().getInt());
+        assertTrue(replay.isFinished());
+        assertThrows(IOException.class, () -> replay.receiveFrame());
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.checksum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class FrameChecksumTest {
+    private final static ByteBuffer CHECK = ByteBuffer.wrap("123456789".getBytes(StandardCharsets.US_ASCII));
+
+    @Test
+    public void testCheckValues() {
+        // GIVEN the standard check input "123456789"
+        // WHEN the checksums are computed
+        // THEN
+        // - they should match the published check values
+        assertEquals(0x4B37, new CRC16Modbus().compute(CHECK, 0, 9));
+        assertEquals(0x29B1, new CRC16CCITT().compute(CHECK, 0, 9));
+        assertEquals(0x31C3, new CRC16CCITT(0).compute(CHECK, 0, 9));
+        assertEquals(0xDD, ByteSumChecksum.sum8().compute(CHECK, 0, 9));
+        assertEquals(0x31, new XORChecksum().compute(CHECK, 0, 9));
+    }
+
+
+    @Test
+    public void testIncrementalUpdate() {
+        // GIVEN a CRC updated byte by byte as the bytes are received
+        final FrameChecksum crc = new CRC16Modbus();
+
+        // WHEN all bytes are received
+        for (int i = 0; i < 9; i++) {
+            crc.update(CHECK.get(i));
+        }
+
+        // THEN
+        // - it should equal the CRC computed over the whole range
+        assertEquals(new CRC16Modbus().compute(CHECK, 0, 9), crc.getValue());
+    }
+
+
+    @Test
+    public void testPylonChecksums() {
+        // GIVEN a Pylon request frame for the analog values of pack 1
+        final ByteBuffer frame = ByteBuffer.wrap("~20014A42E00201FD2A\r".getBytes(StandardCharsets.US_ASCII));
+
+        // WHEN the frame and length checksums are validated
+        // THEN
+        // - the frame should be valid and a modified frame invalid
+        // - the LENGTH field should carry the LCHKSUM of the LENID
+        assertTrue(PylonChecksum.isValidFrame(frame, PylonChecksum.chksum()));
+        frame.put(10, (byte) '1');
+        assertFalse(PylonChecksum.isValidFrame(frame, PylonChecksum.chksum()));
+        assertEquals(0xE002, PylonChecksum.lengthField(2));
+        assertEquals(0xD0CA, PylonChecksum.readAsciiHex(ByteBuffer.wrap("D0CA".getBytes(StandardCharsets.US_ASCII)), 0, 4));
+        assertTrue(PylonChecksum.isValidLength(0xE002));
+        assertFalse(PylonChecksum.isValidLength(0xF002));
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.decoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.AlarmLevel;
+import com.airepublic.bmstoinverter.core.bms.data.Alarm;
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.DataGroup;
+
+public class FrameDecoderTest {
+    private final static String SCHEMA = "{ 'name': 'test', 'frames': ["
+            + "{ 'id': '0x356', 'group': 'STATUS', 'fields': ["
+            + "  { 'target': 'packVoltage', 'offset': 0, 'width': 2, 'signed': true, 'divide': 10 },"
+            + "  { 'target': 'packCurrent', 'offset': 2, 'width': 2, 'signed': true },"
+            + "  { 'target': 'packSOC', 'offset': 4, 'width': 2, 'byteOrder': 'BIG_ENDIAN', 'multiply': 10 },"
+            + "  { 'target': 'chargeMOSState', 'offset': 6, 'bit': 2 } ] },"
+            + "{ 'id': '0x35E', 'group': 'INFO', 'fields': ["
+            + "  { 'target': 'manufacturerCode', 'type': 'ascii', 'offset': 0, 'width': 8 } ] },"
+            + "{ 'id': '0x359', 'group': 'ALARMS', 'clearAlarms': true, 'fields': ["
+            + "  { 'alarm': 'CELL_VOLTAGE_HIGH', 'offset': 2, 'bit': 1, 'warningOffset': 0, 'warningBit': 1 },"
+            + "  { 'alarm': 'CELL_VOLTAGE_LOW', 'offset': 2, 'bit': 2, 'warningOffset': 0, 'warningBit': 2 } ] } ] }";
+
+    private static ByteBuffer frame(final int id, final int... data) {
+        final ByteBuffer frame = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(0, id);
+        frame.put(4, (byte) data.length);
+
+        for (int i = 0; i < data.length; i++) {
+            frame.put(8 + i, (byte) data[i]);
+        }
+
+        return frame;
+    }
+
+
+    @Test
+    public void testDecodeValues() {
+        // GIVEN a decoder compiled from the schema
+        final FrameDecoder decoder = FrameDecoder.compile(FrameSchema.parse(new StringReader(SCHEMA)));
+        final BatteryPack pack = new BatteryPack();
+        pack.chargeMOSState = false;
+        final ByteBuffer frame = frame(0x356, 0x63, 0x14, 0x0F, 0xFF, 0x00, 0x2A, 0x04, 0x00);
+
+        // WHEN the status frame is decoded
+        final boolean known = decoder.decode(frame, pack);
+
+        // THEN
+        // - the signed, scaled, big endian and bit values should be written to the pack
+        // - the group of the frame should be marked updated
+        // - the buffer position should not have changed
+        assertTrue(known);
+        assertEquals(521, pack.packVoltage);
+        assertEquals(-241, pack.packCurrent);
+        assertEquals(420, pack.packSOC);
+        assertTrue(pack.chargeMOSState);
+        assertTrue(pack.getLastUpdate(DataGroup.STATUS) > 0);
+        assertEquals(0, frame.position());
+    }
+
+
+    @Test
+    public void testDecodeAsciiAndAlarms() {
+        // GIVEN a decoder compiled from the schema and a pack with a stale alarm
+        final FrameDecoder decoder = FrameDecoder.compile(FrameSchema.parse(new StringReader(SCHEMA)));
+        final BatteryPack pack = new BatteryPack();
+        pack.setAlarm(Alarm.CELL_TEMPERATURE_HIGH, AlarmLevel.ALARM);
+
+        // WHEN the manufacturer and the alarm frames are decoded
+        decoder.decode(frame(0x35E, 'P', 'Y', 'L', 'O', 'N', 0, 0, 0), pack);
+        decoder.decode(frame(0x359, 0x04, 0x00, 0x02, 0x00), pack);
+
+        // THEN
+        // - the manufacturer should be read up to the terminating zero
+        // - the alarm bit should take precedence and the warning bit should be reported otherwise
+        // - the alarms of a previous frame should be cleared
+        assertEquals("PYLON", pack.manufacturerCode);
+        assertEquals(AlarmLevel.ALARM, pack.getAlarmLevel(Alarm.CELL_VOLTAGE_HIGH));
+        assertEquals(AlarmLevel.WARNING, pack.getAlarmLevel(Alarm.CELL_VOLTAGE_LOW));
+        assertFalse(pack.alarms.containsKey(Alarm.CELL_TEMPERATURE_HIGH));
+    }
+
+
+    @Test
+    public void testUnknownFrameAndInvalidSchema() {
+        // GIVEN a decoder compiled from the schema
+        final FrameDecoder decoder = FrameDecoder.compile(FrameSchema.parse(new StringReader(SCHEMA)));
+
+        // WHEN a frame not described by the schema is decoded or a schema with an unknown field is
+        // compiled
+        // THEN
+        // - the frame should be reported as unknown
+        // - the schema should be rejected
+        assertFalse(decoder.decode(frame(0x123, 1, 2), new BatteryPack()));
+        assertThrows(IllegalArgumentException.class, () -> FrameDecoder.compile(FrameSchema.parse(new StringReader("{ 'frames': [ { 'id': '0x1', 'fields': [ { 'target': 'unknown', 'width': 2 } ] } ] }"))));
+    }
+}
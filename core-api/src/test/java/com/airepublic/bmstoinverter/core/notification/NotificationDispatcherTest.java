@@ -0,0 +1,203 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.notification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.service.IEmailService;
+
+public class NotificationDispatcherTest {
+    private long now;
+
+    /**
+     * An {@link IEmailService} recording the sent emails which fails the specified number of times.
+     */
+    private static class TestEmailService implements IEmailService {
+        private final List<String> subjects = new ArrayList<>();
+        private final List<String> messages = new ArrayList<>();
+        private int failures;
+        private int attempts;
+
+        @Override
+        public void sendEmail(final String subject, final String message) {
+            attempts++;
+
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Mail server not reachable");
+            }
+
+            subjects.add(subject);
+            messages.add(message);
+        }
+    }
+
+    private NotificationDispatcher dispatcher(final TestEmailService emailService, final int maxRetries) {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(null, 60, 900, maxRetries, 100, () -> now);
+        dispatcher.addChannel(emailService);
+        return dispatcher;
+    }
+
+
+    private void dispatchAt(final NotificationDispatcher dispatcher, final long time) {
+        now = time;
+        dispatcher.dispatch(time);
+    }
+
+
+    @Test
+    public void testAlarmsAreBatchedIntoOneDigest() {
+        // GIVEN a dispatcher with a digest window of 60ms
+        final TestEmailService emailService = new TestEmailService();
+        final NotificationDispatcher dispatcher = dispatcher(emailService, 3);
+
+        // WHEN two alarms are raised within the window
+        dispatcher.alarmRaised("A", "Alarm A");
+        now = 10;
+        dispatcher.alarmRaised("B", "Alarm B");
+        dispatchAt(dispatcher, 30);
+
+        // THEN
+        // - nothing should be sent before the window expired
+        assertEquals(0, emailService.attempts);
+
+        // WHEN the window expired
+        dispatchAt(dispatcher, 60);
+
+        // THEN
+        // - both alarms should be sent in one email
+        assertEquals(1, emailService.subjects.size());
+        assertEquals("BMS Alarms occured", emailService.subjects.get(0));
+        assertTrue(emailService.messages.get(0).contains("Alarm A"));
+        assertTrue(emailService.messages.get(0).contains("Alarm B"));
+
+        // WHEN nothing else is reported
+        dispatchAt(dispatcher, 200);
+
+        // THEN
+        // - no further email should be sent
+        assertEquals(1, emailService.attempts);
+    }
+
+
+    @Test
+    public void testFlappingAlarmIsNotReported() {
+        // GIVEN a dispatcher with a digest window of 60ms
+        final TestEmailService emailService = new TestEmailService();
+        final NotificationDispatcher dispatcher = dispatcher(emailService, 3);
+
+        // WHEN an alarm is raised and resolved within the window
+        dispatcher.alarmRaised("A", "Alarm A");
+        now = 20;
+        dispatcher.alarmResolved("A", "Alarm A");
+        dispatchAt(dispatcher, 100);
+
+        // THEN
+        // - no email should be sent
+        assertEquals(0, emailService.attempts);
+    }
+
+
+    @Test
+    public void testRateLimitedTransitionsAreDropped() {
+        // GIVEN a dispatcher with a rate limit of 900ms and an alarm which has been notified
+        final TestEmailService emailService = new TestEmailService();
+        final NotificationDispatcher dispatcher = dispatcher(emailService, 3);
+        dispatcher.alarmRaised("A", "Alarm A");
+        dispatchAt(dispatcher, 60);
+        assertEquals(1, emailService.subjects.size());
+
+        // WHEN the alarm is resolved and raised again within the rate limit period
+        now = 100;
+        dispatcher.alarmResolved("A", "Alarm A");
+        dispatchAt(dispatcher, 200);
+        dispatcher.alarmRaised("A", "Alarm A");
+        dispatchAt(dispatcher, 300);
+        dispatchAt(dispatcher, 1000);
+
+        // THEN
+        // - no further email should be sent
+        assertEquals(1, emailService.subjects.size());
+
+        // WHEN the alarm is resolved after the rate limit period
+        dispatcher.alarmResolved("A", "Alarm A");
+        dispatchAt(dispatcher, 1060);
+
+        // THEN
+        // - the resolution should be sent and report the dropped toggle
+        assertEquals(2, emailService.subjects.size());
+        assertEquals("BMS Alarms resolved", emailService.subjects.get(1));
+        assertTrue(emailService.messages.get(1).contains("A (1x)"));
+    }
+
+
+    @Test
+    public void testRetryAfterFailure() {
+        // GIVEN an email service which fails twice and a retry delay of 100ms
+        final TestEmailService emailService = new TestEmailService();
+        emailService.failures = 2;
+        final NotificationDispatcher dispatcher = dispatcher(emailService, 3);
+        dispatcher.alarmRaised("A", "Alarm A");
+
+        // WHEN the notification fails
+        dispatchAt(dispatcher, 60);
+        dispatchAt(dispatcher, 159);
+
+        // THEN
+        // - it should not be retried before the retry delay expired
+        assertEquals(1, emailService.attempts);
+
+        // WHEN it fails again
+        dispatchAt(dispatcher, 160);
+        dispatchAt(dispatcher, 359);
+
+        // THEN
+        // - the retry delay should be doubled
+        assertEquals(2, emailService.attempts);
+
+        // WHEN the doubled retry delay expired
+        dispatchAt(dispatcher, 360);
+
+        // THEN
+        // - the notification should be delivered exactly once
+        assertEquals(3, emailService.attempts);
+        assertEquals(1, emailService.subjects.size());
+        assertTrue(emailService.messages.get(0).contains("Alarm A"));
+        dispatchAt(dispatcher, 10000);
+        assertEquals(3, emailService.attempts);
+    }
+
+
+    @Test
+    public void testNotificationIsDroppedAfterMaxRetries() {
+        // GIVEN an email service which always fails and a dispatcher retrying once
+        final TestEmailService emailService = new TestEmailService();
+        emailService.failures = Integer.MAX_VALUE;
+        final NotificationDispatcher dispatcher = dispatcher(emailService, 1);
+        dispatcher.alarmRaised("A", "Alarm A");
+
+        // WHEN the notification is attempted beyond the retries
+        dispatchAt(dispatcher, 60);
+        dispatchAt(dispatcher, 160);
+        dispatchAt(dispatcher, 10000);
+
+        // THEN
+        // - it should be dropped after the first retry
+        assertEquals(2, emailService.attempts);
+        assertEquals(0, emailService.subjects.size());
+    }
+}
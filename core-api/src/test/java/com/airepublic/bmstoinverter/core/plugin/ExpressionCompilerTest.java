@@ -0,0 +1,84 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.plugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.PluginProperty;
+import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.plugin.inverter.ExpressionBatteryPackDataPlugin;
+
+public class ExpressionCompilerTest {
+
+    @Test
+    public void testDeratingRules() {
+        // GIVEN rules to derate the charge current above 3450mV and to scale the SOC between 10% and 95%
+        final ExpressionBatteryPackDataPlugin plugin = new ExpressionBatteryPackDataPlugin();
+        plugin.addProperty(new PluginProperty(ExpressionBatteryPackDataPlugin.PROPERTY_RULE + 1, "maxPackChargeCurrent = min(maxPackChargeCurrent, lerp(maxCellmV, 3450, 3550, maxPackChargeCurrent, 0))", ""));
+        plugin.addProperty(new PluginProperty(ExpressionBatteryPackDataPlugin.PROPERTY_RULE + 2, "packSOC = lerp(packSOC, 100, 950, 0, 1000)", ""));
+        final BatteryPack pack = new BatteryPack();
+        pack.maxPackChargeCurrent = 1000;
+        pack.maxCellmV = 3500;
+        pack.packSOC = 525;
+
+        // WHEN the rules are applied
+        plugin.onBatteryAggregation(pack);
+
+        // THEN the charge current should be halfway derated and the SOC scaled
+        assertEquals(500, pack.maxPackChargeCurrent);
+        assertEquals(500, pack.packSOC);
+    }
+
+
+    @Test
+    public void testOperatorsAndBooleans() throws Throwable {
+        // GIVEN a pack and rules using conditions, precedence and boolean fields
+        final BatteryPack pack = new BatteryPack();
+        pack.packVoltage = 530;
+        pack.tempMax = 460;
+        pack.chargeMOSState = true;
+
+        // WHEN the rules are compiled and applied
+        ExpressionCompiler.chain(Arrays.asList(
+                ExpressionCompiler.compileRule("packCurrent = -2 + 3 * (4 - 1) % 5"),
+                ExpressionCompiler.compileRule("forceCharge = packVoltage < 540 && !(tempMax >= 450) || false"),
+                ExpressionCompiler.compileRule("chargeMOSState = tempMax > 450 ? false : chargeMOSState"),
+                ExpressionCompiler.compileRule("maxPackVoltageLimit = clamp(packVoltage * 1.05, 480, 550)"))).invokeExact(pack);
+
+        // THEN the values should be calculated like in Java
+        assertEquals(2, pack.packCurrent);
+        assertFalse(pack.forceCharge);
+        assertFalse(pack.chargeMOSState);
+        assertEquals(550, pack.maxPackVoltageLimit);
+        assertTrue((double) ExpressionCompiler.compileExpression("abs(-1.5) == 1.5 && max(1, 7, 3) == 7").invokeExact(pack) == 1);
+    }
+
+
+    @Test
+    public void testInvalidRules() {
+        // GIVEN invalid rules
+        // WHEN they are compiled
+        // THEN the error should point to the position
+        assertEquals("Unknown field 'unknown' at position 11 in: packSOC = unknown + 1",
+                assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.compileRule("packSOC = unknown + 1")).getMessage());
+        assertEquals("Expected ')' at position 17 in: packSOC = (1 + 2",
+                assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.compileRule("packSOC = (1 + 2")).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.compileRule("cellVmV = 1"));
+        assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.compileRule("packSOC = lerp(1, 2)"));
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.Port;
+
+public class CANDemultiplexerTest {
+
+    private static class QueuePort extends CANPort {
+        private final BlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+
+        QueuePort() {
+            super("test", 500000);
+        }
+
+
+        @Override
+        public void open() {
+        }
+
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+
+        @Override
+        public ByteBuffer receiveFrame() throws IOException {
+            try {
+                final ByteBuffer frame = frames.poll(100, TimeUnit.MILLISECONDS);
+
+                if (frame == null) {
+                    throw new IOException("timeout");
+                }
+
+                return frame;
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+
+        @Override
+        public void sendFrame(final ByteBuffer frame) {
+        }
+
+
+        @Override
+        public void sendExtendedFrame(final ByteBuffer frame) {
+        }
+
+
+        @Override
+        public void clearBuffers() {
+        }
+
+
+        @Override
+        public void close() {
+            stopWorkers();
+        }
+
+
+        void put(final int frameId) {
+            final ByteBuffer frame = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            frame.putInt(frameId);
+            frame.rewind();
+            frames.add(frame);
+        }
+    }
+
+    @Test
+    public void testSingleBindingUsesPortDirectly() {
+        // GIVEN a port with only one reading binding and no transmit queue
+        final QueuePort port = new QueuePort();
+        port.registerFilters("bms#1", null);
+        port.registerFilters("inverter", Arrays.asList());
+        System.setProperty("can.tx.queue", "false");
+
+        try {
+            // WHEN the binding port is requested
+            final Port bindingPort = port.getBindingPort("bms#1");
+
+            // THEN
+            // - the shared port itself should be used
+            assertSame(port, bindingPort);
+        } finally {
+            System.clearProperty("can.tx.queue");
+        }
+    }
+
+
+    @Test
+    public void testFramesAreDistributedByFilter() throws IOException {
+        // GIVEN a port shared by two bindings filtering on the low nibble of the frame id
+        final QueuePort port = new QueuePort();
+        port.registerFilters("bms#1", Arrays.asList(new CANFilter(0x4211, 0x1FFFFF0F)));
+        port.registerFilters("bms#2", Arrays.asList(new CANFilter(0x4212, 0x1FFFFF0F)));
+        final Port port1 = port.getBindingPort("bms#1");
+        final Port port2 = port.getBindingPort("bms#2");
+
+        try {
+            // WHEN frames for both bindings are received
+            port.put(0x4211);
+            port.put(0x4212);
+            port.put(0x4221);
+            port.put(0x4222);
+
+            // THEN
+            // - each binding should receive only its own frames in order
+            assertEquals(0x4211, port1.receiveFrame().getInt());
+            assertEquals(0x4221, port1.receiveFrame().getInt());
+            assertEquals(0x4212, port2.receiveFrame().getInt());
+            assertEquals(0x4222, port2.receiveFrame().getInt());
+            assertThrows(IOException.class, () -> port1.receiveFrame());
+        } finally {
+            port.close();
+        }
+    }
+}
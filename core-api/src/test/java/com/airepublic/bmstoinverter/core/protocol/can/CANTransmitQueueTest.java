@@ -0,0 +1,138 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.protocol.can;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.airepublic.bmstoinverter.core.protocol.can.CANTransmitQueue.Priority;
+
+public class CANTransmitQueueTest {
+
+    private static class RecordingPort extends CANPort {
+        private final List<Integer> sent = new CopyOnWriteArrayList<>();
+
+        RecordingPort() {
+            super("txtest", 500000);
+        }
+
+
+        @Override
+        public void open() {
+        }
+
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+
+        @Override
+        public ByteBuffer receiveFrame() {
+            return null;
+        }
+
+
+        @Override
+        public void sendFrame(final ByteBuffer frame) {
+            sent.add(frame.getInt(0));
+        }
+
+
+        @Override
+        public void sendExtendedFrame(final ByteBuffer frame) {
+            sent.add(frame.getInt(0));
+        }
+
+
+        @Override
+        public void clearBuffers() {
+        }
+
+
+        @Override
+        public void close() {
+            stopWorkers();
+        }
+    }
+
+    private static ByteBuffer frame(final ByteBuffer buffer, final int frameId) {
+        buffer.clear();
+        buffer.putInt(frameId);
+        buffer.rewind();
+        return buffer;
+    }
+
+
+    @Test
+    public void testFramesAreSentByPriorityAndExpiredFramesDropped() throws InterruptedException {
+        // GIVEN a transmit queue with frames of mixed priority enqueued from a re-used buffer
+        final RecordingPort port = new RecordingPort();
+        final CANTransmitQueue queue = new CANTransmitQueue(port, 0, 1000);
+        final ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        queue.enqueue(frame(buffer, 0x100), false, Priority.LOW);
+        queue.enqueue(frame(buffer, 0x200), true, Priority.NORMAL);
+        queue.enqueue(frame(buffer, 0x300), false, Priority.HIGH);
+        queue.enqueue(frame(buffer, 0x400), false, Priority.NORMAL);
+        queue.enqueue(frame(buffer, 0x500), false, Priority.HIGH, 0);
+
+        try {
+            // WHEN the sender is started
+            queue.start();
+
+            for (int i = 0; i < 50 && queue.size() > 0; i++) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(50);
+
+            // THEN
+            // - the frames should be sent by priority and in enqueue order within a priority
+            // - the expired frame should be dropped
+            assertEquals(0, queue.size());
+            assertEquals(Arrays.asList(0x300, 0x200, 0x400, 0x100), port.sent);
+        } finally {
+            queue.stop();
+        }
+    }
+
+
+    @Test
+    public void testBindingPortEnqueuesAndReturns() throws Exception {
+        // GIVEN a port with the transmit queue enabled
+        final RecordingPort port = new RecordingPort();
+        final CANPort bindingPort = (CANPort) port.getBindingPort("inverter", Priority.HIGH);
+
+        try {
+            // WHEN a frame is sent via the binding port
+            bindingPort.sendFrame(frame(ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN), 0x4210));
+
+            for (int i = 0; i < 50 && port.sent.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+
+            // THEN
+            // - the frame should be sent by the transmit thread of the port
+            assertTrue(bindingPort instanceof CANBindingPort);
+            assertEquals(Arrays.asList(0x4210), port.sent);
+        } finally {
+            port.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.core.util.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.airepublic.bmstoinverter.core.BMS;
+import com.airepublic.bmstoinverter.core.BMSConfig;
+import com.airepublic.bmstoinverter.core.DummyPort;
+import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.PortAllocator;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class JfrTracerTest {
+    @TempDir
+    Path tempDir;
+
+    private List<RecordedEvent> readEvents(final Path file, final String name) throws Exception {
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals(JfrTracer.PREFIX + name))
+                .collect(Collectors.toList());
+    }
+
+
+    @Test
+    public void testBmsCycleEventIsRecorded() throws Exception {
+        // GIVEN a recording of the BMS cycle events
+        assertTrue(Tracing.isEnabled());
+        final Path file = tempDir.resolve("test.jfr");
+        final Tracer tracer = Tracing.get();
+
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrTracer.PREFIX + "BmsCycle");
+            recording.start();
+
+            // WHEN a BMS cycle of at least 20ms is traced
+            final long start = System.nanoTime();
+            final Object span = tracer.begin(Tracer.Operation.BMS_CYCLE);
+            Thread.sleep(20);
+            tracer.bmsCycle(span, "bms#1", "can0", 3, System.nanoTime() - start, "OK");
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // THEN
+        // - the event should be recorded with its fields
+        // - the event should span the real duration of the cycle
+        final List<RecordedEvent> events = readEvents(file, "BmsCycle");
+        assertEquals(1, events.size());
+        assertEquals("bms#1", events.get(0).getString("bms"));
+        assertEquals(3, events.get(0).getInt("commands"));
+        assertEquals("OK", events.get(0).getString("outcome"));
+        assertTrue(events.get(0).getDuration().toMillis() >= 20);
+        assertEquals(events.get(0).getStartTime().plus(events.get(0).getDuration()), events.get(0).getEndTime());
+    }
+
+
+    @Test
+    public void testThresholdIsApplied() throws Exception {
+        // GIVEN a recording of the aggregation events exceeding 10ms
+        final Path file = tempDir.resolve("threshold.jfr");
+        final Tracer tracer = Tracing.get();
+
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrTracer.PREFIX + "Aggregation").withThreshold(Duration.ofMillis(10));
+            recording.start();
+
+            // WHEN a fast and a slow aggregation are traced
+            final Object fast = tracer.begin(Tracer.Operation.AGGREGATION);
+            tracer.aggregation(fast, 1, true, 0);
+            final Object slow = tracer.begin(Tracer.Operation.AGGREGATION);
+            Thread.sleep(20);
+            tracer.aggregation(slow, 2, true, 0);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // THEN only the slow aggregation should be recorded
+        final List<RecordedEvent> events = readEvents(file, "Aggregation");
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0).getInt("packs"));
+    }
+
+
+    @Test
+    public void testFrameDecodeExcludesTheWaitForTheFrame() throws Exception {
+        // GIVEN a recording of the frame decode events and a BMS whose port takes 50ms to deliver a
+        // frame
+        final Path file = tempDir.resolve("decode.jfr");
+        final Port port = new DummyPort() {
+            @Override
+            public ByteBuffer receiveFrame() throws IOException {
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException e) {
+                }
+
+                return ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+            }
+        };
+        port.setPortname("decodePort");
+        PortAllocator.addPort("decodePort", port);
+        final BMS bms = new BMS() {
+            @Override
+            protected void collectData(final Port port) throws IOException {
+                decodeFrame(port, port.receiveFrame(), frame -> getBatteryPack(0).packSOC = frame.get(3));
+            }
+        };
+        bms.initialize(new BMSConfig(1, "decodePort", 0, 0, null));
+        bms.getBatteryPack(0);
+
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrTracer.PREFIX + "FrameDecode");
+            recording.start();
+
+            // WHEN the BMS collects its data
+            bms.process(() -> {
+            });
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // THEN
+        // - the frame should have been decoded
+        // - the decode event should not contain the time waiting for the frame
+        assertEquals(4, bms.getBatteryPack(0).packSOC);
+        final List<RecordedEvent> events = readEvents(file, "FrameDecode");
+        assertEquals(1, events.size());
+        assertEquals("decodePort", events.get(0).getString("port"));
+        assertEquals(4, events.get(0).getInt("length"));
+        assertTrue(events.get(0).getDuration().toMillis() < 50);
+    }
+
+
+    @Test
+    public void testDisabledEventIsNotBegun() {
+        // GIVEN no recording of the frame decode events
+        // WHEN a frame decode is begun
+        // THEN no span should be created
+        assertNull(Tracing.get().begin(Tracer.Operation.FRAME_DECODE));
+    }
+}
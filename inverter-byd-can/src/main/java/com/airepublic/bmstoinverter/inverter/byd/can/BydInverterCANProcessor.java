@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -24,6 +25,8 @@ import com.airepublic.bmstoinverter.core.Inverter;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -32,9 +35,16 @@ import javax.enterprise.context.ApplicationScoped;
  * The class to handle CAN messages for a Goodwe HV {@link Inverter}.
  */
 @ApplicationScoped
-public class BydInverterCANProcessor extends Inverter {
+public class BydInverterCANProcessor extends Inverter implements CANFilterProvider {
     private final static Logger LOG = LoggerFactory.getLogger(BydInverterCANProcessor.class);
 
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // the inverter binding only sends frames and does not read any requests
+        return Collections.emptyList();
+    }
+
+
     @Override
     protected List<ByteBuffer> createSendFrames(final ByteBuffer requestFrame, final BatteryPack aggregatedPack) {
         final List<ByteBuffer> frames = new ArrayList<>();
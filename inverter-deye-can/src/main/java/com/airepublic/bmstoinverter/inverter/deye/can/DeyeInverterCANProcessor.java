@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.airepublic.bmstoinverter.core.AlarmLevel;
@@ -21,6 +22,8 @@ import com.airepublic.bmstoinverter.core.Inverter;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -29,7 +32,14 @@ import javax.enterprise.context.ApplicationScoped;
  * The class to handle CAN messages for Deye {@link Inverter}.
  */
 @ApplicationScoped
-public class DeyeInverterCANProcessor extends Inverter {
+public class DeyeInverterCANProcessor extends Inverter implements CANFilterProvider {
+
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // the inverter binding only sends frames and does not read any requests
+        return Collections.emptyList();
+    }
+
 
     @Override
     protected List<ByteBuffer> createSendFrames(final ByteBuffer requestFrame, final BatteryPack aggregatedPack) {
@@ -15,6 +15,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.airepublic.bmstoinverter.core.AlarmLevel;
@@ -23,6 +24,8 @@ import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
@@ -32,7 +35,14 @@ import javax.enterprise.context.ApplicationScoped;
  * The class to handle CAN messages for a Growatt low voltage (12V/24V/48V) {@link Inverter}.
  */
 @ApplicationScoped
-public class GrowattInverterCANProcessor extends Inverter {
+public class GrowattInverterCANProcessor extends Inverter implements CANFilterProvider {
+
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // the inverter binding only sends frames and does not read any requests
+        return Collections.emptyList();
+    }
+
 
     @Override
     protected List<ByteBuffer> createSendFrames(final ByteBuffer requestFrame, final BatteryPack aggregatedPack) {
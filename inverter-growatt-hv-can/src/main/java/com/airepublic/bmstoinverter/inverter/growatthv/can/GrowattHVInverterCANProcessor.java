@@ -37,6 +37,12 @@ import javax.enterprise.context.ApplicationScoped;
 public class GrowattHVInverterCANProcessor extends Inverter {
     private final static Logger LOG = LoggerFactory.getLogger(GrowattHVInverterCANProcessor.class);
 
+    @Override
+    public boolean isRequestDriven() {
+        return true;
+    }
+
+
     @Override
     protected ByteBuffer readRequest(final Port port) throws IOException {
         return port.receiveFrame();
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -26,15 +27,24 @@ import com.airepublic.bmstoinverter.core.Inverter;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
 /**
  * The class to handle CAN messages for a Luxpower {@link Inverter}.
  */
 @ApplicationScoped
-public class LuxpowerInverterCANProcessor extends Inverter {
+public class LuxpowerInverterCANProcessor extends Inverter implements CANFilterProvider {
     private final static Logger LOG = LoggerFactory.getLogger(LuxpowerInverterCANProcessor.class);
 
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // the inverter binding only sends frames and does not read any requests
+        return Collections.emptyList();
+    }
+
+
     @Override
     protected List<ByteBuffer> createSendFrames(final ByteBuffer requestFrame, final BatteryPack aggregatedPack) {
         final List<ByteBuffer> frames = new ArrayList<>();
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -24,6 +25,8 @@ import com.airepublic.bmstoinverter.core.Inverter;
 import com.airepublic.bmstoinverter.core.Port;
 import com.airepublic.bmstoinverter.core.bms.data.Alarm;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilterProvider;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 import com.airepublic.bmstoinverter.core.util.BitUtil;
 
@@ -33,9 +36,22 @@ import javax.enterprise.context.ApplicationScoped;
  * The class to handle CAN messages for a Pylon HV {@link Inverter}.
  */
 @ApplicationScoped
-public class PylonHVInverterCANProcessor extends Inverter {
+public class PylonHVInverterCANProcessor extends Inverter implements CANFilterProvider {
     private final static Logger LOG = LoggerFactory.getLogger(PylonHVInverterCANProcessor.class);
 
+    @Override
+    public List<CANFilter> getCANFilters() {
+        // the inverter requests the ensemble and system equipment information
+        return Collections.singletonList(CANFilter.exact(0x4200));
+    }
+
+
+    @Override
+    public boolean isRequestDriven() {
+        return true;
+    }
+
+
     @Override
     protected ByteBuffer readRequest(final Port port) throws IOException {
         return port.receiveFrame();
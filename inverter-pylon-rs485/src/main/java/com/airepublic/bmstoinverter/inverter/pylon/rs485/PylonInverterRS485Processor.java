@@ -443,6 +443,12 @@ public class PylonInverterRS485Processor extends Inverter {
     }
 
 
+    @Override
+    public boolean isRequestDriven() {
+        return true;
+    }
+
+
     @Override
     protected ByteBuffer readRequest(final Port port) throws IOException {
         return port.receiveFrame();
@@ -130,6 +130,12 @@ public class Pylon2InverterRS485Processor extends Inverter {
     }
 
 
+    @Override
+    public boolean isRequestDriven() {
+        return true;
+    }
+
+
     @Override
     protected ByteBuffer readRequest(final Port port) throws IOException {
         return port.receiveFrame();
@@ -13,13 +13,17 @@ package com.airepublic.bmstoinverter.protocol.can;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
+import com.airepublic.bmstoinverter.core.protocol.can.CANFilter;
 import com.airepublic.bmstoinverter.core.protocol.can.CANPort;
 
 import tel.schich.javacan.CanChannels;
+import tel.schich.javacan.CanFilter;
 import tel.schich.javacan.CanFrame;
 import tel.schich.javacan.CanSocketOptions;
 import tel.schich.javacan.RawCanChannel;
@@ -59,6 +63,40 @@ public class JavaCANPort extends CANPort {
 
             canChannel = CanChannels.newRawChannel(getPortname());
             canChannel.setOption(CanSocketOptions.SO_RCVTIMEO, Duration.ofMillis(1000));
+            applyFilters();
+        }
+    }
+
+
+    @Override
+    protected void onFiltersChanged() {
+        if (isOpen()) {
+            applyFilters();
+        }
+    }
+
+
+    /**
+     * Installs the {@link CANFilter}s of all bindings as kernel CAN_RAW_FILTERs so that only the
+     * consumed frames are copied to user space.
+     */
+    private synchronized void applyFilters() {
+        final List<CANFilter> filters = getFilters();
+        final CanFilter[] canFilters;
+
+        if (filters == null || filters.size() > CanSocketOptions.MAX_FILTERS) {
+            canFilters = new CanFilter[] { CanFilter.ANY };
+        } else if (filters.isEmpty()) {
+            canFilters = new CanFilter[] { CanFilter.NONE };
+        } else {
+            canFilters = filters.stream().map(filter -> new CanFilter(filter.getId(), filter.getMask())).toArray(CanFilter[]::new);
+        }
+
+        try {
+            canChannel.setOption(CanSocketOptions.FILTER, canFilters);
+            LOG.info("Set CAN filters on port '{}': {}", getPortname(), filters == null ? "ALL" : filters);
+        } catch (final IOException e) {
+            LOG.error("Could not set CAN filters on port '{}'!", getPortname(), e);
         }
     }
 
@@ -75,11 +113,17 @@ public class JavaCANPort extends CANPort {
 
         LOG.debug("CAN frame read...");
         final CanFrame frame = canChannel.read();
+        setFrameReceivedNanos(System.nanoTime());
         final ByteBuffer buffer = frame.getBuffer();
         buffer.rewind();
         buffer.putInt(frame.getId());
         buffer.rewind();
-        LOG.debug("CAN read frame {}", printBuffer(frame.getBuffer()));
+        getFlightRecorder().record(FlightRecorder.DIRECTION_RECEIVED, buffer);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("CAN read frame {}", printBuffer(buffer));
+        }
+
         return buffer;
     }
 
@@ -89,6 +133,7 @@ public class JavaCANPort extends CANPort {
         ensureOpen();
 
         frame.rewind();
+        getFlightRecorder().record(FlightRecorder.DIRECTION_SENT, frame);
 
         final CanFrame sendFrame = CanFrame.create(frame);
         canChannel.write(sendFrame);
@@ -100,6 +145,7 @@ public class JavaCANPort extends CANPort {
         ensureOpen();
 
         frame.rewind();
+        getFlightRecorder().record(FlightRecorder.DIRECTION_SENT, frame);
 
         /**
          * Frame bytes 0-3 frame-id as int, 4 data length, 5 flags for FD frames, 6 ?, 7 - 15 data
@@ -112,7 +158,10 @@ public class JavaCANPort extends CANPort {
         final byte[] data = new byte[length];
         frame.get(data); // last 8 bytes data
 
-        LOG.debug("CAN frame sending: {}", printBuffer(frame));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("CAN frame sending: {}", printBuffer(frame));
+        }
+
         final CanFrame sendFrame = CanFrame.createExtended(frameId, flags, data, 0, length);
         canChannel.write(sendFrame);
     }
@@ -120,6 +169,8 @@ public class JavaCANPort extends CANPort {
 
     @Override
     public void close() {
+        stopWorkers();
+
         // close old channel first
         if (isOpen() && canChannel != null) {
             try {
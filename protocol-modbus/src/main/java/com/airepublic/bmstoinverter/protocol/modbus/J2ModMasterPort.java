@@ -17,8 +17,12 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.protocol.modbus.ModBusPort;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
 import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.ModbusException;
 import com.ghgande.j2mod.modbus.facade.ModbusSerialMaster;
 import com.ghgande.j2mod.modbus.io.ModbusSerialTransaction;
 import com.ghgande.j2mod.modbus.msg.ReadInputRegistersRequest;
@@ -97,7 +101,9 @@ public class J2ModMasterPort extends ModBusPort {
 
     @Override
     public ByteBuffer receiveFrame() throws IOException {
-        return buffers.poll();
+        final ByteBuffer frame = buffers.poll();
+        getFlightRecorder().record(FlightRecorder.DIRECTION_RECEIVED, frame);
+        return frame;
     }
 
 
@@ -110,6 +116,7 @@ public class J2ModMasterPort extends ModBusPort {
      */
     @Override
     public void sendFrame(final ByteBuffer frame) throws IOException {
+        getFlightRecorder().record(FlightRecorder.DIRECTION_SENT, frame);
         final int functionCode = frame.getInt();
         // (Modbus register addresses are 1-based, so subtract 1 for the j2mod library)
         final int startAddress = frame.getInt();// - 1;
@@ -147,7 +154,7 @@ public class J2ModMasterPort extends ModBusPort {
             transaction = new ModbusSerialTransaction(request);
             transaction.setSerialConnection(port.getConnection());
             transaction.setTransDelayMS(50);
-            transaction.execute();
+            execute(transaction);
 
             response = (ReadInputRegistersResponse) transaction.getResponse();
             buffers.add(ModbusUtil.toBuffer(response));
@@ -173,7 +180,7 @@ public class J2ModMasterPort extends ModBusPort {
             transaction = new ModbusSerialTransaction(request);
             transaction.setSerialConnection(port.getConnection());
             transaction.setTransDelayMS(50);
-            transaction.execute();
+            execute(transaction);
 
             response = (ReadMultipleRegistersResponse) transaction.getResponse();
 
@@ -204,7 +211,7 @@ public class J2ModMasterPort extends ModBusPort {
             transaction = new ModbusSerialTransaction(request);
             transaction.setSerialConnection(port.getConnection());
             transaction.setTransDelayMS(50);
-            transaction.execute();
+            execute(transaction);
 
             response = (WriteMultipleRegistersResponse) transaction.getResponse();
             buffers.add(ModbusUtil.toBuffer(response));
@@ -228,7 +235,7 @@ public class J2ModMasterPort extends ModBusPort {
             transaction = new ModbusSerialTransaction(request);
             transaction.setSerialConnection(port.getConnection());
             transaction.setTransDelayMS(50);
-            transaction.execute();
+            execute(transaction);
 
             response = (WriteSingleRegisterResponse) transaction.getResponse();
             buffers.add(ModbusUtil.toBuffer(response));
@@ -238,6 +245,21 @@ public class J2ModMasterPort extends ModBusPort {
     }
 
 
+    private void execute(final ModbusSerialTransaction transaction) throws ModbusException {
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.REQUEST_ROUND_TRIP);
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            transaction.execute();
+            success = true;
+        } finally {
+            tracer.requestRoundTrip(span, getPortname(), transaction.getRequest().getClass().getSimpleName(), System.nanoTime() - start, success);
+        }
+    }
+
+
     @Override
     public void clearBuffers() {
     }
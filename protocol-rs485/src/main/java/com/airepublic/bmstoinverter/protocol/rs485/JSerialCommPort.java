@@ -18,6 +18,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.Port;
+import com.airepublic.bmstoinverter.core.capture.FlightRecorder;
 import com.airepublic.bmstoinverter.core.protocol.rs485.FrameDefinition;
 import com.airepublic.bmstoinverter.core.protocol.rs485.RS485Port;
 import com.airepublic.bmstoinverter.core.util.ByteReaderWriter;
@@ -32,6 +33,8 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
     private final static Logger LOG = LoggerFactory.getLogger(JSerialCommPort.class);
     private SerialPort port;
     private ByteReaderWriter queue = new ByteReaderWriter();
+    // the time the oldest bytes in the queue have been received
+    private volatile long bufferedSinceNanos = 0;
 
     /**
      * Constructor.
@@ -139,6 +142,8 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
 
     @Override
     public ByteBuffer receiveFrame() {
+        final long start = System.nanoTime();
+        final long bufferedSince = bufferedSinceNanos;
         ByteBuffer frame = null;
 
         try {
@@ -147,7 +152,20 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
             LOG.debug("Port " + getPortname() + ": Could not read next frame!", e);
         }
 
-        LOG.debug("Next frame: {}", Port.printBuffer(frame));
+        if (frame != null) {
+            setFrameReceivedNanos(bufferedSince != 0 ? bufferedSince : start);
+        }
+
+        if (queue.isEmpty()) {
+            bufferedSinceNanos = 0;
+        }
+
+        getFlightRecorder().record(FlightRecorder.DIRECTION_RECEIVED, frame);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Next frame: {}", Port.printBuffer(frame));
+        }
+
         return frame;
     }
 
@@ -157,7 +175,12 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
         ensureOpen();
 
         final byte[] bytes = frame.array();
-        LOG.debug("Send: {}", Port.printBytes(bytes));
+        getFlightRecorder().record(FlightRecorder.DIRECTION_SENT, frame);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Send: {}", Port.printBytes(bytes));
+        }
+
         // while (!port.getRTS() && !port.setRTS()) {
         // ;
         // }
@@ -183,6 +206,7 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
         if (isOpen()) {
             port.flushIOBuffers();
             queue.clear();
+            bufferedSinceNanos = 0;
         }
     }
 
@@ -198,9 +222,15 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
         if (event.getEventType() == SerialPort.LISTENING_EVENT_DATA_RECEIVED) {
             final byte[] bytes = event.getReceivedData();
 
-            LOG.debug("Received: {}", Port.printBytes(bytes));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Received: {}", Port.printBytes(bytes));
+            }
 
             if (bytes != null) {
+                if (queue.isEmpty()) {
+                    bufferedSinceNanos = System.nanoTime();
+                }
+
                 queue.write(bytes);
             }
         }
@@ -248,6 +278,13 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
             }
         }
 
+        // feed the bytes received so far into the checksum
+        getFrameDefinition().resetChecksum();
+
+        for (int i = 0; i < bytes.length; i++) {
+            getFrameDefinition().updateChecksum(bytes, i);
+        }
+
         // try to parse next frame
         boolean needMoreBytes = true;
 
@@ -275,10 +312,18 @@ public class JSerialCommPort extends RS485Port implements SerialPortDataListener
                 System.arraycopy(bytes, 0, swap, 0, bytes.length);
                 swap[swap.length - 1] = (byte) nextByte;
                 bytes = swap;
+                getFrameDefinition().updateChecksum(bytes, bytes.length - 1);
             }
         }
 
-        return ByteBuffer.wrap(bytes);
+        final ByteBuffer frame = ByteBuffer.wrap(bytes);
+
+        if (!getFrameDefinition().isChecksumValid(frame)) {
+            LOG.debug("Port {}: Dropping frame with invalid checksum: {}", getPortname(), Port.printBuffer(frame));
+            return null;
+        }
+
+        return frame;
     }
 
 
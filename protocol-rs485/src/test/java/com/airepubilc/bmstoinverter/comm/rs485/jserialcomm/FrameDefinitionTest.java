@@ -13,6 +13,7 @@ package com.airepubilc.bmstoinverter.comm.rs485.jserialcomm;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
@@ -20,8 +21,10 @@ import java.nio.ByteBuffer;
 
 import org.junit.jupiter.api.Test;
 
+import com.airepublic.bmstoinverter.core.checksum.ByteSumChecksum;
 import com.airepublic.bmstoinverter.core.protocol.rs485.FrameDefinition;
 import com.airepublic.bmstoinverter.core.protocol.rs485.FrameDefinitionPartType;
+import com.airepublic.bmstoinverter.core.util.ByteReaderWriter;
 import com.airepublic.bmstoinverter.protocol.rs485.JSerialCommPort;
 import com.fazecast.jSerialComm.SerialPort;
 import com.fazecast.jSerialComm.SerialPortEvent;
@@ -180,4 +183,59 @@ public class FrameDefinitionTest {
             // can't test this without a port
         }
     }
+
+
+    @SuppressWarnings("resource")
+    @Test
+    public void testChecksumIsValidatedDuringReception() throws IOException {
+        // GIVEN a frame with a correct sum and a frame with a corrupted sum followed by a correct one
+        final JSerialCommPort port = new JSerialCommPort("", 9600, 8, 1, SerialPort.NO_PARITY, new byte[] { (byte) 0xA5 }, FrameDefinition.create("SACLDV").withChecksum(ByteSumChecksum.sum8(), 0));
+        final ByteReaderWriter queue = new ByteReaderWriter();
+        port.setQueue(queue);
+        final byte[] valid = new byte[] { (byte) 0xA5, 0x40, (byte) 0x90, 0x02, 0x11, 0x22, 0x00 };
+        valid[6] = (byte) ByteSumChecksum.sum8().compute(ByteBuffer.wrap(valid), 0, 6);
+        final byte[] corrupted = valid.clone();
+        corrupted[4] = 0x12;
+
+        // WHEN
+        queue.write(corrupted);
+        queue.write(valid);
+        final ByteBuffer dropped = port.getNextFrame();
+        final ByteBuffer frame = port.getNextFrame();
+
+        // THEN
+        // - the corrupted frame should be dropped
+        // - the following frame should be received
+        assertNull(dropped);
+        assertNotNull(frame);
+        assertArrayEquals(valid, frame.array());
+    }
+
+
+    @SuppressWarnings("resource")
+    @Test
+    public void testChecksumWithTrailingBytes() throws IOException {
+        // GIVEN a JBD frame with the negated 16 bit sum from the status byte followed by the end flag
+        final JSerialCommPort port = new JSerialCommPort("", 9600, 8, 1, SerialPort.NO_PARITY, new byte[] { (byte) 0xDD }, FrameDefinition.create("SCOLDVVO").withChecksum(ByteSumChecksum.negatedSum16(), 2));
+        final ByteReaderWriter queue = new ByteReaderWriter();
+        port.setQueue(queue);
+        final byte[] bytes = new byte[] { (byte) 0xDD, 0x03, 0x00, 0x02, 0x10, 0x20, 0x00, 0x00, 0x77 };
+        final int sum = ByteSumChecksum.negatedSum16().compute(ByteBuffer.wrap(bytes), 2, 6);
+        bytes[6] = (byte) (sum >> 8);
+        bytes[7] = (byte) sum;
+
+        // WHEN
+        queue.write(bytes);
+        final ByteBuffer frame = port.getNextFrame();
+
+        // THEN
+        assertNotNull(frame);
+        assertArrayEquals(bytes, frame.array());
+    }
+
+
+    @Test
+    public void testChecksumRequiresChecksumPart() {
+        assertThrows(IllegalArgumentException.class, () -> FrameDefinition.create("SACLD").withChecksum(ByteSumChecksum.sum8(), 0));
+    }
 }
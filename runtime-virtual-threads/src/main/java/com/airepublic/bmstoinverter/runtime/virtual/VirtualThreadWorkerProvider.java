@@ -0,0 +1,42 @@
+/**
+ * This software is free to use and to distribute in its unchanged form for private use.
+ * Commercial use is prohibited without an explicit license agreement of the copyright holder.
+ * Any changes to this software must be made solely in the project repository at https://github.com/ai-republic/bms-to-inverter.
+ * The copyright holder is not liable for any damages in whatever form that may occur by using this software.
+ *
+ * (c) Copyright 2022 and onwards - Torsten Oltmanns
+ *
+ * @author Torsten Oltmanns - bms-to-inverter''AT''gmail.com
+ */
+package com.airepublic.bmstoinverter.runtime.virtual;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.airepublic.bmstoinverter.core.util.WorkerProvider;
+
+/**
+ * A {@link WorkerProvider} running each worker and executor on its own virtual thread, so blocking
+ * port reads and service calls do not occupy a platform thread. Enabled with the
+ * system property <code>worker.mode=virtual</code> on a Java 21 runtime.
+ */
+public class VirtualThreadWorkerProvider implements WorkerProvider {
+    public final static String NAME = "virtual";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+
+    @Override
+    public Thread newThread(final String name, final Runnable task) {
+        return Thread.ofVirtual().name(name).unstarted(task);
+    }
+
+
+    @Override
+    public ExecutorService newExecutor(final String name) {
+        return Executors.newSingleThreadExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}
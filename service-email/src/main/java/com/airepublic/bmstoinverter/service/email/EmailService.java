@@ -16,6 +16,7 @@ import java.util.Properties;
 
 import javax.mail.Authenticator;
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
 import javax.mail.Transport;
@@ -40,6 +41,8 @@ public class EmailService implements IEmailService {
     private final boolean debug;
     private final String senderEmail;
     private final List<String> recipients;
+    private Session session;
+    private Transport transport;
 
     public EmailService() {
         enabled = Boolean.parseBoolean(getEnv("mail.service.enabled", "true"));
@@ -60,13 +63,48 @@ public class EmailService implements IEmailService {
 
 
     @Override
-    public void sendEmail(final String subject, final String message) {
+    public synchronized void sendEmail(final String subject, final String message) {
         if (!enabled) {
             LOG.info("Email service disabled.");
             return;
         }
 
         try {
+            final MimeMessage mimeMessage = new MimeMessage(getSession());
+            mimeMessage.setFrom(new InternetAddress(senderEmail));
+
+            for (final String recipient : recipients) {
+                mimeMessage.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+            }
+
+            mimeMessage.setSubject(subject);
+            mimeMessage.setText(message);
+            mimeMessage.saveChanges();
+
+            try {
+                getTransport().sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+            } catch (final MessagingException e) {
+                // the server might have closed the idle connection - reconnect and try once more
+                LOG.debug("Sending email failed - reconnecting transport", e);
+                closeTransport();
+                getTransport().sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+            }
+
+            LOG.info("Email sent successfully.");
+        } catch (final Exception e) {
+            closeTransport();
+            throw new RuntimeException("Failed to send email", e);
+        }
+    }
+
+
+    /**
+     * Gets the mail {@link Session} which is created once and reused for all emails.
+     *
+     * @return the mail {@link Session}
+     */
+    private Session getSession() {
+        if (session == null) {
             final Properties props = new Properties();
             props.put("mail.transport.protocol", type);
             props.put("mail.smtp.host", host);
@@ -75,7 +113,7 @@ public class EmailService implements IEmailService {
             props.put("mail.smtp.ssl.enable", String.valueOf(sslEnable));
             props.put("mail.smtp.starttls.enable", String.valueOf(tlsEnable));
 
-            final Session session = Session.getInstance(props, new Authenticator() {
+            session = Session.getInstance(props, new Authenticator() {
                 @Override
                 protected PasswordAuthentication getPasswordAuthentication() {
                     return new PasswordAuthentication(
@@ -85,22 +123,37 @@ public class EmailService implements IEmailService {
             });
 
             session.setDebug(debug);
+        }
 
-            final MimeMessage mimeMessage = new MimeMessage(session);
-            mimeMessage.setFrom(new InternetAddress(senderEmail));
+        return session;
+    }
 
-            for (final String recipient : recipients) {
-                mimeMessage.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
-            }
 
-            mimeMessage.setSubject(subject);
-            mimeMessage.setText(message);
+    /**
+     * Gets the connected {@link Transport} which is kept open and reused for subsequent emails.
+     *
+     * @return the connected {@link Transport}
+     * @throws MessagingException if the transport could not be connected
+     */
+    private Transport getTransport() throws MessagingException {
+        if (transport == null || !transport.isConnected()) {
+            closeTransport();
+            transport = getSession().getTransport(type);
+            transport.connect(host, port, username, password);
+        }
 
-            Transport.send(mimeMessage);
+        return transport;
+    }
 
-            LOG.info("Email sent successfully.");
-        } catch (final Exception e) {
-            throw new RuntimeException("Failed to send email", e);
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (final MessagingException e) {
+            }
+
+            transport = null;
         }
     }
 
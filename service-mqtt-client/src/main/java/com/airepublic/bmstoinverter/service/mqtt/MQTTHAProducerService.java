@@ -13,6 +13,7 @@ package com.airepublic.bmstoinverter.service.mqtt;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.Duration;
+import java.util.Arrays;
 
 import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
 import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
@@ -30,6 +31,7 @@ import com.airepublic.bmstoinverter.core.service.IMQTTProducerService;
 public class MQTTHAProducerService implements IMQTTProducerService {
     private final static Logger LOG = LoggerFactory.getLogger(MQTTHAProducerService.class);
     private static String lastMessage = null;
+    private static byte[] lastPayload = null;
     private static Instant firstMessageTime = Instant.now();
     private boolean running = false;
     private IMqttAsyncClient client = null;
@@ -97,6 +99,30 @@ public class MQTTHAProducerService implements IMQTTProducerService {
     }
 
 
+    @Override
+    public void sendMessage(final byte[] content) throws IOException {
+        try {
+            final long beat = Duration.between(firstMessageTime, Instant.now()).getSeconds();
+            // like the JSON messages the first message is skipped and unchanged ones are only sent every 30 seconds
+            if (lastPayload == null) {
+                lastPayload = content;
+            }
+
+            if (!Arrays.equals(content, lastPayload) || beat >= 30) {
+                LOG.debug("Publishing binary message of {} bytes", content.length);
+                client.publish(topic, content, qos, true).waitForCompletion();
+                if (beat >= 30) firstMessageTime = Instant.now();
+            } else {
+                LOG.debug("Skipping send.");
+            }
+            lastPayload = content;
+        } catch (final Exception e) {
+            if (e instanceof MqttException) logErrorInfo((MqttException) e);
+            throw new IOException("Could not send MQTT message on topic " + topic, e);
+        }
+    }
+
+
     @Override
     public void stop() {
         try {
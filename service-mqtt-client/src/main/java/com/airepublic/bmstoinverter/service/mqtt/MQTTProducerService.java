@@ -82,6 +82,19 @@ public class MQTTProducerService implements IMQTTProducerService {
     }
 
 
+    @Override
+    public void sendMessage(final byte[] content) throws IOException {
+        try {
+            final ClientMessage message = session.createMessage(false);
+            message.setRoutingType(RoutingType.MULTICAST);
+            message.writeBodyBufferBytes(content);
+            producer.send(message);
+        } catch (final Exception e) {
+            throw new IOException("Could not send MQTT message on topic " + topic, e);
+        }
+    }
+
+
     @Override
     public void stop() {
         try {
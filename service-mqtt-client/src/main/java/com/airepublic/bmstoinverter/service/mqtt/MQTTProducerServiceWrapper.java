@@ -11,12 +11,15 @@
 package com.airepublic.bmstoinverter.service.mqtt;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.net.URI;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.airepublic.bmstoinverter.core.service.IMQTTProducerService;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
 
 /**
  * Wrapper to choose between multiple client types based on the port number. Artemis (default
@@ -64,10 +67,37 @@ public class MQTTProducerServiceWrapper implements IMQTTProducerService {
 
     @Override
     public void sendMessage(final String content) throws IOException {
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.MQTT_PUBLISH);
+        final long start = System.nanoTime();
+        boolean success = false;
+
         try {
             impl.sendMessage(content);
+            success = true;
         } catch (final Exception e) {
             throw new IOException("Could not send MQTT message on topic " + content, e);
+        } finally {
+            // count the bytes of the UTF-8 encoded payload, but only encode it if it is traced
+            tracer.mqttPublish(span, span != null && content != null ? content.getBytes(StandardCharsets.UTF_8).length : 0, System.nanoTime() - start, success);
+        }
+    }
+
+
+    @Override
+    public void sendMessage(final byte[] content) throws IOException {
+        final Tracer tracer = Tracing.get();
+        final Object span = tracer.begin(Tracer.Operation.MQTT_PUBLISH);
+        final long start = System.nanoTime();
+        boolean success = false;
+
+        try {
+            impl.sendMessage(content);
+            success = true;
+        } catch (final Exception e) {
+            throw new IOException("Could not send binary MQTT message", e);
+        } finally {
+            tracer.mqttPublish(span, content != null ? content.length : 0, System.nanoTime() - start, success);
         }
     }
 
@@ -1,6 +1,8 @@
 package com.airepublic.bmstoinverter.webserver;
 
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 
@@ -27,15 +29,22 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.bmstoinverter.core.PortAllocator;
 import com.airepublic.bmstoinverter.core.bms.data.BatteryPack;
+import com.airepublic.bmstoinverter.core.bms.data.CellMatrix;
 import com.airepublic.bmstoinverter.core.bms.data.EnergyStorage;
+import com.airepublic.bmstoinverter.core.bms.data.TelemetryEncoder;
 import com.airepublic.bmstoinverter.core.service.IWebServerService;
+import com.airepublic.bmstoinverter.core.util.Metrics;
+import com.airepublic.bmstoinverter.core.util.Tracer;
+import com.airepublic.bmstoinverter.core.util.Tracing;
 import com.google.gson.Gson;
 
 public class WebServer implements IWebServerService {
     private static Logger LOG = LoggerFactory.getLogger(WebServer.class);
     private Server server;
     private final String alarmMessages;
+    private final String telemetrySchema = new Gson().toJson(TelemetryEncoder.getSchema());
 
     public WebServer() {
         final ResourceBundle bundle = ResourceBundle.getBundle("alarms");
@@ -118,12 +127,75 @@ public class WebServer implements IWebServerService {
                         org.eclipse.jetty.util.IO.copy(favicon.getInputStream(), response.getOutputStream());
                         baseRequest.setHandled(true);
                     }
+                } else if (path.contains("/data.bin")) {
+                    final Tracer tracer = Tracing.get();
+                    final Object span = tracer.begin(Tracer.Operation.SNAPSHOT_SERIALIZATION);
+                    final long start = System.nanoTime();
+                    final byte[] content = TelemetryEncoder.encode(energyStorage);
+                    tracer.snapshotSerialization(span, "/data.bin", content.length, System.nanoTime() - start);
+                    response.setContentType("application/octet-stream");
+                    response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+                    response.setContentLength(content.length);
+                    response.getOutputStream().write(content);
+                    baseRequest.setHandled(true);
+                } else if (path.contains("/telemetrySchema")) {
+                    response.setContentType("application/json; charset=utf-8");
+                    response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+                    response.getWriter().write(telemetrySchema);
+                    baseRequest.setHandled(true);
                 } else if (path.contains("/data")) {
+                    final Tracer tracer = Tracing.get();
+                    final Object span = tracer.begin(Tracer.Operation.SNAPSHOT_SERIALIZATION);
+                    final long start = System.nanoTime();
                     final String content = energyStorage.toJson();
+                    tracer.snapshotSerialization(span, "/data", span != null ? content.getBytes(StandardCharsets.UTF_8).length : 0, System.nanoTime() - start);
+                    response.setContentType("application/json; charset=utf-8");
+                    response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+                    response.getWriter().write(content);
+                    baseRequest.setHandled(true);
+                } else if (path.contains("/cells")) {
+                    // packed little-endian matrix by default, JSON with ?format=json
+                    final CellMatrix matrix = energyStorage.getCellMatrix();
+                    response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+
+                    if ("json".equals(request.getParameter("format"))) {
+                        response.setContentType("application/json; charset=utf-8");
+                        response.getWriter().write(new Gson().toJson(matrix.toMap()));
+                    } else {
+                        final Tracer tracer = Tracing.get();
+                        final Object span = tracer.begin(Tracer.Operation.SNAPSHOT_SERIALIZATION);
+                        final long start = System.nanoTime();
+                        final byte[] content = matrix.toBytes();
+                        tracer.snapshotSerialization(span, "/cells", content.length, System.nanoTime() - start);
+                        response.setContentType("application/octet-stream");
+                        response.setContentLength(content.length);
+                        response.getOutputStream().write(content);
+                    }
+
+                    baseRequest.setHandled(true);
+                } else if (path.contains("/racks")) {
                     response.setContentType("application/json; charset=utf-8");
                     response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+                    final Tracer tracer = Tracing.get();
+                    final Object span = tracer.begin(Tracer.Operation.SNAPSHOT_SERIALIZATION);
+                    final long start = System.nanoTime();
+                    final String content = new Gson().toJson(energyStorage.getRacks());
+                    tracer.snapshotSerialization(span, "/racks", span != null ? content.getBytes(StandardCharsets.UTF_8).length : 0, System.nanoTime() - start);
                     response.getWriter().write(content);
                     baseRequest.setHandled(true);
+                } else if (path.contains("/frames")) {
+                    // the recorded frames are only formatted on request
+                    final Map<String, List<String>> frames = new LinkedHashMap<>();
+                    PortAllocator.getPorts().forEach((portLocator, port) -> frames.put(portLocator, port.getFlightRecorder().format()));
+                    response.setContentType("application/json; charset=utf-8");
+                    response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+                    response.getWriter().write(new Gson().toJson(frames));
+                    baseRequest.setHandled(true);
+                } else if (path.contains("/metrics")) {
+                    response.setContentType("application/json; charset=utf-8");
+                    response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
+                    response.getWriter().write(new Gson().toJson(Metrics.snapshot()));
+                    baseRequest.setHandled(true);
                 } else if (path.contains("/alarmMessages")) {
                     response.setContentType("application/json; charset=utf-8");
                     response.setHeader("Access-Control-Allow-Origin", "http://localhost, https://localhost");
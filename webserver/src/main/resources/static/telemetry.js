@@ -0,0 +1,168 @@
+/*
+ * Decoder of the binary telemetry messages of the TelemetryEncoder as served at /data.bin.
+ * The order of the fields, flags and alarms is read from the schema at /telemetrySchema.
+ * The decoded object has the same structure as the JSON served at /data.
+ */
+async function fetchTelemetrySchema(url) {
+	const response = await fetch(url);
+	return await response.json();
+}
+
+async function fetchTelemetry(url, schema) {
+	const response = await fetch(url);
+	return decodeTelemetry(await response.arrayBuffer(), schema);
+}
+
+function decodeTelemetry(buffer, schema) {
+	var bytes = new Uint8Array(buffer);
+	var pos = 0;
+
+	function readVarint() {
+		var value = 0;
+		var shift = 0;
+		var b;
+
+		do {
+			b = bytes[pos++];
+			value += (b & 0x7F) * Math.pow(2, shift);
+			shift += 7;
+		} while (b & 0x80);
+
+		// reinterpret as 32bit unsigned like Java
+		return value >>> 0;
+	}
+
+	function readZigzag() {
+		var value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	function readDeltas() {
+		var count = readVarint();
+		var values = new Array(count);
+		var previous = 0;
+
+		for (var i = 0; i < count; i++) {
+			previous += readZigzag();
+			values[i] = previous;
+		}
+
+		return values;
+	}
+
+	function readString() {
+		var length = readVarint();
+		var value = new TextDecoder('utf-8').decode(bytes.subarray(pos, pos + length));
+		pos += length;
+		return value;
+	}
+
+	var version = bytes[pos++];
+
+	if (version != schema.version) {
+		throw new Error('Unsupported telemetry version ' + version);
+	}
+
+	var count = readVarint();
+	var packs = new Array(count);
+
+	for (var p = 0; p < count; p++) {
+		var pack = {};
+
+		for (var f = 0; f < schema.fields.length; f++) {
+			pack[schema.fields[f]] = readZigzag();
+		}
+
+		var flags = readVarint();
+
+		for (var f = 0; f < schema.flags.length; f++) {
+			pack[schema.flags[f]] = (flags & (1 << f)) != 0;
+		}
+
+		var dio = bytes[pos++];
+		pack.dIO = new Array(8);
+
+		for (var i = 0; i < 8; i++) {
+			pack.dIO[i] = (dio & (1 << i)) != 0;
+		}
+
+		pack.cellVmV = readDeltas();
+		pack.cellTemperature = readDeltas();
+		pack.cellBalanceState = new Array(pack.cellVmV.length);
+
+		for (var i = 0; i < pack.cellVmV.length; i++) {
+			pack.cellBalanceState[i] = (bytes[pos + (i >> 3)] & (1 << (i & 7))) != 0;
+		}
+
+		pos += (pack.cellVmV.length + 7) >> 3;
+
+		var maskLength = readVarint();
+		var warnings = pos;
+		var alarms = pos + maskLength;
+		pos = alarms + maskLength;
+		pack.alarms = {};
+
+		for (var a = 0; a < schema.alarms.length && (a >> 3) < maskLength; a++) {
+			var bit = 1 << (a & 7);
+
+			if (bytes[alarms + (a >> 3)] & bit) {
+				pack.alarms[schema.alarms[a]] = 'ALARM';
+			} else if (bytes[warnings + (a >> 3)] & bit) {
+				pack.alarms[schema.alarms[a]] = 'WARNING';
+			}
+		}
+
+		pack.manufacturerCode = readString();
+		pack.hardwareVersion = readString();
+		pack.softwareVersion = readString();
+		pack.serialnumber = readString();
+		packs[p] = pack;
+	}
+
+	return { batteryPacks: packs };
+}
+
+/*
+ * Decoder of the packed little-endian cell matrix as served at /cells into one array per pack of
+ * the cell voltages, temperatures and balance states.
+ */
+async function fetchCellMatrix(url) {
+	const response = await fetch(url);
+	return decodeCellMatrix(await response.arrayBuffer());
+}
+
+function decodeCellMatrix(buffer) {
+	var view = new DataView(buffer);
+	var matrix = { version: view.getUint8(0), packs: view.getUint16(1, true), cells: view.getUint16(3, true), sensors: view.getUint16(5, true) };
+	var pos = 7;
+	matrix.voltages = new Array(matrix.packs);
+	matrix.temperatures = new Array(matrix.packs);
+	matrix.balancing = new Array(matrix.packs);
+
+	for (var p = 0; p < matrix.packs; p++) {
+		matrix.voltages[p] = new Array(matrix.cells);
+
+		for (var c = 0; c < matrix.cells; c++, pos += 2) {
+			matrix.voltages[p][c] = view.getInt16(pos, true);
+		}
+	}
+
+	for (var p = 0; p < matrix.packs; p++) {
+		matrix.temperatures[p] = new Array(matrix.sensors);
+
+		for (var s = 0; s < matrix.sensors; s++, pos += 2) {
+			matrix.temperatures[p][s] = view.getInt16(pos, true);
+		}
+	}
+
+	for (var p = 0; p < matrix.packs; p++) {
+		matrix.balancing[p] = new Array(matrix.cells);
+
+		for (var c = 0; c < matrix.cells; c++) {
+			var index = p * matrix.cells + c;
+			matrix.balancing[p][c] = (view.getUint8(pos + (index >> 3)) & (1 << (index & 7))) != 0;
+		}
+	}
+
+	return matrix;
+}